@@ -92,8 +92,8 @@ public interface KeyValueService extends AutoCloseable {
      */
     @POST
     @Path("get-rows")
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, KeyValueServiceMediaTypes.APPLICATION_ATLASDB_KVS})
+    @Consumes({MediaType.APPLICATION_JSON, KeyValueServiceMediaTypes.APPLICATION_ATLASDB_KVS})
     @Idempotent
     Map<Cell, Value> getRows(@QueryParam("tableRef") TableReference tableRef,
                              Iterable<byte[]> rows,
@@ -114,8 +114,8 @@ public interface KeyValueService extends AutoCloseable {
      */
     @POST
     @Path("get")
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, KeyValueServiceMediaTypes.APPLICATION_ATLASDB_KVS})
+    @Consumes({MediaType.APPLICATION_JSON, KeyValueServiceMediaTypes.APPLICATION_ATLASDB_KVS})
     @Idempotent
     Map<Cell, Value> get(@QueryParam("tableRef") TableReference tableRef, Map<Cell, Long> timestampByCell);
 
@@ -189,7 +189,7 @@ public interface KeyValueService extends AutoCloseable {
      */
     @POST
     @Path("multi-put")
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Consumes({MediaType.APPLICATION_JSON, KeyValueServiceMediaTypes.APPLICATION_ATLASDB_KVS})
     @Idempotent
     void multiPut(Map<TableReference, ? extends Map<Cell, byte[]>> valuesByTable,
                   @QueryParam("timestamp") long timestamp) throws KeyAlreadyExistsException;
@@ -322,7 +322,7 @@ public interface KeyValueService extends AutoCloseable {
      */
     @POST
     @Path("get-range")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, KeyValueServiceMediaTypes.APPLICATION_ATLASDB_KVS})
     @Consumes(MediaType.APPLICATION_JSON)
     @Idempotent
     ClosableIterator<RowResult<Value>> getRange(@QueryParam("tableRef") TableReference tableRef,
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.api;
+
+/**
+ * Media types that remote {@link KeyValueService}s can use besides JSON.
+ */
+public final class KeyValueServiceMediaTypes {
+    private KeyValueServiceMediaTypes() {
+        // constants
+    }
+
+    /**
+     * Compact length-prefixed binary encoding of cells and values. Only the bulk
+     * endpoints accept and produce it, and only when the client asks for it.
+     */
+    public static final String APPLICATION_ATLASDB_KVS = "application/x-atlasdb-kvs";
+
+    /**
+     * A getRange response that streams every page of the range as one chunked body of
+     * {@link #APPLICATION_ATLASDB_KVS} encoded frames.
+     */
+    public static final String APPLICATION_ATLASDB_KVS_STREAM = "application/x-atlasdb-kvs-stream";
+}
@@ -27,16 +27,26 @@ public class SweepResults {
     private final long cellsExamined;
     private final long cellsSwept;
     private final long sweptTimestamp;
+    private final long bytesExamined;
 
     public static SweepResults createEmptySweepResult(long sweptTimestamp) {
         return new SweepResults(null, 0, 0, sweptTimestamp);
     }
 
     public SweepResults(@Nullable byte[] nextStartRow, long cellsExamined, long cellsSwept, long sweptTimestamp) {
+        this(nextStartRow, cellsExamined, cellsSwept, sweptTimestamp, 0L);
+    }
+
+    public SweepResults(@Nullable byte[] nextStartRow,
+                        long cellsExamined,
+                        long cellsSwept,
+                        long sweptTimestamp,
+                        long bytesExamined) {
         this.nextStartRow = nextStartRow;
         this.cellsExamined = cellsExamined;
         this.cellsSwept = cellsSwept;
         this.sweptTimestamp = sweptTimestamp;
+        this.bytesExamined = bytesExamined;
     }
 
     public Optional<byte[]> getNextStartRow() {
@@ -55,12 +65,21 @@ public class SweepResults {
         return sweptTimestamp;
     }
 
+    /**
+     * @return the size of the keys of every cell version the sweep looked at, which is
+     * roughly what it had to read from the key value service
+     */
+    public long getBytesExamined() {
+        return bytesExamined;
+    }
+
     @Override
     public String toString() {
         return "SweepResults [nextStartRow=" + PtBytes.encodeHexString(nextStartRow)
                 + ", cellsExamined=" + cellsExamined
                 + ", cellsSwept=" + cellsSwept
-                + ", sweptTimestamp=" + sweptTimestamp + "]";
+                + ", sweptTimestamp=" + sweptTimestamp
+                + ", bytesExamined=" + bytesExamined + "]";
     }
 
     @Override
@@ -73,6 +92,7 @@ public class SweepResults {
         if (cellsExamined != results.cellsExamined) return false;
         if (cellsSwept != results.cellsSwept) return false;
         if (sweptTimestamp != results.sweptTimestamp) return false;
+        if (bytesExamined != results.bytesExamined) return false;
         return Arrays.equals(nextStartRow, results.nextStartRow);
     }
 
@@ -82,6 +102,7 @@ public class SweepResults {
         result = 31 * result + (int) (cellsExamined ^ (cellsExamined >>> 32));
         result = 31 * result + (int) (cellsSwept ^ (cellsSwept >>> 32));
         result = 31 * result + (int) (sweptTimestamp ^ (sweptTimestamp >>> 32));
+        result = 31 * result + (int) (bytesExamined ^ (bytesExamined >>> 32));
         return result;
     }
 }
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.api;
+
+import javax.annotation.Nullable;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * How a serializable transaction remembers the values it read until it checks them for read-write
+ * conflicts at commit time.
+ * <p>
+ * With a digest encoding, values shorter than the digest are still kept as they are, so every
+ * value takes at most the size of the digest.  A changed value is only missed if its digest is
+ * the same as the digest of the value that was read.
+ */
+public enum SerializableReadSetEncoding {
+    /**
+     * Keep every value that was read.  This is the default value.  Memory use grows with the size
+     * of the values read, and conflicts are detected exactly.
+     */
+    FULL_VALUES(null),
+    /**
+     * Keep 16 byte murmur3 digests.  Changes are missed with a probability of about 2^-128 per value,
+     * but values can be chosen on purpose to have the same digest.
+     */
+    MURMUR3_128(Hashing.murmur3_128()),
+    /**
+     * Keep 32 byte SHA-256 digests.  This is slower to compute than {@link #MURMUR3_128}, but there is
+     * no known way to find two values with the same digest.
+     */
+    SHA_256(Hashing.sha256());
+
+    @Nullable private final HashFunction digest;
+
+    private SerializableReadSetEncoding(@Nullable HashFunction digest) {
+        this.digest = digest;
+    }
+
+    /**
+     * @return what to remember about a value that was read.  Two values are considered the same if
+     *         their encodings are equal.
+     */
+    public byte[] encode(byte[] value) {
+        if (digest == null || value.length < digest.bits() / 8) {
+            // Shorter than any digest, so it cannot be mistaken for one.
+            return value;
+        }
+        return digest.hashBytes(value).asBytes();
+    }
+}
@@ -15,10 +15,13 @@
  */
 package com.palantir.atlasdb.transaction.api;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.palantir.atlasdb.keyvalue.api.Cell;
 import com.palantir.atlasdb.keyvalue.api.ColumnSelection;
 import com.palantir.atlasdb.keyvalue.api.RangeRequest;
@@ -26,6 +29,7 @@ import com.palantir.atlasdb.keyvalue.api.RowResult;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.transaction.service.TransactionService;
 import com.palantir.common.annotation.Idempotent;
+import com.palantir.common.base.AbortingVisitor;
 import com.palantir.common.base.BatchingVisitable;
 
 /**
@@ -62,6 +66,70 @@ public interface Transaction {
     @Idempotent
     Iterable<BatchingVisitable<RowResult<byte[]>>> getRanges(TableReference tableRef, Iterable<RangeRequest> rangeRequests);
 
+    /**
+     * Reads each of the provided ranges in full, working on up to {@code concurrencyLevel} ranges
+     * at a time.  Unlike {@link #getRanges(TableReference, Iterable)}, later pages of each range are
+     * fetched eagerly, and the commit timestamps of all ranges being worked on together are looked
+     * up in batches.  This is meant for many small ranges, such as index lookups; every range is
+     * held in memory once it has been read.
+     * <p>
+     * All of the ranges are read whether or not the returned iterator is exhausted.  Reverse ranges
+     * are not supported.
+     *
+     * @param tableRef the table to scan
+     * @param rangeRequests the ranges of rows and columns to scan
+     * @param concurrencyLevel the maximum number of groups of ranges read at the same time
+     * @param preserveOrder if true, ranges are returned in the order they were requested;
+     *        otherwise each range is returned as soon as it has been read
+     * @return each range request paired with all of its rows, once per requested range
+     */
+    @Idempotent
+    Iterator<Map.Entry<RangeRequest, List<RowResult<byte[]>>>> getRanges(TableReference tableRef,
+                                                                         Iterable<RangeRequest> rangeRequests,
+                                                                         int concurrencyLevel,
+                                                                         boolean preserveOrder);
+
+    /**
+     * Like {@link #getRows(TableReference, Iterable, ColumnSelection)}, but the read runs on a
+     * background thread so that several reads can be outstanding at once.
+     * <p>
+     * All async reads must be complete before the transaction is committed; committing while one is
+     * outstanding fails with an {@link IllegalStateException}.  Aborting does not wait for them, and
+     * reads that have not started yet fail once the transaction is aborted.  Writes made by this
+     * transaction while a read is outstanding may or may not be visible to that read.
+     */
+    @Idempotent
+    ListenableFuture<SortedMap<byte[], RowResult<byte[]>>> getRowsAsync(TableReference tableRef,
+                                                                       Iterable<byte[]> rows,
+                                                                       ColumnSelection columnSelection);
+
+    /**
+     * Like {@link #get(TableReference, Set)}, but the read runs on a background thread.
+     *
+     * @see #getRowsAsync(TableReference, Iterable, ColumnSelection)
+     */
+    @Idempotent
+    ListenableFuture<Map<Cell, byte[]>> getAsync(TableReference tableRef, Set<Cell> cells);
+
+    /**
+     * Visits the provided range in batches of {@code batchSize} rows on a background thread.
+     * The visitor is called from that thread, one batch at a time.
+     * <p>
+     * Async reads from every transaction share a bounded pool of threads, so the visitor must not
+     * wait on another async read: if enough visitors do so, the reads they wait on stay queued
+     * behind them and no async read in the process can make progress.
+     *
+     * @return a future that is true if the whole range was visited and false if the visitor
+     *         stopped early, as {@link BatchingVisitable#batchAccept(int, com.palantir.common.base.AbortingVisitor)},
+     *         or that fails with whatever the visitor threw
+     * @see #getRowsAsync(TableReference, Iterable, ColumnSelection)
+     */
+    @Idempotent
+    ListenableFuture<Boolean> getRangeAsync(TableReference tableRef,
+                                            RangeRequest rangeRequest,
+                                            int batchSize,
+                                            AbortingVisitor<? super List<RowResult<byte[]>>, ? extends Exception> visitor);
+
     /**
      * Puts values into the key-value store. If you put a null or the empty byte array, then
      * this is treated like a delete to the store.
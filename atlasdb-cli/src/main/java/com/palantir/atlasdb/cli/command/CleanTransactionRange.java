@@ -15,16 +15,20 @@
  */
 package com.palantir.atlasdb.cli.command;
 
+import java.util.List;
+
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import com.palantir.atlasdb.cli.services.AtlasDbServices;
 import com.palantir.atlasdb.keyvalue.api.Cell;
 import com.palantir.atlasdb.keyvalue.api.KeyValueService;
 import com.palantir.atlasdb.keyvalue.api.RangeRequest;
-import com.palantir.atlasdb.keyvalue.api.RangeRequests;
 import com.palantir.atlasdb.keyvalue.api.RowResult;
 import com.palantir.atlasdb.keyvalue.api.Value;
 import com.palantir.atlasdb.transaction.impl.TransactionConstants;
+import com.palantir.atlasdb.transaction.impl.TransactionTableEncoding;
+import com.palantir.atlasdb.transaction.impl.TransactionTableLayout;
 import com.palantir.common.base.ClosableIterator;
 import com.palantir.timestamp.PersistentTimestampService;
 import com.palantir.timestamp.TimestampService;
@@ -52,20 +56,52 @@ public class CleanTransactionRange extends SingleBackendCommand {
         PersistentTimestampService pts = (PersistentTimestampService) ts;
         KeyValueService kvs = services.getKeyValueService();
 
-        byte[] startRowInclusive = RangeRequests.nextLexicographicName(TransactionConstants.getValueForTimestamp(startTimestampExclusive));
-        ClosableIterator<RowResult<Value>> range = kvs.getRange(
-                TransactionConstants.TRANSACTION_TABLE,
-                RangeRequest.builder()
-                .startRowInclusive(startRowInclusive)
-                .build(),
-                Long.MAX_VALUE);
+        TransactionTableLayout layout = TransactionTableLayout.load(kvs);
+        List<TransactionTableEncoding> encodings = layout.isBucketedEncodingEnabled()
+                ? ImmutableList.copyOf(TransactionTableEncoding.values())
+                : ImmutableList.of(TransactionTableEncoding.LEGACY);
 
         Multimap<Cell, Long> toDelete = HashMultimap.create();
         long maxTimestamp = startTimestampExclusive;
+        for (TransactionTableEncoding encoding : encodings) {
+            for (RangeRequest rangeRequest : encoding.getRangesForTimestampsAfter(startTimestampExclusive)) {
+                ClosableIterator<RowResult<Value>> range = kvs.getRange(
+                        TransactionConstants.TRANSACTION_TABLE,
+                        rangeRequest,
+                        Long.MAX_VALUE);
+                try {
+                    maxTimestamp = Math.max(maxTimestamp, collectRowsToDelete(encoding, range, toDelete));
+                } finally {
+                    range.close();
+                }
+            }
+        }
+
+        if (!toDelete.isEmpty()) {
+            kvs.delete(TransactionConstants.TRANSACTION_TABLE, toDelete);
+            System.out.println("Delete completed.");
+
+            pts.fastForwardTimestamp(maxTimestamp+1);
+            System.out.printf("Timestamp succesfully forwarded past all cleaned/deleted transactions to %d%n", maxTimestamp);
+        } else {
+            System.out.println("Found no transactions inside the given range to clean up or delete.");
+        }
+
+        return 0;
+    }
+
+    private long collectRowsToDelete(TransactionTableEncoding encoding,
+                                     ClosableIterator<RowResult<Value>> range,
+                                     Multimap<Cell, Long> toDelete) {
+        long maxTimestamp = startTimestampExclusive;
         while (range.hasNext()) {
             RowResult<Value> row = range.next();
             byte[] rowName = row.getRowName();
-            long startResult = TransactionConstants.getTimestampForValue(rowName);
+            Long startResult = encoding.getStartTimestamp(rowName);
+            if (startResult == null || startResult <= startTimestampExclusive) {
+                // The other encoding's rows, or the encoding marker, can fall inside this range.
+                continue;
+            }
             maxTimestamp = Math.max(maxTimestamp, startResult);
 
             Value value;
@@ -84,18 +120,7 @@ public class CleanTransactionRange extends SingleBackendCommand {
             Cell key = Cell.create(rowName, TransactionConstants.COMMIT_TS_COLUMN);
             toDelete.put(key, value.getTimestamp());  //value.getTimestamp() should always be 0L but this is safer
         }
-
-        if (!toDelete.isEmpty()) {
-            kvs.delete(TransactionConstants.TRANSACTION_TABLE, toDelete);
-            System.out.println("Delete completed.");
-
-            pts.fastForwardTimestamp(maxTimestamp+1);
-            System.out.printf("Timestamp succesfully forwarded past all cleaned/deleted transactions to %d%n", maxTimestamp);
-        } else {
-            System.out.println("Found no transactions inside the given range to clean up or delete.");
-        }
-
-        return 0;
+        return maxTimestamp;
     }
 
     private boolean isValid(long immutableTimestamp, TimestampService ts) {
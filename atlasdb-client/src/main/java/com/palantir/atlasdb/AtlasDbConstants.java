@@ -24,6 +24,7 @@ import com.google.common.collect.ImmutableSet;
 import com.palantir.atlasdb.encoding.PtBytes;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.table.description.TableMetadata;
+import com.palantir.atlasdb.transaction.api.SerializableReadSetEncoding;
 import com.palantir.atlasdb.transaction.impl.TransactionConstants;
 
 public class AtlasDbConstants {
@@ -38,6 +39,7 @@ public class AtlasDbConstants {
     public static final byte[] NAMESPACE_SHORT_COLUMN_BYTES = PtBytes.toBytes(NAMESPACE_SHORT_COLUMN_NAME);
 
     public static final TableReference PARTITION_MAP_TABLE = TableReference.createWithEmptyNamespace("_partition_map");
+    public static final TableReference PARTITION_BACKFILL_TABLE = TableReference.createWithEmptyNamespace("_partition_backfill");
     public static final char SCRUB_TABLE_SEPARATOR_CHAR = '\0';
     public static final byte[] EMPTY_TABLE_METADATA = {}; // use carefully
     public static final byte[] GENERIC_TABLE_METADATA = new TableMetadata().persistToBytes();
@@ -57,7 +59,8 @@ public class AtlasDbConstants {
             PUNCH_TABLE,
             SCRUB_TABLE,
             NAMESPACE_TABLE,
-            PARTITION_MAP_TABLE);
+            PARTITION_MAP_TABLE,
+            PARTITION_BACKFILL_TABLE);
     public static final Set<TableReference> SKIP_POSTFILTER_TABLES = ImmutableSet.of(TransactionConstants.TRANSACTION_TABLE,
             NAMESPACE_TABLE);
 
@@ -80,5 +83,14 @@ public class AtlasDbConstants {
     public static final boolean DEFAULT_ENABLE_SWEEP = false;
     public static final long DEFAULT_SWEEP_PAUSE_MILLIS = 5 * 1000;
     public static final int DEFAULT_SWEEP_BATCH_SIZE = 1000;
+    public static final int DEFAULT_SWEEP_THREADS = 1;
+    public static final long DEFAULT_SWEEP_CELLS_PER_SECOND = 0; // unlimited
+    public static final long DEFAULT_SWEEP_BYTES_PER_SECOND = 0; // unlimited
     public static final int DEFAULT_STREAM_IN_MEMORY_THRESHOLD = 4 * 1024 * 1024;
+    public static final int DEFAULT_STREAM_READ_AHEAD_BLOCKS = 4;
+    public static final int DEFAULT_STREAM_BLOCKS_PER_TRANSACTION = 4;
+    public static final int DEFAULT_COMMIT_TIMESTAMP_CACHE_SIZE = 64 * 1024;
+    public static final int DEFAULT_RANGE_SCAN_PREFETCH_PAGES = 0;
+    public static final SerializableReadSetEncoding DEFAULT_SERIALIZABLE_READ_SET_ENCODING = SerializableReadSetEncoding.FULL_VALUES;
+    public static final int DEFAULT_TRANSACTION_TABLE_WRITE_BATCHES_IN_FLIGHT = 0;
 }
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.impl;
+
+/**
+ * Percentiles of one {@link LatencyHistogram} snapshot, in whatever unit was recorded.
+ */
+public final class HistogramSummary {
+    private final String tableName;
+    private final String operation;
+    private final long count;
+    private final double mean;
+    private final long p50;
+    private final long p95;
+    private final long p99;
+    private final long p999;
+    private final long max;
+
+    public HistogramSummary(String tableName, String operation, long count, double mean,
+                            long p50, long p95, long p99, long p999, long max) {
+        this.tableName = tableName;
+        this.operation = operation;
+        this.count = count;
+        this.mean = mean;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.p999 = p999;
+        this.max = max;
+    }
+
+    public static HistogramSummary of(String tableName, String operation, LatencyHistogram.Snapshot snapshot) {
+        return new HistogramSummary(
+                tableName,
+                operation,
+                snapshot.getCount(),
+                snapshot.getMean(),
+                snapshot.getValueAtPercentile(0.5),
+                snapshot.getValueAtPercentile(0.95),
+                snapshot.getValueAtPercentile(0.99),
+                snapshot.getValueAtPercentile(0.999),
+                snapshot.getMax());
+    }
+
+    public String getTableName() { return tableName; }
+    public String getOperation() { return operation; }
+    public long getCount() { return count; }
+    public double getMean() { return mean; }
+    public long getP50() { return p50; }
+    public long getP95() { return p95; }
+    public long getP99() { return p99; }
+    public long getP999() { return p999; }
+    public long getMax() { return max; }
+
+    @Override
+    public String toString() {
+        return tableName + " " + operation + ": count=" + count + ", mean=" + mean + ", p50=" + p50
+                + ", p95=" + p95 + ", p99=" + p99 + ", p999=" + p999 + ", max=" + max;
+    }
+}
@@ -16,15 +16,22 @@
 package com.palantir.atlasdb.keyvalue.impl;
 
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 
 import javax.annotation.concurrent.ThreadSafe;
+import javax.management.DynamicMBean;
 
 import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.palantir.atlasdb.keyvalue.api.Cell;
@@ -38,51 +45,125 @@ import com.palantir.atlasdb.keyvalue.api.Value;
 import com.palantir.common.base.ClosableIterator;
 import com.palantir.common.base.ForwardingClosableIterator;
 import com.palantir.common.collect.MapEntries;
+import com.palantir.util.JMXUtils;
+import com.palantir.util.paging.TokenBackedBasicResultsPage;
 
 @ThreadSafe
-public class StatsTrackingKeyValueService extends ForwardingKeyValueService {
+public class StatsTrackingKeyValueService extends ForwardingKeyValueService implements StatsTrackingKeyValueServiceMBean {
+    private static final AtomicInteger mbeanCount = new AtomicInteger();
+
+    /**
+     * The calls that have latency histograms.  The range operations time opening the range;
+     * {@link #GET_RANGE_ROW} times every row fetched from a getRange iterator, which includes
+     * loading the next page whenever the iterator runs out.
+     */
+    public enum Operation {
+        GET,
+        GET_ROWS,
+        GET_LATEST_TIMESTAMPS,
+        GET_ALL_TIMESTAMPS,
+        GET_RANGE,
+        GET_RANGE_ROW,
+        GET_RANGE_WITH_HISTORY,
+        GET_RANGE_OF_TIMESTAMPS,
+        GET_FIRST_BATCH_FOR_RANGES,
+        PUT,
+        MULTI_PUT,
+        PUT_WITH_TIMESTAMPS,
+        PUT_UNLESS_EXISTS,
+        DELETE,
+        ADD_GARBAGE_COLLECTION_SENTINEL_VALUES,
+        TRUNCATE_TABLE,
+    }
+
     public static class TableStats {
-        final AtomicLong totalGetValueBytes = new AtomicLong(0L);
-        final AtomicLong totalPutValueBytes = new AtomicLong(0L);
-        final AtomicLong totalGetCellBytes = new AtomicLong(0L);
-        final AtomicLong totalPutCellBytes = new AtomicLong(0L);
-        final AtomicLong totalGetCells = new AtomicLong(0L);
-        final AtomicLong totalPutCells = new AtomicLong(0L);
-        final AtomicLong totalGetMillis = new AtomicLong(0L);
-        final AtomicLong totalPutMillis = new AtomicLong(0L);
-        final AtomicLong totalGetCalls = new AtomicLong(0L);
-        final AtomicLong totalPutCalls = new AtomicLong(0L);
-
-        public long getTotalGetValueBytes() { return totalGetValueBytes.get(); }
-        public long getTotalPutValueBytes() { return totalPutValueBytes.get(); }
-        public long getTotalGetCellBytes() { return totalGetCellBytes.get(); }
-        public long getTotalPutCellBytes() { return totalPutCellBytes.get(); }
-        public long getTotalGetCells() { return totalGetCells.get(); }
-        public long getTotalPutCells() { return totalPutCells.get(); }
-        public long getTotalGetMillis() { return totalGetMillis.get(); }
-        public long getTotalPutMillis() { return totalPutMillis.get(); }
+        final LongAdder totalGetValueBytes = new LongAdder();
+        final LongAdder totalPutValueBytes = new LongAdder();
+        final LongAdder totalGetCellBytes = new LongAdder();
+        final LongAdder totalPutCellBytes = new LongAdder();
+        final LongAdder totalGetCells = new LongAdder();
+        final LongAdder totalPutCells = new LongAdder();
+        final LongAdder totalGetNanos = new LongAdder();
+        final LongAdder totalPutNanos = new LongAdder();
+        final LongAdder totalGetCalls = new LongAdder();
+        final LongAdder totalPutCalls = new LongAdder();
+
+        // Created on first use; most tables only ever see a few of the operations.
+        private final AtomicReferenceArray<LatencyHistogram> latencyMicros =
+                new AtomicReferenceArray<LatencyHistogram>(Operation.values().length);
+        private volatile LatencyHistogram rangeRowCounts = null;
+
+        public long getTotalGetValueBytes() { return totalGetValueBytes.sum(); }
+        public long getTotalPutValueBytes() { return totalPutValueBytes.sum(); }
+        public long getTotalGetCellBytes() { return totalGetCellBytes.sum(); }
+        public long getTotalPutCellBytes() { return totalPutCellBytes.sum(); }
+        public long getTotalGetCells() { return totalGetCells.sum(); }
+        public long getTotalPutCells() { return totalPutCells.sum(); }
+        public long getTotalGetMillis() { return totalGetNanos.sum() / 1000000; }
+        public long getTotalPutMillis() { return totalPutNanos.sum() / 1000000; }
         public long getTotalGetBytes() { return getTotalGetCellBytes() + getTotalGetValueBytes(); }
         public long getTotalPutBytes() { return getTotalPutCellBytes() + getTotalPutValueBytes(); }
-        public long getTotalGetCalls() { return totalGetCalls.get(); }
-        public long getTotalPutCalls() { return totalPutCalls.get(); }
+        public long getTotalGetCalls() { return totalGetCalls.sum(); }
+        public long getTotalPutCalls() { return totalPutCalls.sum(); }
 
         public void add(TableStats other) {
-            totalGetValueBytes.addAndGet(other.totalGetValueBytes.get());
-            totalPutValueBytes.addAndGet(other.totalPutValueBytes.get());
-            totalGetCellBytes.addAndGet(other.totalGetCellBytes.get());
-            totalPutCellBytes.addAndGet(other.totalPutCellBytes.get());
-            totalGetCells.addAndGet(other.totalGetCells.get());
-            totalPutCells.addAndGet(other.totalPutCells.get());
-            totalGetMillis.addAndGet(other.totalGetMillis.get());
-            totalPutMillis.addAndGet(other.totalPutMillis.get());
-            totalGetCalls.addAndGet(other.totalGetCalls.get());
-            totalPutCalls.addAndGet(other.totalPutCalls.get());
+            totalGetValueBytes.add(other.totalGetValueBytes.sum());
+            totalPutValueBytes.add(other.totalPutValueBytes.sum());
+            totalGetCellBytes.add(other.totalGetCellBytes.sum());
+            totalPutCellBytes.add(other.totalPutCellBytes.sum());
+            totalGetCells.add(other.totalGetCells.sum());
+            totalPutCells.add(other.totalPutCells.sum());
+            totalGetNanos.add(other.totalGetNanos.sum());
+            totalPutNanos.add(other.totalPutNanos.sum());
+            totalGetCalls.add(other.totalGetCalls.sum());
+            totalPutCalls.add(other.totalPutCalls.sum());
+        }
+
+        void recordLatency(Operation operation, long nanos) {
+            LatencyHistogram histogram = latencyMicros.get(operation.ordinal());
+            if (histogram == null) {
+                latencyMicros.compareAndSet(operation.ordinal(), null, new LatencyHistogram());
+                histogram = latencyMicros.get(operation.ordinal());
+            }
+            histogram.record(nanos / 1000);
+        }
+
+        void recordRangeRowCount(long rows) {
+            LatencyHistogram histogram = rangeRowCounts;
+            if (histogram == null) {
+                synchronized (this) {
+                    if (rangeRowCounts == null) {
+                        rangeRowCounts = new LatencyHistogram();
+                    }
+                    histogram = rangeRowCounts;
+                }
+            }
+            histogram.record(rows);
+        }
+
+        /**
+         * @return the latencies in microseconds recorded since the last snapshot, or null if the
+         *         operation was never called on this table
+         */
+        public LatencyHistogram.Snapshot snapshotLatencyAndReset(Operation operation) {
+            LatencyHistogram histogram = latencyMicros.get(operation.ordinal());
+            return histogram == null ? null : histogram.snapshotAndReset();
+        }
+
+        /**
+         * @return the rows per range scan or batch recorded since the last snapshot, or null if
+         *         no range of this table was read
+         */
+        public LatencyHistogram.Snapshot snapshotRangeRowCountsAndReset() {
+            LatencyHistogram histogram = rangeRowCounts;
+            return histogram == null ? null : histogram.snapshotAndReset();
         }
     }
 
     private final ConcurrentMap<TableReference, TableStats> statsByTableName = Maps.newConcurrentMap();
 
     private final KeyValueService delegate;
+    private final DynamicMBean mbean;
 
     public Map<TableReference, TableStats> getTableStats() {
         return Collections.unmodifiableMap(statsByTableName);
@@ -98,12 +179,76 @@ public class StatsTrackingKeyValueService extends ForwardingKeyValueService {
 
     public StatsTrackingKeyValueService(KeyValueService delegate) {
         this.delegate = delegate;
+        this.mbean = JMXUtils.registerMBeanWeakRefPlusCatchAndLogExceptions(
+                this,
+                StatsTrackingKeyValueServiceMBean.class,
+                "com.palantir.atlasdb:type=StatsTrackingKeyValueService_" + mbeanCount.getAndIncrement());
     }
 
+    @Override
     public void reset() {
         statsByTableName.clear();
     }
 
+    /**
+     * @return latency percentiles in microseconds for every table and operation called since the
+     *         last snapshot
+     */
+    public List<HistogramSummary> snapshotLatenciesAndReset() {
+        List<HistogramSummary> summaries = Lists.newArrayList();
+        for (Entry<TableReference, TableStats> e : ImmutableSortedMap.copyOf(statsByTableName).entrySet()) {
+            for (Operation operation : Operation.values()) {
+                LatencyHistogram.Snapshot snapshot = e.getValue().snapshotLatencyAndReset(operation);
+                if (snapshot != null && snapshot.getCount() > 0) {
+                    summaries.add(HistogramSummary.of(e.getKey().getQualifiedName(), operation.name(), snapshot));
+                }
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * @return the rows read per range scan and per page of getFirstBatchForRanges, by table,
+     *         since the last snapshot
+     */
+    public List<HistogramSummary> snapshotRangeRowCountsAndReset() {
+        List<HistogramSummary> summaries = Lists.newArrayList();
+        for (Entry<TableReference, TableStats> e : ImmutableSortedMap.copyOf(statsByTableName).entrySet()) {
+            LatencyHistogram.Snapshot snapshot = e.getValue().snapshotRangeRowCountsAndReset();
+            if (snapshot != null && snapshot.getCount() > 0) {
+                summaries.add(HistogramSummary.of(e.getKey().getQualifiedName(), "RANGE_ROWS", snapshot));
+            }
+        }
+        return summaries;
+    }
+
+    @Override
+    public String dumpLatenciesAndReset() {
+        StringWriter out = new StringWriter();
+        dumpLatenciesAndReset(new PrintWriter(out));
+        return out.toString();
+    }
+
+    @Override
+    public long getTotalGetCalls() {
+        return getAggregateTableStats().getTotalGetCalls();
+    }
+
+    @Override
+    public long getTotalPutCalls() {
+        return getAggregateTableStats().getTotalPutCalls();
+    }
+
+    @Override
+    public long getTotalGetBytes() {
+        return getAggregateTableStats().getTotalGetBytes();
+    }
+
+    @Override
+    public long getTotalPutBytes() {
+        return getAggregateTableStats().getTotalPutBytes();
+    }
+
     @Override
     protected KeyValueService delegate() {
         return delegate;
@@ -112,9 +257,14 @@ public class StatsTrackingKeyValueService extends ForwardingKeyValueService {
     @Override
     public Map<Cell, Value> get(TableReference tableRef,
                                 Map<Cell, Long> timestampByCell) {
-        long start = System.currentTimeMillis();
-        Map<Cell, Value> r = super.get(tableRef, timestampByCell);
-        long finish = System.currentTimeMillis();
+        long start = System.nanoTime();
+        Map<Cell, Value> r;
+        try {
+            r = super.get(tableRef, timestampByCell);
+        } finally {
+            getTableStats(tableRef).recordLatency(Operation.GET, System.nanoTime() - start);
+        }
+        long finish = System.nanoTime();
 
         // Update stats only after successful get.
         TableStats s = getTableStats(tableRef);
@@ -123,9 +273,9 @@ public class StatsTrackingKeyValueService extends ForwardingKeyValueService {
             cellBytes += cell.getRowName().length;
             cellBytes += cell.getColumnName().length;
         }
-        s.totalGetCellBytes.addAndGet(cellBytes);
-        s.totalGetMillis.addAndGet(finish - start);
-        s.totalGetCalls.incrementAndGet();
+        s.totalGetCellBytes.add(cellBytes);
+        s.totalGetNanos.add(finish - start);
+        s.totalGetCalls.increment();
         updateGetStats(s, r);
 
         return r;
@@ -136,98 +286,229 @@ public class StatsTrackingKeyValueService extends ForwardingKeyValueService {
                                     Iterable<byte[]> rows,
                                     ColumnSelection columnSelection,
                                     long timestamp) {
-        long start = System.currentTimeMillis();
-        Map<Cell, Value> r = super.getRows(tableRef, rows, columnSelection, timestamp);
-        long finish = System.currentTimeMillis();
+        long start = System.nanoTime();
+        Map<Cell, Value> r;
+        try {
+            r = super.getRows(tableRef, rows, columnSelection, timestamp);
+        } finally {
+            getTableStats(tableRef).recordLatency(Operation.GET_ROWS, System.nanoTime() - start);
+        }
+        long finish = System.nanoTime();
 
         // Update stats only after successful get.
         TableStats s = getTableStats(tableRef);
         for (byte[] row : rows) {
-            s.totalGetCellBytes.addAndGet(row.length);
+            s.totalGetCellBytes.add(row.length);
         }
-        s.totalGetMillis.addAndGet(finish - start);
-        s.totalGetCalls.incrementAndGet();
+        s.totalGetNanos.add(finish - start);
+        s.totalGetCalls.increment();
         updateGetStats(s, r);
 
         return r;
     }
 
+    @Override
+    public Map<Cell, Long> getLatestTimestamps(TableReference tableRef, Map<Cell, Long> timestampByCell) {
+        long start = System.nanoTime();
+        try {
+            return super.getLatestTimestamps(tableRef, timestampByCell);
+        } finally {
+            getTableStats(tableRef).recordLatency(Operation.GET_LATEST_TIMESTAMPS, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Multimap<Cell, Long> getAllTimestamps(TableReference tableRef, Set<Cell> keys, long timestamp) {
+        long start = System.nanoTime();
+        try {
+            return super.getAllTimestamps(tableRef, keys, timestamp);
+        } finally {
+            getTableStats(tableRef).recordLatency(Operation.GET_ALL_TIMESTAMPS, System.nanoTime() - start);
+        }
+    }
+
     @Override
     public ClosableIterator<RowResult<Value>> getRange(final TableReference tableRef, RangeRequest range,
                                                        long timestamp) {
         final TableStats s = getTableStats(tableRef);
 
-        long start = System.currentTimeMillis();
-        final ClosableIterator<RowResult<Value>> it = super.getRange(tableRef, range, timestamp);
-        long finish = System.currentTimeMillis();
-        s.totalGetMillis.addAndGet(finish - start);
-        s.totalGetCalls.incrementAndGet();
+        long start = System.nanoTime();
+        final ClosableIterator<RowResult<Value>> it;
+        try {
+            it = super.getRange(tableRef, range, timestamp);
+        } finally {
+            s.recordLatency(Operation.GET_RANGE, System.nanoTime() - start);
+        }
+        long finish = System.nanoTime();
+        s.totalGetNanos.add(finish - start);
+        s.totalGetCalls.increment();
 
-        return new ForwardingClosableIterator<RowResult<Value>>() {
+        return new RangeStatsIterator<Value>(s, it, Operation.GET_RANGE_ROW) {
             @Override
-            protected ClosableIterator<RowResult<Value>> delegate() {
-                return it;
+            protected void rowLoaded(RowResult<Value> row, long nanos) {
+                s.totalGetNanos.add(nanos);
+                updateGetStats(s, MapEntries.toMap(row.getCells()));
             }
+        };
+    }
 
-            @Override
-            public RowResult<Value> next() {
-                long begin = System.currentTimeMillis();
-                RowResult<Value> ret = super.next();
-                long end = System.currentTimeMillis();
-                s.totalGetMillis.addAndGet(end - begin);
-                updateGetStats(s, MapEntries.toMap(ret.getCells()));
-                return ret;
+    @Override
+    public ClosableIterator<RowResult<Set<Value>>> getRangeWithHistory(TableReference tableRef,
+                                                                       RangeRequest rangeRequest,
+                                                                       long timestamp) {
+        TableStats s = getTableStats(tableRef);
+        long start = System.nanoTime();
+        ClosableIterator<RowResult<Set<Value>>> it;
+        try {
+            it = super.getRangeWithHistory(tableRef, rangeRequest, timestamp);
+        } finally {
+            s.recordLatency(Operation.GET_RANGE_WITH_HISTORY, System.nanoTime() - start);
+        }
+        return new RangeStatsIterator<Set<Value>>(s, it, null);
+    }
+
+    @Override
+    public ClosableIterator<RowResult<Set<Long>>> getRangeOfTimestamps(TableReference tableRef,
+                                                                       RangeRequest rangeRequest,
+                                                                       long timestamp) {
+        TableStats s = getTableStats(tableRef);
+        long start = System.nanoTime();
+        ClosableIterator<RowResult<Set<Long>>> it;
+        try {
+            it = super.getRangeOfTimestamps(tableRef, rangeRequest, timestamp);
+        } finally {
+            s.recordLatency(Operation.GET_RANGE_OF_TIMESTAMPS, System.nanoTime() - start);
+        }
+        return new RangeStatsIterator<Set<Long>>(s, it, null);
+    }
+
+    @Override
+    public Map<RangeRequest, TokenBackedBasicResultsPage<RowResult<Value>, byte[]>> getFirstBatchForRanges(TableReference tableRef,
+                                                                                                           Iterable<RangeRequest> rangeRequests,
+                                                                                                           long timestamp) {
+        TableStats s = getTableStats(tableRef);
+        long start = System.nanoTime();
+        Map<RangeRequest, TokenBackedBasicResultsPage<RowResult<Value>, byte[]>> r;
+        try {
+            r = super.getFirstBatchForRanges(tableRef, rangeRequests, timestamp);
+        } finally {
+            s.recordLatency(Operation.GET_FIRST_BATCH_FOR_RANGES, System.nanoTime() - start);
+        }
+        for (TokenBackedBasicResultsPage<RowResult<Value>, byte[]> page : r.values()) {
+            s.recordRangeRowCount(page.getResults().size());
+        }
+        return r;
+    }
+
+    /**
+     * Times every row of a range and records how many rows were read once the range is closed.
+     * Iterators do their work in either hasNext or next, so both count towards the row.
+     */
+    private static class RangeStatsIterator<T> extends ForwardingClosableIterator<RowResult<T>> {
+        private final TableStats stats;
+        private final ClosableIterator<RowResult<T>> delegate;
+        private final Operation rowOperation;
+        private long pendingNanos = 0;
+        private long rows = 0;
+        private boolean closed = false;
+
+        RangeStatsIterator(TableStats stats, ClosableIterator<RowResult<T>> delegate, Operation rowOperation) {
+            this.stats = stats;
+            this.delegate = delegate;
+            this.rowOperation = rowOperation;
+        }
+
+        @Override
+        protected ClosableIterator<RowResult<T>> delegate() {
+            return delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            long begin = System.nanoTime();
+            try {
+                return super.hasNext();
+            } finally {
+                pendingNanos += System.nanoTime() - begin;
             }
-        };
+        }
+
+        @Override
+        public RowResult<T> next() {
+            long begin = System.nanoTime();
+            RowResult<T> ret = super.next();
+            long nanos = pendingNanos + System.nanoTime() - begin;
+            pendingNanos = 0;
+            rows++;
+            if (rowOperation != null) {
+                stats.recordLatency(rowOperation, nanos);
+            }
+            rowLoaded(ret, nanos);
+            return ret;
+        }
+
+        protected void rowLoaded(RowResult<T> row, long nanos) {
+            // nothing by default
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                stats.recordRangeRowCount(rows);
+            }
+            super.close();
+        }
     }
 
     private void updateGetStats(TableStats s, Map<Cell, Value> r) {
-        s.totalGetCells.addAndGet(r.size());
+        s.totalGetCells.add(r.size());
         long totalSize = 0;
         for (Map.Entry<Cell, Value> e : r.entrySet()) {
             totalSize += e.getValue().getContents().length;
         }
-        s.totalGetValueBytes.addAndGet(totalSize);
+        s.totalGetValueBytes.add(totalSize);
     }
 
     @Override
     public void put(TableReference tableRef, Map<Cell, byte[]> values, long timestamp) {
         TableStats s = getTableStats(tableRef);
 
-        long start = System.currentTimeMillis();
-        super.put(tableRef, values, timestamp);
-        long finish = System.currentTimeMillis();
-        s.totalPutMillis.addAndGet(finish - start);
-        s.totalPutCalls.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            super.put(tableRef, values, timestamp);
+        } finally {
+            s.recordLatency(Operation.PUT, System.nanoTime() - start);
+        }
+        long finish = System.nanoTime();
+        s.totalPutNanos.add(finish - start);
+        s.totalPutCalls.increment();
 
         // Only update stats after put was successful.
-        s.totalPutCells.addAndGet(values.size());
-        for (Map.Entry<Cell, byte[]> e : values.entrySet()) {
-            s.totalPutCellBytes.addAndGet(e.getKey().getRowName().length);
-            s.totalPutCellBytes.addAndGet(e.getKey().getColumnName().length);
-            s.totalPutValueBytes.addAndGet(e.getValue().length);
-        }
+        updatePutStats(s, values);
     }
 
     @Override
     public void multiPut(Map<TableReference, ? extends Map<Cell, byte[]>> valuesByTable, long timestamp) {
-        long start = System.currentTimeMillis();
-        super.multiPut(valuesByTable, timestamp);
-        long finish = System.currentTimeMillis();
+        long start = System.nanoTime();
+        try {
+            super.multiPut(valuesByTable, timestamp);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            for (TableReference tableRef : valuesByTable.keySet()) {
+                getTableStats(tableRef).recordLatency(Operation.MULTI_PUT, nanos);
+            }
+        }
+        long finish = System.nanoTime();
         for (Entry<TableReference, ? extends Map<Cell, byte[]>> entry : valuesByTable.entrySet()) {
             TableReference tableRef = entry.getKey();
             Map<Cell, byte[]> values = entry.getValue();
             TableStats s = getTableStats(tableRef);
-            s.totalPutMillis.addAndGet(finish - start);
-            s.totalPutCalls.incrementAndGet();
+            s.totalPutNanos.add(finish - start);
+            s.totalPutCalls.increment();
 
             // Only update stats after put was successful.
-            s.totalPutCells.addAndGet(values.size());
-            for (Map.Entry<Cell, byte[]> e : values.entrySet()) {
-                s.totalPutCellBytes.addAndGet(e.getKey().getRowName().length);
-                s.totalPutCellBytes.addAndGet(e.getKey().getColumnName().length);
-                s.totalPutValueBytes.addAndGet(e.getValue().length);
-            }
+            updatePutStats(s, values);
         }
     }
 
@@ -235,18 +516,22 @@ public class StatsTrackingKeyValueService extends ForwardingKeyValueService {
     public void putWithTimestamps(TableReference tableRef, Multimap<Cell, Value> values) {
         TableStats s = getTableStats(tableRef);
 
-        long start = System.currentTimeMillis();
-        super.putWithTimestamps(tableRef, values);
-        long finish = System.currentTimeMillis();
-        s.totalPutMillis.addAndGet(finish - start);
-        s.totalPutCalls.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            super.putWithTimestamps(tableRef, values);
+        } finally {
+            s.recordLatency(Operation.PUT_WITH_TIMESTAMPS, System.nanoTime() - start);
+        }
+        long finish = System.nanoTime();
+        s.totalPutNanos.add(finish - start);
+        s.totalPutCalls.increment();
 
         // Only update stats after put was successful.
-        s.totalPutCells.addAndGet(values.size());
+        s.totalPutCells.add(values.size());
         for (Entry<Cell, Value> e : values.entries()) {
-            s.totalPutCellBytes.addAndGet(e.getKey().getRowName().length);
-            s.totalPutCellBytes.addAndGet(e.getKey().getColumnName().length);
-            s.totalPutValueBytes.addAndGet(e.getValue().getContents().length);
+            s.totalPutCellBytes.add(e.getKey().getRowName().length);
+            s.totalPutCellBytes.add(e.getKey().getColumnName().length);
+            s.totalPutValueBytes.add(e.getValue().getContents().length);
         }
     }
 
@@ -255,19 +540,74 @@ public class StatsTrackingKeyValueService extends ForwardingKeyValueService {
             throws KeyAlreadyExistsException {
         TableStats s = getTableStats(tableRef);
 
-        long start = System.currentTimeMillis();
-        super.putUnlessExists(tableRef, values);
-        long finish = System.currentTimeMillis();
-        s.totalPutMillis.addAndGet(finish - start);
-        s.totalPutCalls.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            super.putUnlessExists(tableRef, values);
+        } finally {
+            s.recordLatency(Operation.PUT_UNLESS_EXISTS, System.nanoTime() - start);
+        }
+        long finish = System.nanoTime();
+        s.totalPutNanos.add(finish - start);
+        s.totalPutCalls.increment();
 
         // Only update stats after put was successful.
-        s.totalPutCells.addAndGet(values.size());
+        updatePutStats(s, values);
+    }
+
+    @Override
+    public void delete(TableReference tableRef, Multimap<Cell, Long> keys) {
+        long start = System.nanoTime();
+        try {
+            super.delete(tableRef, keys);
+        } finally {
+            getTableStats(tableRef).recordLatency(Operation.DELETE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void addGarbageCollectionSentinelValues(TableReference tableRef, Set<Cell> cells) {
+        long start = System.nanoTime();
+        try {
+            super.addGarbageCollectionSentinelValues(tableRef, cells);
+        } finally {
+            getTableStats(tableRef).recordLatency(Operation.ADD_GARBAGE_COLLECTION_SENTINEL_VALUES, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void truncateTable(TableReference tableRef) {
+        long start = System.nanoTime();
+        try {
+            super.truncateTable(tableRef);
+        } finally {
+            getTableStats(tableRef).recordLatency(Operation.TRUNCATE_TABLE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void truncateTables(Set<TableReference> tableRefs) {
+        long start = System.nanoTime();
+        try {
+            super.truncateTables(tableRefs);
+        } finally {
+            long nanos = System.nanoTime() - start;
+            for (TableReference tableRef : tableRefs) {
+                getTableStats(tableRef).recordLatency(Operation.TRUNCATE_TABLE, nanos);
+            }
+        }
+    }
+
+    private static void updatePutStats(TableStats s, Map<Cell, byte[]> values) {
+        s.totalPutCells.add(values.size());
+        long cellBytes = 0;
+        long valueBytes = 0;
         for (Map.Entry<Cell, byte[]> e : values.entrySet()) {
-            s.totalPutCellBytes.addAndGet(e.getKey().getRowName().length);
-            s.totalPutCellBytes.addAndGet(e.getKey().getColumnName().length);
-            s.totalPutValueBytes.addAndGet(e.getValue().length);
+            cellBytes += e.getKey().getRowName().length;
+            cellBytes += e.getKey().getColumnName().length;
+            valueBytes += e.getValue().length;
         }
+        s.totalPutCellBytes.add(cellBytes);
+        s.totalPutValueBytes.add(valueBytes);
     }
 
     private TableStats getTableStats(TableReference tableRef) {
@@ -318,4 +658,27 @@ public class StatsTrackingKeyValueService extends ForwardingKeyValueService {
                 s.getTotalGetCalls(),
                 s.getTotalPutCalls());
     }
+
+    public void dumpLatenciesAndReset(PrintWriter writer) {
+        String headerFmt = "|| %-20s || %-38s || %10s || %10s || %10s || %10s || %10s || %10s || %10s ||%n";
+        String rowFmt =    "|  %-20s |  %-38s |  %10s |  %10.0f |  %10s |  %10s |  %10s |  %10s |  %10s |%n";
+
+        writer.printf(headerFmt, "table", "operation", "count", "mean", "p50", "p95", "p99", "p999", "max");
+        List<HistogramSummary> summaries = snapshotLatenciesAndReset();
+        summaries.addAll(snapshotRangeRowCountsAndReset());
+        for (HistogramSummary h : summaries) {
+            writer.printf(
+                    rowFmt,
+                    h.getTableName(),
+                    h.getOperation(),
+                    h.getCount(),
+                    h.getMean(),
+                    h.getP50(),
+                    h.getP95(),
+                    h.getP99(),
+                    h.getP999(),
+                    h.getMax());
+        }
+        writer.flush();
+    }
 }
@@ -0,0 +1,40 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.impl;
+
+import javax.management.MXBean;
+
+@MXBean
+public interface StatsTrackingKeyValueServiceMBean {
+
+    /**
+     * A table of latency percentiles in microseconds for every table and operation called since
+     * the last snapshot, followed by the rows read per range.  Taking the snapshot starts new
+     * histograms.
+     */
+    public String dumpLatenciesAndReset();
+
+    public long getTotalGetCalls();
+
+    public long getTotalPutCalls();
+
+    public long getTotalGetBytes();
+
+    public long getTotalPutBytes();
+
+    public void reset();
+
+}
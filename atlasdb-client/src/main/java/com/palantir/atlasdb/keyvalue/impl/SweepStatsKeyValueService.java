@@ -34,6 +34,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Functions;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
 import com.google.common.collect.Collections2;
 import com.google.common.collect.ConcurrentHashMultiset;
 import com.google.common.collect.ImmutableMap;
@@ -54,6 +55,7 @@ import com.palantir.atlasdb.schema.generated.SweepPriorityTable;
 import com.palantir.atlasdb.schema.generated.SweepPriorityTable.SweepPriorityNamedColumn;
 import com.palantir.atlasdb.schema.generated.SweepPriorityTable.SweepPriorityRow;
 import com.palantir.atlasdb.transaction.impl.TransactionConstants;
+import com.palantir.atlasdb.transaction.impl.TransactionTableLayout;
 import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.common.persist.Persistables;
 import com.palantir.timestamp.TimestampService;
@@ -75,6 +77,7 @@ public class SweepStatsKeyValueService extends ForwardingKeyValueService {
 
     private final KeyValueService delegate;
     private final TimestampService timestampService;
+    private final Supplier<TransactionTableLayout> transactionTableLayout;
     private final Multiset<TableReference> writesByTable = ConcurrentHashMultiset.create();
     private final Set<TableReference> clearedTables = Collections.newSetFromMap(new ConcurrentHashMap<TableReference, Boolean>());
     private final AtomicInteger totalModifications = new AtomicInteger();
@@ -85,6 +88,7 @@ public class SweepStatsKeyValueService extends ForwardingKeyValueService {
                                      TimestampService timestampService) {
         this.delegate = delegate;
         this.timestampService = timestampService;
+        this.transactionTableLayout = TransactionTableLayout.loadLazily(delegate);
         this.flushExecutor.scheduleWithFixedDelay(createFlushTask(), FLUSH_DELAY_SECONDS, FLUSH_DELAY_SECONDS, TimeUnit.SECONDS);
     }
 
@@ -281,9 +285,7 @@ public class SweepStatsKeyValueService extends ForwardingKeyValueService {
     }
 
     private void commit(long timestamp) {
-        Cell cell = Cell.create(
-                TransactionConstants.getValueForTimestamp(timestamp),
-                TransactionConstants.COMMIT_TS_COLUMN);
+        Cell cell = transactionTableLayout.get().getTransactionCell(timestamp);
         byte[] value = TransactionConstants.getValueForTimestamp(timestamp);
         delegate().putUnlessExists(TransactionConstants.TRANSACTION_TABLE, ImmutableMap.of(cell, value));
     }
@@ -35,14 +35,16 @@ public class StreamStoreDefinition {
 
     private int inMemoryThreshold;
     private ExpirationStrategy expirationStrategy;
+    private boolean clientSideCompression;
 
-    StreamStoreDefinition(Map<String, TableDefinition> streamStoreTables, String shortName, String longName, ValueType idType, int inMemoryThreshold, ExpirationStrategy expirationStrategy) {
+    StreamStoreDefinition(Map<String, TableDefinition> streamStoreTables, String shortName, String longName, ValueType idType, int inMemoryThreshold, ExpirationStrategy expirationStrategy, boolean clientSideCompression) {
         this.streamStoreTables = streamStoreTables;
         this.shortName = shortName;
         this.longName = longName;
         this.idType = idType;
         this.inMemoryThreshold = inMemoryThreshold;
         this.expirationStrategy = expirationStrategy;
+        this.clientSideCompression = clientSideCompression;
     }
 
     public Map<String, TableDefinition> getTables() {
@@ -50,7 +52,7 @@ public class StreamStoreDefinition {
     }
 
     public StreamStoreRenderer getRenderer(String packageName, String name) {
-        return new StreamStoreRenderer(Renderers.CamelCase(longName), idType, packageName, name, inMemoryThreshold, expirationStrategy);
+        return new StreamStoreRenderer(Renderers.CamelCase(longName), idType, packageName, name, inMemoryThreshold, expirationStrategy, clientSideCompression);
     }
 
     public Multimap<String, Supplier<OnCleanupTask>> getCleanupTasks(String packageName, String name, StreamStoreRenderer renderer) {
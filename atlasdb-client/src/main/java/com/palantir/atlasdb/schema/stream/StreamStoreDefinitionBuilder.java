@@ -30,6 +30,7 @@ public class StreamStoreDefinitionBuilder {
     private final String shortName, longName;
     private Map<String, StreamTableDefinitionBuilder> streamTables =  Maps.newHashMapWithExpectedSize(StreamTableType.values().length);
     private int inMemoryThreshold = AtlasDbConstants.DEFAULT_STREAM_IN_MEMORY_THRESHOLD;
+    private boolean clientSideCompression = false;
 
     public StreamStoreDefinitionBuilder(String shortName, String longName, ValueType valueType) {
         for (StreamTableType tableType : StreamTableType.values()) {
@@ -55,6 +56,15 @@ public class StreamStoreDefinitionBuilder {
         return this;
     }
 
+    /**
+     * Compresses each block with snappy before storing it, unless that would not make it
+     * any shorter.  Only supported for persistent streams.
+     */
+    public StreamStoreDefinitionBuilder compressStreamInClient() {
+        clientSideCompression = true;
+        return this;
+    }
+
     public StreamStoreDefinitionBuilder expirationStrategy(ExpirationStrategy expirationStrategy) {
         streamTables.forEach((tableName, streamTableBuilder) -> streamTableBuilder.expirationStrategy(expirationStrategy));
         return this;
@@ -71,9 +81,11 @@ public class StreamStoreDefinitionBuilder {
 
         if (expirationStrategy.equals(ExpirationStrategy.NEVER)) {
             Preconditions.checkArgument(valueType.getJavaClassName().equals("long"), "Stream ids must be a long for persistent streams.");
+        } else {
+            Preconditions.checkArgument(!clientSideCompression, "Client side compression is only supported for persistent streams.");
         }
 
-        return new StreamStoreDefinition(tablesToCreate, shortName, longName, valueType, inMemoryThreshold, expirationStrategy);
+        return new StreamStoreDefinition(tablesToCreate, shortName, longName, valueType, inMemoryThreshold, expirationStrategy, clientSideCompression);
     }
 
 }
\ No newline at end of file
@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.CheckForNull;
 
@@ -33,17 +34,24 @@ import org.slf4j.LoggerFactory;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Ints;
+import com.palantir.atlasdb.AtlasDbConstants;
+import com.palantir.atlasdb.compress.CompressionUtils;
 import com.palantir.atlasdb.protos.generated.StreamPersistence.Status;
 import com.palantir.atlasdb.protos.generated.StreamPersistence.StreamMetadata;
 import com.palantir.atlasdb.transaction.api.Transaction;
 import com.palantir.atlasdb.transaction.api.TransactionManager;
+import com.palantir.atlasdb.transaction.api.TransactionTask;
 import com.palantir.common.base.Throwables;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.util.ByteArrayIOStream;
-import com.palantir.util.file.DeleteOnCloseFileInputStream;
 
 public abstract class AbstractGenericStreamStore<ID> implements GenericStreamStore<ID> {
     protected static final Logger log = LoggerFactory.getLogger(AbstractGenericStreamStore.class);
+    private static final ExecutorService readAheadExecutor = PTExecutors.newCachedThreadPool(
+            new NamedThreadFactory("Stream store read-ahead", true /* isDaemon */));
 
     @CheckForNull protected final TransactionManager txnMgr;
 
@@ -67,21 +75,13 @@ public abstract class AbstractGenericStreamStore<ID> implements GenericStreamSto
 
     @Override
     public final InputStream loadStream(Transaction t, final ID id) {
-        try {
-            StreamMetadata metadata = checkStreamStored(id, getMetadata(t, id));
-            if (metadata.getLength() == 0) {
-                return new ByteArrayInputStream(new byte[0]);
-            } else if (metadata.getLength() <= Math.min(getInMemoryThreshold(), BLOCK_SIZE_IN_BYTES)) {
-                ByteArrayIOStream ios = new ByteArrayIOStream(Ints.saturatedCast(metadata.getLength()));
-                loadSingleBlockToOutputStream(t, id, 0, ios);
-                return ios.getInputStream();
-            } else {
-                File file = loadToNewTempFile(t, id, metadata);
-                return new DeleteOnCloseFileInputStream(file);
-            }
-        } catch (FileNotFoundException e) {
-            log.error("Error opening temp file for stream " + id, e);
-            throw Throwables.rewrapAndThrowUncheckedException("Could not open temp file to create stream.", e);
+        StreamMetadata metadata = checkStreamStored(id, getMetadata(t, id));
+        if (metadata.getLength() == 0) {
+            return new ByteArrayInputStream(new byte[0]);
+        } else if (metadata.getLength() <= Math.min(getInMemoryThreshold(), BLOCK_SIZE_IN_BYTES)) {
+            return loadBlockInMemory(t, id, 0, metadata);
+        } else {
+            return loadBlocksLazily(t, id, metadata);
         }
     }
 
@@ -91,24 +91,77 @@ public abstract class AbstractGenericStreamStore<ID> implements GenericStreamSto
         Map<ID, StreamMetadata> idsToMetadata = getMetadata(t, ids);
         for (Map.Entry<ID, StreamMetadata> entry : idsToMetadata.entrySet()) {
             ID id = entry.getKey();
+            StreamMetadata metadata = checkStreamStored(id, entry.getValue());
+            if (metadata.getLength() == 0) {
+                ret.put(id, new ByteArrayInputStream(new byte[0]));
+            } else if (metadata.getLength() <= Math.min(getInMemoryThreshold(), BLOCK_SIZE_IN_BYTES)) {
+                ret.put(id, loadBlockInMemory(t, id, 0, metadata));
+            } else {
+                ret.put(id, loadBlocksLazily(t, id, metadata));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Returns a stream that loads blocks as the caller reads them, a few blocks ahead of the
+     * caller if {@link #getReadAheadBlocks()} is positive.
+     * <p>
+     * The returned stream may outlive the transaction: once {@code t} is no longer open, the
+     * remaining blocks are read in fresh read only transactions.  Blocks of a stored stream
+     * never change, so this sees the same data unless the stream gets cleaned up meanwhile.
+     */
+    private InputStream loadBlocksLazily(final Transaction t, final ID id, final StreamMetadata metadata) {
+        return new BlockConsumingInputStream(
+                new BlockGetter() {
+                    @Override
+                    public InputStream getBlock(long blockId) {
+                        return loadBlock(t, id, blockId, metadata);
+                    }
+                },
+                getNumberOfBlocksFromMetadata(metadata),
+                getReadAheadBlocks(),
+                txnMgr == null ? null : readAheadExecutor);
+    }
+
+    private InputStream loadBlock(Transaction t, final ID id, final long blockId, final StreamMetadata metadata) {
+        if (t.isUncommitted() || txnMgr == null) {
             try {
-                StreamMetadata metadata = checkStreamStored(id, entry.getValue());
-                if (metadata.getLength() == 0) {
-                    ret.put(id, new ByteArrayInputStream(new byte[0]));
-                } else if (metadata.getLength() <= Math.min(getInMemoryThreshold(), BLOCK_SIZE_IN_BYTES)) {
-                    ByteArrayIOStream ios = new ByteArrayIOStream(Ints.saturatedCast(metadata.getLength()));
-                    loadSingleBlockToOutputStream(t, id, 0, ios);
-                    ret.put(id, ios.getInputStream());
-                } else {
-                    File file = loadToNewTempFile(t, id, metadata);
-                    ret.put(id, new DeleteOnCloseFileInputStream(file));
+                return loadBlockInMemory(t, id, blockId, metadata);
+            } catch (IllegalStateException e) {
+                if (t.isUncommitted() || txnMgr == null) {
+                    throw e;
                 }
-            } catch (FileNotFoundException e) {
-                log.error("Error opening temp file for stream " + id, e);
-                throw Throwables.rewrapAndThrowUncheckedException("Could not open temp file to create stream.", e);
+                // The transaction finished while we were reading from it.
             }
         }
-        return ret;
+        return txnMgr.runTaskReadOnly(new TransactionTask<InputStream, RuntimeException>() {
+            @Override
+            public InputStream execute(Transaction readTransaction) {
+                return loadBlockInMemory(readTransaction, id, blockId, metadata);
+            }
+        });
+    }
+
+    private InputStream loadBlockInMemory(Transaction t, ID id, long blockId, StreamMetadata metadata) {
+        int expectedLength = Ints.checkedCast(
+                Math.min(BLOCK_SIZE_IN_BYTES, metadata.getLength() - blockId * BLOCK_SIZE_IN_BYTES));
+        ByteArrayIOStream ios = new ByteArrayIOStream(expectedLength);
+        loadSingleBlockToOutputStream(t, id, blockId, ios);
+        if (ios.size() < expectedLength) {
+            // A block is only ever stored compressed if that makes it shorter, see AbstractPersistentStreamStore.
+            return new ByteArrayInputStream(CompressionUtils.decompressWithSnappy(ios.toByteArray()));
+        }
+        return ios.getInputStream();
+    }
+
+    /**
+     * The number of blocks to load in the background ahead of a reader of a stream that is
+     * too large to load into memory at once.  Each open stream holds up to this many blocks
+     * plus the one being read in memory.  Zero loads each block when the reader gets to it.
+     */
+    protected int getReadAheadBlocks() {
+        return AtlasDbConstants.DEFAULT_STREAM_READ_AHEAD_BLOCKS;
     }
 
     @Override
@@ -154,7 +207,7 @@ public abstract class AbstractGenericStreamStore<ID> implements GenericStreamSto
     private void tryWriteStreamToFile(Transaction t, ID id, StreamMetadata metadata, FileOutputStream fos) throws IOException {
         long numBlocks = getNumberOfBlocksFromMetadata(metadata);
         for (long i = 0; i < numBlocks; i++) {
-            loadSingleBlockToOutputStream(t, id, i, fos);
+            ByteStreams.copy(loadBlockInMemory(t, id, i, metadata), fos);
         }
         fos.close();
     }
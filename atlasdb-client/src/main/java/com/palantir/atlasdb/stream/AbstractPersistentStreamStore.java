@@ -19,7 +19,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.security.DigestInputStream;
 import java.security.MessageDigest;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 
@@ -28,23 +32,34 @@ import com.google.common.base.Functions;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.io.ByteStreams;
 import com.google.common.io.CountingInputStream;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.protobuf.ByteString;
+import com.palantir.atlasdb.AtlasDbConstants;
+import com.palantir.atlasdb.compress.CompressionUtils;
 import com.palantir.atlasdb.encoding.PtBytes;
 import com.palantir.atlasdb.protos.generated.StreamPersistence.Status;
 import com.palantir.atlasdb.protos.generated.StreamPersistence.StreamMetadata;
+import com.palantir.atlasdb.table.description.ColumnValueDescription.Compression;
 import com.palantir.atlasdb.transaction.api.Transaction;
 import com.palantir.atlasdb.transaction.api.TransactionManager;
 import com.palantir.atlasdb.transaction.api.TransactionTask;
 import com.palantir.atlasdb.transaction.impl.TxTask;
 import com.palantir.common.base.Throwables;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.util.Pair;
 import com.palantir.util.crypto.Sha256Hash;
 
 public abstract class AbstractPersistentStreamStore extends AbstractGenericStreamStore<Long> implements PersistentStreamStore {
+    private static final ExecutorService blockWriteExecutor = PTExecutors.newCachedThreadPool(
+            new NamedThreadFactory("Stream store block writer", true /* isDaemon */));
+
     protected AbstractPersistentStreamStore(TransactionManager txManager) {
         super(txManager);
     }
@@ -180,27 +195,137 @@ public abstract class AbstractPersistentStreamStore extends AbstractGenericStrea
 
 
     private void storeBlocksFromStream(@Nullable Transaction t, long id, InputStream stream) throws IOException {
+        if (t == null) {
+            storeBlocksInBackground(id, stream);
+            return;
+        }
         long blockNumber = 0;
-
         while (true) {
-            byte[] bytesToStore = new byte[BLOCK_SIZE_IN_BYTES];
-            int length = ByteStreams.read(stream, bytesToStore, 0, BLOCK_SIZE_IN_BYTES);
-            // Store only relevant data if it only filled a partial block
-            if (length == 0) {
+            byte[] block = readBlock(stream);
+            if (block.length == 0) {
                 break;
             }
-            if (length < BLOCK_SIZE_IN_BYTES) {
+            storeBlock(t, id, blockNumber++, maybeCompress(block));
+            if (block.length < BLOCK_SIZE_IN_BYTES) {
                 // This is the last block.
-                storeBlockWithNonNullTransaction(t, id, blockNumber, PtBytes.head(bytesToStore, length));
                 break;
-            } else {
-                // Store a full block.
-                storeBlockWithNonNullTransaction(t, id, blockNumber, bytesToStore);
             }
-            blockNumber++;
         }
     }
 
+    /**
+     * Stores the blocks in transactions of {@link #getBlocksPerTransaction()} blocks each, on a
+     * background thread, while this thread reads and hashes the blocks of the next transaction.
+     * <p>
+     * Only one transaction is written at a time: every block write also touches the stream's
+     * metadata row, so concurrent transactions for the same stream would conflict on it.
+     */
+    private void storeBlocksInBackground(final long id, InputStream stream) throws IOException {
+        int blocksPerTransaction = getBlocksPerTransaction();
+        Preconditions.checkArgument(blocksPerTransaction > 0, "blocksPerTransaction must be positive");
+        Future<?> pendingWrite = Futures.immediateFuture(null);
+        try {
+            long blockNumber = 0;
+            boolean lastBlockRead = false;
+            while (!lastBlockRead) {
+                final List<byte[]> blocks = Lists.newArrayListWithCapacity(blocksPerTransaction);
+                while (blocks.size() < blocksPerTransaction && !lastBlockRead) {
+                    byte[] block = readBlock(stream);
+                    if (block.length > 0) {
+                        blocks.add(block);
+                    }
+                    lastBlockRead = block.length < BLOCK_SIZE_IN_BYTES;
+                }
+                if (blocks.isEmpty()) {
+                    break;
+                }
+                final long firstBlockNumber = blockNumber;
+                blockNumber += blocks.size();
+
+                waitForWrite(pendingWrite);
+                pendingWrite = blockWriteExecutor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        storeBlocks(id, firstBlockNumber, blocks);
+                    }
+                });
+            }
+        } catch (IOException | RuntimeException e) {
+            // Don't let a write race the caller marking the stream as failed.
+            try {
+                waitForWrite(pendingWrite);
+            } catch (RuntimeException writeFailure) {
+                log.error("Failed to store blocks of stream " + id + " while reading it failed.", writeFailure);
+            }
+            throw e;
+        }
+        waitForWrite(pendingWrite);
+    }
+
+    private void storeBlocks(final long id, final long firstBlockNumber, List<byte[]> blocks) {
+        Preconditions.checkNotNull(txnMgr);
+        final List<byte[]> blocksToStore = Lists.newArrayListWithCapacity(blocks.size());
+        for (byte[] block : blocks) {
+            blocksToStore.add(maybeCompress(block));
+        }
+        txnMgr.runTaskThrowOnConflict(new TxTask() {
+            @Override
+            public Void execute(Transaction t) {
+                for (int i = 0; i < blocksToStore.size(); i++) {
+                    storeBlock(t, id, firstBlockNumber + i, blocksToStore.get(i));
+                }
+                return null;
+            }
+        });
+    }
+
+    private static void waitForWrite(Future<?> pendingWrite) {
+        try {
+            Uninterruptibles.getUninterruptibly(pendingWrite);
+        } catch (ExecutionException e) {
+            throw Throwables.rewrapAndThrowUncheckedException(e.getCause());
+        }
+    }
+
+    /**
+     * @return the next block of the stream, which is shorter than a full block only at the end of the stream
+     */
+    private static byte[] readBlock(InputStream stream) throws IOException {
+        byte[] bytes = new byte[BLOCK_SIZE_IN_BYTES];
+        int length = ByteStreams.read(stream, bytes, 0, BLOCK_SIZE_IN_BYTES);
+        return length < BLOCK_SIZE_IN_BYTES ? PtBytes.head(bytes, length) : bytes;
+    }
+
+    /**
+     * Blocks are stored compressed only if that makes them shorter, so readers can tell the two
+     * apart by comparing a block's length to the length the stream's metadata says it has.
+     */
+    private byte[] maybeCompress(byte[] block) {
+        Compression compression = getBlockCompression();
+        if (compression == Compression.NONE) {
+            return block;
+        }
+        Preconditions.checkState(compression == Compression.SNAPPY, "Unsupported block compression %s", compression);
+        byte[] compressed = CompressionUtils.compress(block, compression);
+        return compressed.length < block.length ? compressed : block;
+    }
+
+    /**
+     * How to compress blocks before storing them.  This can be turned on for an existing stream
+     * store; blocks that were stored uncompressed are still read correctly.
+     */
+    protected Compression getBlockCompression() {
+        return Compression.NONE;
+    }
+
+    /**
+     * The number of blocks {@link #storeStream(InputStream)} writes per transaction.  Up to twice
+     * this many blocks are held in memory while storing a stream.
+     */
+    protected int getBlocksPerTransaction() {
+        return AtlasDbConstants.DEFAULT_STREAM_BLOCKS_PER_TRANSACTION;
+    }
+
     protected void storeBlockWithNonNullTransaction(@Nullable Transaction t, final long id, final long blockNumber, final byte[] bytesToStore) {
         if (t != null) {
             storeBlock(t, id, blockNumber, bytesToStore);
@@ -0,0 +1,174 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.stream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Reads a stored stream one block at a time, only loading a block once the reader gets to it.
+ * <p>
+ * With an executor and a positive number of read-ahead blocks, the next few blocks are loaded in
+ * the background while the current one is being read.  At most {@code readAheadBlocks + 1} blocks
+ * are held in memory at once, however large the stream is.
+ */
+@NotThreadSafe
+final class BlockConsumingInputStream extends InputStream {
+    private static final InputStream EMPTY_BLOCK = new InputStream() {
+        @Override
+        public int read() {
+            return -1;
+        }
+    };
+
+    private final BlockGetter blockGetter;
+    private final long numBlocks;
+    private final int readAheadBlocks;
+    @Nullable private final ExecutorService executor;
+
+    // Blocks nextBlockToRead (inclusive) to nextBlockToFetch (exclusive) are being loaded in the background.
+    private final Deque<Future<InputStream>> pendingBlocks = new ArrayDeque<>();
+    private long nextBlockToRead = 0;
+    private long nextBlockToFetch = 0;
+    private InputStream currentBlock = EMPTY_BLOCK;
+    private boolean closed = false;
+
+    BlockConsumingInputStream(BlockGetter blockGetter,
+                              long numBlocks,
+                              int readAheadBlocks,
+                              @Nullable ExecutorService executor) {
+        Preconditions.checkArgument(numBlocks >= 0, "numBlocks must not be negative");
+        Preconditions.checkArgument(readAheadBlocks >= 0, "readAheadBlocks must not be negative");
+        this.blockGetter = blockGetter;
+        this.numBlocks = numBlocks;
+        this.readAheadBlocks = executor == null ? 0 : readAheadBlocks;
+        this.executor = executor;
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (true) {
+            int b = currentBlock.read();
+            if (b != -1 || !nextBlock()) {
+                return b;
+            }
+        }
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Preconditions.checkPositionIndexes(off, off + len, b.length);
+        if (len == 0) {
+            return 0;
+        }
+        int totalRead = 0;
+        while (totalRead < len) {
+            int read = currentBlock.read(b, off + totalRead, len - totalRead);
+            if (read > 0) {
+                totalRead += read;
+            } else if (!nextBlock()) {
+                break;
+            }
+        }
+        return totalRead == 0 ? -1 : totalRead;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return currentBlock.available();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (Future<InputStream> pendingBlock : pendingBlocks) {
+            pendingBlock.cancel(true);
+        }
+        pendingBlocks.clear();
+        currentBlock = EMPTY_BLOCK;
+    }
+
+    /**
+     * Moves on to the next block, waiting for it to load if necessary.
+     *
+     * @return false if there are no more blocks
+     */
+    private boolean nextBlock() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed.");
+        }
+        if (nextBlockToRead >= numBlocks) {
+            return false;
+        }
+        startReadAhead();
+        long blockId = nextBlockToRead++;
+        Future<InputStream> pendingBlock = pendingBlocks.pollFirst();
+        if (pendingBlock == null) {
+            currentBlock = loadBlock(blockId);
+            return true;
+        }
+        try {
+            currentBlock = pendingBlock.get();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            InterruptedIOException ioe = new InterruptedIOException("Interrupted while loading block " + blockId);
+            ioe.initCause(e);
+            throw ioe;
+        } catch (ExecutionException e) {
+            close();
+            throw new IOException("Failed to load block " + blockId, e.getCause());
+        }
+    }
+
+    private void startReadAhead() {
+        while (nextBlockToFetch < numBlocks && nextBlockToFetch - nextBlockToRead <= readAheadBlocks) {
+            if (readAheadBlocks == 0) {
+                // Nothing is loaded in the background; the caller loads each block when it gets to it.
+                nextBlockToFetch = nextBlockToRead + 1;
+                return;
+            }
+            final long blockId = nextBlockToFetch++;
+            pendingBlocks.addLast(executor.submit(new Callable<InputStream>() {
+                @Override
+                public InputStream call() {
+                    return blockGetter.getBlock(blockId);
+                }
+            }));
+        }
+    }
+
+    private InputStream loadBlock(long blockId) throws IOException {
+        try {
+            return blockGetter.getBlock(blockId);
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to load block " + blockId, e);
+        }
+    }
+}
@@ -62,6 +62,7 @@ import com.palantir.atlasdb.stream.AbstractPersistentStreamStore;
 import com.palantir.atlasdb.stream.ExpiringStreamStore;
 import com.palantir.atlasdb.stream.PersistentStreamStore;
 import com.palantir.atlasdb.stream.StreamCleanedException;
+import com.palantir.atlasdb.table.description.ColumnValueDescription;
 import com.palantir.atlasdb.table.description.ValueType;
 import com.palantir.atlasdb.transaction.api.Transaction;
 import com.palantir.atlasdb.transaction.api.TransactionFailedRetriableException;
@@ -83,14 +84,20 @@ public class StreamStoreRenderer {
     private final String schemaName;
     private final int inMemoryThreshold;
     private final ExpirationStrategy expirationStrategy;
+    private final boolean clientSideCompression;
 
     public StreamStoreRenderer(String name, ValueType streamIdType, String packageName, String schemaName, int inMemoryThreshold, ExpirationStrategy expirationStrategy) {
+        this(name, streamIdType, packageName, schemaName, inMemoryThreshold, expirationStrategy, false);
+    }
+
+    public StreamStoreRenderer(String name, ValueType streamIdType, String packageName, String schemaName, int inMemoryThreshold, ExpirationStrategy expirationStrategy, boolean clientSideCompression) {
         this.name = name;
         this.streamIdType = streamIdType;
         this.packageName = packageName;
         this.schemaName = schemaName;
         this.inMemoryThreshold = inMemoryThreshold;
         this.expirationStrategy = expirationStrategy;
+        this.clientSideCompression = clientSideCompression;
     }
 
     public String getPackageName() {
@@ -148,6 +155,10 @@ public class StreamStoreRenderer {
                     line();
                     getInMemoryThreshold();
                     line();
+                    if (clientSideCompression) {
+                        getBlockCompression();
+                        line();
+                    }
                     storeBlock();
                     line();
                     touchMetadataWhileStoringForConflicts();
@@ -293,6 +304,15 @@ public class StreamStoreRenderer {
                 } line("}");
             }
 
+            private void getBlockCompression() {
+                // Spelled out in full so that stores without compression keep their imports.
+                String Compression = ColumnValueDescription.Compression.class.getCanonicalName();
+                line("@Override");
+                line("protected ", Compression, " getBlockCompression() {"); {
+                    line("return ", Compression, ".SNAPPY;");
+                } line("}");
+            }
+
             private void getInMemoryThreshold() {
                 line("@Override");
                 line("protected long getInMemoryThreshold() {"); {
@@ -15,11 +15,14 @@
  */
 package com.palantir.atlasdb.transaction.impl;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 
 import com.google.common.collect.ForwardingObject;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.palantir.atlasdb.keyvalue.api.Cell;
 import com.palantir.atlasdb.keyvalue.api.ColumnSelection;
 import com.palantir.atlasdb.keyvalue.api.RangeRequest;
@@ -30,6 +33,7 @@ import com.palantir.atlasdb.transaction.api.Transaction;
 import com.palantir.atlasdb.transaction.api.TransactionFailedException;
 import com.palantir.atlasdb.transaction.api.TransactionReadSentinelBehavior;
 import com.palantir.atlasdb.transaction.service.TransactionService;
+import com.palantir.common.base.AbortingVisitor;
 import com.palantir.common.base.BatchingVisitable;
 
 public abstract class ForwardingTransaction extends ForwardingObject implements Transaction {
@@ -65,6 +69,34 @@ public abstract class ForwardingTransaction extends ForwardingObject implements
         return delegate().getRanges(tableRef, rangeRequests);
     }
 
+    @Override
+    public Iterator<Map.Entry<RangeRequest, List<RowResult<byte[]>>>> getRanges(TableReference tableRef,
+                                                                                Iterable<RangeRequest> rangeRequests,
+                                                                                int concurrencyLevel,
+                                                                                boolean preserveOrder) {
+        return delegate().getRanges(tableRef, rangeRequests, concurrencyLevel, preserveOrder);
+    }
+
+    @Override
+    public ListenableFuture<SortedMap<byte[], RowResult<byte[]>>> getRowsAsync(TableReference tableRef,
+                                                                              Iterable<byte[]> rows,
+                                                                              ColumnSelection columnSelection) {
+        return delegate().getRowsAsync(tableRef, rows, columnSelection);
+    }
+
+    @Override
+    public ListenableFuture<Map<Cell, byte[]>> getAsync(TableReference tableRef, Set<Cell> cells) {
+        return delegate().getAsync(tableRef, cells);
+    }
+
+    @Override
+    public ListenableFuture<Boolean> getRangeAsync(TableReference tableRef,
+                                                   RangeRequest rangeRequest,
+                                                   int batchSize,
+                                                   AbortingVisitor<? super List<RowResult<byte[]>>, ? extends Exception> visitor) {
+        return delegate().getRangeAsync(tableRef, rangeRequest, batchSize, visitor);
+    }
+
     @Override
     public void put(TableReference tableRef, Map<Cell, byte[]> values) {
         delegate().put(tableRef, values);
@@ -15,10 +15,13 @@
  */
 package com.palantir.atlasdb.transaction.impl;
 
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.palantir.atlasdb.keyvalue.api.Cell;
 import com.palantir.atlasdb.keyvalue.api.ColumnSelection;
 import com.palantir.atlasdb.keyvalue.api.RangeRequest;
@@ -26,6 +29,7 @@ import com.palantir.atlasdb.keyvalue.api.RowResult;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.protos.generated.TableMetadataPersistence.SweepStrategy;
 import com.palantir.atlasdb.transaction.api.Transaction;
+import com.palantir.common.base.AbortingVisitor;
 import com.palantir.common.base.BatchingVisitable;
 
 public class OnlyWriteTempTablesTransaction extends ForwardingTransaction {
@@ -70,6 +74,38 @@ public class OnlyWriteTempTablesTransaction extends ForwardingTransaction {
         return delegate().getRanges(tableRef, rangeRequests);
     }
 
+    @Override
+    public Iterator<Map.Entry<RangeRequest, List<RowResult<byte[]>>>> getRanges(TableReference tableRef,
+                                                                                Iterable<RangeRequest> rangeRequests,
+                                                                                int concurrencyLevel,
+                                                                                boolean preserveOrder) {
+        checkTableName(tableRef);
+        return delegate().getRanges(tableRef, rangeRequests, concurrencyLevel, preserveOrder);
+    }
+
+    @Override
+    public ListenableFuture<SortedMap<byte[], RowResult<byte[]>>> getRowsAsync(TableReference tableRef,
+                                                                              Iterable<byte[]> rows,
+                                                                              ColumnSelection columnSelection) {
+        checkTableName(tableRef);
+        return delegate().getRowsAsync(tableRef, rows, columnSelection);
+    }
+
+    @Override
+    public ListenableFuture<Map<Cell, byte[]>> getAsync(TableReference tableRef, Set<Cell> cells) {
+        checkTableName(tableRef);
+        return delegate().getAsync(tableRef, cells);
+    }
+
+    @Override
+    public ListenableFuture<Boolean> getRangeAsync(TableReference tableRef,
+                                                   RangeRequest rangeRequest,
+                                                   int batchSize,
+                                                   AbortingVisitor<? super List<RowResult<byte[]>>, ? extends Exception> visitor) {
+        checkTableName(tableRef);
+        return delegate().getRangeAsync(tableRef, rangeRequest, batchSize, visitor);
+    }
+
     private void checkTableName(TableReference tableRef) {
         SweepStrategy sweepStrategy = sweepStrategies.get().get(tableRef);
         if (sweepStrategy == SweepStrategy.THOROUGH) {
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Bytes;
+import com.palantir.atlasdb.encoding.PtBytes;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.RangeRequests;
+
+/**
+ * How start timestamps are turned into row names of the transactions table.
+ * <p>
+ * Row names of the two encodings never collide: a bucketed row is 9 bytes long and starts
+ * with a byte below 0x80, while the only 9 byte var longs start with 0xff.  That lets
+ * {@link #decodeStartTimestamp(byte[])} tell them apart without knowing the layout.
+ */
+public enum TransactionTableEncoding {
+    /**
+     * The var long encoded start timestamp is the row name.  Rows are ordered by timestamp,
+     * so consecutive commits all land at the end of the table (a single region or token
+     * range on stores that partition by key).
+     */
+    LEGACY {
+        @Override
+        public byte[] getRowName(long startTimestamp) {
+            return TransactionConstants.getValueForTimestamp(startTimestamp);
+        }
+
+        @Override
+        @Nullable
+        public Long getStartTimestamp(byte[] rowName) {
+            long startTimestamp;
+            try {
+                startTimestamp = TransactionConstants.getTimestampForValue(rowName);
+            } catch (RuntimeException e) {
+                return null;
+            }
+            if (startTimestamp < 0 || !Arrays.equals(getRowName(startTimestamp), rowName)) {
+                return null;
+            }
+            return startTimestamp;
+        }
+
+        @Override
+        public List<RangeRequest> getRangesForTimestampsAfter(long startTimestampExclusive) {
+            return ImmutableList.of(RangeRequest.builder()
+                    .startRowInclusive(RangeRequests.nextLexicographicName(getRowName(startTimestampExclusive)))
+                    .build());
+        }
+    },
+
+    /**
+     * The row name is a bucket byte (the low {@link #NUM_BUCKETS} bits of the start timestamp)
+     * followed by the big endian start timestamp.  Consecutive commits are spread over
+     * {@link #NUM_BUCKETS} key ranges, and within a bucket rows are still ordered by timestamp.
+     */
+    BUCKETED {
+        @Override
+        public byte[] getRowName(long startTimestamp) {
+            return Bytes.concat(new byte[] { getBucket(startTimestamp) }, PtBytes.toBytes(startTimestamp));
+        }
+
+        @Override
+        @Nullable
+        public Long getStartTimestamp(byte[] rowName) {
+            if (rowName.length != 1 + PtBytes.SIZEOF_LONG) {
+                return null;
+            }
+            long startTimestamp = PtBytes.toLong(rowName, 1);
+            if (startTimestamp < 0 || rowName[0] != getBucket(startTimestamp)) {
+                return null;
+            }
+            return startTimestamp;
+        }
+
+        @Override
+        public List<RangeRequest> getRangesForTimestampsAfter(long startTimestampExclusive) {
+            ImmutableList.Builder<RangeRequest> ranges = ImmutableList.builder();
+            for (int bucket = 0; bucket < NUM_BUCKETS; bucket++) {
+                ranges.add(RangeRequest.builder()
+                        .startRowInclusive(Bytes.concat(
+                                new byte[] { (byte) bucket },
+                                PtBytes.toBytes(startTimestampExclusive + 1)))
+                        .endRowExclusive(new byte[] { (byte) (bucket + 1) })
+                        .build());
+            }
+            return ranges.build();
+        }
+
+        private byte getBucket(long startTimestamp) {
+            return (byte) (startTimestamp & (NUM_BUCKETS - 1));
+        }
+    };
+
+    /**
+     * Must be a power of two no larger than 128, see the class comment.
+     */
+    public static final int NUM_BUCKETS = 128;
+
+    public abstract byte[] getRowName(long startTimestamp);
+
+    /**
+     * @return the start timestamp encoded in the row name, or null if the row name is not
+     * one this encoding produces
+     */
+    @Nullable
+    public abstract Long getStartTimestamp(byte[] rowName);
+
+    /**
+     * @return ranges of the transactions table that together cover every row this encoding
+     * produces for start timestamps after the given one.  They may also cover rows of the other
+     * encoding, so callers must check the row names they get back.
+     */
+    public abstract List<RangeRequest> getRangesForTimestampsAfter(long startTimestampExclusive);
+
+    public Cell getTransactionCell(long startTimestamp) {
+        return Cell.create(getRowName(startTimestamp), TransactionConstants.COMMIT_TS_COLUMN);
+    }
+
+    /**
+     * @return the start timestamp of a transactions table row in either encoding, or null if
+     * the row does not hold a commit timestamp
+     */
+    @Nullable
+    public static Long decodeStartTimestamp(byte[] rowName) {
+        for (TransactionTableEncoding encoding : values()) {
+            Long startTimestamp = encoding.getStartTimestamp(rowName);
+            if (startTimestamp != null) {
+                return startTimestamp;
+            }
+        }
+        return null;
+    }
+}
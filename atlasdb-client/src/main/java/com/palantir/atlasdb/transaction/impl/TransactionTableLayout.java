@@ -0,0 +1,144 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.Map;
+
+import javax.annotation.concurrent.Immutable;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.atlasdb.encoding.PtBytes;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.KeyAlreadyExistsException;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.Value;
+
+/**
+ * Which {@link TransactionTableEncoding} holds the commit timestamp of a given start timestamp.
+ * <p>
+ * Tables start out {@link TransactionTableEncoding#LEGACY}.  Switching to
+ * {@link TransactionTableEncoding#BUCKETED} writes a marker cell into the transactions table
+ * holding the first start timestamp that uses the new encoding; older transactions stay where
+ * they are.  The marker is written once and never changes, and every reader and writer of the
+ * transactions table must agree on it, so the switch has to happen while no client is running:
+ * <ol>
+ * <li>stop all clients,
+ * <li>start one client configured with {@link TransactionTableEncoding#BUCKETED}, which writes
+ * the marker the first time it starts,
+ * <li>start the remaining clients.
+ * </ol>
+ * Clients follow the marker whatever encoding they are configured with, so the last step does
+ * not need a config change on the other clients.
+ */
+@Immutable
+public final class TransactionTableLayout {
+    // Neither encoding ever produces this row name, see TransactionTableEncoding.
+    private static final Cell ENCODING_MARKER_CELL = Cell.create(
+            PtBytes.toBytes("transaction_table_encoding"),
+            TransactionConstants.COMMIT_TS_COLUMN);
+
+    // All entries in transaction table are stored with timestamp 0
+    private static final long MAX_TIMESTAMP = 1L;
+
+    private static final TransactionTableLayout LEGACY = new TransactionTableLayout(Optional.<Long>absent());
+
+    private final Optional<Long> bucketedFromTimestamp;
+
+    private TransactionTableLayout(Optional<Long> bucketedFromTimestamp) {
+        this.bucketedFromTimestamp = bucketedFromTimestamp;
+    }
+
+    public static TransactionTableLayout legacy() {
+        return LEGACY;
+    }
+
+    /**
+     * Reads the layout from the transactions table, which must already exist.
+     */
+    public static TransactionTableLayout load(KeyValueService kvs) {
+        Map<Cell, Value> marker = kvs.get(
+                TransactionConstants.TRANSACTION_TABLE,
+                ImmutableMap.of(ENCODING_MARKER_CELL, MAX_TIMESTAMP));
+        if (!marker.containsKey(ENCODING_MARKER_CELL)) {
+            return LEGACY;
+        }
+        long bucketedFromTimestamp = TransactionConstants.getTimestampForValue(
+                marker.get(ENCODING_MARKER_CELL).getContents());
+        return new TransactionTableLayout(Optional.of(bucketedFromTimestamp));
+    }
+
+    /**
+     * Reads the layout the first time it is needed, so that this can be called before the
+     * transactions table has been created.
+     */
+    public static Supplier<TransactionTableLayout> loadLazily(final KeyValueService kvs) {
+        return Suppliers.memoize(new Supplier<TransactionTableLayout>() {
+            @Override
+            public TransactionTableLayout get() {
+                return load(kvs);
+            }
+        });
+    }
+
+    /**
+     * Switches transactions starting at or after the given timestamp to the bucketed encoding,
+     * unless the table already has been switched.  See the class comment for when this is safe.
+     *
+     * @return the layout now in effect
+     */
+    public static TransactionTableLayout enableBucketedEncoding(KeyValueService kvs, long bucketedFromTimestamp) {
+        Preconditions.checkArgument(bucketedFromTimestamp >= 0, "Timestamps are never negative.");
+        try {
+            kvs.putUnlessExists(
+                    TransactionConstants.TRANSACTION_TABLE,
+                    ImmutableMap.of(ENCODING_MARKER_CELL, TransactionConstants.getValueForTimestamp(bucketedFromTimestamp)));
+            return new TransactionTableLayout(Optional.of(bucketedFromTimestamp));
+        } catch (KeyAlreadyExistsException e) {
+            return load(kvs);
+        }
+    }
+
+    public boolean isBucketedEncodingEnabled() {
+        return bucketedFromTimestamp.isPresent();
+    }
+
+    /**
+     * @return the first start timestamp stored with the bucketed encoding, if it is enabled
+     */
+    public Optional<Long> getBucketedFromTimestamp() {
+        return bucketedFromTimestamp;
+    }
+
+    public TransactionTableEncoding getEncoding(long startTimestamp) {
+        if (bucketedFromTimestamp.isPresent() && startTimestamp >= bucketedFromTimestamp.get()) {
+            return TransactionTableEncoding.BUCKETED;
+        }
+        return TransactionTableEncoding.LEGACY;
+    }
+
+    public Cell getTransactionCell(long startTimestamp) {
+        return getEncoding(startTimestamp).getTransactionCell(startTimestamp);
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionTableLayout [bucketedFromTimestamp=" + bucketedFromTimestamp + "]";
+    }
+}
@@ -22,6 +22,8 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.common.base.Optional;
 import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.spi.KeyValueServiceConfig;
+import com.palantir.atlasdb.transaction.api.SerializableReadSetEncoding;
+import com.palantir.atlasdb.transaction.impl.TransactionTableEncoding;
 
 @JsonDeserialize(as = ImmutableAtlasDbConfig.class)
 @JsonSerialize(as = ImmutableAtlasDbConfig.class)
@@ -148,4 +150,106 @@ public abstract class AtlasDbConfig {
     public int getSweepBatchSize() {
         return AtlasDbConstants.DEFAULT_SWEEP_BATCH_SIZE;
     }
+
+    /**
+     * The number of tables the background sweeper sweeps at the same time.
+     * This is a limit across all clients sharing a lock service; each client
+     * runs this many sweep threads, which take turns if other clients are
+     * already sweeping.
+     */
+    @Value.Default
+    public int getSweepThreads() {
+        return AtlasDbConstants.DEFAULT_SWEEP_THREADS;
+    }
+
+    /**
+     * The maximum number of cells per second the background sweeper of
+     * this client examines, or 0 for no limit.
+     */
+    @Value.Default
+    public long getSweepCellsPerSecond() {
+        return AtlasDbConstants.DEFAULT_SWEEP_CELLS_PER_SECOND;
+    }
+
+    /**
+     * The maximum number of bytes per second the background sweeper of
+     * this client reads, or 0 for no limit.
+     */
+    @Value.Default
+    public long getSweepBytesPerSecond() {
+        return AtlasDbConstants.DEFAULT_SWEEP_BYTES_PER_SECOND;
+    }
+
+    /**
+     * The maximum number of start to commit timestamp mappings cached by the
+     * transaction manager and shared by all of its transactions.
+     * <p>
+     * Values in the transactions table never change once written, so a larger
+     * cache only costs memory (16 bytes per entry) and saves reads of the
+     * transactions table.
+     */
+    @Value.Default
+    public int getCommitTimestampCacheSize() {
+        return AtlasDbConstants.DEFAULT_COMMIT_TIMESTAMP_CACHE_SIZE;
+    }
+
+    /**
+     * The number of pages a range scan fetches from the key value service
+     * ahead of the page being read. Prefetched pages are post-filtered (their
+     * commit timestamps looked up) in the background, so that reading from the
+     * key value service overlaps with the transactions table lookups.
+     * <p>
+     * 0 fetches each page only once the previous one has been read. Larger
+     * values speed up long scans at the cost of holding more pages in memory
+     * and of fetching pages that are never read when a scan stops early.
+     */
+    @Value.Default
+    public int getRangeScanPrefetchPages() {
+        return AtlasDbConstants.DEFAULT_RANGE_SCAN_PREFETCH_PAGES;
+    }
+
+    /**
+     * How serializable transactions remember the values they read until
+     * they check them for read-write conflicts at commit time.
+     * <p>
+     * FULL_VALUES keeps every value read. MURMUR3_128 and SHA_256 keep
+     * fixed-size digests instead, so that transactions reading large values
+     * use much less memory, at a tiny risk of missing a conflict. SHA_256
+     * should be used if values could be chosen to have the same digest.
+     */
+    @Value.Default
+    public SerializableReadSetEncoding getSerializableReadSetEncoding() {
+        return AtlasDbConstants.DEFAULT_SERIALIZABLE_READ_SET_ENCODING;
+    }
+
+    /**
+     * How start timestamps map to rows of the transactions table. The legacy
+     * encoding writes consecutive commits to adjacent rows, which on
+     * partitioned stores all hit the same node; the bucketed encoding spreads
+     * them over many key ranges.
+     * <p>
+     * Switching to the bucketed encoding is one way and only applies to
+     * transactions that start afterwards. All clients must be stopped while the
+     * first client with the bucketed encoding starts up; see
+     * {@link com.palantir.atlasdb.transaction.impl.TransactionTableLayout}.
+     */
+    @Value.Default
+    public TransactionTableEncoding getTransactionTableEncoding() {
+        return TransactionTableEncoding.LEGACY;
+    }
+
+    /**
+     * The number of batches of commit timestamps that may be written to the
+     * transactions table at once. Commits that arrive while this many batches
+     * are being written are grouped into one multi-cell putUnlessExists.
+     * <p>
+     * 0 (the default) writes each commit timestamp on its own, which is best
+     * for key value services whose putUnlessExists writes one cell at a time,
+     * such as Cassandra. Batching pays off on stores that write a multi-cell
+     * putUnlessExists in one operation.
+     */
+    @Value.Default
+    public int getTransactionTableWriteBatchesInFlight() {
+        return AtlasDbConstants.DEFAULT_TRANSACTION_TABLE_WRITE_BATCHES_IN_FLIGHT;
+    }
 }
@@ -65,6 +65,7 @@ import com.palantir.lock.LockClient;
 import com.palantir.lock.RemoteLockService;
 import com.palantir.lock.client.LockRefreshingRemoteLockService;
 import com.palantir.lock.impl.LockServiceImpl;
+import com.palantir.timestamp.PipeliningTimestampService;
 import com.palantir.timestamp.TimestampService;
 
 public class TransactionManagers {
@@ -108,7 +109,11 @@ public class TransactionManagers {
 
         TransactionTables.createTables(kvs);
 
-        TransactionService transactionService = TransactionServices.createTransactionService(kvs);
+        TransactionService transactionService = TransactionServices.createTransactionService(
+                kvs,
+                config.getTransactionTableEncoding(),
+                lts.time(),
+                config.getTransactionTableWriteBatchesInFlight());
         ConflictDetectionManager conflictManager = ConflictDetectionManagers.createDefault(kvs);
         SweepStrategyManager sweepStrategyManager = SweepStrategyManagers.createDefault(kvs);
 
@@ -142,7 +147,10 @@ public class TransactionManagers {
                 conflictManager,
                 sweepStrategyManager,
                 cleaner,
-                allowHiddenTableAccess);
+                allowHiddenTableAccess,
+                config.getCommitTimestampCacheSize(),
+                config.getRangeScanPrefetchPages(),
+                config.getSerializableReadSetEncoding());
 
         SweepTaskRunner sweepRunner = new SweepTaskRunnerImpl(
                 transactionManager,
@@ -159,7 +167,10 @@ public class TransactionManagers {
                 Suppliers.ofInstance(config.enableSweep()),
                 Suppliers.ofInstance(config.getSweepPauseMillis()),
                 Suppliers.ofInstance(config.getSweepBatchSize()),
-                SweepTableFactory.of());
+                SweepTableFactory.of(),
+                config.getSweepThreads(),
+                Suppliers.ofInstance(config.getSweepCellsPerSecond()),
+                Suppliers.ofInstance(config.getSweepBytesPerSecond()));
         backgroundSweeper.runInBackground();
 
         return transactionManager;
@@ -212,14 +223,17 @@ public class TransactionManagers {
 
             return ImmutableLockAndTimestampServices.builder()
                     .lock(createService(sslSocketFactory, config.leader().get().leaders(), RemoteLockService.class))
-                    .time(createService(sslSocketFactory, config.leader().get().leaders(), TimestampService.class))
+                    .time(new PipeliningTimestampService(createService(sslSocketFactory, config.leader().get().leaders(), TimestampService.class)))
                     .build();
         } else {
             warnIf(config.lock().isPresent() != config.timestamp().isPresent(), "Using embedded instances for one (but not both) of lock and timestamp services");
 
             return ImmutableLockAndTimestampServices.builder()
                     .lock(config.lock().transform(new ServiceCreator<>(sslSocketFactory, RemoteLockService.class)).or(lock))
-                    .time(config.timestamp().transform(new ServiceCreator<>(sslSocketFactory, TimestampService.class)).or(time))
+                    .time(config.timestamp()
+                            .transform(new ServiceCreator<>(sslSocketFactory, TimestampService.class))
+                            .<TimestampService>transform(PipeliningTimestampService::new)
+                            .or(time))
                     .build();
         }
     }
@@ -42,6 +42,8 @@ public class Utils {
                 InsufficientConsistencyExceptionMapper.instance(),
                 ClientVersionTooOldExceptionMapper.instance(),
                 EndpointVersionTooOldExceptionMapper.instance(),
+                RemotingKeyValueService.createRangeStreamingResource(remoteKvs),
+                KvsBinaryMessageBodyProvider.instance(),
                 new InboxPopulatingContainerRequestFilter(mapper));
         return rule;
     }
@@ -15,7 +15,7 @@
  */
 package com.palantir.atlasdb.keyvalue.partition;
 
-import static com.palantir.atlasdb.keyvalue.partition.util.RequestCompletions.completeReadRequest;
+import static com.palantir.atlasdb.keyvalue.partition.util.RequestCompletions.completeHedgedReadRequest;
 import static com.palantir.atlasdb.keyvalue.partition.util.RequestCompletions.completeWriteRequest;
 import static com.palantir.atlasdb.keyvalue.partition.util.RequestCompletions.retryUntilSuccess;
 
@@ -26,8 +26,10 @@ import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
+import javax.management.DynamicMBean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +41,7 @@ import com.google.common.base.Supplier;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableList.Builder;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
@@ -62,6 +65,9 @@ import com.palantir.atlasdb.keyvalue.partition.quorum.QuorumTracker;
 import com.palantir.atlasdb.keyvalue.partition.util.AutoRetryingClosableIterator;
 import com.palantir.atlasdb.keyvalue.partition.util.ClosablePeekingIterator;
 import com.palantir.atlasdb.keyvalue.partition.util.ConsistentRingRangeRequest;
+import com.palantir.atlasdb.keyvalue.partition.util.EndpointLatencyTracker;
+import com.palantir.atlasdb.keyvalue.partition.util.EndpointLatencyTrackerMBean;
+import com.palantir.atlasdb.keyvalue.partition.util.EndpointReadRequest;
 import com.palantir.atlasdb.keyvalue.partition.util.EndpointRequestExecutor;
 import com.palantir.atlasdb.keyvalue.partition.util.EndpointRequestExecutor.EndpointRequestCompletionService;
 import com.palantir.atlasdb.keyvalue.partition.util.MergeResults;
@@ -73,6 +79,7 @@ import com.palantir.common.annotation.Idempotent;
 import com.palantir.common.annotation.NonIdempotent;
 import com.palantir.common.base.ClosableIterator;
 import com.palantir.common.concurrent.PTExecutors;
+import com.palantir.util.JMXUtils;
 import com.palantir.util.Pair;
 import com.palantir.util.paging.TokenBackedBasicResultsPage;
 
@@ -88,8 +95,11 @@ import com.palantir.util.paging.TokenBackedBasicResultsPage;
 public class PartitionedKeyValueService extends PartitionMapProvider implements KeyValueService {
 
     private static final Logger log = LoggerFactory.getLogger(PartitionedKeyValueService.class);
+    private static final AtomicInteger latencyTrackerCount = new AtomicInteger();
     private final QuorumParameters quorumParameters;
     private final ExecutorService executor;
+    private final EndpointLatencyTracker latencyTracker;
+    private final DynamicMBean latencyTrackerMBean;
 
     // *** Read requests *************************************************************************
     @Override
@@ -103,26 +113,24 @@ public class PartitionedKeyValueService extends PartitionMapProvider implements
             @Override
             public Map<Cell, Value> apply(DynamicPartitionMap input) {
                 final Map<Cell, Value> overallResult = Maps.newHashMap();
-                final EndpointRequestCompletionService<Map<Cell, Value>> execSvc = EndpointRequestExecutor.newService(executor);
-                final QuorumTracker<Map<Cell, Value>, byte[]> tracker = QuorumTracker.of(
-                        rows, input.getReadRowsParameters(rows));
+                final List<EndpointReadRequest<Map<Cell, Value>, byte[]>> requests = Lists.newArrayList();
 
-                // Schedule tasks for execution
+                // Collect the tasks, they are scheduled fastest endpoint first
                 input.runForRowsRead(tableRef.getQualifiedName(), rows, new Function<Pair<KeyValueService,Iterable<byte[]>>, Void>() {
                     @Override
                     public Void apply(final Pair<KeyValueService, Iterable<byte[]>> e) {
-                        Future<Map<Cell, Value>> future = execSvc.submit(new Callable<Map<Cell, Value>>() {
+                        requests.add(EndpointReadRequest.of(e.lhSide, e.rhSide, new Callable<Map<Cell, Value>>() {
                             @Override
                             public Map<Cell, Value> call() throws Exception {
                                 return e.lhSide.getRows(tableRef, e.rhSide, columnSelection, timestamp);
                             }
-                        }, e.lhSide);
-                        tracker.registerRef(future, e.rhSide);
+                        }));
                         return null;
                     }
                 });
 
-                completeReadRequest(tracker, execSvc, MergeResults.newCellValueMapMerger(overallResult));
+                completeHedgedReadRequest(requests, input.getReadRowsParameters(rows), executor, latencyTracker,
+                        MergeResults.newCellValueMapMerger(overallResult));
                 return overallResult;
             }
         });
@@ -134,28 +142,25 @@ public class PartitionedKeyValueService extends PartitionMapProvider implements
         return runWithPartitionMapRetryable(new Function<DynamicPartitionMap, Map<Cell, Value>>() {
             @Override
             public Map<Cell, Value> apply(@Nullable DynamicPartitionMap input) {
-                final EndpointRequestCompletionService<Map<Cell, Value>> execSvc = EndpointRequestExecutor.newService(executor);
-                final QuorumTracker<Map<Cell, Value>, Cell> tracker = QuorumTracker.of(
-                        timestampByCell.keySet(),
-                        input.getReadCellsParameters(timestampByCell.keySet()));
+                final List<EndpointReadRequest<Map<Cell, Value>, Cell>> requests = Lists.newArrayList();
                 final Map<Cell, Value> globalResult = Maps.newHashMap();
 
-                // Schedule the tasks
+                // Collect the tasks
                 input.runForCellsRead(tableRef.getQualifiedName(), timestampByCell, new Function<Pair<KeyValueService, Map<Cell, Long>>, Void>() {
                     @Override
                     public Void apply(final Pair<KeyValueService, Map<Cell, Long>> e) {
-                        Future<Map<Cell, Value>> future = execSvc.submit(new Callable<Map<Cell, Value>>() {
+                        requests.add(EndpointReadRequest.of(e.lhSide, e.rhSide.keySet(), new Callable<Map<Cell, Value>>() {
                             @Override
                             public Map<Cell, Value> call() throws Exception {
                                 return e.lhSide.get(tableRef, e.rhSide);
                             }
-                        }, e.lhSide);
-                        tracker.registerRef(future, e.rhSide.keySet());
+                        }));
                         return null;
                     }
                 });
 
-                completeReadRequest(tracker, execSvc, MergeResults.newCellValueMapMerger(globalResult));
+                completeHedgedReadRequest(requests, input.getReadCellsParameters(timestampByCell.keySet()),
+                        executor, latencyTracker, MergeResults.newCellValueMapMerger(globalResult));
                 return globalResult;
             }
         });
@@ -171,26 +176,23 @@ public class PartitionedKeyValueService extends PartitionMapProvider implements
         return runWithPartitionMapRetryable(new Function<DynamicPartitionMap, Multimap<Cell, Long>>() {
             @Override
             public Multimap<Cell, Long> apply(DynamicPartitionMap input) {
-                final EndpointRequestCompletionService<Multimap<Cell, Long>> execSvc = EndpointRequestExecutor.newService(executor);
-                final QuorumTracker<Multimap<Cell, Long>, Cell> tracker = QuorumTracker.of(
-                        cells,
-                        input.getReadCellsParameters(cells));
+                final List<EndpointReadRequest<Multimap<Cell, Long>, Cell>> requests = Lists.newArrayList();
                 final Multimap<Cell, Long> globalResult = HashMultimap.create();
                 input.runForCellsRead(tableRef.getQualifiedName(), cells, new Function<Pair<KeyValueService, Set<Cell>>, Void>() {
                     @Override @Nullable
                     public Void apply(@Nullable final Pair<KeyValueService, Set<Cell>> e) {
-                        Future<Multimap<Cell, Long>> future = execSvc.submit(new Callable<Multimap<Cell, Long>>() {
+                        requests.add(EndpointReadRequest.of(e.lhSide, e.rhSide, new Callable<Multimap<Cell, Long>>() {
                             @Override
                             public Multimap<Cell, Long> call() throws Exception {
                                 return e.lhSide.getAllTimestamps(tableRef, cells, timestamp);
                             }
-                        }, e.lhSide);
-                        tracker.registerRef(future, e.rhSide);
+                        }));
                         return null;
                     }
                 });
 
-                completeReadRequest(tracker, execSvc, MergeResults.newAllTimestampsMapMerger(globalResult));
+                completeHedgedReadRequest(requests, input.getReadCellsParameters(cells), executor, latencyTracker,
+                        MergeResults.newAllTimestampsMapMerger(globalResult));
                 return globalResult;
             }
         });
@@ -204,25 +206,22 @@ public class PartitionedKeyValueService extends PartitionMapProvider implements
             @Override
             public Map<Cell, Long> apply(DynamicPartitionMap input) {
                 final Map<Cell, Long> globalResult = Maps.newHashMap();
-                final QuorumTracker<Map<Cell, Long>, Cell> tracker = QuorumTracker.of(
-                        timestampByCell.keySet(),
-                        input.getReadCellsParameters(timestampByCell.keySet()));
-                final EndpointRequestCompletionService<Map<Cell, Long>> execSvc = EndpointRequestExecutor.newService(executor);
+                final List<EndpointReadRequest<Map<Cell, Long>, Cell>> requests = Lists.newArrayList();
                 input.runForCellsRead(tableRef.getQualifiedName(), timestampByCell, new Function<Pair<KeyValueService, Map<Cell, Long>>, Void>() {
                     @Override @Nullable
                     public Void apply(@Nullable final Pair<KeyValueService, Map<Cell, Long>> e) {
-                        Future<Map<Cell, Long>> future = execSvc.submit(new Callable<Map<Cell, Long>>() {
+                        requests.add(EndpointReadRequest.of(e.lhSide, e.rhSide.keySet(), new Callable<Map<Cell, Long>>() {
                             @Override
                             public Map<Cell, Long> call() throws Exception {
                                 return e.lhSide.getLatestTimestamps(tableRef, e.rhSide);
                             }
-                        }, e.lhSide);
-                        tracker.registerRef(future, e.rhSide.keySet());
+                        }));
                         return null;
                     }
                 });
 
-                completeReadRequest(tracker, execSvc, MergeResults.newLatestTimestampMapMerger(globalResult));
+                completeHedgedReadRequest(requests, input.getReadCellsParameters(timestampByCell.keySet()),
+                        executor, latencyTracker, MergeResults.newLatestTimestampMapMerger(globalResult));
                 return globalResult;
             }
         });
@@ -854,6 +853,11 @@ public class PartitionedKeyValueService extends PartitionMapProvider implements
         super(partitionMapProviders, partitionMapProvidersReadFactor);
         this.executor = executor;
         this.quorumParameters = quorumParameters;
+        this.latencyTracker = new EndpointLatencyTracker();
+        this.latencyTrackerMBean = JMXUtils.registerMBeanWeakRefPlusCatchAndLogExceptions(
+                latencyTracker,
+                EndpointLatencyTrackerMBean.class,
+                "com.palantir.atlasdb:type=EndpointLatencyTracker_" + latencyTrackerCount.getAndIncrement());
     }
 
     public static PartitionedKeyValueService create(QuorumParameters quorumParameters, List<PartitionMapService> mapServices) {
@@ -0,0 +1,63 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.partition.map;
+
+import com.google.common.base.Preconditions;
+import com.palantir.common.annotation.Immutable;
+
+/**
+ * How the data of a joining or leaving endpoint is copied.
+ * <p>
+ * Every range that has to be copied is split into {@link #getSubRangesPerRange()} parts.
+ * Each part of each table is copied by one of {@link #getParallelism()} threads and is
+ * checkpointed once it has been copied, so that a failed backfill can resume where it
+ * stopped.  All the threads together copy at most {@link #getMaxBytesPerSecond()} bytes
+ * per second, where zero or less means unlimited.
+ */
+@Immutable
+public final class BackfillParameters {
+    public static final BackfillParameters DEFAULT = new BackfillParameters(4, 16, 0L);
+
+    private final int parallelism;
+    private final int subRangesPerRange;
+    private final long maxBytesPerSecond;
+
+    public BackfillParameters(int parallelism, int subRangesPerRange, long maxBytesPerSecond) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+        Preconditions.checkArgument(subRangesPerRange > 0, "subRangesPerRange must be positive");
+        this.parallelism = parallelism;
+        this.subRangesPerRange = subRangesPerRange;
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getSubRangesPerRange() {
+        return subRangesPerRange;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "BackfillParameters [parallelism=" + parallelism + ", subRangesPerRange="
+                + subRangesPerRange + ", maxBytesPerSecond=" + maxBytesPerSecond + "]";
+    }
+}
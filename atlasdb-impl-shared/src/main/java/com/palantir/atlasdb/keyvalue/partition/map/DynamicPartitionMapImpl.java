@@ -64,7 +64,6 @@ import com.palantir.atlasdb.keyvalue.api.RangeRequest;
 import com.palantir.atlasdb.keyvalue.api.RangeRequests;
 import com.palantir.atlasdb.keyvalue.api.RowResult;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
-import com.palantir.atlasdb.keyvalue.api.Value;
 import com.palantir.atlasdb.keyvalue.partition.PartitionedKeyValueService;
 import com.palantir.atlasdb.keyvalue.partition.api.DynamicPartitionMap;
 import com.palantir.atlasdb.keyvalue.partition.endpoint.KeyValueEndpoint;
@@ -184,6 +183,11 @@ public class DynamicPartitionMapImpl implements DynamicPartitionMap {
     @GuardedBy("this")
     private long operationsInProgress;
 
+    @GuardedBy("this")
+    private transient boolean backfillInProgress;
+
+    private transient volatile BackfillParameters backfillParameters = BackfillParameters.DEFAULT;
+
     /*** Creation ********************************************************************************/
     /**
      * This is used for deserialization.
@@ -520,36 +524,19 @@ public class DynamicPartitionMapImpl implements DynamicPartitionMap {
     }
 
     /**
-     * Copies rows within the specified range from all the tables.
-     * @param destKve
-     * @param srcKve
-     * @param rangeToCopy
+     * Copies the given ranges of all the tables to their destinations. A backfill that
+     * failed can be retried, and the retry only copies what has not been copied yet.
      */
-    private void copyData(KeyValueService destKvs, RangeRequest rangeToCopy) {
+    private void backfill(Multimap<KeyValueService, RangeRequest> rangesByDestination, long operationId) {
         ImmutableList<PartitionMapService> mapServices = ImmutableList.<PartitionMapService> of(InMemoryPartitionMapService.create(this));
         PartitionedKeyValueService pkvs = PartitionedKeyValueService.create(quorumParameters, mapServices);
-        for (TableReference tableRef : pkvs.getAllTableNames()) {
-            // TODO: getRangeOfTimestamps?
-            try (ClosableIterator<RowResult<Set<Value>>> allRows = pkvs
-                    .getRangeWithHistory(tableRef, rangeToCopy,
-                            Long.MAX_VALUE)) {
-                while (allRows.hasNext()) {
-                    RowResult<Set<Value>> row = allRows.next();
-                    for (Entry<Cell, Set<Value>> cell : row.getCells()) {
-
-                        Multimap<Cell, Value> rowMap = HashMultimap.create();
-                        rowMap.putAll(cell.getKey(), cell.getValue());
-
-                        Multimap<Cell, Long> rowTsMap = HashMultimap.create();
-                        for (Entry<Cell, Value> entry : rowMap.entries()) {
-                            rowTsMap.put(entry.getKey(), entry.getValue().getTimestamp());
-                        }
+        PartitionBackfiller backfiller = new PartitionBackfiller(pkvs, backfillParameters, operationId);
+        backfiller.backfill(rangesByDestination);
+        backfiller.clearProgress(rangesByDestination.keySet());
+    }
 
-                        destKvs.putWithTimestamps(tableRef, rowMap);
-                    }
-                }
-            }
-        }
+    private synchronized void finishBackfill() {
+        backfillInProgress = false;
     }
 
     /**
@@ -693,27 +680,42 @@ public class DynamicPartitionMapImpl implements DynamicPartitionMap {
     /**
      * You must retry this function until it succeeds before
      * promoting the endpoint with {@link #promoteAddedEndpoint(byte[])}.
+     * A retry resumes the copying where the failed attempt stopped.
      * <p>
      * You should not and you must not repeat the backfill if promotion fails.
      * You can safely retry just the promotion in such case.
+     * <p>
+     * The data is copied without holding the lock of this map, so the map can still
+     * be read and pushed to endpoints meanwhile. Only one backfill can run at a time.
      */
     @Override
-    public synchronized void backfillAddedEndpoint(byte[] key) {
-        Preconditions.checkArgument(ring.get(key) instanceof EndpointWithJoiningStatus);
-        Preconditions.checkState(operationsInProgress == 1);
-        EndpointWithJoiningStatus ews = (EndpointWithJoiningStatus) ring.get(key);
-        Preconditions.checkArgument(!ews.backfilled());
-
-        KeyValueService kvs = ews.get().keyValueService();
-        List<RangeRequest> ranges = getRangesOperatedByKvs(key, false);
+    public void backfillAddedEndpoint(byte[] key) {
+        final EndpointWithJoiningStatus ews;
+        final Multimap<KeyValueService, RangeRequest> rangesByDestination = LinkedHashMultimap.create();
+        final long operationId;
+        synchronized (this) {
+            Preconditions.checkArgument(ring.get(key) instanceof EndpointWithJoiningStatus);
+            Preconditions.checkState(operationsInProgress == 1);
+            Preconditions.checkState(!backfillInProgress, "A backfill is already in progress.");
+            ews = (EndpointWithJoiningStatus) ring.get(key);
+            Preconditions.checkArgument(!ews.backfilled());
+
+            // Copy all the ranges that should be operated by this kvs.
+            rangesByDestination.putAll(ews.get().keyValueService(), getRangesOperatedByKvs(key, false));
+            operationId = version.longValue();
+            backfillInProgress = true;
+        }
 
-        // Copy all the ranges that should be operated by this kvs.
-        for (int i = 0; i < ranges.size(); ++i) {
-            copyData(kvs, ranges.get(i));
+        try {
+            backfill(rangesByDestination, operationId);
+        } finally {
+            finishBackfill();
         }
 
         // Remember that the backfill succeeded.
-        ews.setBackfilled();
+        synchronized (this) {
+            ews.setBackfilled();
+        }
     }
 
     /**
@@ -851,18 +853,44 @@ public class DynamicPartitionMapImpl implements DynamicPartitionMap {
         return true;
     }
 
+    /**
+     * Like {@link #backfillAddedEndpoint(byte[])}, retries resume the copying and the
+     * data is copied without holding the lock of this map.
+     */
     @Override
-    public synchronized void backfillRemovedEndpoint(byte[] key) {
-        Preconditions.checkArgument(ring.get(key) instanceof EndpointWithLeavingStatus);
-        Preconditions.checkState(operationsInProgress == 1);
-        EndpointWithLeavingStatus ews = (EndpointWithLeavingStatus) ring.get(key);
-        Preconditions.checkArgument(!ews.backfilled());
+    public void backfillRemovedEndpoint(byte[] key) {
+        final EndpointWithLeavingStatus ews;
+        final Multimap<KeyValueService, RangeRequest> rangesByDestination = LinkedHashMultimap.create();
+        final long operationId;
+        synchronized (this) {
+            Preconditions.checkArgument(ring.get(key) instanceof EndpointWithLeavingStatus);
+            Preconditions.checkState(operationsInProgress == 1);
+            Preconditions.checkState(!backfillInProgress, "A backfill is already in progress.");
+            ews = (EndpointWithLeavingStatus) ring.get(key);
+            Preconditions.checkArgument(!ews.backfilled());
+            getRangesForRemovedEndpoint(key, rangesByDestination);
+            operationId = version.longValue();
+            backfillInProgress = true;
+        }
 
+        try {
+            backfill(rangesByDestination, operationId);
+        } finally {
+            finishBackfill();
+        }
+
+        synchronized (this) {
+            ews.setBackfilled();
+        }
+    }
+
+    @GuardedBy("this")
+    private void getRangesForRemovedEndpoint(byte[] key, Multimap<KeyValueService, RangeRequest> rangesByDestination) {
         List<RangeRequest> ranges = getRangesOperatedByKvs(key, true);
 
         byte[] dstKvsKey = ring.nextKey(key);
         for (int i = 0; i < ranges.size() - 1; ++i) {
-            copyData(ring.get(dstKvsKey).get().keyValueService(), ranges.get(i));
+            rangesByDestination.put(ring.get(dstKvsKey).get().keyValueService(), ranges.get(i));
 
             // If it is unbounded, we need to move both ranges to the
             // same destination kvs (it really is the same range).
@@ -875,11 +903,8 @@ public class DynamicPartitionMapImpl implements DynamicPartitionMap {
         }
 
         // The special case for last range
-        copyData(ring.get(dstKvsKey).get().keyValueService(),
+        rangesByDestination.put(ring.get(dstKvsKey).get().keyValueService(),
                  ranges.get(ranges.size() - 1).getBuilder().endRowExclusive(key).build());
-
-
-        ews.setBackfilled();
     }
 
     /**
@@ -987,6 +1012,14 @@ public class DynamicPartitionMapImpl implements DynamicPartitionMap {
         this.version.setValue(version);
     }
 
+    /**
+     * Sets how the data of joining and leaving endpoints is copied. This is not part
+     * of the serialized map, so every process that runs backfills must set it.
+     */
+    public void setBackfillParameters(BackfillParameters backfillParameters) {
+        this.backfillParameters = Preconditions.checkNotNull(backfillParameters);
+    }
+
     /*** toString, hashCode and equals ***********************************************************/
     @Override
     public String toString() {
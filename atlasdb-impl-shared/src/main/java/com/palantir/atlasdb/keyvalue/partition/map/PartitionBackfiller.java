@@ -0,0 +1,294 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.partition.map;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang.ArrayUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.google.common.primitives.UnsignedBytes;
+import com.google.common.util.concurrent.RateLimiter;
+import com.palantir.atlasdb.AtlasDbConstants;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.ColumnSelection;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.common.base.ClosableIterator;
+import com.palantir.common.base.Throwables;
+import com.palantir.common.concurrent.PTExecutors;
+import com.palantir.exception.PalantirInterruptedException;
+
+/**
+ * Copies ranges of every table to the key value services that take them over when an
+ * endpoint joins or leaves the ring.
+ * <p>
+ * Each range is split into sub-ranges which are copied in parallel, one table at a time,
+ * in batches that are throttled to the configured bytes per second.  When a sub-range of a
+ * table has been copied, a marker is written to the {@link #PROGRESS_TABLE} of its
+ * destination.  The markers are keyed by an operation id, so retrying a failed backfill
+ * of the same operation skips everything that was already copied.  A marker also records
+ * the end of its sub-range, so a retry that splits the ranges differently only skips the
+ * sub-ranges that were copied in full.
+ * <p>
+ * Copying is idempotent since every value keeps its timestamp, so sub-ranges that were
+ * copied only partially are simply copied again.
+ */
+public final class PartitionBackfiller {
+    private static final Logger log = LoggerFactory.getLogger(PartitionBackfiller.class);
+
+    public static final TableReference PROGRESS_TABLE = AtlasDbConstants.PARTITION_BACKFILL_TABLE;
+
+    private static final int MAX_BATCH_CELLS = 10000;
+    private static final long MAX_BATCH_BYTES = 4 * 1024 * 1024;
+    // Markers are this byte followed by the exclusive end row of the copied sub-range.
+    private static final byte DONE = 1;
+
+    // Splitting only looks at this many leading bytes of the row names.
+    private static final int SPLIT_PREFIX_BYTES = 8;
+
+    private final KeyValueService source;
+    private final BackfillParameters parameters;
+    private final byte[] progressRow;
+    @Nullable private final RateLimiter byteLimiter;
+
+    /**
+     * @param source where the data is read from, usually a partitioned key value service
+     * @param parameters
+     * @param operationId identifies the ring change being backfilled. It must not change
+     *        between the attempts of the same backfill.
+     */
+    public PartitionBackfiller(KeyValueService source, BackfillParameters parameters, long operationId) {
+        this.source = source;
+        this.parameters = parameters;
+        this.progressRow = Longs.toByteArray(operationId);
+        this.byteLimiter = parameters.getMaxBytesPerSecond() > 0
+                ? RateLimiter.create(parameters.getMaxBytesPerSecond())
+                : null;
+    }
+
+    /**
+     * Copies every range to its destination and returns once all of them have been copied.
+     * If anything fails, the copying is stopped and the failure is rethrown.
+     */
+    public void backfill(Multimap<KeyValueService, RangeRequest> rangesByDestination) {
+        Set<TableReference> tables = Sets.newHashSet(source.getAllTableNames());
+        tables.remove(PROGRESS_TABLE);
+
+        ExecutorService executor = PTExecutors.newFixedThreadPool(parameters.getParallelism());
+        List<Future<Void>> futures = Lists.newArrayList();
+        int skipped = 0;
+        try {
+            for (KeyValueService destination : rangesByDestination.keySet()) {
+                destination.createTable(PROGRESS_TABLE, AtlasDbConstants.GENERIC_TABLE_METADATA);
+                Map<Cell, Value> copied = getCopiedSubRanges(destination);
+                for (RangeRequest range : rangesByDestination.get(destination)) {
+                    for (RangeRequest subRange : splitRange(range, parameters.getSubRangesPerRange())) {
+                        for (TableReference tableRef : tables) {
+                            Cell marker = progressCell(tableRef, subRange);
+                            Value existingMarker = copied.get(marker);
+                            if (isCopied(existingMarker, subRange)) {
+                                skipped++;
+                            } else {
+                                if (existingMarker != null) {
+                                    // Left by an attempt that split the ranges differently.
+                                    destination.delete(PROGRESS_TABLE, ImmutableMultimap.of(marker, existingMarker.getTimestamp()));
+                                }
+                                futures.add(executor.submit(copyTask(destination, tableRef, subRange, marker)));
+                            }
+                        }
+                    }
+                }
+            }
+            if (skipped > 0) {
+                log.info("Resuming backfill, skipping {} sub-ranges that were already copied.", skipped);
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw Throwables.rewrapAndThrowUncheckedException(e.getCause());
+        } catch (InterruptedException e) {
+            throw Throwables.throwUncheckedException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Forgets the progress of this operation. Failures are only logged since leftover
+     * markers never affect a different operation.
+     */
+    public void clearProgress(Iterable<KeyValueService> destinations) {
+        for (KeyValueService destination : destinations) {
+            try {
+                destination.dropTable(PROGRESS_TABLE);
+            } catch (RuntimeException e) {
+                log.warn("Could not drop the backfill progress table of " + destination, e);
+            }
+        }
+    }
+
+    private Map<Cell, Value> getCopiedSubRanges(KeyValueService destination) {
+        return destination.getRows(
+                PROGRESS_TABLE,
+                ImmutableList.of(progressRow),
+                ColumnSelection.all(),
+                Long.MAX_VALUE);
+    }
+
+    private static boolean isCopied(@Nullable Value marker, RangeRequest subRange) {
+        // A marker of a sub-range with the same start but a different end says nothing about this one.
+        return marker != null && Arrays.equals(marker.getContents(), progressValue(subRange));
+    }
+
+    private static byte[] progressValue(RangeRequest subRange) {
+        return ArrayUtils.add(subRange.getEndExclusive(), 0, DONE);
+    }
+
+    private Cell progressCell(TableReference tableRef, RangeRequest subRange) {
+        // Table names never contain a zero byte, and the start rows of sub-ranges copied
+        // to the same destination are unique.
+        byte[] tableName = tableRef.getQualifiedName().getBytes(Charsets.UTF_8);
+        byte[] column = ArrayUtils.addAll(ArrayUtils.add(tableName, (byte) 0), subRange.getStartInclusive());
+        return Cell.create(progressRow, column);
+    }
+
+    private Callable<Void> copyTask(final KeyValueService destination,
+                                    final TableReference tableRef,
+                                    final RangeRequest subRange,
+                                    final Cell marker) {
+        return new Callable<Void>() {
+            @Override
+            public Void call() {
+                copy(destination, tableRef, subRange);
+                destination.put(PROGRESS_TABLE, ImmutableMap.of(marker, progressValue(subRange)), 0L);
+                return null;
+            }
+        };
+    }
+
+    private void copy(KeyValueService destination, TableReference tableRef, RangeRequest range) {
+        Multimap<Cell, Value> batch = ArrayListMultimap.create();
+        long batchBytes = 0;
+        try (ClosableIterator<RowResult<Set<Value>>> rows = source.getRangeWithHistory(tableRef, range, Long.MAX_VALUE)) {
+            while (rows.hasNext()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new PalantirInterruptedException("Backfill of " + tableRef + " was interrupted.");
+                }
+                RowResult<Set<Value>> row = rows.next();
+                for (Entry<Cell, Set<Value>> cell : row.getCells()) {
+                    for (Value value : cell.getValue()) {
+                        batch.put(cell.getKey(), value);
+                        batchBytes += cell.getKey().getRowName().length
+                                + cell.getKey().getColumnName().length
+                                + value.getContents().length;
+                    }
+                }
+                if (batch.size() >= MAX_BATCH_CELLS || batchBytes >= MAX_BATCH_BYTES) {
+                    flush(destination, tableRef, batch, batchBytes);
+                    batch = ArrayListMultimap.create();
+                    batchBytes = 0;
+                }
+            }
+        }
+        flush(destination, tableRef, batch, batchBytes);
+    }
+
+    private void flush(KeyValueService destination, TableReference tableRef, Multimap<Cell, Value> batch, long batchBytes) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (byteLimiter != null && batchBytes > 0) {
+            byteLimiter.acquire(Ints.saturatedCast(batchBytes));
+        }
+        destination.putWithTimestamps(tableRef, batch);
+    }
+
+    /**
+     * Splits the range into at most {@code numParts} consecutive ranges that together cover
+     * exactly the same rows.  The split points are spread evenly over the first
+     * {@value #SPLIT_PREFIX_BYTES} bytes of the row names, which is how the ring spreads
+     * rows too.
+     */
+    @VisibleForTesting
+    static List<RangeRequest> splitRange(RangeRequest range, int numParts) {
+        byte[] start = range.getStartInclusive();
+        byte[] end = range.getEndExclusive();
+        BigInteger low = toPosition(start);
+        BigInteger high = end.length == 0 ? BigInteger.ONE.shiftLeft(8 * SPLIT_PREFIX_BYTES) : toPosition(end);
+
+        List<RangeRequest> result = Lists.newArrayList();
+        byte[] previous = start;
+        for (int i = 1; i < numParts; i++) {
+            BigInteger position = low.add(high.subtract(low).multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(numParts)));
+            byte[] splitPoint = fromPosition(position);
+            if (compare(splitPoint, previous) > 0 && (end.length == 0 || compare(splitPoint, end) < 0)) {
+                result.add(range.getBuilder().startRowInclusive(previous).endRowExclusive(splitPoint).build());
+                previous = splitPoint;
+            }
+        }
+        result.add(range.getBuilder().startRowInclusive(previous).endRowExclusive(end).build());
+        return result;
+    }
+
+    private static BigInteger toPosition(byte[] row) {
+        return new BigInteger(1, Arrays.copyOf(row, SPLIT_PREFIX_BYTES));
+    }
+
+    private static byte[] fromPosition(BigInteger position) {
+        byte[] bytes = position.toByteArray();
+        byte[] padded = new byte[SPLIT_PREFIX_BYTES];
+        int length = Math.min(bytes.length, SPLIT_PREFIX_BYTES);
+        System.arraycopy(bytes, bytes.length - length, padded, SPLIT_PREFIX_BYTES - length, length);
+        // Trailing zeros do not change the order of split points, so keep them short.
+        int trimmed = SPLIT_PREFIX_BYTES;
+        while (trimmed > 1 && padded[trimmed - 1] == 0) {
+            trimmed--;
+        }
+        return Arrays.copyOf(padded, trimmed);
+    }
+
+    private static int compare(byte[] a, byte[] b) {
+        return UnsignedBytes.lexicographicalComparator().compare(a, b);
+    }
+}
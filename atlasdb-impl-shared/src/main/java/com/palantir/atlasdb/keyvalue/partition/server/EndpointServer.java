@@ -37,6 +37,7 @@ import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.keyvalue.api.Value;
 import com.palantir.atlasdb.keyvalue.partition.api.DynamicPartitionMap;
 import com.palantir.atlasdb.keyvalue.partition.map.InKvsPartitionMapService;
+import com.palantir.atlasdb.keyvalue.partition.map.PartitionBackfiller;
 import com.palantir.atlasdb.keyvalue.partition.map.PartitionMapService;
 import com.palantir.common.annotation.Idempotent;
 import com.palantir.common.annotation.NonIdempotent;
@@ -414,6 +415,7 @@ public class EndpointServer implements PartitionMapService, KeyValueService {
                 // TODO: Hack
                 Set<TableReference> ret = Sets.newHashSet(kvs().getAllTableNames());
                 ret.remove(InKvsPartitionMapService.PARTITION_MAP_TABLE);
+                ret.remove(PartitionBackfiller.PROGRESS_TABLE);
                 return ret;
             }
         });
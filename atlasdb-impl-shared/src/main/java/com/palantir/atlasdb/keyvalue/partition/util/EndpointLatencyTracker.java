@@ -0,0 +1,201 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.partition.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+
+/**
+ * Keeps track of how quickly each endpoint answers read requests so that reads can go to
+ * the fastest replicas first, and so that a hedged request can be sent to another replica
+ * when an endpoint takes longer than it usually does.
+ * <p>
+ * For every endpoint this keeps an exponentially weighted moving average of the latency
+ * together with a histogram of power-of-two microsecond buckets that is halved every
+ * {@link #DECAY_INTERVAL} samples, which is enough to estimate a high percentile cheaply.
+ * Only successful requests are recorded. Stats of an endpoint that has not answered for
+ * {@link #STALE_AFTER_NANOS} are considered unknown, so that an endpoint which was slow
+ * once is eventually tried again.
+ */
+@ThreadSafe
+public class EndpointLatencyTracker implements EndpointLatencyTrackerMBean {
+    private static final double EWMA_WEIGHT = 0.2;
+    private static final int NUM_BUCKETS = 40;
+    private static final int DECAY_INTERVAL = 1024;
+    private static final long STALE_AFTER_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    public static final double DEFAULT_HEDGE_PERCENTILE = 0.95;
+    public static final long DEFAULT_HEDGE_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final double hedgePercentile;
+    private final long defaultHedgeDelayNanos;
+    private final ConcurrentMap<KeyValueService, LatencyStats> statsByEndpoint = Maps.newConcurrentMap();
+    private final AtomicLong hedgedRequests = new AtomicLong();
+
+    public EndpointLatencyTracker() {
+        this(DEFAULT_HEDGE_PERCENTILE, DEFAULT_HEDGE_DELAY_NANOS);
+    }
+
+    /**
+     * @param hedgePercentile latency percentile of an endpoint after which a hedged request is sent
+     * @param defaultHedgeDelayNanos hedge delay for endpoints without recent stats
+     */
+    public EndpointLatencyTracker(double hedgePercentile, long defaultHedgeDelayNanos) {
+        Preconditions.checkArgument(hedgePercentile > 0 && hedgePercentile <= 1, "percentile must be in (0, 1]");
+        Preconditions.checkArgument(defaultHedgeDelayNanos >= 0);
+        this.hedgePercentile = hedgePercentile;
+        this.defaultHedgeDelayNanos = defaultHedgeDelayNanos;
+    }
+
+    public void recordLatency(KeyValueService endpoint, long latencyNanos) {
+        LatencyStats stats = statsByEndpoint.get(endpoint);
+        if (stats == null) {
+            LatencyStats newStats = new LatencyStats();
+            stats = statsByEndpoint.putIfAbsent(endpoint, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        stats.record(Math.max(0, latencyNanos), System.nanoTime());
+    }
+
+    public void recordHedgedRequests(int count) {
+        hedgedRequests.addAndGet(count);
+    }
+
+    /**
+     * @return the average latency of the endpoint, or 0 if it has no recent stats so that
+     *         unknown endpoints are preferred and get measured.
+     */
+    public double getExpectedLatencyNanos(KeyValueService endpoint) {
+        LatencyStats stats = statsByEndpoint.get(endpoint);
+        if (stats == null) {
+            return 0;
+        }
+        return stats.getAverage(System.nanoTime());
+    }
+
+    /**
+     * @return how long to wait for the endpoint before sending a hedged request elsewhere.
+     */
+    public long getHedgeDelayNanos(KeyValueService endpoint) {
+        LatencyStats stats = statsByEndpoint.get(endpoint);
+        if (stats == null) {
+            return defaultHedgeDelayNanos;
+        }
+        long delay = stats.getPercentile(hedgePercentile, System.nanoTime());
+        return delay < 0 ? defaultHedgeDelayNanos : delay;
+    }
+
+    @Override
+    public Map<String, Double> getAverageLatencyMillisByEndpoint() {
+        Map<String, Double> ret = Maps.newTreeMap();
+        for (Map.Entry<KeyValueService, LatencyStats> e : statsByEndpoint.entrySet()) {
+            ret.put(e.getKey().toString(), e.getValue().getAverage(System.nanoTime()) / 1e6);
+        }
+        return ret;
+    }
+
+    @Override
+    public Map<String, Double> getHedgeThresholdMillisByEndpoint() {
+        Map<String, Double> ret = Maps.newTreeMap();
+        for (KeyValueService endpoint : statsByEndpoint.keySet()) {
+            ret.put(endpoint.toString(), getHedgeDelayNanos(endpoint) / 1e6);
+        }
+        return ret;
+    }
+
+    @Override
+    public long getHedgedRequestCount() {
+        return hedgedRequests.get();
+    }
+
+    @Override
+    public void clearStats() {
+        statsByEndpoint.clear();
+        hedgedRequests.set(0);
+    }
+
+    private static class LatencyStats {
+        @GuardedBy("this") private double average;
+        @GuardedBy("this") private long lastSampleNanos;
+        @GuardedBy("this") private final long[] buckets = new long[NUM_BUCKETS];
+        @GuardedBy("this") private long count;
+        @GuardedBy("this") private int samplesSinceDecay;
+
+        synchronized void record(long latencyNanos, long now) {
+            average = count == 0 ? latencyNanos : average + EWMA_WEIGHT * (latencyNanos - average);
+            lastSampleNanos = now;
+            buckets[bucketFor(latencyNanos)]++;
+            count++;
+            if (++samplesSinceDecay == DECAY_INTERVAL) {
+                samplesSinceDecay = 0;
+                count = 0;
+                for (int i = 0; i < NUM_BUCKETS; i++) {
+                    buckets[i] >>= 1;
+                    count += buckets[i];
+                }
+            }
+        }
+
+        synchronized double getAverage(long now) {
+            return isStale(now) ? 0 : average;
+        }
+
+        /**
+         * @return the upper bound of the bucket the percentile falls into, or -1 if unknown
+         */
+        synchronized long getPercentile(double percentile, long now) {
+            if (isStale(now)) {
+                return -1;
+            }
+            long target = (long) Math.ceil(percentile * count);
+            long seen = 0;
+            for (int i = 0; i < NUM_BUCKETS; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0) {
+                    return TimeUnit.MICROSECONDS.toNanos(1L << i);
+                }
+            }
+            return -1;
+        }
+
+        @GuardedBy("this")
+        private boolean isStale(long now) {
+            return count == 0 || now - lastSampleNanos > STALE_AFTER_NANOS;
+        }
+
+        private static int bucketFor(long latencyNanos) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(latencyNanos);
+            return Math.min(NUM_BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros));
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "LatencyStats [average=" + average + ", buckets=" + Arrays.toString(buckets) + "]";
+        }
+    }
+}
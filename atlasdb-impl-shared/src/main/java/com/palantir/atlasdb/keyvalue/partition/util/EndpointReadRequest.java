@@ -0,0 +1,55 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.partition.util;
+
+import java.util.concurrent.Callable;
+
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+
+/**
+ * A read task for a single endpoint together with the units (rows or cells) whose quorum
+ * it counts towards.
+ */
+public final class EndpointReadRequest<FutureReturnType, TrackingUnit> {
+    private final KeyValueService endpoint;
+    private final Iterable<TrackingUnit> units;
+    private final Callable<FutureReturnType> task;
+
+    private EndpointReadRequest(KeyValueService endpoint,
+                                Iterable<TrackingUnit> units,
+                                Callable<FutureReturnType> task) {
+        this.endpoint = endpoint;
+        this.units = units;
+        this.task = task;
+    }
+
+    public static <FutureReturnType, TrackingUnit> EndpointReadRequest<FutureReturnType, TrackingUnit> of(
+            KeyValueService endpoint, Iterable<TrackingUnit> units, Callable<FutureReturnType> task) {
+        return new EndpointReadRequest<>(endpoint, units, task);
+    }
+
+    public KeyValueService getEndpoint() {
+        return endpoint;
+    }
+
+    public Iterable<TrackingUnit> getUnits() {
+        return units;
+    }
+
+    public Callable<FutureReturnType> getTask() {
+        return task;
+    }
+}
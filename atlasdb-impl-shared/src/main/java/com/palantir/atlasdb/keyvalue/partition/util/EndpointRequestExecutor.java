@@ -20,6 +20,7 @@ import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -52,6 +53,7 @@ import com.palantir.atlasdb.keyvalue.api.KeyValueService;
     public interface EndpointRequestCompletionService<FutureReturnType> {
         Future<FutureReturnType> submit(Callable<FutureReturnType> callable, KeyValueService kvs);
         Future<FutureReturnType> take() throws InterruptedException;
+        Future<FutureReturnType> poll(long timeout, TimeUnit unit) throws InterruptedException;
     }
 
     public static <FutureReturnType> EndpointRequestCompletionService<FutureReturnType> newService(final ExecutorService executor) {
@@ -106,6 +108,11 @@ import com.palantir.atlasdb.keyvalue.api.KeyValueService;
             public Future<FutureReturnType> take() throws InterruptedException {
                 return registerTaskCompleted(execSvc.take());
             }
+
+            @Override
+            public Future<FutureReturnType> poll(long timeout, TimeUnit unit) throws InterruptedException {
+                return registerTaskCompleted(execSvc.poll(timeout, unit));
+            }
         };
     }
 }
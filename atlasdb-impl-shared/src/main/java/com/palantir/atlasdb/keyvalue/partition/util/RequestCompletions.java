@@ -15,9 +15,16 @@
  */
 package com.palantir.atlasdb.keyvalue.partition.util;
 
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,9 +32,13 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.palantir.atlasdb.keyvalue.api.KeyAlreadyExistsException;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
 import com.palantir.atlasdb.keyvalue.partition.exception.ClientVersionTooOldException;
 import com.palantir.atlasdb.keyvalue.partition.exception.EndpointVersionTooOldException;
+import com.palantir.atlasdb.keyvalue.partition.quorum.QuorumParameters.QuorumRequestParameters;
 import com.palantir.atlasdb.keyvalue.partition.quorum.QuorumTracker;
 import com.palantir.atlasdb.keyvalue.partition.util.EndpointRequestExecutor.EndpointRequestCompletionService;
 import com.palantir.common.base.Throwables;
@@ -99,6 +110,188 @@ public class RequestCompletions {
         }
     }
 
+    /**
+     * Like {@link #completeReadRequest} but without asking every replica up front.
+     * <p>
+     * Requests go to the endpoints with the lowest expected latency first, and only as many
+     * as each unit needs to reach its success factor. If that does not conclude the request
+     * within the hedge threshold of the endpoints asked, one more replica is asked for each
+     * unit. As soon as any endpoint fails all the remaining replicas are asked.
+     *
+     * @param requests one read request per endpoint
+     * @param quorumRequestParameters
+     * @param executor
+     * @param latencyTracker
+     * @param mergeFunction
+     */
+    public static <TrackingUnit, FutureReturnType> void completeHedgedReadRequest(
+            List<EndpointReadRequest<FutureReturnType, TrackingUnit>> requests,
+            Map<TrackingUnit, QuorumRequestParameters> quorumRequestParameters,
+            ExecutorService executor,
+            EndpointLatencyTracker latencyTracker,
+            Function<FutureReturnType, Void> mergeFunction) {
+
+        final QuorumTracker<FutureReturnType, TrackingUnit> tracker = QuorumTracker.of(
+                quorumRequestParameters.keySet(), quorumRequestParameters);
+        final EndpointRequestCompletionService<FutureReturnType> execSvc = EndpointRequestExecutor.newService(executor);
+        final HedgedRequestScheduler<FutureReturnType, TrackingUnit> scheduler = new HedgedRequestScheduler<>(
+                requests, quorumRequestParameters, tracker, execSvc, latencyTracker);
+
+        try {
+            scheduler.launch(0);
+            long hedgeDeadline = System.nanoTime() + scheduler.getHedgeDelayNanos();
+            boolean hedged = false;
+            while (!tracker.finished()) {
+                Future<FutureReturnType> future;
+                if (hedged || !scheduler.hasPending()) {
+                    future = execSvc.take();
+                } else {
+                    future = execSvc.poll(hedgeDeadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (future == null) {
+                        // The endpoints are slower than they usually are, try one more replica.
+                        latencyTracker.recordHedgedRequests(scheduler.launch(1));
+                        hedged = true;
+                        continue;
+                    }
+                }
+                scheduler.completed();
+                try {
+                    FutureReturnType result = future.get();
+                    mergeFunction.apply(result);
+                    tracker.handleSuccess(future);
+                } catch (ExecutionException e) {
+                    tracker.handleFailure(future);
+                    Throwable cause = e.getCause();
+                    if (isNonInterceptableException(cause) || tracker.failed()) {
+                        Throwables.rewrapAndThrowUncheckedException(cause);
+                    }
+                    scheduler.launchAll();
+                }
+                if (!tracker.finished() && !scheduler.hasOutstanding()) {
+                    scheduler.launchAll();
+                }
+            }
+        } catch (InterruptedException e) {
+            throw Throwables.throwUncheckedException(e);
+        } finally {
+            tracker.cancel(true);
+        }
+    }
+
+    private static class HedgedRequestScheduler<FutureReturnType, TrackingUnit> {
+        private final List<EndpointReadRequest<FutureReturnType, TrackingUnit>> pending;
+        private final Map<TrackingUnit, QuorumRequestParameters> quorumRequestParameters;
+        private final QuorumTracker<FutureReturnType, TrackingUnit> tracker;
+        private final EndpointRequestCompletionService<FutureReturnType> execSvc;
+        private final EndpointLatencyTracker latencyTracker;
+        private final Map<TrackingUnit, Integer> launchedByUnit = Maps.newHashMap();
+        private int outstanding = 0;
+        private long hedgeDelayNanos = 0;
+
+        HedgedRequestScheduler(List<EndpointReadRequest<FutureReturnType, TrackingUnit>> requests,
+                               Map<TrackingUnit, QuorumRequestParameters> quorumRequestParameters,
+                               QuorumTracker<FutureReturnType, TrackingUnit> tracker,
+                               EndpointRequestCompletionService<FutureReturnType> execSvc,
+                               EndpointLatencyTracker latencyTracker) {
+            this.quorumRequestParameters = quorumRequestParameters;
+            this.tracker = tracker;
+            this.execSvc = execSvc;
+            this.latencyTracker = latencyTracker;
+            this.pending = fastestFirst(requests, latencyTracker);
+        }
+
+        private static <FutureReturnType, TrackingUnit> List<EndpointReadRequest<FutureReturnType, TrackingUnit>> fastestFirst(
+                List<EndpointReadRequest<FutureReturnType, TrackingUnit>> requests,
+                EndpointLatencyTracker latencyTracker) {
+            // Take a snapshot so that the order does not change while sorting.
+            final Map<KeyValueService, Double> expectedLatencies = Maps.newHashMap();
+            for (EndpointReadRequest<FutureReturnType, TrackingUnit> request : requests) {
+                expectedLatencies.put(request.getEndpoint(), latencyTracker.getExpectedLatencyNanos(request.getEndpoint()));
+            }
+            List<EndpointReadRequest<FutureReturnType, TrackingUnit>> sorted = Lists.newLinkedList(requests);
+            Collections.sort(sorted, new Comparator<EndpointReadRequest<FutureReturnType, TrackingUnit>>() {
+                @Override
+                public int compare(EndpointReadRequest<FutureReturnType, TrackingUnit> o1,
+                                   EndpointReadRequest<FutureReturnType, TrackingUnit> o2) {
+                    return Double.compare(expectedLatencies.get(o1.getEndpoint()), expectedLatencies.get(o2.getEndpoint()));
+                }
+            });
+            return sorted;
+        }
+
+        /**
+         * Launches the pending requests needed for every unit to have been asked to
+         * successFactor + extraRequestsPerUnit endpoints.
+         *
+         * @return the number of requests launched
+         */
+        int launch(int extraRequestsPerUnit) {
+            int launched = 0;
+            for (Iterator<EndpointReadRequest<FutureReturnType, TrackingUnit>> it = pending.iterator(); it.hasNext(); ) {
+                EndpointReadRequest<FutureReturnType, TrackingUnit> request = it.next();
+                if (isNeeded(request, extraRequestsPerUnit)) {
+                    it.remove();
+                    submit(request);
+                    launched++;
+                }
+            }
+            return launched;
+        }
+
+        void launchAll() {
+            for (EndpointReadRequest<FutureReturnType, TrackingUnit> request : pending) {
+                submit(request);
+            }
+            pending.clear();
+        }
+
+        void completed() {
+            outstanding--;
+        }
+
+        boolean hasPending() {
+            return !pending.isEmpty();
+        }
+
+        boolean hasOutstanding() {
+            return outstanding > 0;
+        }
+
+        long getHedgeDelayNanos() {
+            return hedgeDelayNanos;
+        }
+
+        private boolean isNeeded(EndpointReadRequest<FutureReturnType, TrackingUnit> request, int extraRequestsPerUnit) {
+            for (TrackingUnit unit : request.getUnits()) {
+                Integer launched = launchedByUnit.get(unit);
+                int wanted = quorumRequestParameters.get(unit).getSuccessFactor() + extraRequestsPerUnit;
+                if ((launched == null ? 0 : launched) < wanted) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void submit(final EndpointReadRequest<FutureReturnType, TrackingUnit> request) {
+            Future<FutureReturnType> future = execSvc.submit(new Callable<FutureReturnType>() {
+                @Override
+                public FutureReturnType call() throws Exception {
+                    long start = System.nanoTime();
+                    FutureReturnType result = request.getTask().call();
+                    latencyTracker.recordLatency(request.getEndpoint(), System.nanoTime() - start);
+                    return result;
+                }
+            }, request.getEndpoint());
+            tracker.registerRef(future, request.getUnits());
+            for (TrackingUnit unit : request.getUnits()) {
+                Integer launched = launchedByUnit.get(unit);
+                launchedByUnit.put(unit, launched == null ? 1 : launched + 1);
+            }
+            outstanding++;
+            hedgeDelayNanos = Math.max(hedgeDelayNanos, latencyTracker.getHedgeDelayNanos(request.getEndpoint()));
+        }
+    }
+
     /**
      * In case of write requests we should only cancel all the threads if a failure can be
      * concluded.
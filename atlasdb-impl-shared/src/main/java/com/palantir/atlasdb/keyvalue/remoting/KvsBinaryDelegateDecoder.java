@@ -0,0 +1,61 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.remoting;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.Collection;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import com.google.common.collect.Iterables;
+import com.palantir.atlasdb.keyvalue.api.KeyValueServiceMediaTypes;
+import com.palantir.atlasdb.keyvalue.remoting.serialization.KvsBinaryCodec;
+
+import feign.FeignException;
+import feign.codec.DecodeException;
+import feign.codec.Decoder;
+
+final class KvsBinaryDelegateDecoder implements Decoder {
+    private final Decoder delegate;
+    private final KvsBinaryDelegateEncoder encoder;
+
+    /**
+     * @param encoder told when the server first answers in binary, so that it can start sending
+     *        binary request bodies too
+     */
+    public KvsBinaryDelegateDecoder(Decoder delegate, KvsBinaryDelegateEncoder encoder) {
+        this.delegate = delegate;
+        this.encoder = encoder;
+    }
+
+    @Override
+    public Object decode(feign.Response response, Type type) throws IOException,
+            DecodeException, FeignException {
+        Collection<String> contentTypes = response.headers().get(HttpHeaders.CONTENT_TYPE);
+        if (contentTypes != null
+                && contentTypes.size() == 1
+                && Iterables.getOnlyElement(contentTypes).startsWith(KeyValueServiceMediaTypes.APPLICATION_ATLASDB_KVS)
+                && response.body() != null) {
+            encoder.serverProducedBinary();
+            try (InputStream in = response.body().asInputStream()) {
+                return KvsBinaryCodec.read(type, in);
+            }
+        }
+        return delegate.decode(response, type);
+    }
+}
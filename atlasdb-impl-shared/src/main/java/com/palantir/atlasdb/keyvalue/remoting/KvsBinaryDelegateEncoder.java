@@ -0,0 +1,66 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.remoting;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import javax.ws.rs.core.HttpHeaders;
+
+import com.palantir.atlasdb.keyvalue.api.KeyValueServiceMediaTypes;
+import com.palantir.atlasdb.keyvalue.remoting.serialization.KvsBinaryCodec;
+
+import feign.RequestTemplate;
+import feign.codec.EncodeException;
+import feign.codec.Encoder;
+
+/**
+ * Asks for binary kvs responses, and once the server has answered with one also sends the bulk
+ * request bodies in the binary encoding.  Servers that do not know the encoding keep getting
+ * json bodies and still answer in json, since that is also accepted.
+ */
+final class KvsBinaryDelegateEncoder implements Encoder {
+    static final String ACCEPT = KeyValueServiceMediaTypes.APPLICATION_ATLASDB_KVS + ", application/json;q=0.9";
+
+    private final Encoder delegate;
+    private volatile boolean serverSupportsBinary = false;
+
+    public KvsBinaryDelegateEncoder(Encoder delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void encode(Object object, Type bodyType, RequestTemplate template) throws EncodeException {
+        template.header(HttpHeaders.ACCEPT, ACCEPT);
+        if (!serverSupportsBinary || !KvsBinaryCodec.canEncode(bodyType)) {
+            delegate.encode(object, bodyType, template);
+            return;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            KvsBinaryCodec.write(object, bodyType, out);
+        } catch (IOException e) {
+            throw new EncodeException(e.getMessage(), e);
+        }
+        template.header(HttpHeaders.CONTENT_TYPE, KeyValueServiceMediaTypes.APPLICATION_ATLASDB_KVS);
+        template.body(out.toByteArray(), null);
+    }
+
+    void serverProducedBinary() {
+        serverSupportsBinary = true;
+    }
+}
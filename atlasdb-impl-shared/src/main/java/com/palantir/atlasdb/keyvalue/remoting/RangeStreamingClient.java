@@ -0,0 +1,44 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.remoting;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+
+import com.palantir.atlasdb.keyvalue.api.KeyValueServiceMediaTypes;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+
+import feign.Response;
+
+/**
+ * Feign view of {@link RangeStreamingResource}.  It returns the raw response so that the body
+ * is handed over unread instead of being buffered and decoded.
+ */
+@Path("/range-stream")
+public interface RangeStreamingClient {
+    @POST
+    @Path("get-range")
+    @Produces(KeyValueServiceMediaTypes.APPLICATION_ATLASDB_KVS_STREAM)
+    @Consumes(MediaType.APPLICATION_JSON)
+    Response getRange(@QueryParam("tableRef") TableReference tableRef,
+                      RangeRequest rangeRequest,
+                      @QueryParam("timestamp") long timestamp);
+}
@@ -0,0 +1,92 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.remoting;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterators;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.KeyValueServiceMediaTypes;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.atlasdb.keyvalue.remoting.serialization.RangeStreamCodec;
+import com.palantir.common.base.ClosableIterator;
+
+/**
+ * Serves a whole getRange as one chunked response.  Pages are written back to back, so
+ * the server only stops when the client stops reading and the socket buffers fill up.
+ * Register it next to the kvs resource with {@link RemotingKeyValueService#createRangeStreamingResource}.
+ */
+@Path("/range-stream")
+public class RangeStreamingResource {
+    private static final Logger log = LoggerFactory.getLogger(RangeStreamingResource.class);
+    static final int DEFAULT_PAGE_SIZE = 100;
+
+    private final KeyValueService delegate;
+
+    RangeStreamingResource(KeyValueService delegate) {
+        this.delegate = delegate;
+    }
+
+    @POST
+    @Path("get-range")
+    @Produces(KeyValueServiceMediaTypes.APPLICATION_ATLASDB_KVS_STREAM)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public StreamingOutput getRange(@QueryParam("tableRef") final TableReference tableRef,
+                                    final RangeRequest rangeRequest,
+                                    @QueryParam("timestamp") final long timestamp) {
+        // Open the range before the response is committed so that version and argument
+        // errors still come back as error statuses.
+        final ClosableIterator<RowResult<Value>> range = delegate.getRange(tableRef, rangeRequest, timestamp);
+        final int pageSize = rangeRequest.getBatchHint() != null ? rangeRequest.getBatchHint() : DEFAULT_PAGE_SIZE;
+        return new StreamingOutput() {
+            @Override
+            public void write(OutputStream output) throws IOException {
+                DataOutputStream out = new DataOutputStream(output);
+                try {
+                    RangeStreamCodec.writeHeader(out);
+                    while (range.hasNext()) {
+                        RangeStreamCodec.writeRows(out, ImmutableList.copyOf(Iterators.limit(range, pageSize)));
+                        out.flush();
+                    }
+                    RangeStreamCodec.writeEnd(out);
+                } catch (RuntimeException e) {
+                    log.warn("Failed streaming range of {}", tableRef, e);
+                    RangeStreamCodec.writeError(out, String.valueOf(e.getMessage()));
+                } finally {
+                    range.close();
+                }
+                out.flush();
+            }
+        };
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.palantir.atlasdb.keyvalue.remoting;
 
+import java.io.IOException;
 import java.util.Set;
 
 import javax.annotation.Nullable;
@@ -39,6 +40,7 @@ import com.palantir.atlasdb.keyvalue.impl.ForwardingKeyValueService;
 import com.palantir.atlasdb.keyvalue.partition.map.DynamicPartitionMapImpl;
 import com.palantir.atlasdb.keyvalue.remoting.iterators.HistoryRangeIterator;
 import com.palantir.atlasdb.keyvalue.remoting.iterators.RangeIterator;
+import com.palantir.atlasdb.keyvalue.remoting.iterators.StreamingRangeIterator;
 import com.palantir.atlasdb.keyvalue.remoting.iterators.TimestampsRangeIterator;
 import com.palantir.atlasdb.keyvalue.remoting.iterators.ValueRangeIterator;
 import com.palantir.atlasdb.keyvalue.remoting.outofband.OutboxShippingInterceptor;
@@ -49,6 +51,7 @@ import com.palantir.atlasdb.keyvalue.remoting.serialization.RowResultDeserialize
 import com.palantir.atlasdb.keyvalue.remoting.serialization.RowResultSerializer;
 import com.palantir.atlasdb.keyvalue.remoting.serialization.SaneAsKeySerializer;
 import com.palantir.common.base.ClosableIterator;
+import com.palantir.common.base.Throwables;
 import com.palantir.common.supplier.ExecutorInheritableServiceContext;
 import com.palantir.common.supplier.PopulateServiceContextProxy;
 import com.palantir.common.supplier.RemoteContextHolder;
@@ -63,6 +66,7 @@ import feign.jaxrs.JAXRSContract;
 
 public class RemotingKeyValueService extends ForwardingKeyValueService {
     private static final Logger log = LoggerFactory.getLogger(RemotingKeyValueService.class);
+    private static final int RANGE_STREAM_CREDITS = 4;
     private final static ServiceContext<KeyValueService> serviceContext = ExecutorInheritableServiceContext.create();
 
     private final KeyValueService delegate;
@@ -74,12 +78,17 @@ public class RemotingKeyValueService extends ForwardingKeyValueService {
     /**
      * This is to inject the local KVS instance reference into the context.
      * It is used by the range iterators to download additional pages of data.
+     * getRange is streamed instead of paged if the server has a {@link RangeStreamingResource}.
      *
      * @param remoteService
+     * @param rangeStreamingClient
      * @return
      */
-    private static KeyValueService createClientSideInternal(final KeyValueService remoteService) {
+    private static KeyValueService createClientSideInternal(final KeyValueService remoteService,
+                                                            final RangeStreamingClient rangeStreamingClient) {
         return new ForwardingKeyValueService() {
+            private volatile boolean rangeStreaming = true;
+
             @Override
             protected KeyValueService delegate() {
                 return remoteService;
@@ -95,6 +104,26 @@ public class RemotingKeyValueService extends ForwardingKeyValueService {
             public ClosableIterator<RowResult<Value>> getRange(TableReference tableRef,
                                                                RangeRequest rangeRequest,
                                                                long timestamp) {
+                if (rangeStreaming) {
+                    // Feign hands back raw responses without looking at the status.
+                    feign.Response response = rangeStreamingClient.getRange(tableRef, rangeRequest, timestamp);
+                    if (response.status() == 404) {
+                        response.close();
+                        log.info("Remote key value service does not stream ranges, falling back to paged ranges.");
+                        rangeStreaming = false;
+                    } else if (response.status() / 100 != 2) {
+                        Exception e = KeyValueServiceErrorDecoder.instance().decode("RangeStreamingClient#getRange", response);
+                        response.close();
+                        throw Throwables.throwUncheckedException(e);
+                    } else {
+                        try {
+                            return new StreamingRangeIterator(response.body().asInputStream(), RANGE_STREAM_CREDITS);
+                        } catch (IOException e) {
+                            response.close();
+                            throw Throwables.rewrapAndThrowUncheckedException(e);
+                        }
+                    }
+                }
                 return withKvs(super.getRange(tableRef, rangeRequest, timestamp));
             }
 
@@ -144,17 +173,27 @@ public class RemotingKeyValueService extends ForwardingKeyValueService {
     public static KeyValueService createClientSide(String uri, Supplier<Long> localVersionSupplier) {
         ServiceContext<Long> outboxVersionCtx = RemoteContextHolder.OUTBOX.getProviderForKey(LONG_HOLDER.PM_VERSION);
 
+        KvsBinaryDelegateEncoder binaryEncoder = new KvsBinaryDelegateEncoder(new JacksonEncoder(kvsMapper()));
         KeyValueService remotingKvs = Feign.builder()
-                .encoder(new OctetStreamDelegateEncoder(new JacksonEncoder(kvsMapper())))
-                .decoder(new OctetStreamDelegateDecoder(new JacksonDecoder(kvsMapper())))
+                .encoder(new OctetStreamDelegateEncoder(binaryEncoder))
+                .decoder(new OctetStreamDelegateDecoder(new KvsBinaryDelegateDecoder(new JacksonDecoder(kvsMapper()), binaryEncoder)))
                 .errorDecoder(KeyValueServiceErrorDecoder.instance())
                 .contract(new JAXRSContract())
                 .requestInterceptor(new OutboxShippingInterceptor(kvsMapper()))
                 .target(KeyValueService.class, uri);
+        RangeStreamingClient rangeStreamingClient = Feign.builder()
+                .encoder(new JacksonEncoder(kvsMapper()))
+                .errorDecoder(KeyValueServiceErrorDecoder.instance())
+                .contract(new JAXRSContract())
+                .requestInterceptor(new OutboxShippingInterceptor(kvsMapper()))
+                .target(RangeStreamingClient.class, uri);
 
         KeyValueService versionSettingRemotingKvs = PopulateServiceContextProxy.newProxyInstance(
                 KeyValueService.class, remotingKvs, localVersionSupplier, outboxVersionCtx);
-        KeyValueService pagingIteratorsVersionSettingRemotingKvs = createClientSideInternal(versionSettingRemotingKvs);
+        RangeStreamingClient versionSettingRangeStreamingClient = PopulateServiceContextProxy.newProxyInstance(
+                RangeStreamingClient.class, rangeStreamingClient, localVersionSupplier, outboxVersionCtx);
+        KeyValueService pagingIteratorsVersionSettingRemotingKvs = createClientSideInternal(
+                versionSettingRemotingKvs, versionSettingRangeStreamingClient);
 
         return pagingIteratorsVersionSettingRemotingKvs;
     }
@@ -171,6 +210,18 @@ public class RemotingKeyValueService extends ForwardingKeyValueService {
         return new RemotingKeyValueService(versionCheckingKvs);
     }
 
+    /**
+     * Creates the resource that streams getRange responses for a kvs created with
+     * {@link #createServerSide}. Register it next to that kvs; clients fall back to
+     * paged ranges against servers that do not have it.
+     */
+    public static RangeStreamingResource createRangeStreamingResource(KeyValueService serverSideKvs) {
+        if (serverSideKvs instanceof RemotingKeyValueService) {
+            return new RangeStreamingResource(((RemotingKeyValueService) serverSideKvs).delegate());
+        }
+        return new RangeStreamingResource(serverSideKvs);
+    }
+
     private RemotingKeyValueService(KeyValueService service) {
         this.delegate = service;
     }
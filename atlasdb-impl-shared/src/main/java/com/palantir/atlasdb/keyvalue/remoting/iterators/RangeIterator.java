@@ -85,6 +85,32 @@ public abstract class RangeIterator<T> implements ClosableIterator<RowResult<T>>
         }
     }
 
+    // Accessors for the binary codec. These deliberately are not bean getters so that they do not
+    // show up in the JSON form of the iterator.
+
+    public TableReference tableRef() {
+        return tableRef;
+    }
+
+    public RangeRequest rangeRequest() {
+        return range;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public boolean hasMorePages() {
+        return hasNext;
+    }
+
+    /**
+     * @return the rows of the current page that have not been returned by {@link #next()} yet
+     */
+    public ImmutableList<RowResult<T>> remainingPage() {
+        return page.subList(position, page.size());
+    }
+
     protected abstract ClosableIterator<RowResult<T>> getMoreRows(KeyValueService kvs, TableReference tableRef, RangeRequest newRange, long timestamp);
 
     private void swapWithNewRows(RangeIterator<T> other) {
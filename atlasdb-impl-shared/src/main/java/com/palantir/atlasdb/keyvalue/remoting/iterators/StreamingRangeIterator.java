@@ -0,0 +1,173 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.remoting.iterators;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.atlasdb.keyvalue.remoting.serialization.RangeStreamCodec;
+import com.palantir.common.base.ClosableIterator;
+import com.palantir.common.base.Throwables;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
+
+/**
+ * Client side of a streamed getRange.  A reader thread decodes pages off the response body
+ * while the caller consumes earlier ones.  The reader holds one credit per page it may buffer;
+ * once they are all used up it stops reading, which in turn stops the server through the
+ * transport's flow control until the caller catches up.
+ */
+public class StreamingRangeIterator implements ClosableIterator<RowResult<Value>> {
+    private static final Logger log = LoggerFactory.getLogger(StreamingRangeIterator.class);
+    private static final ExecutorService readerExecutor = PTExecutors.newCachedThreadPool(
+            new NamedThreadFactory("Remote range stream reader", true /* isDaemon */));
+    private static final Object END_OF_STREAM = new Object();
+
+    private final InputStream body;
+    private final BlockingQueue<Object> frames;
+    private volatile boolean closed = false;
+
+    private Iterator<RowResult<Value>> page = Collections.emptyIterator();
+    private boolean done = false;
+
+    /**
+     * @param body the response body, which this iterator closes
+     * @param credits how many decoded pages may be buffered ahead of the caller
+     */
+    public StreamingRangeIterator(InputStream body, int credits) {
+        Preconditions.checkArgument(credits > 0, "credits must be positive");
+        this.body = body;
+        this.frames = new ArrayBlockingQueue<Object>(credits);
+        readerExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                readFrames();
+            }
+        });
+    }
+
+    private void readFrames() {
+        try {
+            DataInputStream in = new DataInputStream(body);
+            RangeStreamCodec.readHeader(in);
+            while (!closed) {
+                ImmutableList<RowResult<Value>> rows = RangeStreamCodec.readFrame(in);
+                if (rows == null) {
+                    enqueue(END_OF_STREAM);
+                    return;
+                }
+                if (!rows.isEmpty()) {
+                    enqueue(rows);
+                }
+            }
+        } catch (Throwable t) {
+            if (!closed) {
+                enqueue(t);
+            }
+        } finally {
+            closeBody();
+        }
+    }
+
+    /**
+     * Waits for a free credit.  Gives up once the iterator is closed, since nobody will take
+     * the frame anymore.
+     */
+    private void enqueue(Object frame) {
+        try {
+            while (!closed) {
+                if (frames.offer(frame, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        while (!page.hasNext() && !done) {
+            Object frame;
+            try {
+                frame = frames.take();
+            } catch (InterruptedException e) {
+                throw Throwables.throwUncheckedException(e);
+            }
+            if (frame == END_OF_STREAM) {
+                done = true;
+            } else if (frame instanceof Throwable) {
+                done = true;
+                throw Throwables.rewrapAndThrowUncheckedException((Throwable) frame);
+            } else {
+                @SuppressWarnings("unchecked")
+                ImmutableList<RowResult<Value>> rows = (ImmutableList<RowResult<Value>>) frame;
+                page = rows.iterator();
+            }
+        }
+        return page.hasNext();
+    }
+
+    @Override
+    public RowResult<Value> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // Unblocks the reader if it is waiting on the server.
+        closeBody();
+        frames.clear();
+    }
+
+    private void closeBody() {
+        try {
+            body.close();
+        } catch (IOException e) {
+            log.debug("Failed to close range stream", e);
+        }
+    }
+}
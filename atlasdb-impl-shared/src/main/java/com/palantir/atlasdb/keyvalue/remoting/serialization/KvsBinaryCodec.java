@@ -0,0 +1,390 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.remoting.serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.UnsignedBytes;
+import com.google.common.reflect.TypeToken;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.atlasdb.keyvalue.remoting.RemotingKeyValueService;
+import com.palantir.atlasdb.keyvalue.remoting.iterators.RangeIterator;
+import com.palantir.atlasdb.keyvalue.remoting.iterators.ValueRangeIterator;
+import com.palantir.common.base.ClosableIterator;
+
+/**
+ * Binary encoding of the bulk request and response bodies of a remote key value service
+ * ({@link com.palantir.atlasdb.keyvalue.api.KeyValueServiceMediaTypes#APPLICATION_ATLASDB_KVS}).
+ * <p>
+ * JSON sends every row and column name as a base64 string, repeats the row name for every
+ * cell and spends more time in the parser than the key value service spends on the request.
+ * Here every message is a version byte and a format tag followed by length prefixed byte
+ * arrays.  Lengths and counts are unsigned varints and timestamps are 8 byte longs.  A cell
+ * whose row is the same as the previous cell's row sends a row length of zero instead of the
+ * row again, so the rows of a page or of a row-ordered map are only sent once.
+ */
+public final class KvsBinaryCodec {
+    private static final byte VERSION = 1;
+
+    private KvsBinaryCodec() {
+        // static
+    }
+
+    @SuppressWarnings("serial")
+    enum Format {
+        CELL_VALUES(new TypeToken<Map<Cell, Value>>() {}) {
+            @Override
+            void write(Object body, DataOutputStream out) throws IOException {
+                @SuppressWarnings("unchecked")
+                Map<Cell, Value> values = (Map<Cell, Value>) body;
+                writeVarInt(out, values.size());
+                CellWriter cells = new CellWriter(out);
+                for (Map.Entry<Cell, Value> e : values.entrySet()) {
+                    cells.write(e.getKey());
+                    writeValue(out, e.getValue());
+                }
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                int size = readVarInt(in);
+                Map<Cell, Value> values = Maps.newHashMapWithExpectedSize(size);
+                CellReader cells = new CellReader(in);
+                for (int i = 0; i < size; i++) {
+                    values.put(cells.read(), readValue(in));
+                }
+                return values;
+            }
+        },
+        CELL_TIMESTAMPS(new TypeToken<Map<Cell, Long>>() {}) {
+            @Override
+            void write(Object body, DataOutputStream out) throws IOException {
+                @SuppressWarnings("unchecked")
+                Map<Cell, Long> timestamps = (Map<Cell, Long>) body;
+                writeVarInt(out, timestamps.size());
+                CellWriter cells = new CellWriter(out);
+                for (Map.Entry<Cell, Long> e : timestamps.entrySet()) {
+                    cells.write(e.getKey());
+                    out.writeLong(e.getValue());
+                }
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                int size = readVarInt(in);
+                Map<Cell, Long> timestamps = Maps.newHashMapWithExpectedSize(size);
+                CellReader cells = new CellReader(in);
+                for (int i = 0; i < size; i++) {
+                    timestamps.put(cells.read(), in.readLong());
+                }
+                return timestamps;
+            }
+        },
+        ROWS(new TypeToken<Iterable<byte[]>>() {}) {
+            @Override
+            void write(Object body, DataOutputStream out) throws IOException {
+                @SuppressWarnings("unchecked")
+                Iterable<byte[]> rows = (Iterable<byte[]>) body;
+                writeVarInt(out, Iterables.size(rows));
+                for (byte[] row : rows) {
+                    writeBytes(out, row);
+                }
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                int size = readVarInt(in);
+                List<byte[]> rows = Lists.newArrayListWithCapacity(size);
+                for (int i = 0; i < size; i++) {
+                    rows.add(readBytes(in));
+                }
+                return rows;
+            }
+        },
+        VALUES_BY_TABLE(new TypeToken<Map<TableReference, ? extends Map<Cell, byte[]>>>() {}) {
+            @Override
+            void write(Object body, DataOutputStream out) throws IOException {
+                @SuppressWarnings("unchecked")
+                Map<TableReference, ? extends Map<Cell, byte[]>> valuesByTable =
+                        (Map<TableReference, ? extends Map<Cell, byte[]>>) body;
+                writeVarInt(out, valuesByTable.size());
+                for (Map.Entry<TableReference, ? extends Map<Cell, byte[]>> e : valuesByTable.entrySet()) {
+                    writeTableRef(out, e.getKey());
+                    writeVarInt(out, e.getValue().size());
+                    CellWriter cells = new CellWriter(out);
+                    for (Map.Entry<Cell, byte[]> cell : e.getValue().entrySet()) {
+                        cells.write(cell.getKey());
+                        writeBytes(out, cell.getValue());
+                    }
+                }
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                int numTables = readVarInt(in);
+                Map<TableReference, Map<Cell, byte[]>> valuesByTable = Maps.newHashMapWithExpectedSize(numTables);
+                for (int i = 0; i < numTables; i++) {
+                    TableReference tableRef = readTableRef(in);
+                    int size = readVarInt(in);
+                    Map<Cell, byte[]> values = Maps.newHashMapWithExpectedSize(size);
+                    CellReader cells = new CellReader(in);
+                    for (int j = 0; j < size; j++) {
+                        values.put(cells.read(), readBytes(in));
+                    }
+                    valuesByTable.put(tableRef, values);
+                }
+                return valuesByTable;
+            }
+        },
+        VALUE_PAGE(new TypeToken<ClosableIterator<RowResult<Value>>>() {}) {
+            @Override
+            boolean matches(Type type) {
+                return super.matches(type)
+                        || TypeToken.of(type).equals(new TypeToken<RangeIterator<Value>>() {})
+                        || ValueRangeIterator.class.isAssignableFrom(TypeToken.of(type).getRawType());
+            }
+
+            @Override
+            void write(Object body, DataOutputStream out) throws IOException {
+                if (!(body instanceof RangeIterator)) {
+                    throw new IllegalArgumentException(
+                            "The server-side kvs must be wrapped with RemotingKeyValueService.createServerSide()");
+                }
+                @SuppressWarnings("unchecked")
+                RangeIterator<Value> it = (RangeIterator<Value>) body;
+                writeTableRef(out, it.tableRef());
+                // Range requests are small and only sent once per page, so they stay in json.
+                writeBytes(out, RemotingKeyValueService.kvsMapper().writeValueAsBytes(it.rangeRequest()));
+                out.writeLong(it.timestamp());
+                out.writeBoolean(it.hasMorePages());
+                writeValueRows(out, it.remainingPage());
+            }
+
+            @Override
+            Object read(DataInputStream in) throws IOException {
+                TableReference tableRef = readTableRef(in);
+                RangeRequest range = RemotingKeyValueService.kvsMapper().readValue(readBytes(in), RangeRequest.class);
+                long timestamp = in.readLong();
+                boolean hasNext = in.readBoolean();
+                return new ValueRangeIterator(tableRef, range, timestamp, hasNext, readValueRows(in));
+            }
+        };
+
+        private final TypeToken<?> type;
+
+        private Format(TypeToken<?> type) {
+            this.type = type;
+        }
+
+        boolean matches(Type other) {
+            return type.equals(TypeToken.of(other));
+        }
+
+        abstract void write(Object body, DataOutputStream out) throws IOException;
+
+        abstract Object read(DataInputStream in) throws IOException;
+
+        static Format forType(Type type) {
+            for (Format format : values()) {
+                if (format.matches(type)) {
+                    return format;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @return whether bodies of the given (generic) type have a binary encoding
+     */
+    public static boolean canEncode(Type type) {
+        return Format.forType(type) != null;
+    }
+
+    public static void write(Object body, Type type, OutputStream out) throws IOException {
+        Format format = getFormat(type);
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeByte(VERSION);
+        dataOut.writeByte(format.ordinal());
+        format.write(body, dataOut);
+        dataOut.flush();
+    }
+
+    public static Object read(Type type, InputStream in) throws IOException {
+        Format format = getFormat(type);
+        DataInputStream dataIn = new DataInputStream(in);
+        byte version = dataIn.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported kvs binary encoding version " + version);
+        }
+        byte tag = dataIn.readByte();
+        if (tag != format.ordinal()) {
+            throw new IOException("Expected a " + format + " body but got format " + tag);
+        }
+        return format.read(dataIn);
+    }
+
+    private static Format getFormat(Type type) {
+        Format format = Format.forType(type);
+        if (format == null) {
+            throw new IllegalArgumentException("No binary encoding for " + type);
+        }
+        return format;
+    }
+
+    /**
+     * Writes cells, sending each row only when it differs from the previous cell's row.
+     */
+    private static final class CellWriter {
+        private final DataOutputStream out;
+        private byte[] lastRow = null;
+
+        CellWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void write(Cell cell) throws IOException {
+            byte[] row = cell.getRowName();
+            if (lastRow != null && Arrays.equals(lastRow, row)) {
+                writeVarInt(out, 0);
+            } else {
+                // Rows are never empty, so a zero length is free to mean "same row".
+                writeBytes(out, row);
+                lastRow = row;
+            }
+            writeBytes(out, cell.getColumnName());
+        }
+    }
+
+    private static final class CellReader {
+        private final DataInputStream in;
+        private byte[] lastRow = null;
+
+        CellReader(DataInputStream in) {
+            this.in = in;
+        }
+
+        Cell read() throws IOException {
+            byte[] row = readBytes(in);
+            if (row.length == 0) {
+                if (lastRow == null) {
+                    throw new IOException("First cell of a message has no row");
+                }
+                row = lastRow;
+            } else {
+                lastRow = row;
+            }
+            return Cell.create(row, readBytes(in));
+        }
+    }
+
+    static void writeValueRows(DataOutputStream out, List<RowResult<Value>> rows) throws IOException {
+        writeVarInt(out, rows.size());
+        for (RowResult<Value> row : rows) {
+            writeBytes(out, row.getRowName());
+            writeVarInt(out, row.getColumns().size());
+            for (Map.Entry<byte[], Value> col : row.getColumns().entrySet()) {
+                writeBytes(out, col.getKey());
+                writeValue(out, col.getValue());
+            }
+        }
+    }
+
+    static ImmutableList<RowResult<Value>> readValueRows(DataInputStream in) throws IOException {
+        int numRows = readVarInt(in);
+        ImmutableList.Builder<RowResult<Value>> rows = ImmutableList.builder();
+        for (int i = 0; i < numRows; i++) {
+            byte[] row = readBytes(in);
+            int numCols = readVarInt(in);
+            SortedMap<byte[], Value> columns = Maps.newTreeMap(UnsignedBytes.lexicographicalComparator());
+            for (int j = 0; j < numCols; j++) {
+                columns.put(readBytes(in), readValue(in));
+            }
+            rows.add(RowResult.create(row, columns));
+        }
+        return rows.build();
+    }
+
+    private static void writeValue(DataOutputStream out, Value value) throws IOException {
+        out.writeLong(value.getTimestamp());
+        writeBytes(out, value.getContents());
+    }
+
+    private static Value readValue(DataInputStream in) throws IOException {
+        long timestamp = in.readLong();
+        return Value.create(readBytes(in), timestamp);
+    }
+
+    private static void writeTableRef(DataOutputStream out, TableReference tableRef) throws IOException {
+        out.writeUTF(tableRef.getQualifiedName());
+    }
+
+    private static TableReference readTableRef(DataInputStream in) throws IOException {
+        return TableReference.createUnsafe(in.readUTF());
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.remoting.serialization;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import com.google.common.collect.ImmutableList;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.Value;
+
+/**
+ * Frames of a streamed getRange response
+ * ({@link com.palantir.atlasdb.keyvalue.api.KeyValueServiceMediaTypes#APPLICATION_ATLASDB_KVS_STREAM}).
+ * <p>
+ * The body is a version byte followed by frames.  Every frame starts with a type byte: a
+ * rows frame holds one page in the {@link KvsBinaryCodec} row encoding, an end frame closes
+ * the stream, and an error frame carries the message of a failure the server hit after it
+ * had already sent the response status.
+ */
+public final class RangeStreamCodec {
+    private static final byte VERSION = 1;
+    private static final byte END = 0;
+    private static final byte ROWS = 1;
+    private static final byte ERROR = 2;
+
+    private RangeStreamCodec() {
+        // static
+    }
+
+    public static void writeHeader(DataOutputStream out) throws IOException {
+        out.writeByte(VERSION);
+    }
+
+    public static void readHeader(DataInputStream in) throws IOException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported range stream version " + version);
+        }
+    }
+
+    public static void writeRows(DataOutputStream out, List<RowResult<Value>> rows) throws IOException {
+        out.writeByte(ROWS);
+        KvsBinaryCodec.writeValueRows(out, rows);
+    }
+
+    public static void writeEnd(DataOutputStream out) throws IOException {
+        out.writeByte(END);
+    }
+
+    public static void writeError(DataOutputStream out, String message) throws IOException {
+        out.writeByte(ERROR);
+        out.writeUTF(message);
+    }
+
+    /**
+     * @return the rows of the next frame, or null if the stream has ended
+     * @throws RangeStreamException if the server failed while producing the range
+     */
+    public static ImmutableList<RowResult<Value>> readFrame(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case ROWS:
+            return KvsBinaryCodec.readValueRows(in);
+        case END:
+            return null;
+        case ERROR:
+            throw new RangeStreamException(in.readUTF());
+        default:
+            throw new IOException("Unknown range stream frame " + type);
+        }
+    }
+
+    public static class RangeStreamException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public RangeStreamException(String message) {
+            super(message);
+        }
+    }
+}
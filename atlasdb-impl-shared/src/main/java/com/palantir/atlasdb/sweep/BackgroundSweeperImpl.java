@@ -19,6 +19,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -37,12 +38,14 @@ import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.UnsignedBytes;
 import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.encoding.PtBytes;
+import com.palantir.atlasdb.keyvalue.api.Cell;
 import com.palantir.atlasdb.keyvalue.api.InsufficientConsistencyException;
 import com.palantir.atlasdb.keyvalue.api.KeyValueService;
 import com.palantir.atlasdb.keyvalue.api.RowResult;
@@ -70,6 +73,17 @@ import com.palantir.lock.LockRefreshToken;
 import com.palantir.lock.LockRequest;
 import com.palantir.lock.StringLockDescriptor;
 
+/**
+ * Runs a fixed number of sweep workers, each on its own daemon thread.
+ * <p>
+ * Every worker claims one of the cluster wide worker slots with a lock and keeps the progress
+ * of the table it is sweeping in the sweep progress row with the same number as its slot,
+ * so at most {@code sweepThreads} tables are swept at once across all processes.  A worker
+ * also locks the table it is sweeping, which keeps the workers on different tables.
+ * <p>
+ * Batch sizes back off per table: a table whose batches keep failing does not slow down
+ * sweeping of the others.  All the workers of a process share a {@link SweepThrottle}.
+ */
 public class BackgroundSweeperImpl implements BackgroundSweeper {
     private static final Logger log = LoggerFactory.getLogger(BackgroundSweeperImpl.class);
     private final LockAwareTransactionManager txManager;
@@ -79,8 +93,11 @@ public class BackgroundSweeperImpl implements BackgroundSweeper {
     private final Supplier<Long> sweepPauseMillis;
     private final Supplier<Integer> sweepBatchSize;
     private final SweepTableFactory tableFactory;
-    private volatile float batchSizeMultiplier = 1.0f;
-    private Thread daemon;
+    private final SweepThrottle throttle;
+    private final List<SweepWorker> workers;
+    private final boolean delayStartup;
+    private final ConcurrentMap<TableReference, Float> batchSizeMultipliers = Maps.newConcurrentMap();
+    private List<Thread> daemons = ImmutableList.of();
 
     // weights one month of no sweeping with the same priority as about 100000 expected cells to sweep.
     private static final double MILLIS_SINCE_SWEEP_PRIORITY_WEIGHT = 100000.0 / TimeUnit.MILLISECONDS.convert(30, TimeUnit.DAYS);
@@ -93,6 +110,48 @@ public class BackgroundSweeperImpl implements BackgroundSweeper {
                                  Supplier<Long> sweepPauseMillis,
                                  Supplier<Integer> sweepBatchSize,
                                  SweepTableFactory tableFactory) {
+        this(txManager, kvs, sweepRunner, isSweepEnabled, sweepPauseMillis, sweepBatchSize, tableFactory,
+                1, SweepThrottle.unlimited(), true);
+    }
+
+    /**
+     * @param sweepThreads the number of tables that are swept at once, across all processes
+     *        sharing the lock service
+     * @param sweepCellsPerSecond the maximum number of cells this process sweeps per second,
+     *        or zero for no limit
+     * @param sweepBytesPerSecond the maximum number of bytes this process reads per second
+     *        while sweeping, or zero for no limit
+     */
+    public BackgroundSweeperImpl(LockAwareTransactionManager txManager,
+                                 KeyValueService kvs,
+                                 SweepTaskRunner sweepRunner,
+                                 Supplier<Boolean> isSweepEnabled,
+                                 Supplier<Long> sweepPauseMillis,
+                                 Supplier<Integer> sweepBatchSize,
+                                 SweepTableFactory tableFactory,
+                                 int sweepThreads,
+                                 Supplier<Long> sweepCellsPerSecond,
+                                 Supplier<Long> sweepBytesPerSecond) {
+        this(txManager, kvs, sweepRunner, isSweepEnabled, sweepPauseMillis, sweepBatchSize, tableFactory,
+                sweepThreads, new SweepThrottle(sweepCellsPerSecond, sweepBytesPerSecond), true);
+    }
+
+    /**
+     * @param delayStartup whether workers wait a while before their first sweep, so that short
+     *        lived clis don't try to sweep
+     */
+    @VisibleForTesting
+    BackgroundSweeperImpl(LockAwareTransactionManager txManager,
+                          KeyValueService kvs,
+                          SweepTaskRunner sweepRunner,
+                          Supplier<Boolean> isSweepEnabled,
+                          Supplier<Long> sweepPauseMillis,
+                          Supplier<Integer> sweepBatchSize,
+                          SweepTableFactory tableFactory,
+                          int sweepThreads,
+                          SweepThrottle throttle,
+                          boolean delayStartup) {
+        Preconditions.checkArgument(sweepThreads > 0, "sweepThreads must be positive but was %s", sweepThreads);
         this.txManager = txManager;
         this.kvs = kvs;
         this.sweepRunner = sweepRunner;
@@ -100,104 +159,375 @@ public class BackgroundSweeperImpl implements BackgroundSweeper {
         this.sweepPauseMillis = sweepPauseMillis;
         this.sweepBatchSize = sweepBatchSize;
         this.tableFactory = tableFactory;
+        this.throttle = throttle;
+        this.delayStartup = delayStartup;
+        ImmutableList.Builder<SweepWorker> builder = ImmutableList.builder();
+        for (int i = 0; i < sweepThreads; i++) {
+            builder.add(new SweepWorker(i));
+        }
+        this.workers = builder.build();
     }
 
     @Override
     public synchronized void runInBackground() {
-        Preconditions.checkState(daemon == null);
-        daemon = new Thread(this);
-        daemon.setDaemon(true);
-        daemon.setName("BackgroundSweeper");
-        daemon.start();
+        Preconditions.checkState(daemons.isEmpty());
+        ImmutableList.Builder<Thread> builder = ImmutableList.builder();
+        for (SweepWorker worker : workers) {
+            Thread daemon = new Thread(worker);
+            daemon.setDaemon(true);
+            daemon.setName(workers.size() == 1 ? "BackgroundSweeper" : "BackgroundSweeper-" + worker.index);
+            builder.add(daemon);
+        }
+        daemons = builder.build();
+        for (Thread daemon : daemons) {
+            daemon.start();
+        }
     }
 
     @Override
     public void run() {
-        Optional<LockRefreshToken> locks = Optional.absent();
-        try {
-            // Wait a while before starting so short lived clis don't try to sweep.
-            Thread.sleep(20 * (1000 + sweepPauseMillis.get()));
-            log.debug("Starting background sweeper.");
-            while (true) {
-                boolean sweptSuccessfully = false;
-                try {
-                    if (isSweepEnabled.get()) {
-                        locks = lockOrRefresh(locks);
-                        if (locks.isPresent()) {
-                            sweptSuccessfully = runOnce();
+        workers.get(0).run();
+    }
+
+    /**
+     * Sweeps one batch as the first worker.
+     */
+    @VisibleForTesting
+    public boolean runOnce() {
+        return runOnce(0);
+    }
+
+    /**
+     * Sweeps one batch as the given worker, holding its table lock but not its worker slot lock.
+     */
+    @VisibleForTesting
+    boolean runOnce(int workerIndex) {
+        return workers.get(workerIndex).runOnce();
+    }
+
+    private class SweepWorker implements Runnable {
+        private final int index;
+        private final SweepProgressRow progressRow;
+        @Nullable private TableReference lockedTable = null;
+        @Nullable private LockRefreshToken tableLock = null;
+        // The table of the batch this worker is sweeping, for picking whose batch size to lower.
+        @Nullable private volatile TableReference currentTable = null;
+
+        SweepWorker(int index) {
+            this.index = index;
+            this.progressRow = SweepProgressRow.of(index);
+        }
+
+        @Override
+        public void run() {
+            Optional<LockRefreshToken> locks = Optional.absent();
+            try {
+                if (delayStartup) {
+                    // Wait a while before starting so short lived clis don't try to sweep.
+                    Thread.sleep(20 * (1000 + sweepPauseMillis.get()));
+                }
+                log.debug("Starting background sweeper {}.", index);
+                while (true) {
+                    boolean sweptSuccessfully = false;
+                    try {
+                        if (isSweepEnabled.get()) {
+                            locks = lockOrRefresh(locks);
+                            if (locks.isPresent()) {
+                                sweptSuccessfully = runOnce();
+                            } else {
+                                log.debug("Skipping sweep because sweep is running elsewhere.");
+                            }
                         } else {
-                            log.debug("Skipping sweep because sweep is running elsewhere.");
+                            log.debug("Skipping sweep because it is currently disabled.");
+                        }
+                    } catch (InsufficientConsistencyException e) {
+                        log.warn("Could not sweep because not all nodes of the database are online.", e);
+                    } catch (RuntimeException e) {
+                        if (checkAndRepairTableDrop()) {
+                            log.error("The table being swept by the background sweeper was dropped, moving on...");
+                        } else {
+                            TableReference tableRef = currentTable;
+                            log.error("The background sweep job failed unexpectedly with a batch size of " +
+                                    getBatchSize(tableRef) + ". Attempting to continue with a lower batch size...", e);
+                            decreaseBatchSize(tableRef);
                         }
-                    } else {
-                        log.debug("Skipping sweep because it is currently disabled.");
                     }
-                } catch (InsufficientConsistencyException e) {
-                    log.warn("Could not sweep because not all nodes of the database are online.", e);
-                } catch (RuntimeException e) {
-                    if (checkAndRepairTableDrop()) {
-                        log.error("The table being swept by the background sweeper was dropped, moving on...");
+                    if (sweptSuccessfully) {
+                        Thread.sleep(sweepPauseMillis.get());
                     } else {
-                        log.error("The background sweep job failed unexpectedly with a batch size of " +
-                                ((int) (batchSizeMultiplier * sweepBatchSize.get())) +
-                                ". Attempting to continue with a lower batch size...", e);
-                        batchSizeMultiplier = Math.min(batchSizeMultiplier / 2, 1.0f / sweepBatchSize.get());
+                        Thread.sleep(20 * (1000 + sweepPauseMillis.get()));
                     }
                 }
-                if (sweptSuccessfully) {
-                    batchSizeMultiplier = Math.min(1.0f, batchSizeMultiplier * 1.01f);
-                    Thread.sleep(sweepPauseMillis.get());
-                } else {
-                    Thread.sleep(20 * (1000 + sweepPauseMillis.get()));
+            } catch (InterruptedException e) {
+                log.debug("Shutting down background sweeper {}.", index);
+            } finally {
+                releaseTableLock();
+                if (locks.isPresent()) {
+                    txManager.getLockService().unlock(locks.get());
                 }
             }
-        } catch (InterruptedException e) {
-            log.debug("Shutting down background sweeper.");
-        } finally {
-            if (locks.isPresent()) {
-                txManager.getLockService().unlock(locks.get());
+        }
+
+        boolean runOnce() {
+            SweepProgressRowResult progress = txManager.runTaskWithRetry(
+                    new RuntimeTransactionTask<SweepProgressRowResult>() {
+                @Override
+                public SweepProgressRowResult execute(Transaction t) {
+                    return tableFactory.getSweepProgressTable(t).getRow(progressRow).orNull();
+                }
+            });
+            if (progress == null) {
+                progress = startSweepingNextTable();
+                if (progress == null) {
+                    // Don't change this log statement. It's parsed by test automation code.
+                    log.debug("Skipping sweep because no table has enough new writes to be worth sweeping at the moment.");
+                    return false;
+                }
+            } else if (!holdTableLock(TableReference.createUnsafe(progress.getFullTableName()))) {
+                log.warn("Abandoning the sweep of {} because another sweeper has started sweeping it.",
+                        progress.getFullTableName());
+                clearProgress();
+                return false;
+            }
+            TableReference tableRef = TableReference.createUnsafe(progress.getFullTableName());
+            currentTable = tableRef;
+            int batchSize = getBatchSize(tableRef);
+            Stopwatch watch = Stopwatch.createStarted();
+            try {
+                SweepResults results = sweepRunner.run(tableRef, batchSize, progress.getStartRow());
+                log.debug("Swept {} unique cells from {} starting at {} and performed {} deletions in {} ms up to timestamp {}.",
+                        results.getCellsExamined(), progress.getFullTableName(),
+                        progress.getStartRow() == null ? "0" : PtBytes.encodeHexString(progress.getStartRow()),
+                        results.getCellsDeleted(), watch.elapsed(TimeUnit.MILLISECONDS), results.getSweptTimestamp());
+                saveSweepResults(progress, results);
+                increaseBatchSize(tableRef);
+                throttle.acquire(results.getCellsExamined(), results.getBytesExamined());
+                return true;
+            } catch (RuntimeException e) {
+                // Error logged at a higher log level above.
+                log.debug("Failed to sweep {} with batch size {} starting from row {}", progress.getFullTableName(), batchSize,
+                        progress.getStartRow() == null ? "0" : PtBytes.encodeHexString(progress.getStartRow()));
+                throw e;
             }
         }
-    }
 
-    @VisibleForTesting
-    public boolean runOnce() {
-        SweepProgressRowResult progress = txManager.runTaskWithRetry(
-                new RuntimeTransactionTask<SweepProgressRowResult>() {
-            @Override
-            public SweepProgressRowResult execute(Transaction t) {
-                SweepProgressTable progressTable = tableFactory.getSweepProgressTable(t);
-                SweepProgressRowResult result = progressTable.getRow(SweepProgressRow.of(0)).orNull();
-                if (result == null) {
-                    result = chooseNextTableToSweep(new SweepTransaction(t, sweepRunner.getSweepTimestamp(SweepStrategy.CONSERVATIVE)));
+        /**
+         * Picks the most important table that no other worker is sweeping and locks it.
+         */
+        @Nullable
+        private SweepProgressRowResult startSweepingNextTable() {
+            releaseTableLock();
+            List<TableReference> candidates = txManager.runTaskWithRetry(
+                    new RuntimeTransactionTask<List<TableReference>>() {
+                @Override
+                public List<TableReference> execute(Transaction t) {
+                    return chooseTablesToSweep(new SweepTransaction(t, sweepRunner.getSweepTimestamp(SweepStrategy.CONSERVATIVE)));
+                }
+            });
+            for (TableReference tableRef : candidates) {
+                if (lockTable(tableRef)) {
+                    RowResult<byte[]> rawResult = RowResult.<byte[]>create(progressRow.persistToBytes(),
+                            ImmutableSortedMap.<byte[], byte[]>orderedBy(UnsignedBytes.lexicographicalComparator())
+                                .put(SweepProgressTable.SweepProgressNamedColumn.FULL_TABLE_NAME.getShortName(),
+                                     SweepProgressTable.FullTableName.of(tableRef.getQualifiedName()).persistValue())
+                                .build());
+                    log.debug("Now starting to sweep {}.", tableRef);
+                    return SweepProgressRowResult.of(rawResult);
                 }
-                return result;
             }
-        });
-        if (progress == null) {
-            // Don't change this log statement. It's parsed by test automation code.
-            log.debug("Skipping sweep because no table has enough new writes to be worth sweeping at the moment.");
-            return false;
+            return null;
         }
-        int batchSize = Math.max(1, (int) (sweepBatchSize.get() * batchSizeMultiplier));
-        Stopwatch watch = Stopwatch.createStarted();
-        try {
-            SweepResults results = sweepRunner.run(TableReference.createUnsafe(progress.getFullTableName()), batchSize, progress.getStartRow());
-            log.debug("Swept {} unique cells from {} starting at {} and performed {} deletions in {} ms up to timestamp {}.",
-                    results.getCellsExamined(), progress.getFullTableName(),
-                    progress.getStartRow() == null ? "0" : PtBytes.encodeHexString(progress.getStartRow()),
-                    results.getCellsDeleted(), watch.elapsed(TimeUnit.MILLISECONDS), results.getSweptTimestamp());
-            saveSweepResults(progress, results);
+
+        private boolean holdTableLock(TableReference tableRef) {
+            if (tableLock != null && tableRef.equals(lockedTable)) {
+                Set<LockRefreshToken> refreshed = txManager.getLockService()
+                        .refreshLockRefreshTokens(ImmutableList.of(tableLock));
+                if (!refreshed.isEmpty()) {
+                    return true;
+                }
+                // Our lock timed out, but the table is still ours if nobody else took it in the meantime.
+                tableLock = null;
+                lockedTable = null;
+            }
+            releaseTableLock();
+            return lockTable(tableRef);
+        }
+
+        private boolean lockTable(TableReference tableRef) {
+            LockDescriptor lock = StringLockDescriptor.of("atlas sweep table " + tableRef.getQualifiedName());
+            LockRequest request = LockRequest.builder(ImmutableSortedMap.of(lock, LockMode.WRITE)).doNotBlock().build();
+            LockRefreshToken token;
+            try {
+                token = txManager.getLockService().lock(LockClient.ANONYMOUS.getClientId(), request);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Throwables.rewrapAndThrowUncheckedException(e);
+            }
+            if (token == null) {
+                return false;
+            }
+            tableLock = token;
+            lockedTable = tableRef;
             return true;
-        } catch (RuntimeException e) {
-            // Error logged at a higher log level above.
-            log.debug("Failed to sweep {} with batch size {} starting from row {}", progress.getFullTableName(), batchSize,
-                    progress.getStartRow() == null ? "0" : PtBytes.encodeHexString(progress.getStartRow()));
-            throw e;
         }
+
+        private void releaseTableLock() {
+            if (tableLock != null) {
+                try {
+                    txManager.getLockService().unlock(tableLock);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to release the sweep lock on {}; it will time out instead.", lockedTable, e);
+                }
+                tableLock = null;
+                lockedTable = null;
+            }
+        }
+
+        private void saveSweepResults(final SweepProgressRowResult progress,
+                                      final SweepResults results) {
+            final long cellsDeleted = fromNullable(progress.getCellsDeleted()) + results.getCellsDeleted();
+            final long cellsExamined = fromNullable(progress.getCellsExamined()) + results.getCellsExamined();
+            final long minimumSweptTimestamp = results.getSweptTimestamp();
+            if (results.getNextStartRow().isPresent()) {
+                saveIntermediateSweepResults(progress, results.getNextStartRow().get(), cellsDeleted, cellsExamined, minimumSweptTimestamp);
+                return;
+            }
+
+            saveFinalSweepResults(progress, cellsDeleted, cellsExamined, minimumSweptTimestamp);
+
+            log.debug("Finished sweeping {}, examined {} unique cells, deleted {} cells.",
+                    progress.getFullTableName(), cellsExamined, cellsDeleted);
+
+            if (cellsDeleted > 0) {
+                Stopwatch watch = Stopwatch.createStarted();
+                kvs.compactInternally(TableReference.createUnsafe(progress.getFullTableName()));
+                log.debug("Finished performing compactInternally on {} in {} ms.",
+                        progress.getFullTableName(), watch.elapsed(TimeUnit.MILLISECONDS));
+            }
+
+            clearProgress();
+            releaseTableLock();
+        }
+
+        private void saveIntermediateSweepResults(final SweepProgressRowResult progress,
+                                                  final byte[] nextStartRow,
+                                                  final long cellsDeleted,
+                                                  final long cellsExamined,
+                                                  final long minimumSweptTimestamp) {
+            txManager.runTaskWithRetry(new TxTask() {
+                @Override
+                public Void execute(Transaction t) {
+                    SweepProgressTable progressTable = tableFactory.getSweepProgressTable(t);
+                    progressTable.putFullTableName(progressRow, progress.getFullTableName());
+                    progressTable.putStartRow(progressRow, nextStartRow);
+                    progressTable.putCellsDeleted(progressRow, cellsDeleted);
+                    progressTable.putCellsExamined(progressRow, cellsExamined);
+                    if (!progress.hasStartRow()) {
+                        // This is the first set of results being written for this table.
+                        progressTable.putMinimumSweptTimestamp(progressRow, minimumSweptTimestamp);
+
+                        SweepPriorityTable priorityTable = tableFactory.getSweepPriorityTable(t);
+                        SweepPriorityRow priorityRow = SweepPriorityRow.of(progress.getFullTableName());
+                        priorityTable.putWriteCount(priorityRow, 0L);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        /**
+         * Removes every version of this worker's progress row.  This used to be a truncate of the
+         * whole progress table, back when it only ever had one row; the row accumulates an
+         * overwrite per batch, so we get rid of the old versions rather than deleting it in a
+         * transaction.
+         */
+        private void clearProgress() {
+            TableReference progressTableRef = tableFactory.getSweepProgressTable(null).getTableRef();
+            Set<Cell> cells = Sets.newHashSet();
+            for (SweepProgressTable.SweepProgressNamedColumn column : SweepProgressTable.SweepProgressNamedColumn.values()) {
+                cells.add(Cell.create(progressRow.persistToBytes(), column.getShortName()));
+            }
+            Multimap<Cell, Long> versions = kvs.getAllTimestamps(progressTableRef, cells, Long.MAX_VALUE);
+            if (!versions.isEmpty()) {
+                kvs.delete(progressTableRef, versions);
+            }
+        }
+
+        /**
+         * Check whether the table being swept was dropped. If so, stop sweeping it and move on.
+         * @return Whether the table being swept was dropped.
+         */
+        private boolean checkAndRepairTableDrop() {
+            try {
+                Set<String> tables = kvs.getAllTableNames().stream().map(tableRef -> tableRef.getQualifiedName()).collect(Collectors.toSet());
+                SweepProgressRowResult result = txManager.runTaskReadOnly(
+                        new RuntimeTransactionTask<SweepProgressRowResult>() {
+                    @Override
+                    public SweepProgressRowResult execute(Transaction t) {
+                        return tableFactory.getSweepProgressTable(t).getRow(progressRow).orNull();
+                    }
+                });
+                if (result == null || tables.contains(result.getFullTableName())) {
+                    return false;
+                }
+                clearProgress();
+                releaseTableLock();
+                batchSizeMultipliers.remove(TableReference.createUnsafe(result.getFullTableName()));
+                return true;
+            } catch (RuntimeException e) {
+                log.error("Failed to check whether the table being swept was dropped. Continuing under the assumption that it wasn't...", e);
+                return false;
+            }
+        }
+
+        private Optional<LockRefreshToken> lockOrRefresh(Optional<LockRefreshToken> previousLocks) throws InterruptedException {
+            if (previousLocks.isPresent()) {
+                LockRefreshToken refreshToken = previousLocks.get();
+                Set<LockRefreshToken> refreshedTokens = txManager.getLockService()
+                        .refreshLockRefreshTokens(ImmutableList.of(refreshToken));
+                if (refreshedTokens.isEmpty()) {
+                    return Optional.absent();
+                } else {
+                    return previousLocks;
+                }
+            } else {
+                // The first slot keeps the lock name of the old single sweeper, so that a process
+                // running an older version never sweeps at the same time as slot 0.
+                LockDescriptor lock = StringLockDescriptor.of(index == 0 ? "atlas sweep" : "atlas sweep " + index);
+                LockRequest request = LockRequest.builder(ImmutableSortedMap.of(lock, LockMode.WRITE)).doNotBlock().build();
+                LockRefreshToken token = txManager.getLockService().lock(LockClient.ANONYMOUS.getClientId(), request);
+                return Optional.fromNullable(token);
+            }
+        }
+    }
+
+    private int getBatchSize(@Nullable TableReference tableRef) {
+        Float multiplier = tableRef == null ? null : batchSizeMultipliers.get(tableRef);
+        return Math.max(1, (int) (sweepBatchSize.get() * (multiplier == null ? 1.0f : multiplier)));
+    }
+
+    private void increaseBatchSize(TableReference tableRef) {
+        Float multiplier = batchSizeMultipliers.get(tableRef);
+        if (multiplier != null) {
+            float increased = multiplier * 1.01f;
+            if (increased >= 1.0f) {
+                batchSizeMultipliers.remove(tableRef, multiplier);
+            } else {
+                batchSizeMultipliers.replace(tableRef, multiplier, increased);
+            }
+        }
+    }
+
+    private void decreaseBatchSize(@Nullable TableReference tableRef) {
+        if (tableRef == null) {
+            return;
+        }
+        float minimum = 1.0f / sweepBatchSize.get();
+        batchSizeMultipliers.compute(tableRef,
+                (table, multiplier) -> Math.max((multiplier == null ? 1.0f : multiplier) / 2, minimum));
     }
 
-    @Nullable
-    private SweepProgressRowResult chooseNextTableToSweep(SweepTransaction t) {
+    private List<TableReference> chooseTablesToSweep(SweepTransaction t) {
         Set<TableReference> allTables = Sets.difference(kvs.getAllTableNames(), AtlasDbConstants.hiddenTables);
         SweepPriorityTable oldPriorityTable = tableFactory.getSweepPriorityTable(t);
         SweepPriorityTable newPriorityTable = tableFactory.getSweepPriorityTable(t.delegate());
@@ -214,40 +544,30 @@ public class BackgroundSweeperImpl implements BackgroundSweeper {
                                 Function.identity()
                         )
                 );
-        TableReference tableRef = getTableToSweep(t, allTables, oldPriorities, newPrioritiesByTableName);
-        if (tableRef == null) {
-            return null;
-        }
-        RowResult<byte[]> rawResult = RowResult.<byte[]>create(SweepProgressRow.of(0).persistToBytes(),
-                ImmutableSortedMap.<byte[], byte[]>orderedBy(UnsignedBytes.lexicographicalComparator())
-                    .put(SweepProgressTable.SweepProgressNamedColumn.FULL_TABLE_NAME.getShortName(),
-                         SweepProgressTable.FullTableName.of(tableRef.getQualifiedName()).persistValue())
-                    .build());
-
-        log.debug("Now starting to sweep {}.", tableRef);
-        return SweepProgressRowResult.of(rawResult);
+        return getTablesToSweep(t, allTables, oldPriorities, newPrioritiesByTableName);
     }
 
-    @Nullable
-    private TableReference getTableToSweep(SweepTransaction t,
-                                   Set<TableReference> allTables,
-                                   List<SweepPriorityRowResult> oldPriorities,
-                                   Map<TableReference, SweepPriorityRowResult> newPrioritiesByTableName) {
-        Set<TableReference> unsweptTables = Sets.difference(allTables, newPrioritiesByTableName.keySet());
-        if (!unsweptTables.isEmpty()) {
-            return Iterables.get(unsweptTables, 0);
-        }
-        double maxPriority = 0.0;
-        TableReference toSweep = null;
+    /**
+     * @return the tables worth sweeping, most important first
+     */
+    private List<TableReference> getTablesToSweep(SweepTransaction t,
+                                                  Set<TableReference> allTables,
+                                                  List<SweepPriorityRowResult> oldPriorities,
+                                                  Map<TableReference, SweepPriorityRowResult> newPrioritiesByTableName) {
+        List<TableReference> toSweep = Lists.newArrayList(Sets.difference(allTables, newPrioritiesByTableName.keySet()));
+        Map<TableReference, Double> priorities = Maps.newHashMap();
         Collection<SweepPriorityRow> toDelete = Lists.newArrayList();
         for (SweepPriorityRowResult oldPriority : oldPriorities) {
             TableReference tableRef = TableReference.createUnsafe(oldPriority.getRowName().getFullTableName());
             if (allTables.contains(tableRef)) {
                 SweepPriorityRowResult newPriority = newPrioritiesByTableName.get(tableRef);
+                if (newPriority == null) {
+                    // Already at the front as a table that has never been swept.
+                    continue;
+                }
                 double priority = getSweepPriority(oldPriority, newPriority);
-                if (priority > maxPriority) {
-                    maxPriority = priority;
-                    toSweep = tableRef;
+                if (priority > 0.0) {
+                    priorities.put(tableRef, priority);
                 }
             } else {
                 toDelete.add(oldPriority.getRowName());
@@ -257,6 +577,10 @@ public class BackgroundSweeperImpl implements BackgroundSweeper {
         // Clean up rows for tables that no longer exist.
         tableFactory.getSweepPriorityTable(t.delegate()).delete(toDelete);
 
+        toSweep.addAll(priorities.entrySet().stream()
+                .sorted(Map.Entry.<TableReference, Double>comparingByValue().reversed())
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList()));
         return toSweep;
     }
 
@@ -292,60 +616,6 @@ public class BackgroundSweeperImpl implements BackgroundSweeper {
         return estimatedCellsToSweep + millisSinceSweep * MILLIS_SINCE_SWEEP_PRIORITY_WEIGHT;
     }
 
-    private void saveSweepResults(final SweepProgressRowResult progress,
-                                  final SweepResults results) {
-        final long cellsDeleted = fromNullable(progress.getCellsDeleted()) + results.getCellsDeleted();
-        final long cellsExamined = fromNullable(progress.getCellsExamined()) + results.getCellsExamined();
-        final long minimumSweptTimestamp = results.getSweptTimestamp();
-        if (results.getNextStartRow().isPresent()) {
-            saveIntermediateSweepResults(progress, results.getNextStartRow().get(), cellsDeleted, cellsExamined, minimumSweptTimestamp);
-            return;
-        }
-
-        saveFinalSweepResults(progress, cellsDeleted, cellsExamined, minimumSweptTimestamp);
-
-        log.debug("Finished sweeping {}, examined {} unique cells, deleted {} cells.",
-                progress.getFullTableName(), cellsExamined, cellsDeleted);
-
-        if (cellsDeleted > 0) {
-            Stopwatch watch = Stopwatch.createStarted();
-            kvs.compactInternally(TableReference.createUnsafe(progress.getFullTableName()));
-            log.debug("Finished performing compactInternally on {} in {} ms.",
-                    progress.getFullTableName(), watch.elapsed(TimeUnit.MILLISECONDS));
-        }
-
-        // Truncate instead of delete because the progress table contains only
-        // a single row that has accumulated many overwrites.
-        kvs.truncateTable(tableFactory.getSweepProgressTable(null).getTableRef());
-    }
-
-    private void saveIntermediateSweepResults(final SweepProgressRowResult progress,
-                                              final byte[] nextStartRow,
-                                              final long cellsDeleted,
-                                              final long cellsExamined,
-                                              final long minimumSweptTimestamp) {
-        txManager.runTaskWithRetry(new TxTask() {
-            @Override
-            public Void execute(Transaction t) {
-                SweepProgressTable progressTable = tableFactory.getSweepProgressTable(t);
-                SweepProgressRow row = SweepProgressRow.of(0);
-                progressTable.putFullTableName(row, progress.getFullTableName());
-                progressTable.putStartRow(row, nextStartRow);
-                progressTable.putCellsDeleted(row, cellsDeleted);
-                progressTable.putCellsExamined(row, cellsExamined);
-                if (!progress.hasStartRow()) {
-                    // This is the first set of results being written for this table.
-                    progressTable.putMinimumSweptTimestamp(row, minimumSweptTimestamp);
-
-                    SweepPriorityTable priorityTable = tableFactory.getSweepPriorityTable(t);
-                    SweepPriorityRow priorityRow = SweepPriorityRow.of(progress.getFullTableName());
-                    priorityTable.putWriteCount(priorityRow, 0L);
-                }
-                return null;
-            }
-        });
-    }
-
     private void saveFinalSweepResults(final SweepProgressRowResult progress,
                                        final long cellsDeleted,
                                        final long cellsExamined,
@@ -370,63 +640,24 @@ public class BackgroundSweeperImpl implements BackgroundSweeper {
         });
     }
 
-    /**
-     * Check whether the table being swept was dropped. If so, stop sweeping it and move on.
-     * @return Whether the table being swept was dropped.
-     */
-    private boolean checkAndRepairTableDrop() {
-        try {
-            Set<String> tables = kvs.getAllTableNames().stream().map(tableRef -> tableRef.getQualifiedName()).collect(Collectors.toSet());
-            SweepProgressRowResult result = txManager.runTaskReadOnly(
-                    new RuntimeTransactionTask<SweepProgressRowResult>() {
-                @Override
-                public SweepProgressRowResult execute(Transaction t) {
-                    return tableFactory.getSweepProgressTable(t).getRow(SweepProgressRow.of(0L)).orNull();
-                }
-            });
-            if (result == null || tables.contains(result.getFullTableName())) {
-                return false;
-            }
-            kvs.truncateTable(tableFactory.getSweepProgressTable(null).getTableRef());
-            return true;
-        } catch (RuntimeException e) {
-            log.error("Failed to check whether the table being swept was dropped. Continuing under the assumption that it wasn't...", e);
-            return false;
-        }
-    }
-
     private long fromNullable(Long num) {
         return num == null ? 0L : num.longValue();
     }
 
-    private Optional<LockRefreshToken> lockOrRefresh(Optional<LockRefreshToken> previousLocks) throws InterruptedException {
-        if (previousLocks.isPresent()) {
-            LockRefreshToken refreshToken = previousLocks.get();
-            Set<LockRefreshToken> refreshedTokens = txManager.getLockService()
-                    .refreshLockRefreshTokens(ImmutableList.of(refreshToken));
-            if (refreshedTokens.isEmpty()) {
-                return Optional.absent();
-            } else {
-                return previousLocks;
-            }
-        } else {
-            LockDescriptor lock = StringLockDescriptor.of("atlas sweep");
-            LockRequest request = LockRequest.builder(ImmutableSortedMap.of(lock, LockMode.WRITE)).doNotBlock().build();
-            LockRefreshToken token = txManager.getLockService().lock(LockClient.ANONYMOUS.getClientId(), request);
-            return Optional.fromNullable(token);
-        }
-    }
-
     @Override
     public synchronized void shutdown() {
-        if (daemon == null) {
+        if (daemons.isEmpty()) {
             return;
         }
         log.debug("Signalling background sweeper to shut down.");
-        daemon.interrupt();
+        for (Thread daemon : daemons) {
+            daemon.interrupt();
+        }
         try {
-            daemon.join();
-            daemon = null;
+            for (Thread daemon : daemons) {
+                daemon.join();
+            }
+            daemons = ImmutableList.of();
         } catch (InterruptedException e) {
             throw Throwables.rewrapAndThrowUncheckedException(e);
         }
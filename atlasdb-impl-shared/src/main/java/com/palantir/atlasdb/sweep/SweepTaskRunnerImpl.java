@@ -156,7 +156,12 @@ public class SweepTaskRunnerImpl implements SweepTaskRunner {
             sweepCells(tableRef, cellTsPairsToSweep, sentinelsToAdd);
             byte[] nextRow = rowResultTimestamps.size() < batchSize ? null :
                 RangeRequests.getNextStartRow(false, Iterables.getLast(rowResultTimestamps).getRowName());
-            return new SweepResults(nextRow, rowResultTimestamps.size(), cellTsPairsToSweep.size(), sweepTimestamp);
+            return new SweepResults(
+                    nextRow,
+                    rowResultTimestamps.size(),
+                    cellTsPairsToSweep.size(),
+                    sweepTimestamp,
+                    getBytesExamined(rowResultTimestamps));
         } finally {
             rowResults.close();
             valueResults.close();
@@ -172,6 +177,18 @@ public class SweepTaskRunnerImpl implements SweepTaskRunner {
         }
     }
 
+    private static long getBytesExamined(List<RowResult<Set<Long>>> rowResults) {
+        long bytes = 0;
+        for (RowResult<Set<Long>> rowResult : rowResults) {
+            for (Map.Entry<Cell, Set<Long>> entry : rowResult.getCells()) {
+                Cell cell = entry.getKey();
+                long keySize = cell.getRowName().length + cell.getColumnName().length + 8;
+                bytes += keySize * entry.getValue().size();
+            }
+        }
+        return bytes;
+    }
+
     private Multimap<Cell, Long> getTimestampsFromRowResults(List<RowResult<Set<Long>>> cellsToSweep,
                                                              SweepStrategy sweepStrategy) {
         Multimap<Cell, Long> cellTsMappings = HashMultimap.create();
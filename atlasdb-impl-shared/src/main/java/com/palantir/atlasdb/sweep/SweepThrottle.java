@@ -0,0 +1,68 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.sweep;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Supplier;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.RateLimiter;
+
+/**
+ * Keeps all of the background sweep workers of a process within a cells per second and a
+ * bytes per second budget.  Workers pay for each batch after sweeping it, so a large batch
+ * delays whichever worker starts the next one rather than the one that swept it.
+ * <p>
+ * A budget that is zero or negative is unlimited.  Budgets are re-read before every batch,
+ * so they can be changed while sweep is running.
+ */
+@ThreadSafe
+final class SweepThrottle {
+    private final Supplier<Long> cellsPerSecond;
+    private final Supplier<Long> bytesPerSecond;
+    private final RateLimiter cellLimiter = RateLimiter.create(1.0);
+    private final RateLimiter byteLimiter = RateLimiter.create(1.0);
+
+    SweepThrottle(Supplier<Long> cellsPerSecond, Supplier<Long> bytesPerSecond) {
+        this.cellsPerSecond = cellsPerSecond;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    static SweepThrottle unlimited() {
+        Supplier<Long> unlimited = () -> 0L;
+        return new SweepThrottle(unlimited, unlimited);
+    }
+
+    /**
+     * Blocks until the budget allows the given amount of work to be charged.
+     */
+    void acquire(long cells, long bytes) {
+        acquire(cellLimiter, cellsPerSecond.get(), cells);
+        acquire(byteLimiter, bytesPerSecond.get(), bytes);
+    }
+
+    private static void acquire(RateLimiter limiter, long permitsPerSecond, long permits) {
+        if (permitsPerSecond <= 0 || permits <= 0) {
+            return;
+        }
+        synchronized (limiter) {
+            if (limiter.getRate() != permitsPerSecond) {
+                limiter.setRate(permitsPerSecond);
+            }
+        }
+        limiter.acquire(Ints.saturatedCast(permits));
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * A bounded, lock-free cache from start timestamp to commit timestamp.
+ * <p>
+ * Once a start timestamp has a value in the transaction table that value never changes, so
+ * a single instance of this cache can safely be shared by every transaction created by a
+ * {@link SnapshotTransactionManager}.
+ * <p>
+ * The cache is a set-associative table of primitive longs.  Each start timestamp hashes to a
+ * set of {@link #WAYS} slots.  When a set is full the entry with the smallest start timestamp
+ * is evicted, because the oldest transactions are the least likely to be read again.  Writers
+ * that lose a race for a slot simply drop their put; this is a cache, so that is always allowed.
+ * <p>
+ * Each slot also has a version that a writer bumps once when it takes the slot and once when it
+ * has published the new entry, so it is odd while the slot is being written.  Readers only trust a
+ * key and value that were read under the same even version; checking the key alone is not enough
+ * because the slot may have been rewritten to another key and back in between.
+ */
+public class CommitTimestampCache implements CommitTimestampCacheMBean {
+    /**
+     * Returned by {@link #get(long)} when the start timestamp is not cached.
+     */
+    public static final long NO_ENTRY = Long.MIN_VALUE;
+
+    static final int WAYS = 4;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+    private static final long WRITING = Long.MIN_VALUE + 1;
+
+    private final int maxSize;
+    private final int setMask;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray values;
+    private final AtomicLongArray versions;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize the maximum number of entries; this is rounded up to a power of two.
+     */
+    public CommitTimestampCache(int maxSize) {
+        Preconditions.checkArgument(maxSize > 0, "maxSize must be positive: %s", maxSize);
+        int size = Math.max(WAYS, Integer.highestOneBit(maxSize - 1) << 1);
+        Preconditions.checkArgument(size > 0, "maxSize is too large: %s", maxSize);
+        this.maxSize = size;
+        this.setMask = size / WAYS - 1;
+        this.keys = new AtomicLongArray(size);
+        this.values = new AtomicLongArray(size);
+        this.versions = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            keys.set(i, EMPTY);
+        }
+    }
+
+    /**
+     * Returns the cached commit timestamp for this start timestamp or {@link #NO_ENTRY}
+     * if it is not cached.
+     */
+    public long get(long startTimestamp) {
+        int base = firstSlot(startTimestamp);
+        for (int slot = base; slot < base + WAYS; slot++) {
+            long version = versions.get(slot);
+            if ((version & 1) == 0 && keys.get(slot) == startTimestamp) {
+                long commitTimestamp = values.get(slot);
+                if (versions.get(slot) == version) {
+                    hits.increment();
+                    return commitTimestamp;
+                }
+            }
+        }
+        misses.increment();
+        return NO_ENTRY;
+    }
+
+    public void put(long startTimestamp, long commitTimestamp) {
+        if (startTimestamp < 0) {
+            // Negative keys collide with our slot markers and are never real start timestamps.
+            return;
+        }
+        int base = firstSlot(startTimestamp);
+        int victim = -1;
+        long victimKey = Long.MAX_VALUE;
+        for (int slot = base; slot < base + WAYS; slot++) {
+            long key = keys.get(slot);
+            if (key == startTimestamp) {
+                return;
+            }
+            if (key == WRITING) {
+                continue;
+            }
+            if (key == EMPTY) {
+                victim = slot;
+                victimKey = EMPTY;
+                break;
+            }
+            if (key < victimKey) {
+                victim = slot;
+                victimKey = key;
+            }
+        }
+        if (victim < 0 || !keys.compareAndSet(victim, victimKey, WRITING)) {
+            return;
+        }
+        versions.incrementAndGet(victim);
+        values.set(victim, commitTimestamp);
+        keys.set(victim, startTimestamp);
+        versions.incrementAndGet(victim);
+        puts.increment();
+        if (victimKey != EMPTY) {
+            evictions.increment();
+        }
+    }
+
+    public void clear() {
+        for (int slot = 0; slot < maxSize; slot++) {
+            long key = keys.get(slot);
+            if (key != EMPTY && key != WRITING) {
+                keys.compareAndSet(slot, key, EMPTY);
+            }
+        }
+    }
+
+    private int firstSlot(long startTimestamp) {
+        long hash = startTimestamp * 0x9E3779B97F4A7C15L;
+        return ((int) (hash ^ (hash >>> 32)) & setMask) * WAYS;
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    @Override
+    public long getPutCount() {
+        return puts.sum();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public float getCacheHitPercentage() {
+        long hit = hits.sum();
+        long miss = misses.sum();
+        if (hit + miss == 0) {
+            return 100.f;
+        }
+        return 100.0f * hit / (hit + miss);
+    }
+
+    @Override
+    public int getMaxCacheSize() {
+        return maxSize;
+    }
+
+    @Override
+    public void clearCacheAndStats() {
+        clear();
+        hits.reset();
+        misses.reset();
+        puts.reset();
+        evictions.reset();
+    }
+}
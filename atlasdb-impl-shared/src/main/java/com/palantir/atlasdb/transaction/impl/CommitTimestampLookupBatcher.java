@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Predicates;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.palantir.atlasdb.transaction.service.TransactionService;
+import com.palantir.common.base.Throwables;
+
+/**
+ * Groups concurrent commit timestamp lookups into single {@link TransactionService#get(Iterable)}
+ * calls.  Only one lookup is outstanding at a time; lookups that arrive while it runs are
+ * collected into the next batch, which the first of them sends as soon as the outstanding
+ * lookup returns.  A caller that does not overlap with any other never waits.
+ */
+@ThreadSafe
+final class CommitTimestampLookupBatcher {
+    private final TransactionService transactionService;
+
+    private final Lock lock = new ReentrantLock();
+    private final Condition lookupDone = lock.newCondition();
+    @GuardedBy("lock") private boolean lookupInFlight = false;
+    @GuardedBy("lock") private Batch nextBatch = null;
+
+    CommitTimestampLookupBatcher(TransactionService transactionService) {
+        this.transactionService = transactionService;
+    }
+
+    /**
+     * @return the commit timestamps of those of the given start timestamps that have one
+     */
+    Map<Long, Long> get(Set<Long> startTimestamps) {
+        Batch batch;
+        boolean ownsBatch;
+        lock.lock();
+        try {
+            ownsBatch = nextBatch == null;
+            if (ownsBatch) {
+                nextBatch = new Batch();
+            }
+            batch = nextBatch;
+            batch.startTimestamps.addAll(startTimestamps);
+            if (ownsBatch) {
+                while (lookupInFlight) {
+                    lookupDone.awaitUninterruptibly();
+                }
+                nextBatch = null;
+                lookupInFlight = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (ownsBatch) {
+            try {
+                batch.result.set(transactionService.get(batch.startTimestamps));
+            } catch (Throwable t) {
+                batch.result.setException(t);
+            } finally {
+                lock.lock();
+                try {
+                    lookupInFlight = false;
+                    lookupDone.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        Map<Long, Long> commitTimestamps;
+        try {
+            commitTimestamps = Uninterruptibles.getUninterruptibly(batch.result);
+        } catch (ExecutionException e) {
+            throw Throwables.rewrapAndThrowUncheckedException(e.getCause());
+        }
+        if (batch.startTimestamps.size() == startTimestamps.size()) {
+            // Nobody else joined this batch.
+            return commitTimestamps;
+        }
+        return Maps.filterKeys(commitTimestamps, Predicates.in(startTimestamps));
+    }
+
+    private static class Batch {
+        // Only modified under the batcher's lock, before the batch is sent.
+        final Set<Long> startTimestamps = Sets.newHashSet();
+        final SettableFuture<Map<Long, Long>> result = SettableFuture.create();
+    }
+}
@@ -0,0 +1,158 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.palantir.common.base.Throwables;
+
+/**
+ * Runs independent checks, grouped into named phases, on up to {@code parallelism} threads at once.
+ * The calling thread takes checks from the same queue as the helper threads, so all of the checks
+ * are run even if the executor is too busy to start any helpers.  As soon as one check fails no
+ * more checks are started and {@link #run()} throws that check's exception.
+ * <p>
+ * This is meant to be used once, from one thread.
+ */
+final class ParallelCheckRunner {
+    private final Executor executor;
+    private final int parallelism;
+    private final Map<String, Phase> phases = Maps.newLinkedHashMap();
+    private final List<Check> checks = Lists.newArrayList();
+
+    ParallelCheckRunner(Executor executor, int parallelism) {
+        Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Phases are reported in the order they were first added to.
+     */
+    void add(String phaseName, Runnable check) {
+        checks.add(new Check(getPhase(phaseName), check));
+    }
+
+    /**
+     * Makes sure a phase is reported even if it has no checks.
+     */
+    Phase getPhase(String phaseName) {
+        Phase phase = phases.get(phaseName);
+        if (phase == null) {
+            phase = new Phase(phaseName);
+            phases.put(phaseName, phase);
+        }
+        return phase;
+    }
+
+    /**
+     * Runs all of the checks, or stops at the first one that fails and throws its exception.
+     */
+    void run() {
+        final Stopwatch watch = Stopwatch.createStarted();
+        final Queue<Check> queue = new ConcurrentLinkedQueue<Check>(checks);
+        final AtomicInteger remaining = new AtomicInteger(checks.size());
+        final SettableFuture<Void> finished = SettableFuture.create();
+        if (checks.isEmpty()) {
+            finished.set(null);
+        }
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                Check check;
+                while (!finished.isDone() && (check = queue.poll()) != null) {
+                    try {
+                        check.check.run();
+                    } catch (Throwable t) {
+                        finished.setException(t);
+                        return;
+                    }
+                    check.phase.checkDone(watch.elapsed(TimeUnit.MILLISECONDS));
+                    if (remaining.decrementAndGet() == 0) {
+                        finished.set(null);
+                    }
+                }
+            }
+        };
+        for (int i = 1; i < Math.min(parallelism, checks.size()); i++) {
+            executor.execute(worker);
+        }
+        worker.run();
+        try {
+            Uninterruptibles.getUninterruptibly(finished);
+        } catch (ExecutionException e) {
+            throw Throwables.throwUncheckedException(e.getCause());
+        }
+    }
+
+    /**
+     * @return how many checks each phase had and how long after the start of {@link #run()} the
+     *         last of them finished
+     */
+    String getTimings() {
+        return Joiner.on(", ").join(phases.values());
+    }
+
+    static final class Phase {
+        private final String name;
+        private final AtomicInteger numChecks = new AtomicInteger();
+        private final AtomicLong finishedMillis = new AtomicLong();
+
+        Phase(String name) {
+            this.name = name;
+        }
+
+        void checkDone(long elapsedMillis) {
+            numChecks.incrementAndGet();
+            while (true) {
+                long current = finishedMillis.get();
+                if (current >= elapsedMillis || finishedMillis.compareAndSet(current, elapsedMillis)) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + numChecks.get() + " checks in " + finishedMillis.get() + " ms";
+        }
+    }
+
+    private static final class Check {
+        final Phase phase;
+        final Runnable check;
+
+        Check(Phase phase, Runnable check) {
+            this.phase = phase;
+            this.check = check;
+        }
+    }
+}
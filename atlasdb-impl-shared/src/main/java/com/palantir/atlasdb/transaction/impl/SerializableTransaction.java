@@ -18,6 +18,7 @@ package com.palantir.atlasdb.transaction.impl;
 import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -29,6 +30,7 @@ import java.util.TreeSet;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.commons.lang.Validate;
 import org.slf4j.Logger;
@@ -44,12 +46,14 @@ import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
 import com.google.common.collect.Sets;
 import com.google.common.primitives.UnsignedBytes;
+import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.cleaner.Cleaner;
 import com.palantir.atlasdb.cleaner.NoOpCleaner;
 import com.palantir.atlasdb.encoding.PtBytes;
@@ -63,6 +67,7 @@ import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.keyvalue.impl.Cells;
 import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
 import com.palantir.atlasdb.transaction.api.ConflictHandler;
+import com.palantir.atlasdb.transaction.api.SerializableReadSetEncoding;
 import com.palantir.atlasdb.transaction.api.Transaction;
 import com.palantir.atlasdb.transaction.api.TransactionReadSentinelBehavior;
 import com.palantir.atlasdb.transaction.api.TransactionSerializableConflictException;
@@ -73,6 +78,8 @@ import com.palantir.common.base.BatchingVisitable;
 import com.palantir.common.base.BatchingVisitableView;
 import com.palantir.common.collect.IterableUtils;
 import com.palantir.common.collect.Maps2;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.lock.LockRefreshToken;
 import com.palantir.lock.RemoteLockService;
 import com.palantir.timestamp.TimestampService;
@@ -91,10 +98,21 @@ import com.palantir.util.Pair;
 public class SerializableTransaction extends SnapshotTransaction {
     private final static Logger log = LoggerFactory.getLogger(SerializableTransaction.class);
 
+    // Shared by all transactions; each commit runs its read-write conflict checks on the committing
+    // thread plus at most VERIFY_PARALLELISM_PER_COMMIT - 1 of these threads.
+    private static final int VERIFY_THREADS = 16;
+    private static final int VERIFY_PARALLELISM_PER_COMMIT = 4;
+    private static final int VERIFY_BATCH_SIZE = 1000;
+    private static final ExecutorService verifyExecutor = PTExecutors.newFixedThreadPool(
+            VERIFY_THREADS,
+            new NamedThreadFactory("atlas-serializable-verify", true /* isDaemon */));
+
     final ConcurrentMap<TableReference, ConcurrentNavigableMap<Cell, byte[]>> readsByTable = Maps.newConcurrentMap();
     final ConcurrentMap<TableReference, ConcurrentMap<RangeRequest, byte[]>> rangeEndByTable = Maps.newConcurrentMap();
     final ConcurrentMap<TableReference, Set<Cell>> cellsRead = Maps.newConcurrentMap();
     final ConcurrentMap<TableReference, Set<RowRead>> rowsRead = Maps.newConcurrentMap();
+    private final SerializableReadSetEncoding readSetEncoding;
+    private volatile String readWriteConflictCheckTimings = "not checked";
 
     public SerializableTransaction(KeyValueService keyValueService,
                                    RemoteLockService lockService,
@@ -110,6 +128,112 @@ public class SerializableTransaction extends SnapshotTransaction {
                                    Long transactionTimeoutMillis,
                                    TransactionReadSentinelBehavior readSentinelBehavior,
                                    boolean allowHiddenTableAccess) {
+        this(keyValueService,
+             lockService,
+             timestampService,
+             transactionService,
+             cleaner,
+             startTimeStamp,
+             conflictDetectionManager,
+             sweepStrategyManager,
+             immutableTimestamp,
+             tokensValidForCommit,
+             constraintCheckingMode,
+             transactionTimeoutMillis,
+             readSentinelBehavior,
+             allowHiddenTableAccess,
+             new CommitTimestampCache(PER_TRANSACTION_COMMIT_TIMESTAMP_CACHE_SIZE));
+    }
+
+    public SerializableTransaction(KeyValueService keyValueService,
+                                   RemoteLockService lockService,
+                                   TimestampService timestampService,
+                                   TransactionService transactionService,
+                                   Cleaner cleaner,
+                                   Supplier<Long> startTimeStamp,
+                                   ConflictDetectionManager conflictDetectionManager,
+                                   SweepStrategyManager sweepStrategyManager,
+                                   long immutableTimestamp,
+                                   Iterable<LockRefreshToken> tokensValidForCommit,
+                                   AtlasDbConstraintCheckingMode constraintCheckingMode,
+                                   Long transactionTimeoutMillis,
+                                   TransactionReadSentinelBehavior readSentinelBehavior,
+                                   boolean allowHiddenTableAccess,
+                                   CommitTimestampCache commitTimestampCache) {
+        this(keyValueService,
+             lockService,
+             timestampService,
+             transactionService,
+             cleaner,
+             startTimeStamp,
+             conflictDetectionManager,
+             sweepStrategyManager,
+             immutableTimestamp,
+             tokensValidForCommit,
+             constraintCheckingMode,
+             transactionTimeoutMillis,
+             readSentinelBehavior,
+             allowHiddenTableAccess,
+             commitTimestampCache,
+             AtlasDbConstants.DEFAULT_RANGE_SCAN_PREFETCH_PAGES);
+    }
+
+    public SerializableTransaction(KeyValueService keyValueService,
+                                   RemoteLockService lockService,
+                                   TimestampService timestampService,
+                                   TransactionService transactionService,
+                                   Cleaner cleaner,
+                                   Supplier<Long> startTimeStamp,
+                                   ConflictDetectionManager conflictDetectionManager,
+                                   SweepStrategyManager sweepStrategyManager,
+                                   long immutableTimestamp,
+                                   Iterable<LockRefreshToken> tokensValidForCommit,
+                                   AtlasDbConstraintCheckingMode constraintCheckingMode,
+                                   Long transactionTimeoutMillis,
+                                   TransactionReadSentinelBehavior readSentinelBehavior,
+                                   boolean allowHiddenTableAccess,
+                                   CommitTimestampCache commitTimestampCache,
+                                   int rangeScanPrefetchPages) {
+        this(keyValueService,
+             lockService,
+             timestampService,
+             transactionService,
+             cleaner,
+             startTimeStamp,
+             conflictDetectionManager,
+             sweepStrategyManager,
+             immutableTimestamp,
+             tokensValidForCommit,
+             constraintCheckingMode,
+             transactionTimeoutMillis,
+             readSentinelBehavior,
+             allowHiddenTableAccess,
+             commitTimestampCache,
+             rangeScanPrefetchPages,
+             AtlasDbConstants.DEFAULT_SERIALIZABLE_READ_SET_ENCODING);
+    }
+
+    /**
+     * @param readSetEncoding how the values read are remembered until they are checked for
+     *                        read-write conflicts at commit time
+     */
+    public SerializableTransaction(KeyValueService keyValueService,
+                                   RemoteLockService lockService,
+                                   TimestampService timestampService,
+                                   TransactionService transactionService,
+                                   Cleaner cleaner,
+                                   Supplier<Long> startTimeStamp,
+                                   ConflictDetectionManager conflictDetectionManager,
+                                   SweepStrategyManager sweepStrategyManager,
+                                   long immutableTimestamp,
+                                   Iterable<LockRefreshToken> tokensValidForCommit,
+                                   AtlasDbConstraintCheckingMode constraintCheckingMode,
+                                   Long transactionTimeoutMillis,
+                                   TransactionReadSentinelBehavior readSentinelBehavior,
+                                   boolean allowHiddenTableAccess,
+                                   CommitTimestampCache commitTimestampCache,
+                                   int rangeScanPrefetchPages,
+                                   SerializableReadSetEncoding readSetEncoding) {
         super(keyValueService,
               lockService,
               timestampService,
@@ -123,7 +247,10 @@ public class SerializableTransaction extends SnapshotTransaction {
               constraintCheckingMode,
               transactionTimeoutMillis,
               readSentinelBehavior,
-              allowHiddenTableAccess);
+              allowHiddenTableAccess,
+              commitTimestampCache,
+              rangeScanPrefetchPages);
+        this.readSetEncoding = readSetEncoding;
     }
 
     @Override
@@ -165,6 +292,26 @@ public class SerializableTransaction extends SnapshotTransaction {
         });
     }
 
+    @Override
+    public Iterator<Entry<RangeRequest, List<RowResult<byte[]>>>> getRanges(final TableReference tableRef,
+                                                                             Iterable<RangeRequest> rangeRequests,
+                                                                             int concurrencyLevel,
+                                                                             boolean preserveOrder) {
+        Iterator<Entry<RangeRequest, List<RowResult<byte[]>>>> ret =
+                super.getRanges(tableRef, rangeRequests, concurrencyLevel, preserveOrder);
+        return Iterators.transform(ret, new Function<Entry<RangeRequest, List<RowResult<byte[]>>>, Entry<RangeRequest, List<RowResult<byte[]>>>>() {
+            @Override
+            public Entry<RangeRequest, List<RowResult<byte[]>>> apply(Entry<RangeRequest, List<RowResult<byte[]>>> range) {
+                // Each range has been read in full.
+                if (!range.getValue().isEmpty()) {
+                    markRangeRead(tableRef, range.getKey(), range.getValue());
+                }
+                reachedEndOfRange(tableRef, range.getKey());
+                return range;
+            }
+        });
+    }
+
     private BatchingVisitable<RowResult<byte[]>> wrapRange(final TableReference tableRef,
                                                            final RangeRequest rangeRequest,
                                                            final BatchingVisitable<RowResult<byte[]>> ret) {
@@ -249,12 +396,27 @@ public class SerializableTransaction extends SnapshotTransaction {
         return map;
     }
 
+    /**
+     * Encodes values with {@link #readSetEncoding}, both when they are read and when they are
+     * read again to check for conflicts.
+     */
+    private Map<Cell, byte[]> encodeReads(Map<Cell, byte[]> values) {
+        if (readSetEncoding == SerializableReadSetEncoding.FULL_VALUES) {
+            return values;
+        }
+        Map<Cell, byte[]> encoded = Maps.newHashMapWithExpectedSize(values.size());
+        for (Entry<Cell, byte[]> e : values.entrySet()) {
+            encoded.put(e.getKey(), readSetEncoding.encode(e.getValue()));
+        }
+        return encoded;
+    }
+
     private void markCellsRead(TableReference table, Set<Cell> searched, Map<Cell, byte[]> result) {
         if (!isSerializableTable(table)) {
             return;
         }
         result = transformGetsForTesting(result);
-        getReadsForTable(table).putAll(result);
+        getReadsForTable(table).putAll(encodeReads(result));
         Set<Cell> cellsForTable = cellsRead.get(table);
         if (cellsForTable == null) {
             cellsRead.putIfAbsent(table, Sets.<Cell>newConcurrentHashSet());
@@ -271,7 +433,7 @@ public class SerializableTransaction extends SnapshotTransaction {
         for (RowResult<byte[]> row : result) {
             Map<Cell, byte[]> map = Maps2.fromEntries(row.getCells());
             map = transformGetsForTesting(map);
-            reads.putAll(map);
+            reads.putAll(encodeReads(map));
         }
         setRangeEnd(table, range, result.get(result.size()-1).getRowName());
     }
@@ -294,7 +456,7 @@ public class SerializableTransaction extends SnapshotTransaction {
         for (RowResult<byte[]> row : result) {
             Map<Cell, byte[]> map = Maps2.fromEntries(row.getCells());
             map = transformGetsForTesting(map);
-            reads.putAll(map);
+            reads.putAll(encodeReads(map));
         }
         Set<RowRead> rowReads = rowsRead.get(table);
         if (rowReads == null) {
@@ -320,13 +482,25 @@ public class SerializableTransaction extends SnapshotTransaction {
     @Override
     protected void throwIfReadWriteConflictForSerializable(long commitTimestamp) {
         Transaction ro = getReadOnlyTransaction(commitTimestamp);
-        verifyRanges(ro);
-        verifyCells(ro);
-        verifyRows(ro);
+        ParallelCheckRunner checks = new ParallelCheckRunner(verifyExecutor, VERIFY_PARALLELISM_PER_COMMIT);
+        addRangeChecks(ro, checks);
+        addCellChecks(ro, checks);
+        addRowChecks(ro, checks);
+        try {
+            checks.run();
+        } finally {
+            readWriteConflictCheckTimings = checks.getTimings();
+        }
+    }
+
+    @Override
+    protected String getReadWriteConflictCheckTimings() {
+        return readWriteConflictCheckTimings;
     }
 
-    private void verifyRows(Transaction ro) {
-        for (TableReference table : rowsRead.keySet()) {
+    private void addRowChecks(final Transaction ro, ParallelCheckRunner checks) {
+        checks.getPhase("rows");
+        for (final TableReference table : rowsRead.keySet()) {
             final ConcurrentNavigableMap<Cell, byte[]> readsForTable = getReadsForTable(table);
             Multimap<ColumnSelection, byte[]> map = Multimaps.newSortedSetMultimap(Maps.<ColumnSelection, Collection<byte[]>>newHashMap(), new Supplier<SortedSet<byte[]>>() {
                 @Override
@@ -338,47 +512,59 @@ public class SerializableTransaction extends SnapshotTransaction {
                 map.putAll(r.cols, r.rows);
             }
             for (final ColumnSelection cols : map.keySet()) {
-                for (List<byte[]> batch : Iterables.partition(map.get(cols), 1000)) {
-                    SortedMap<byte[], RowResult<byte[]>> currentRows = ro.getRows(table, batch, cols);
-                    for (byte[] row : batch) {
-                        RowResult<byte[]> currentRow = currentRows.get(row);
-                        Map<Cell, byte[]> orignalReads = readsForTable.tailMap(Cells.createSmallestCellForRow(row), true).headMap(Cells.createLargestCellForRow(row), true);
-
-                        // We want to filter out all our reads to just the set that matches our column selection.
-                        orignalReads = Maps.filterKeys(orignalReads, new Predicate<Cell>() {
-                            @Override
-                            public boolean apply(Cell input) {
-                                return cols.contains(input.getColumnName());
-                            }
-                        });
-
-                        if (writesByTable.get(table) != null) {
-                            // We don't want to verify any reads that we wrote to cause we will just read our own values.
-                            // NB: We filter our write set out here because our normal SI checking handles this case to ensure the value hasn't changed.
-                            orignalReads = Maps.filterKeys(orignalReads, Predicates.not(Predicates.in(writesByTable.get(table).keySet())));
+                for (final List<byte[]> batch : Iterables.partition(map.get(cols), VERIFY_BATCH_SIZE)) {
+                    checks.add("rows", new Runnable() {
+                        @Override
+                        public void run() {
+                            verifyRows(ro, table, readsForTable, cols, batch);
                         }
+                    });
+                }
+            }
+        }
+    }
 
-                        if (currentRow == null && orignalReads.isEmpty()) {
-                            continue;
-                        }
+    private void verifyRows(Transaction ro,
+                            TableReference table,
+                            ConcurrentNavigableMap<Cell, byte[]> readsForTable,
+                            final ColumnSelection cols,
+                            List<byte[]> batch) {
+        SortedMap<byte[], RowResult<byte[]>> currentRows = ro.getRows(table, batch, cols);
+        for (byte[] row : batch) {
+            RowResult<byte[]> currentRow = currentRows.get(row);
+            Map<Cell, byte[]> orignalReads = readsForTable.tailMap(Cells.createSmallestCellForRow(row), true).headMap(Cells.createLargestCellForRow(row), true);
+
+            // We want to filter out all our reads to just the set that matches our column selection.
+            orignalReads = Maps.filterKeys(orignalReads, new Predicate<Cell>() {
+                @Override
+                public boolean apply(Cell input) {
+                    return cols.contains(input.getColumnName());
+                }
+            });
 
-                        if (currentRow == null) {
-                            throw TransactionSerializableConflictException.create(table, getTimestamp(), System.currentTimeMillis() - timeCreated);
-                        }
+            if (writesByTable.get(table) != null) {
+                // We don't want to verify any reads that we wrote to cause we will just read our own values.
+                // NB: We filter our write set out here because our normal SI checking handles this case to ensure the value hasn't changed.
+                orignalReads = Maps.filterKeys(orignalReads, Predicates.not(Predicates.in(writesByTable.get(table).keySet())));
+            }
 
-                        Map<Cell, byte[]> currentCells = Maps2.fromEntries(currentRow.getCells());
-                        if (writesByTable.get(table) != null) {
-                            // We don't want to verify any reads that we wrote to cause we will just read our own values.
-                            // NB: We filter our write set out here because our normal SI checking handles this case to ensure the value hasn't changed.
-                            currentCells = Maps.filterKeys(currentCells, Predicates.not(Predicates.in(writesByTable.get(table).keySet())));
-                        }
-                        if (!areMapsEqual(orignalReads, currentCells)) {
-                            throw TransactionSerializableConflictException.create(table, getTimestamp(), System.currentTimeMillis() - timeCreated);
-                        }
-                    }
-                }
+            if (currentRow == null && orignalReads.isEmpty()) {
+                continue;
+            }
+
+            if (currentRow == null) {
+                throw TransactionSerializableConflictException.create(table, getTimestamp(), System.currentTimeMillis() - timeCreated);
             }
 
+            Map<Cell, byte[]> currentCells = encodeReads(Maps2.fromEntries(currentRow.getCells()));
+            if (writesByTable.get(table) != null) {
+                // We don't want to verify any reads that we wrote to cause we will just read our own values.
+                // NB: We filter our write set out here because our normal SI checking handles this case to ensure the value hasn't changed.
+                currentCells = Maps.filterKeys(currentCells, Predicates.not(Predicates.in(writesByTable.get(table).keySet())));
+            }
+            if (!areMapsEqual(orignalReads, currentCells)) {
+                throw TransactionSerializableConflictException.create(table, getTimestamp(), System.currentTimeMillis() - timeCreated);
+            }
         }
     }
 
@@ -397,64 +583,87 @@ public class SerializableTransaction extends SnapshotTransaction {
         return true;
     }
 
-    private void verifyCells(Transaction ro) {
-        for (TableReference table : cellsRead.keySet()) {
+    private void addCellChecks(final Transaction ro, ParallelCheckRunner checks) {
+        checks.getPhase("cells");
+        for (final TableReference table : cellsRead.keySet()) {
             final ConcurrentNavigableMap<Cell, byte[]> readsForTable = getReadsForTable(table);
-            for (Iterable<Cell> batch : Iterables.partition(cellsRead.get(table), 1000)) {
+            for (Iterable<Cell> batch : Iterables.partition(cellsRead.get(table), VERIFY_BATCH_SIZE)) {
                 if (writesByTable.get(table) != null) {
                     // We don't want to verify any reads that we wrote to cause we will just read our own values.
                     // NB: If the value has changed between read and write, our normal SI checking handles this case
                     batch = Iterables.filter(batch, Predicates.not(Predicates.in(writesByTable.get(table).keySet())));
                 }
-                ImmutableSet<Cell> batchSet = ImmutableSet.copyOf(batch);
-                Map<Cell, byte[]> currentBatch = ro.get(table, batchSet);
-                ImmutableMap<Cell, byte[]> originalReads = Maps.toMap(Sets.intersection(batchSet, readsForTable.keySet()), Functions.forMap(readsForTable));
-                if (!areMapsEqual(currentBatch, originalReads)) {
-                    throw TransactionSerializableConflictException.create(table, getTimestamp(), System.currentTimeMillis() - timeCreated);
-                }
+                final ImmutableSet<Cell> batchSet = ImmutableSet.copyOf(batch);
+                checks.add("cells", new Runnable() {
+                    @Override
+                    public void run() {
+                        verifyCells(ro, table, readsForTable, batchSet);
+                    }
+                });
             }
         }
     }
 
-    private void verifyRanges(Transaction ro) {
+    private void verifyCells(Transaction ro,
+                             TableReference table,
+                             ConcurrentNavigableMap<Cell, byte[]> readsForTable,
+                             ImmutableSet<Cell> batchSet) {
+        Map<Cell, byte[]> currentBatch = encodeReads(ro.get(table, batchSet));
+        ImmutableMap<Cell, byte[]> originalReads = Maps.toMap(Sets.intersection(batchSet, readsForTable.keySet()), Functions.forMap(readsForTable));
+        if (!areMapsEqual(currentBatch, originalReads)) {
+            throw TransactionSerializableConflictException.create(table, getTimestamp(), System.currentTimeMillis() - timeCreated);
+        }
+    }
+
+    private void addRangeChecks(final Transaction ro, ParallelCheckRunner checks) {
+        checks.getPhase("ranges");
+        for (final TableReference table : rangeEndByTable.keySet()) {
+            for (final Entry<RangeRequest, byte[]> e : rangeEndByTable.get(table).entrySet()) {
+                checks.add("ranges", new Runnable() {
+                    @Override
+                    public void run() {
+                        verifyRange(ro, table, e);
+                    }
+                });
+            }
+        }
+    }
+
+    private void verifyRange(Transaction ro, TableReference table, Entry<RangeRequest, byte[]> e) {
         // verify each set of reads to ensure they are the same.
-        for (TableReference table : rangeEndByTable.keySet()) {
-            for (Entry<RangeRequest, byte[]> e : rangeEndByTable.get(table).entrySet()) {
-                RangeRequest range = e.getKey();
-                byte[] rangeEnd = e.getValue();
-                if (rangeEnd.length != 0 && !RangeRequests.isTerminalRow(range.isReverse(), rangeEnd)) {
-                    range = range.getBuilder().endRowExclusive(RangeRequests.getNextStartRow(range.isReverse(), rangeEnd)).build();
-                }
+        RangeRequest range = e.getKey();
+        byte[] rangeEnd = e.getValue();
+        if (rangeEnd.length != 0 && !RangeRequests.isTerminalRow(range.isReverse(), rangeEnd)) {
+            range = range.getBuilder().endRowExclusive(RangeRequests.getNextStartRow(range.isReverse(), rangeEnd)).build();
+        }
 
-                final ConcurrentNavigableMap<Cell, byte[]> writes = writesByTable.get(table);
-                BatchingVisitableView<RowResult<byte[]>> bv = BatchingVisitableView.of(ro.getRange(table, range));
-                NavigableMap<Cell, ByteBuffer> readsInRange = Maps.transformValues(getReadsInRange(table, e, range),
-                        new Function<byte[], ByteBuffer>() {
-                            @Override
-                            public ByteBuffer apply(byte[] input) {
-                                return ByteBuffer.wrap(input);
-                            }
-                        });
-                boolean isEqual = bv.transformBatch(new Function<List<RowResult<byte[]>>, List<Entry<Cell, ByteBuffer>>>() {
+        final ConcurrentNavigableMap<Cell, byte[]> writes = writesByTable.get(table);
+        BatchingVisitableView<RowResult<byte[]>> bv = BatchingVisitableView.of(ro.getRange(table, range));
+        NavigableMap<Cell, ByteBuffer> readsInRange = Maps.transformValues(getReadsInRange(table, e, range),
+                new Function<byte[], ByteBuffer>() {
                     @Override
-                    public List<Entry<Cell, ByteBuffer>> apply(List<RowResult<byte[]>> input) {
-                        List<Entry<Cell, ByteBuffer>> ret = Lists.newArrayList();
-                        for (RowResult<byte[]> row : input) {
-                            for (Entry<Cell, byte[]> cell : row.getCells()) {
-
-                                // NB: We filter our write set out here because our normal SI checking handles this case to ensure the value hasn't changed.
-                                if (writes == null || !writes.containsKey(cell.getKey())) {
-                                    ret.add(Maps.immutableEntry(cell.getKey(), ByteBuffer.wrap(cell.getValue())));
-                                }
-                            }
+                    public ByteBuffer apply(byte[] input) {
+                        return ByteBuffer.wrap(input);
+                    }
+                });
+        boolean isEqual = bv.transformBatch(new Function<List<RowResult<byte[]>>, List<Entry<Cell, ByteBuffer>>>() {
+            @Override
+            public List<Entry<Cell, ByteBuffer>> apply(List<RowResult<byte[]>> input) {
+                List<Entry<Cell, ByteBuffer>> ret = Lists.newArrayList();
+                for (RowResult<byte[]> row : input) {
+                    for (Entry<Cell, byte[]> cell : row.getCells()) {
+
+                        // NB: We filter our write set out here because our normal SI checking handles this case to ensure the value hasn't changed.
+                        if (writes == null || !writes.containsKey(cell.getKey())) {
+                            ret.add(Maps.immutableEntry(cell.getKey(), ByteBuffer.wrap(readSetEncoding.encode(cell.getValue()))));
                         }
-                        return ret;
                     }
-                }).isEqual(readsInRange.entrySet());
-                if (!isEqual) {
-                    throw TransactionSerializableConflictException.create(table, getTimestamp(), System.currentTimeMillis() - timeCreated);
                 }
+                return ret;
             }
+        }).isEqual(readsInRange.entrySet());
+        if (!isEqual) {
+            throw TransactionSerializableConflictException.create(table, getTimestamp(), System.currentTimeMillis() - timeCreated);
         }
     }
 
@@ -491,7 +700,9 @@ public class SerializableTransaction extends SnapshotTransaction {
                 AtlasDbConstraintCheckingMode.NO_CONSTRAINT_CHECKING,
                 transactionReadTimeoutMillis,
                 getReadSentinelBehavior(),
-                allowHiddenTableAccess) {
+                allowHiddenTableAccess,
+                cachedCommitTimes,
+                rangeScanPrefetchPages) {
             @Override
             protected Map<Long, Long> getCommitTimestamps(TableReference tableRef,
                                                           Iterable<Long> startTimestamps,
@@ -17,9 +17,11 @@ package com.palantir.atlasdb.transaction.impl;
 
 import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
+import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.cleaner.Cleaner;
 import com.palantir.atlasdb.keyvalue.api.KeyValueService;
 import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
+import com.palantir.atlasdb.transaction.api.SerializableReadSetEncoding;
 import com.palantir.atlasdb.transaction.api.TransactionReadSentinelBehavior;
 import com.palantir.atlasdb.transaction.service.TransactionService;
 import com.palantir.lock.LockClient;
@@ -29,6 +31,8 @@ import com.palantir.timestamp.TimestampService;
 
 public class SerializableTransactionManager extends SnapshotTransactionManager {
 
+    private final SerializableReadSetEncoding readSetEncoding;
+
     public SerializableTransactionManager(KeyValueService keyValueService,
                                           TimestampService timestampService,
                                           LockClient lockClient,
@@ -60,6 +64,84 @@ public class SerializableTransactionManager extends SnapshotTransactionManager {
                                           SweepStrategyManager sweepStrategyManager,
                                           Cleaner cleaner,
                                           boolean allowHiddenTableAccess) {
+        this(keyValueService,
+                timestampService,
+                lockClient,
+                lockService,
+                transactionService,
+                constraintModeSupplier,
+                conflictDetectionManager,
+                sweepStrategyManager,
+                cleaner,
+                allowHiddenTableAccess,
+                AtlasDbConstants.DEFAULT_COMMIT_TIMESTAMP_CACHE_SIZE);
+    }
+
+    public SerializableTransactionManager(KeyValueService keyValueService,
+                                          TimestampService timestampService,
+                                          LockClient lockClient,
+                                          RemoteLockService lockService,
+                                          TransactionService transactionService,
+                                          Supplier<AtlasDbConstraintCheckingMode> constraintModeSupplier,
+                                          ConflictDetectionManager conflictDetectionManager,
+                                          SweepStrategyManager sweepStrategyManager,
+                                          Cleaner cleaner,
+                                          boolean allowHiddenTableAccess,
+                                          int commitTimestampCacheSize) {
+        this(keyValueService,
+                timestampService,
+                lockClient,
+                lockService,
+                transactionService,
+                constraintModeSupplier,
+                conflictDetectionManager,
+                sweepStrategyManager,
+                cleaner,
+                allowHiddenTableAccess,
+                commitTimestampCacheSize,
+                AtlasDbConstants.DEFAULT_RANGE_SCAN_PREFETCH_PAGES);
+    }
+
+    public SerializableTransactionManager(KeyValueService keyValueService,
+                                          TimestampService timestampService,
+                                          LockClient lockClient,
+                                          RemoteLockService lockService,
+                                          TransactionService transactionService,
+                                          Supplier<AtlasDbConstraintCheckingMode> constraintModeSupplier,
+                                          ConflictDetectionManager conflictDetectionManager,
+                                          SweepStrategyManager sweepStrategyManager,
+                                          Cleaner cleaner,
+                                          boolean allowHiddenTableAccess,
+                                          int commitTimestampCacheSize,
+                                          int rangeScanPrefetchPages) {
+        this(keyValueService,
+                timestampService,
+                lockClient,
+                lockService,
+                transactionService,
+                constraintModeSupplier,
+                conflictDetectionManager,
+                sweepStrategyManager,
+                cleaner,
+                allowHiddenTableAccess,
+                commitTimestampCacheSize,
+                rangeScanPrefetchPages,
+                AtlasDbConstants.DEFAULT_SERIALIZABLE_READ_SET_ENCODING);
+    }
+
+    public SerializableTransactionManager(KeyValueService keyValueService,
+                                          TimestampService timestampService,
+                                          LockClient lockClient,
+                                          RemoteLockService lockService,
+                                          TransactionService transactionService,
+                                          Supplier<AtlasDbConstraintCheckingMode> constraintModeSupplier,
+                                          ConflictDetectionManager conflictDetectionManager,
+                                          SweepStrategyManager sweepStrategyManager,
+                                          Cleaner cleaner,
+                                          boolean allowHiddenTableAccess,
+                                          int commitTimestampCacheSize,
+                                          int rangeScanPrefetchPages,
+                                          SerializableReadSetEncoding readSetEncoding) {
         super(
                 keyValueService,
                 timestampService,
@@ -70,7 +152,10 @@ public class SerializableTransactionManager extends SnapshotTransactionManager {
                 conflictDetectionManager,
                 sweepStrategyManager,
                 cleaner,
-                allowHiddenTableAccess);
+                allowHiddenTableAccess,
+                commitTimestampCacheSize,
+                rangeScanPrefetchPages);
+        this.readSetEncoding = readSetEncoding;
     }
 
     @Override
@@ -91,7 +176,10 @@ public class SerializableTransactionManager extends SnapshotTransactionManager {
                 constraintModeSupplier.get(),
                 cleaner.getTransactionReadTimeoutMillis(),
                 TransactionReadSentinelBehavior.THROW_EXCEPTION,
-                allowHiddenTableAccess);
+                allowHiddenTableAccess,
+                commitTimestampCache,
+                rangeScanPrefetchPages,
+                readSetEncoding);
     }
 
 }
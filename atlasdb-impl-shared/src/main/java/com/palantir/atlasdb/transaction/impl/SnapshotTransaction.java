@@ -15,19 +15,27 @@
  */
 package com.palantir.atlasdb.transaction.impl;
 
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.SortedMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ConcurrentNavigableMap;
 import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -51,6 +59,7 @@ import com.google.common.collect.FluentIterable;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultiset;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.ImmutableSortedMap.Builder;
@@ -60,8 +69,15 @@ import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
+import com.google.common.collect.Multiset;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.AtlasDbPerformanceConstants;
 import com.palantir.atlasdb.cleaner.Cleaner;
@@ -105,6 +121,8 @@ import com.palantir.common.base.Throwables;
 import com.palantir.common.collect.IterableUtils;
 import com.palantir.common.collect.IteratorUtils;
 import com.palantir.common.collect.MapEntries;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.lock.AtlasCellLockDescriptor;
 import com.palantir.lock.AtlasRowLockDescriptor;
 import com.palantir.lock.LockClient;
@@ -115,9 +133,7 @@ import com.palantir.lock.LockRequest;
 import com.palantir.lock.RemoteLockService;
 import com.palantir.timestamp.TimestampService;
 import com.palantir.util.AssertUtils;
-import com.palantir.util.DistributedCacheMgrCache;
 import com.palantir.util.Pair;
-import com.palantir.util.SoftCache;
 import com.palantir.util.paging.TokenBackedBasicResultsPage;
 
 /**
@@ -137,10 +153,25 @@ import com.palantir.util.paging.TokenBackedBasicResultsPage;
  */
 public class SnapshotTransaction extends AbstractTransaction implements ConstraintCheckingTransaction {
     private static final int BATCH_SIZE_GET_FIRST_PAGE = 1000;
+    static final int PER_TRANSACTION_COMMIT_TIMESTAMP_CACHE_SIZE = 1024;
     private final static Logger log = LoggerFactory.getLogger(SnapshotTransaction.class);
     private static final Logger perfLogger = LoggerFactory.getLogger("dualschema.perf");
     private static final Logger constraintLogger = LoggerFactory.getLogger("dualschema.constraints");
 
+    // Shared by all transactions; each range scan has at most rangeScanPrefetchPages pages in flight,
+    // and each concurrent getRanges call has at most concurrencyLevel groups of ranges being read.
+    private static final int RANGE_PREFETCH_THREADS = 32;
+    private static final ListeningExecutorService rangePrefetchExecutor = createDaemonExecutor(
+            RANGE_PREFETCH_THREADS, "atlas-range-prefetch");
+
+    // Shared by all transactions; runs getAsync, getRowsAsync and getRangeAsync.  This is separate from
+    // rangePrefetchExecutor so that range visitors running here can never starve their own prefetches.
+    // A getRangeAsync visitor must not wait on another async read, since that read may be queued
+    // behind visitors that are all doing the same thing.
+    static final int ASYNC_READ_THREADS = 64;
+    private static final ListeningExecutorService asyncReadExecutor = createDaemonExecutor(
+            ASYNC_READ_THREADS, "atlas-async-read");
+
     private enum State {
         UNCOMMITTED,
         COMMITTED,
@@ -165,7 +196,8 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
 
     protected final ConcurrentMap<TableReference, ConcurrentNavigableMap<Cell, byte[]>> writesByTable = Maps.newConcurrentMap();
     private final ConflictDetectionManager conflictDetectionManager;
-    private final DistributedCacheMgrCache<Long, Long> cachedCommitTimes = new SoftCache<Long, Long>();
+    protected final CommitTimestampCache cachedCommitTimes;
+    private final CommitTimestampLookupBatcher commitTimestampLookups;
     private final AtomicLong byteCount = new AtomicLong();
 
     private final AtlasDbConstraintCheckingMode constraintCheckingMode;
@@ -174,12 +206,14 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
 
     private final AtomicReference<State> state = new AtomicReference<State>(State.UNCOMMITTED);
     private final AtomicLong numWriters = new AtomicLong();
+    private final AtomicLong numAsyncReads = new AtomicLong();
     protected final SweepStrategyManager sweepStrategyManager;
     protected final Long transactionReadTimeoutMillis;
     private final TransactionReadSentinelBehavior readSentinelBehavior;
     private volatile long commitTsForScrubbing = TransactionConstants.FAILED_COMMIT_TS;
     protected final boolean allowHiddenTableAccess;
     protected final Stopwatch transactionTimer = Stopwatch.createStarted();
+    protected final int rangeScanPrefetchPages;
 
     /**
      * @param keyValueService
@@ -191,6 +225,34 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
      * @param tokensValidForCommit These tokens need to be valid with {@link #lockService} for this transaction
      *                             to commit.  If these locks have expired then the commit will fail.
      * @param transactionTimeoutMillis
+     * @param commitTimestampCache cache of start to commit timestamps, usually shared by all
+     *                             transactions of a {@link SnapshotTransactionManager}
+     */
+    /* package */ SnapshotTransaction(KeyValueService keyValueService,
+                               RemoteLockService lockService,
+                               TimestampService timestampService,
+                               TransactionService transactionService,
+                               Cleaner cleaner,
+                               Supplier<Long> startTimeStamp,
+                               ConflictDetectionManager conflictDetectionManager,
+                               SweepStrategyManager sweepStrategyManager,
+                               long immutableTimestamp,
+                               Iterable<LockRefreshToken> tokensValidForCommit,
+                               AtlasDbConstraintCheckingMode constraintCheckingMode,
+                               Long transactionTimeoutMillis,
+                               TransactionReadSentinelBehavior readSentinelBehavior,
+                               boolean allowHiddenTableAccess,
+                               CommitTimestampCache commitTimestampCache) {
+        this(keyValueService, lockService, timestampService, transactionService, cleaner, startTimeStamp,
+                conflictDetectionManager, sweepStrategyManager, immutableTimestamp, tokensValidForCommit,
+                constraintCheckingMode, transactionTimeoutMillis, readSentinelBehavior, allowHiddenTableAccess,
+                commitTimestampCache, AtlasDbConstants.DEFAULT_RANGE_SCAN_PREFETCH_PAGES);
+    }
+
+    /**
+     * @param rangeScanPrefetchPages how many pages a range scan fetches from the key value service
+     *                               ahead of the page being read, post-filtering them in the background.
+     *                               0 reads and post-filters one page at a time on the calling thread.
      */
     /* package */ SnapshotTransaction(KeyValueService keyValueService,
                                RemoteLockService lockService,
@@ -205,10 +267,14 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                                AtlasDbConstraintCheckingMode constraintCheckingMode,
                                Long transactionTimeoutMillis,
                                TransactionReadSentinelBehavior readSentinelBehavior,
-                               boolean allowHiddenTableAccess) {
+                               boolean allowHiddenTableAccess,
+                               CommitTimestampCache commitTimestampCache,
+                               int rangeScanPrefetchPages) {
+        Preconditions.checkArgument(rangeScanPrefetchPages >= 0, "rangeScanPrefetchPages must not be negative");
         this.keyValueService = keyValueService;
         this.timestampService = timestampService;
         this.defaultTransactionService = transactionService;
+        this.commitTimestampLookups = new CommitTimestampLookupBatcher(transactionService);
         this.cleaner = cleaner;
         this.lockService = lockService;
         this.startTimestamp = startTimeStamp;
@@ -220,6 +286,8 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         this.transactionReadTimeoutMillis = transactionTimeoutMillis;
         this.readSentinelBehavior = readSentinelBehavior;
         this.allowHiddenTableAccess = allowHiddenTableAccess;
+        this.cachedCommitTimes = commitTimestampCache;
+        this.rangeScanPrefetchPages = rangeScanPrefetchPages;
     }
 
     // TEST ONLY
@@ -235,6 +303,7 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         this.keyValueService = keyValueService;
         this.timestampService = timestampService;
         this.defaultTransactionService = transactionService;
+        this.commitTimestampLookups = new CommitTimestampLookupBatcher(transactionService);
         this.cleaner = cleaner;
         this.lockService = lockService;
         this.startTimestamp = Suppliers.ofInstance(startTimeStamp);
@@ -246,6 +315,8 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         this.transactionReadTimeoutMillis = null;
         this.readSentinelBehavior = readSentinelBehavior;
         this.allowHiddenTableAccess = false;
+        this.cachedCommitTimes = new CommitTimestampCache(PER_TRANSACTION_COMMIT_TIMESTAMP_CACHE_SIZE);
+        this.rangeScanPrefetchPages = AtlasDbConstants.DEFAULT_RANGE_SCAN_PREFETCH_PAGES;
     }
 
     /**
@@ -270,6 +341,7 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                                   boolean allowHiddenTableAccess) {
         this.keyValueService = keyValueService;
         this.defaultTransactionService = transactionService;
+        this.commitTimestampLookups = new CommitTimestampLookupBatcher(transactionService);
         this.cleaner = NoOpCleaner.INSTANCE;
         this.lockService = lockService;
         this.startTimestamp = Suppliers.ofInstance(startTimeStamp);
@@ -282,6 +354,8 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         this.transactionReadTimeoutMillis = null;
         this.readSentinelBehavior = readSentinelBehavior;
         this.allowHiddenTableAccess = allowHiddenTableAccess;
+        this.cachedCommitTimes = new CommitTimestampCache(PER_TRANSACTION_COMMIT_TIMESTAMP_CACHE_SIZE);
+        this.rangeScanPrefetchPages = AtlasDbConstants.DEFAULT_RANGE_SCAN_PREFETCH_PAGES;
     }
 
     @Override
@@ -410,6 +484,90 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         return Maps.filterValues(result, Predicates.not(Value.IS_EMPTY));
     }
 
+    @Override
+    public ListenableFuture<Map<Cell, byte[]>> getAsync(final TableReference tableRef, final Set<Cell> cells) {
+        checkGetPreconditions(tableRef);
+        return submitAsyncRead(new Callable<Map<Cell, byte[]>>() {
+            @Override
+            public Map<Cell, byte[]> call() {
+                return get(tableRef, cells);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<SortedMap<byte[], RowResult<byte[]>>> getRowsAsync(final TableReference tableRef,
+                                                                              final Iterable<byte[]> rows,
+                                                                              final ColumnSelection columnSelection) {
+        checkGetPreconditions(tableRef);
+        return submitAsyncRead(new Callable<SortedMap<byte[], RowResult<byte[]>>>() {
+            @Override
+            public SortedMap<byte[], RowResult<byte[]>> call() {
+                return getRows(tableRef, rows, columnSelection);
+            }
+        });
+    }
+
+    @Override
+    public ListenableFuture<Boolean> getRangeAsync(final TableReference tableRef,
+                                                   final RangeRequest rangeRequest,
+                                                   final int batchSize,
+                                                   final AbortingVisitor<? super List<RowResult<byte[]>>, ? extends Exception> visitor) {
+        checkGetPreconditions(tableRef);
+        return submitAsyncRead(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                return getRange(tableRef, rangeRequest).batchAccept(batchSize, visitor);
+            }
+        });
+    }
+
+    /**
+     * Async reads are counted until they finish so that {@link #commit} can refuse to go ahead
+     * while one is outstanding; a serializable transaction would otherwise verify its reads
+     * before such a read had recorded what it saw.
+     */
+    private <T> ListenableFuture<T> submitAsyncRead(final Callable<T> read) {
+        numAsyncReads.incrementAndGet();
+        boolean submitted = false;
+        try {
+            // We need to check the status after incrementing async reads to ensure that we fail if we are committing.
+            Preconditions.checkState(state.get() == State.UNCOMMITTED, "Transaction must be uncommitted.");
+            // Whichever of the read and its cancellation claims this first is responsible for the
+            // decrement.  The read decrements before its future completes, so a caller woken by get()
+            // can commit straight away; a read cancelled while still queued never runs, so the listener
+            // decrements for it instead.
+            final AtomicBoolean started = new AtomicBoolean(false);
+            final ListenableFuture<T> future = asyncReadExecutor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    if (!started.compareAndSet(false, true)) {
+                        return null;
+                    }
+                    try {
+                        return read.call();
+                    } finally {
+                        numAsyncReads.decrementAndGet();
+                    }
+                }
+            });
+            future.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (future.isCancelled() && started.compareAndSet(false, true)) {
+                        numAsyncReads.decrementAndGet();
+                    }
+                }
+            }, MoreExecutors.directExecutor());
+            submitted = true;
+            return future;
+        } finally {
+            if (!submitted) {
+                numAsyncReads.decrementAndGet();
+            }
+        }
+    }
+
     @Override
     public Map<Cell, byte[]> getIgnoringLocalWrites(TableReference tableRef, Set<Cell> cells) {
         checkGetPreconditions(tableRef);
@@ -509,6 +667,172 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                 });
     }
 
+    @Override
+    public Iterator<Entry<RangeRequest, List<RowResult<byte[]>>>> getRanges(final TableReference tableRef,
+                                                                             Iterable<RangeRequest> rangeRequests,
+                                                                             int concurrencyLevel,
+                                                                             boolean preserveOrder) {
+        checkGetPreconditions(tableRef);
+        Preconditions.checkArgument(concurrencyLevel > 0, "concurrencyLevel must be positive");
+        final List<RangeRequest> requested = ImmutableList.copyOf(rangeRequests);
+        if (perfLogger.isDebugEnabled()) {
+            perfLogger.debug("Passed {} ranges to getRanges({}, {}) with concurrency level {}",
+                    requested.size(), tableRef, requested, concurrencyLevel);
+        }
+
+        // Identical requests are only read once.
+        Map<RangeRequest, SettableFuture<SortedMap<Cell, byte[]>>> futuresBuilder = Maps.newLinkedHashMap();
+        for (RangeRequest range : requested) {
+            Validate.isTrue(!range.isReverse(), "we currently do not support reverse ranges");
+            if (!futuresBuilder.containsKey(range)) {
+                futuresBuilder.put(range, SettableFuture.<SortedMap<Cell, byte[]>>create());
+            }
+        }
+        final Map<RangeRequest, SettableFuture<SortedMap<Cell, byte[]>>> futures = ImmutableMap.copyOf(futuresBuilder);
+
+        // Ranges are dealt out round robin so that every group works on the front of the request list first.
+        int numGroups = Math.min(concurrencyLevel, futures.size());
+        List<List<RangeRequest>> groups = Lists.newArrayListWithCapacity(numGroups);
+        for (int i = 0; i < numGroups; i++) {
+            groups.add(Lists.<RangeRequest>newArrayList());
+        }
+        int next = 0;
+        for (RangeRequest range : futures.keySet()) {
+            groups.get(next++ % numGroups).add(range);
+        }
+        for (final List<RangeRequest> group : groups) {
+            rangePrefetchExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (List<RangeRequest> batch : Iterables.partition(group, BATCH_SIZE_GET_FIRST_PAGE)) {
+                            readRangesInFull(tableRef, batch, futures);
+                        }
+                    } catch (Throwable t) {
+                        // Ranges that were already read keep their results.
+                        for (RangeRequest range : group) {
+                            futures.get(range).setException(t);
+                        }
+                    }
+                }
+            });
+        }
+
+        Iterator<RangeRequest> ranges = preserveOrder
+                ? requested.iterator()
+                : inCompletionOrder(requested, futures);
+        return Iterators.transform(ranges, new Function<RangeRequest, Entry<RangeRequest, List<RowResult<byte[]>>>>() {
+            @Override
+            public Entry<RangeRequest, List<RowResult<byte[]>>> apply(RangeRequest range) {
+                SortedMap<Cell, byte[]> postFiltered = getUnchecked(futures.get(range));
+                checkGetPreconditions(tableRef);
+                Iterator<Entry<Cell, byte[]>> cells = mergeInLocalWrites(
+                        postFiltered.entrySet().iterator(),
+                        getLocalWritesForRange(tableRef, range.getStartInclusive(), range.getEndExclusive()).entrySet().iterator(),
+                        false);
+                List<RowResult<byte[]>> rows = ImmutableList.copyOf(Cells.createRowView(ImmutableList.copyOf(cells)));
+                return Maps.immutableEntry(range, rows);
+            }
+        });
+    }
+
+    /**
+     * Returns each requested range, once per time it was requested, as soon as its future is done.
+     */
+    private static Iterator<RangeRequest> inCompletionOrder(final List<RangeRequest> requested,
+                                                            Map<RangeRequest, ? extends ListenableFuture<?>> futures) {
+        final BlockingQueue<RangeRequest> completed = new LinkedBlockingQueue<RangeRequest>();
+        final Multiset<RangeRequest> occurrences = ImmutableMultiset.copyOf(requested);
+        for (final Entry<RangeRequest, ? extends ListenableFuture<?>> e : futures.entrySet()) {
+            e.getValue().addListener(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < occurrences.count(e.getKey()); i++) {
+                        completed.add(e.getKey());
+                    }
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        return new AbstractIterator<RangeRequest>() {
+            int remaining = requested.size();
+
+            @Override
+            protected RangeRequest computeNext() {
+                if (remaining == 0) {
+                    return endOfData();
+                }
+                remaining--;
+                return Uninterruptibles.takeUninterruptibly(completed);
+            }
+        };
+    }
+
+    /**
+     * Reads each of the given ranges to its end and completes its future with the post-filtered
+     * cells of the range.  Every round fetches the next page of all unfinished ranges in one
+     * request and post-filters them together, so commit timestamps are looked up in batches.
+     */
+    private void readRangesInFull(TableReference tableRef,
+                                  List<RangeRequest> ranges,
+                                  Map<RangeRequest, SettableFuture<SortedMap<Cell, byte[]>>> results) {
+        // Maps each unfinished range to the request for its next page.
+        Map<RangeRequest, RangeRequest> nextPages = Maps.newLinkedHashMap();
+        Map<RangeRequest, SortedMap<Cell, byte[]>> cellsByRange = Maps.newHashMap();
+        for (RangeRequest range : ranges) {
+            if (range.isEmptyRange()) {
+                results.get(range).set(ImmutableSortedMap.<Cell, byte[]>of());
+            } else {
+                nextPages.put(range, range);
+                cellsByRange.put(range, Maps.<Cell, byte[]>newTreeMap());
+            }
+        }
+
+        while (!nextPages.isEmpty()) {
+            Map<RangeRequest, TokenBackedBasicResultsPage<RowResult<Value>, byte[]>> pages = keyValueService.getFirstBatchForRanges(
+                    tableRef,
+                    ImmutableSet.copyOf(nextPages.values()),
+                    getStartTimestamp());
+            validateExternalAndCommitLocksIfNecessary(tableRef);
+            SortedMap<Cell, byte[]> postFiltered = postFilterPages(tableRef, pages.values());
+
+            Iterator<Entry<RangeRequest, RangeRequest>> it = nextPages.entrySet().iterator();
+            while (it.hasNext()) {
+                Entry<RangeRequest, RangeRequest> e = it.next();
+                RangeRequest range = e.getKey();
+                RangeRequest pageRequest = e.getValue();
+                TokenBackedBasicResultsPage<RowResult<Value>, byte[]> page = pages.get(pageRequest);
+                SortedMap<Cell, byte[]> cells = cellsByRange.get(range);
+                for (RowResult<Value> row : page.getResults()) {
+                    for (byte[] col : row.getColumns().keySet()) {
+                        Cell cell = Cell.create(row.getRowName(), col);
+                        byte[] value = postFiltered.get(cell);
+                        if (value != null) {
+                            cells.put(cell, value);
+                        }
+                    }
+                }
+                byte[] nextStartRowName = getNextStartRowName(pageRequest, page);
+                if (page.moreResultsAvailable() && nextStartRowName.length != 0) {
+                    e.setValue(pageRequest.getBuilder()
+                            .startRowInclusive(nextStartRowName)
+                            .batchHint(getNextPageBatchHint(pageRequest, page))
+                            .build());
+                } else {
+                    it.remove();
+                    results.get(range).set(cellsByRange.remove(range));
+                }
+            }
+        }
+    }
+
+    private static int getNextPageBatchHint(RangeRequest pageRequest,
+                                            TokenBackedBasicResultsPage<RowResult<Value>, byte[]> page) {
+        int lastHint = pageRequest.getBatchHint() != null
+                ? pageRequest.getBatchHint()
+                : Math.max(page.getResults().size(), 1);
+        return (int) Math.min(2L * lastHint, AtlasDbPerformanceConstants.MAX_BATCH_SIZE);
+    }
+
     private void validateExternalAndCommitLocksIfNecessary(TableReference tableRef) {
         if (!isValidationNecessary(tableRef)) {
             return;
@@ -647,6 +971,9 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                                                                     int preFilterBatchSize,
                                                                     final Function<Value, T> transformer) {
         final BatchSizeIncreasingRangeIterator results = new BatchSizeIncreasingRangeIterator(tableRef, range, preFilterBatchSize);
+        if (rangeScanPrefetchPages > 0) {
+            return new PrefetchingPostFilterIterator<T>(tableRef, results, transformer, rangeScanPrefetchPages);
+        }
         Iterator<Iterator<RowResult<T>>> batchedPostfiltered = new AbstractIterator<Iterator<RowResult<T>>>() {
             @Override
             protected Iterator<RowResult<T>> computeNext() {
@@ -676,13 +1003,141 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         };
     }
 
+    /**
+     * Keeps up to {@code prefetchPages} pages ahead of the reader in flight.  Pages are still fetched
+     * one after another, since each one starts after the last row of the previous one and is sized by
+     * {@link BatchSizeIncreasingRangeIterator#getBestBatchSize()}, but each page is post-filtered on
+     * {@link #rangePrefetchExecutor} while the next one is being fetched.  Batch sizes adapt to the
+     * pages that have finished post-filtering by the time the next page is requested.
+     */
+    private class PrefetchingPostFilterIterator<T> extends AbstractIterator<RowResult<T>>
+            implements ClosableIterator<RowResult<T>> {
+        private final TableReference tableRef;
+        private final BatchSizeIncreasingRangeIterator results;
+        private final Function<Value, T> transformer;
+        private final int prefetchPages;
+
+        // Post-filtered pages in range order; null marks the end of the range.
+        private final Deque<ListenableFuture<SortedMap<Cell, T>>> pages =
+                new ArrayDeque<ListenableFuture<SortedMap<Cell, T>>>();
+        private ListenableFuture<List<RowResult<Value>>> lastFetch = null;
+        private boolean lastPageRequested = false;
+        private Iterator<RowResult<T>> currentPage = ImmutableList.<RowResult<T>>of().iterator();
+        private volatile boolean closed = false;
+
+        PrefetchingPostFilterIterator(TableReference tableRef,
+                                      BatchSizeIncreasingRangeIterator results,
+                                      Function<Value, T> transformer,
+                                      int prefetchPages) {
+            this.tableRef = tableRef;
+            this.results = results;
+            this.transformer = transformer;
+            this.prefetchPages = prefetchPages;
+        }
+
+        @Override
+        protected RowResult<T> computeNext() {
+            while (!currentPage.hasNext()) {
+                requestPages();
+                SortedMap<Cell, T> page = getUnchecked(pages.removeFirst());
+                if (page == null) {
+                    lastPageRequested = true;
+                    pages.clear();
+                    return endOfData();
+                }
+                currentPage = Cells.createRowView(page.entrySet());
+            }
+            return currentPage.next();
+        }
+
+        private void requestPages() {
+            while (!lastPageRequested && pages.size() <= prefetchPages) {
+                final ListenableFuture<List<RowResult<Value>>> fetch = fetchAfter(lastFetch);
+                lastFetch = fetch;
+                pages.addLast(Futures.transform(fetch, new Function<List<RowResult<Value>>, SortedMap<Cell, T>>() {
+                    @Override
+                    public SortedMap<Cell, T> apply(List<RowResult<Value>> batch) {
+                        if (batch.isEmpty() || closed) {
+                            return null;
+                        }
+                        SortedMap<Cell, T> postFilter = postFilterRows(tableRef, batch, transformer);
+                        results.markNumRowsNotDeleted(Cells.getRows(postFilter.keySet()).size());
+                        return postFilter;
+                    }
+                }, rangePrefetchExecutor));
+            }
+        }
+
+        private ListenableFuture<List<RowResult<Value>>> fetchAfter(
+                @Nullable ListenableFuture<List<RowResult<Value>>> previous) {
+            if (previous == null) {
+                return rangePrefetchExecutor.submit(new Callable<List<RowResult<Value>>>() {
+                    @Override
+                    public List<RowResult<Value>> call() {
+                        return fetch();
+                    }
+                });
+            }
+            return Futures.transform(previous, new Function<List<RowResult<Value>>, List<RowResult<Value>>>() {
+                @Override
+                public List<RowResult<Value>> apply(List<RowResult<Value>> previousBatch) {
+                    if (previousBatch.isEmpty()) {
+                        // The range is exhausted.
+                        return previousBatch;
+                    }
+                    return fetch();
+                }
+            }, rangePrefetchExecutor);
+        }
+
+        private List<RowResult<Value>> fetch() {
+            if (closed) {
+                return ImmutableList.of();
+            }
+            return results.getBatch();
+        }
+
+        @Override
+        public void close() {
+            // Pages still in flight skip their remaining work.  They are not cancelled, because cancelling
+            // a page also cancels its fetch, and then we could not wait for that fetch below.
+            closed = true;
+            pages.clear();
+            // The key value service iterator must not be closed while a fetch is still reading from it.
+            if (lastFetch != null) {
+                try {
+                    Uninterruptibles.getUninterruptibly(lastFetch);
+                } catch (ExecutionException e) {
+                    // This page was never going to be read; the fetch failure is not interesting any more.
+                }
+            }
+            results.close();
+        }
+    }
+
+    private static <V> V getUnchecked(ListenableFuture<V> future) {
+        try {
+            return Uninterruptibles.getUninterruptibly(future);
+        } catch (ExecutionException e) {
+            throw Throwables.rewrapAndThrowUncheckedException(e.getCause());
+        }
+    }
+
+    private static ListeningExecutorService createDaemonExecutor(int numThreads, String name) {
+        ExecutorService executor = PTExecutors.newFixedThreadPool(
+                numThreads,
+                new NamedThreadFactory(name, true /* isDaemon */));
+        return MoreExecutors.listeningDecorator(executor);
+    }
+
     private class BatchSizeIncreasingRangeIterator {
         final TableReference tableRef;
         final RangeRequest range;
         final int originalBatchSize;
 
-        long numReturned = 0;
-        long numNotDeleted = 0;
+        // Pages may be post-filtered on other threads than the one fetching them, see PrefetchingPostFilterIterator.
+        volatile long numReturned = 0;
+        final AtomicLong numNotDeleted = new AtomicLong();
 
         ClosableIterator<RowResult<Value>> results = null;
         int lastBatchSize;
@@ -698,8 +1153,8 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         }
 
         public void markNumRowsNotDeleted(int rowsInBatch) {
-            numNotDeleted += rowsInBatch;
-            AssertUtils.assertAndLog(numNotDeleted <= numReturned, "NotDeleted is bigger than the number of rows we returned.");
+            long notDeleted = numNotDeleted.addAndGet(rowsInBatch);
+            AssertUtils.assertAndLog(notDeleted <= numReturned, "NotDeleted is bigger than the number of rows we returned.");
         }
 
         int getBestBatchSize() {
@@ -707,6 +1162,7 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                 return originalBatchSize;
             }
             final long batchSize;
+            long numNotDeleted = this.numNotDeleted.get();
             if (numNotDeleted == 0) {
                 // If everything we've seen has been deleted, we should be aggressive about getting more rows.
                 batchSize = numReturned*4;
@@ -1093,6 +1549,10 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                 // After we set state to committing we need to make sure no one is still writing.
                 throw new IllegalStateException("Cannot commit while other threads are still calling put.");
             }
+            if (numAsyncReads.get() > 0) {
+                // Likewise, no async read may still be recording what it read.
+                throw new IllegalStateException("Cannot commit while async reads are still outstanding.");
+            }
 
             if (!getAllTempTables().isEmpty()) {
                 dropTempTables();
@@ -1160,7 +1620,9 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
             cleaner.punch(commitTimestamp);
             long millisForPunch = watch.elapsed(TimeUnit.MILLISECONDS);
 
+            watch.reset().start();
             throwIfReadWriteConflictForSerializable(commitTimestamp);
+            long millisCheckingForReadWriteConflicts = watch.elapsed(TimeUnit.MILLISECONDS);
 
             // Verify that our locks are still valid before we actually commit;
             // this check is required by the transaction protocol for correctness
@@ -1181,11 +1643,13 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
             if (perfLogger.isDebugEnabled()) {
                 perfLogger.debug("Committed {} bytes with locks, start ts {}, commit ts {}, " +
                         "acquiring locks took {} ms, checking for conflicts took {} ms, " +
-                        "writing took {} ms, punch took {} ms, putCommitTs took {} ms, " +
+                        "writing took {} ms, punch took {} ms, " +
+                        "checking for read write conflicts took {} ms ({}), putCommitTs took {} ms, " +
                         "total time since tx creation {} ms, tables: {}.",
                         byteCount.get(), getStartTimestamp(),
                         commitTimestamp, millisForLocks, millisCheckingForConflicts, millisForWrites,
-                        millisForPunch, millisForCommitTs, millisSinceCreation, writesByTable.keySet());
+                        millisForPunch, millisCheckingForReadWriteConflicts, getReadWriteConflictCheckTimings(),
+                        millisForCommitTs, millisSinceCreation, writesByTable.keySet());
             }
         } finally {
             lockService.unlock(commitLocksToken);
@@ -1196,6 +1660,14 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         // This is for overriding to get serializable transactions
     }
 
+    /**
+     * @return a breakdown of the work done by {@link #throwIfReadWriteConflictForSerializable(long)},
+     *         for the commit perf log
+     */
+    protected String getReadWriteConflictCheckTimings() {
+        return "none";
+    }
+
     private boolean hasWrites() {
         boolean hasWrites = false;
         for (SortedMap<?, ?> map : writesByTable.values()) {
@@ -1559,8 +2031,8 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
         Map<Long, Long> result = Maps.newHashMap();
         Set<Long> gets = Sets.newHashSet();
         for (long startTS : startTimestamps) {
-            Long cached = cachedCommitTimes.get(startTS);
-            if (cached != null) {
+            long cached = cachedCommitTimes.get(startTS);
+            if (cached != CommitTimestampCache.NO_ENTRY) {
                 result.put(startTS, cached);
             } else {
                 gets.add(startTS);
@@ -1579,7 +2051,7 @@ public class SnapshotTransaction extends AbstractTransaction implements Constrai
                     watch.elapsed(TimeUnit.MILLISECONDS), tableRef);
         }
 
-        Map<Long, Long> rawResults = defaultTransactionService.get(gets);
+        Map<Long, Long> rawResults = commitTimestampLookups.get(gets);
         for (Map.Entry<Long, Long> e : rawResults.entrySet()) {
             if (e.getValue() != null) {
                 long startTS = e.getKey();
@@ -16,9 +16,11 @@
 package com.palantir.atlasdb.transaction.impl;
 
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
+import javax.management.DynamicMBean;
 
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
@@ -27,6 +29,7 @@ import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Iterables;
+import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.cleaner.Cleaner;
 import com.palantir.atlasdb.cleaner.NoOpCleaner;
 import com.palantir.atlasdb.keyvalue.api.KeyValueService;
@@ -48,9 +51,11 @@ import com.palantir.lock.LockRefreshToken;
 import com.palantir.lock.LockRequest;
 import com.palantir.lock.RemoteLockService;
 import com.palantir.timestamp.TimestampService;
+import com.palantir.util.JMXUtils;
 
 /* package */ class SnapshotTransactionManager extends AbstractLockAwareTransactionManager {
     private final static int NUM_RETRIES = 10;
+    private static final AtomicInteger commitTimestampCacheCount = new AtomicInteger();
 
     final KeyValueService keyValueService;
     final TransactionService transactionService;
@@ -63,6 +68,10 @@ import com.palantir.timestamp.TimestampService;
     final AtomicLong recentImmutableTs = new AtomicLong(-1L);
     final Cleaner cleaner;
     final boolean allowHiddenTableAccess;
+    final CommitTimestampCache commitTimestampCache;
+    final int rangeScanPrefetchPages;
+    // JMX only holds the cache bean weakly, so we keep it alive for as long as this manager.
+    private final DynamicMBean commitTimestampCacheMBean;
 
     protected SnapshotTransactionManager(KeyValueService keyValueService,
                                       TimestampService timestampService,
@@ -87,6 +96,50 @@ import com.palantir.timestamp.TimestampService;
                                       SweepStrategyManager sweepStrategyManager,
                                       Cleaner cleaner,
                                       boolean allowHiddenTableAccess) {
+        this(keyValueService, timestampService, lockClient, lockService, transactionService,
+                constraintModeSupplier, conflictDetectionManager, sweepStrategyManager, cleaner, allowHiddenTableAccess,
+                AtlasDbConstants.DEFAULT_COMMIT_TIMESTAMP_CACHE_SIZE);
+    }
+
+    /**
+     * @param commitTimestampCacheSize the maximum number of commit timestamps cached on behalf of
+     *                                 all transactions created by this manager
+     */
+    protected SnapshotTransactionManager(KeyValueService keyValueService,
+                                      TimestampService timestampService,
+                                      LockClient lockClient,
+                                      RemoteLockService lockService,
+                                      TransactionService transactionService,
+                                      Supplier<AtlasDbConstraintCheckingMode> constraintModeSupplier,
+                                      ConflictDetectionManager conflictDetectionManager,
+                                      SweepStrategyManager sweepStrategyManager,
+                                      Cleaner cleaner,
+                                      boolean allowHiddenTableAccess,
+                                      int commitTimestampCacheSize) {
+        this(keyValueService, timestampService, lockClient, lockService, transactionService,
+                constraintModeSupplier, conflictDetectionManager, sweepStrategyManager, cleaner, allowHiddenTableAccess,
+                commitTimestampCacheSize, AtlasDbConstants.DEFAULT_RANGE_SCAN_PREFETCH_PAGES);
+    }
+
+    /**
+     * @param commitTimestampCacheSize the maximum number of commit timestamps cached on behalf of
+     *                                 all transactions created by this manager
+     * @param rangeScanPrefetchPages how many pages range scans of this manager's transactions fetch
+     *                               ahead of the page being read, or 0 to fetch pages on demand
+     */
+    protected SnapshotTransactionManager(KeyValueService keyValueService,
+                                      TimestampService timestampService,
+                                      LockClient lockClient,
+                                      RemoteLockService lockService,
+                                      TransactionService transactionService,
+                                      Supplier<AtlasDbConstraintCheckingMode> constraintModeSupplier,
+                                      ConflictDetectionManager conflictDetectionManager,
+                                      SweepStrategyManager sweepStrategyManager,
+                                      Cleaner cleaner,
+                                      boolean allowHiddenTableAccess,
+                                      int commitTimestampCacheSize,
+                                      int rangeScanPrefetchPages) {
+        Preconditions.checkArgument(rangeScanPrefetchPages >= 0, "rangeScanPrefetchPages must not be negative");
         Preconditions.checkArgument(lockClient != LockClient.ANONYMOUS);
         this.keyValueService = keyValueService;
         this.timestampService = timestampService;
@@ -98,6 +151,12 @@ import com.palantir.timestamp.TimestampService;
         this.constraintModeSupplier = constraintModeSupplier;
         this.cleaner = cleaner;
         this.allowHiddenTableAccess = allowHiddenTableAccess;
+        this.commitTimestampCache = new CommitTimestampCache(commitTimestampCacheSize);
+        this.rangeScanPrefetchPages = rangeScanPrefetchPages;
+        this.commitTimestampCacheMBean = JMXUtils.registerMBeanWeakRefPlusCatchAndLogExceptions(
+                commitTimestampCache,
+                CommitTimestampCacheMBean.class,
+                "com.palantir.atlasdb:type=CommitTimestampCache_" + commitTimestampCacheCount.getAndIncrement());
     }
 
     @Override
@@ -183,7 +242,9 @@ import com.palantir.timestamp.TimestampService;
                 constraintModeSupplier.get(),
                 cleaner.getTransactionReadTimeoutMillis(),
                 TransactionReadSentinelBehavior.THROW_EXCEPTION,
-                allowHiddenTableAccess);
+                allowHiddenTableAccess,
+                commitTimestampCache,
+                rangeScanPrefetchPages);
     }
 
     @Override
@@ -203,7 +264,9 @@ import com.palantir.timestamp.TimestampService;
                 constraintModeSupplier.get(),
                 cleaner.getTransactionReadTimeoutMillis(),
                 TransactionReadSentinelBehavior.THROW_EXCEPTION,
-                allowHiddenTableAccess);
+                allowHiddenTableAccess,
+                commitTimestampCache,
+                rangeScanPrefetchPages);
         return runTaskThrowOnConflict(task, new OnlyWriteTempTablesTransaction(t, sweepStrategyManager));
     }
 
@@ -273,4 +336,8 @@ import com.palantir.timestamp.TimestampService;
     public TimestampService getTimestampService() {
         return timestampService;
     }
+
+    public CommitTimestampCache getCommitTimestampCache() {
+        return commitTimestampCache;
+    }
 }
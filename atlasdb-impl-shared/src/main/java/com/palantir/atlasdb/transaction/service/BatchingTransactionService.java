@@ -0,0 +1,327 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.KeyAlreadyExistsException;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.atlasdb.transaction.impl.TransactionConstants;
+import com.palantir.atlasdb.transaction.impl.TransactionTableLayout;
+import com.palantir.common.base.Throwables;
+
+/**
+ * This uses smart batching (the same scheme as RateLimitedTimestampService) to group
+ * concurrent calls to {@link #putUnlessExists(long, long)} into a single multi-cell
+ * {@link KeyValueService#putUnlessExists} on the transaction table.  While one batch is
+ * being written the next one fills up, so under load many commits share one round trip
+ * (and, for stores that sync their commits, one fsync).  Up to {@code maxBatchesInFlight}
+ * batches are written at once.
+ * <p>
+ * This only pays off for key value services whose multi-cell putUnlessExists is a single
+ * operation; where it writes one cell after another, batching just delays commits.
+ * <p>
+ * Multi-cell putUnlessExists is not atomic across cells, so when the batch reports that
+ * some keys already exist each committer finds out its own outcome by reading its cell back.
+ */
+@ThreadSafe
+final class BatchingTransactionService implements TransactionService {
+    private static final Logger log = LoggerFactory.getLogger(BatchingTransactionService.class);
+
+    private final KeyValueService keyValueService;
+    private final SimpleTransactionService delegate;
+    private final Semaphore batchesInFlight;
+
+    /* The batch that is currently accepting commits, if any. The thread that installs a batch
+     * is its owner and must write it out; other threads just join it and wait.
+     */
+    private final AtomicReference</* nullable */ CommitBatch> currentBatch =
+            new AtomicReference<CommitBatch>();
+
+    public BatchingTransactionService(KeyValueService keyValueService, Supplier<TransactionTableLayout> layout) {
+        this(keyValueService, layout, 1);
+    }
+
+    public BatchingTransactionService(KeyValueService keyValueService,
+                                      Supplier<TransactionTableLayout> layout,
+                                      int maxBatchesInFlight) {
+        Preconditions.checkArgument(maxBatchesInFlight > 0, "maxBatchesInFlight must be positive: %s", maxBatchesInFlight);
+        this.keyValueService = keyValueService;
+        this.delegate = new SimpleTransactionService(keyValueService, layout);
+        this.batchesInFlight = new Semaphore(maxBatchesInFlight);
+    }
+
+    @Override
+    public Long get(long startTimestamp) {
+        return delegate.get(startTimestamp);
+    }
+
+    @Override
+    public Map<Long, Long> get(Iterable<Long> startTimestamps) {
+        return delegate.get(startTimestamps);
+    }
+
+    @Override
+    public void putUnlessExists(long startTimestamp, long commitTimestamp) {
+        PendingCommit commit = new PendingCommit(
+                startTimestamp,
+                commitTimestamp,
+                delegate.getTransactionCell(startTimestamp));
+        JoinedBatch joinedBatch = joinBatch(commit);
+
+        CommitBatch batch = joinedBatch.batch;
+        if (joinedBatch.thisThreadOwnsBatch) {
+            writeBatch(batch);
+        }
+
+        try {
+            batch.awaitCompletion();
+        } catch (InterruptedException e) {
+            log.error("Interrupted waiting for commit timestamp batch to be written.", e);
+            throw Throwables.rewrapAndThrowUncheckedException(e);
+        }
+        commit.throwIfFailed();
+    }
+
+    private static class JoinedBatch {
+        public final CommitBatch batch;
+        public final boolean thisThreadOwnsBatch;
+        public JoinedBatch(CommitBatch batch, boolean thisThreadOwnsBatch) {
+            this.batch = batch;
+            this.thisThreadOwnsBatch = thisThreadOwnsBatch;
+        }
+    }
+    private static final int MAX_BATCH_JOIN_ATTEMPTS = 5;
+    private JoinedBatch joinBatch(PendingCommit commit) {
+        @Nullable CommitBatch batch = null;
+        boolean installedFreshBatch = false;
+        boolean joinedBatch = false;
+        for (int joinAttempts = 0; !(installedFreshBatch || joinedBatch); joinAttempts++) {
+            batch = currentBatch.get();
+            if (batch != null) {
+                joinedBatch = batch.join(commit);
+            }
+            if (!joinedBatch) {
+                // Try to install a new batch if there is none or the current one has been closed.
+                CommitBatch freshBatch = new CommitBatch(commit);
+                if (joinAttempts <= MAX_BATCH_JOIN_ATTEMPTS) {
+                    // A closed batch is always swapped out for null before it is closed,
+                    // see RateLimitedTimestampService#joinBatch.
+                    installedFreshBatch = currentBatch.compareAndSet(null, freshBatch);
+                } else {
+                    // Guarantee progress; overwriting an outstanding batch only costs us some batching.
+                    log.warn("Failed to join a commit timestamp batch {} times; blindly installing a batch. " +
+                            "This should be rare!", MAX_BATCH_JOIN_ATTEMPTS);
+                    currentBatch.set(freshBatch);
+                    installedFreshBatch = true;
+                }
+                if (installedFreshBatch) {
+                    batch = freshBatch;
+                }
+            }
+        }
+        Preconditions.checkState(batch != null, "Failed to join any commit timestamp batch");
+        return new JoinedBatch(batch, installedFreshBatch);
+    }
+
+    /**
+     * Only {@code maxBatchesInFlight} batches are written at a time.  This is what makes batching
+     * happen: commits that arrive while those batches are being written pile up in the next one.
+     */
+    private void writeBatch(CommitBatch batch) {
+        batchesInFlight.acquireUninterruptibly();
+        try {
+            writeBatchInFlight(batch);
+        } finally {
+            batchesInFlight.release();
+        }
+    }
+
+    private void writeBatchInFlight(CommitBatch batch) {
+        // Only uninstall the batch if it's still the current one; otherwise it was already replaced.
+        currentBatch.compareAndSet(batch, null);
+
+        List<PendingCommit> commits = batch.close();
+        try {
+            Map<Cell, PendingCommit> commitsByCell = Maps.newHashMapWithExpectedSize(commits.size());
+            Map<Cell, byte[]> values = Maps.newHashMapWithExpectedSize(commits.size());
+            for (PendingCommit commit : commits) {
+                if (commitsByCell.containsKey(commit.cell)) {
+                    // Someone else is racing us for the same start timestamp (usually a rollback);
+                    // whichever of us made it into the batch goes first.
+                    commit.failKeyExists();
+                    continue;
+                }
+                commitsByCell.put(commit.cell, commit);
+                values.put(commit.cell, TransactionConstants.getValueForTimestamp(commit.commitTimestamp));
+            }
+
+            try {
+                keyValueService.putUnlessExists(TransactionConstants.TRANSACTION_TABLE, values);
+            } catch (KeyAlreadyExistsException e) {
+                resolvePartialFailure(commitsByCell, ImmutableSet.copyOf(e.getExistingKeys()));
+            }
+        } catch (Throwable t) {
+            for (PendingCommit commit : commits) {
+                commit.fail(t);
+            }
+        } finally {
+            batch.becomeReadable();
+        }
+    }
+
+    private void resolvePartialFailure(Map<Cell, PendingCommit> commitsByCell, Set<Cell> existingKeys) {
+        Map<Cell, Long> unresolved = Maps.newHashMap();
+        for (PendingCommit commit : commitsByCell.values()) {
+            if (existingKeys.contains(commit.cell)) {
+                commit.failKeyExists();
+            } else {
+                unresolved.put(commit.cell, SimpleTransactionService.MAX_TIMESTAMP);
+            }
+        }
+        if (unresolved.isEmpty()) {
+            return;
+        }
+
+        Map<Cell, Value> written = keyValueService.get(TransactionConstants.TRANSACTION_TABLE, unresolved);
+        for (Cell cell : unresolved.keySet()) {
+            PendingCommit commit = commitsByCell.get(cell);
+            Value value = written.get(cell);
+            if (value == null) {
+                // The store gave up on the batch before getting to this cell.
+                try {
+                    delegate.putUnlessExists(commit.startTimestamp, commit.commitTimestamp);
+                } catch (Throwable t) {
+                    commit.fail(t);
+                }
+            } else if (!Arrays.equals(value.getContents(),
+                    TransactionConstants.getValueForTimestamp(commit.commitTimestamp))) {
+                commit.failKeyExists();
+            }
+        }
+    }
+
+    static class PendingCommit {
+        final long startTimestamp;
+        final long commitTimestamp;
+        final Cell cell;
+        private volatile Throwable failure;
+
+        PendingCommit(long startTimestamp, long commitTimestamp, Cell cell) {
+            this.startTimestamp = startTimestamp;
+            this.commitTimestamp = commitTimestamp;
+            this.cell = cell;
+        }
+
+        void fail(Throwable t) {
+            failure = t;
+        }
+
+        void failKeyExists() {
+            failure = new KeyAlreadyExistsException(
+                    "A commit timestamp for start timestamp " + startTimestamp + " already exists.",
+                    ImmutableList.of(cell));
+        }
+
+        void throwIfFailed() {
+            Throwable t = failure;
+            if (t instanceof KeyAlreadyExistsException) {
+                throw (KeyAlreadyExistsException) t;
+            } else if (t != null) {
+                // The same throwable may be handed to every member of a failed batch.
+                throw Throwables.rewrapAndThrowUncheckedException(t);
+            }
+        }
+    }
+
+    static class CommitBatch {
+        // Marks a batch that no longer accepts commits.
+        private static final Node CLOSED = new Node(null, null);
+
+        private final AtomicReference<Node> head;
+        private final CountDownLatch completionLatch;
+
+        public CommitBatch(PendingCommit creatorsCommit) {
+            head = new AtomicReference<Node>(new Node(creatorsCommit, null));
+            completionLatch = new CountDownLatch(1); // This will count down once the batch has been written.
+        }
+
+        /**
+         * @return true if the commit was added to this batch and false if the batch is already closed
+         */
+        public boolean join(PendingCommit commit) {
+            while (true) {
+                Node current = head.get();
+                if (current == CLOSED) {
+                    return false;
+                }
+                if (head.compareAndSet(current, new Node(commit, current))) {
+                    return true;
+                }
+            }
+        }
+
+        // The following methods must only be called by the thread that created this batch.
+        public List<PendingCommit> close() {
+            Node node = head.getAndSet(CLOSED);
+            Preconditions.checkState(node != CLOSED, "Commit batch has already been closed.");
+            List<PendingCommit> commits = Lists.newArrayList();
+            for (; node != null; node = node.next) {
+                commits.add(node.commit);
+            }
+            // Commits are pushed onto the front, so reverse them to get arrival order.
+            return Lists.reverse(commits);
+        }
+        public void becomeReadable() {
+            completionLatch.countDown();
+        }
+        // End creator-only methods.
+
+        public void awaitCompletion() throws InterruptedException {
+            completionLatch.await();
+        }
+    }
+
+    private static class Node {
+        final PendingCommit commit;
+        final Node next;
+
+        Node(PendingCommit commit, Node next) {
+            this.commit = commit;
+            this.next = next;
+        }
+    }
+}
@@ -17,24 +17,28 @@ package com.palantir.atlasdb.transaction.service;
 
 import java.util.Map;
 
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.palantir.atlasdb.keyvalue.api.Cell;
 import com.palantir.atlasdb.keyvalue.api.KeyValueService;
 import com.palantir.atlasdb.keyvalue.api.Value;
 import com.palantir.atlasdb.transaction.impl.TransactionConstants;
+import com.palantir.atlasdb.transaction.impl.TransactionTableLayout;
 
 final class SimpleTransactionService implements TransactionService {
     private final KeyValueService keyValueService;
+    private final Supplier<TransactionTableLayout> layout;
 
-    public SimpleTransactionService(KeyValueService keyValueService) {
+    public SimpleTransactionService(KeyValueService keyValueService, Supplier<TransactionTableLayout> layout) {
         this.keyValueService = keyValueService;
+        this.layout = layout;
     }
 
     // The maximum key-value store timestamp (exclusive) at which data is stored
     // in transaction table.
     // All entries in transaction table are stored with timestamp 0
-    private static final long MAX_TIMESTAMP = 1L;
+    static final long MAX_TIMESTAMP = 1L;
 
     @Override
     public Long get(long startTimestamp) {
@@ -53,9 +57,11 @@ final class SimpleTransactionService implements TransactionService {
     @Override
     public Map<Long, Long> get(Iterable<Long> startTimestamps) {
         Map<Cell, Long> startTsMap = Maps.newHashMap();
+        Map<Cell, Long> startTsByCell = Maps.newHashMap();
         for (Long startTimestamp : startTimestamps) {
             Cell k = getTransactionCell(startTimestamp);
             startTsMap.put(k, MAX_TIMESTAMP);
+            startTsByCell.put(k, startTimestamp);
         }
 
         Map<Cell, Value> rawResults = keyValueService.get(
@@ -63,8 +69,7 @@ final class SimpleTransactionService implements TransactionService {
         Map<Long, Long> result = Maps.newHashMapWithExpectedSize(rawResults
                 .size());
         for (Map.Entry<Cell, Value> e : rawResults.entrySet()) {
-            long startTs = TransactionConstants.getTimestampForValue(e.getKey()
-                    .getRowName());
+            long startTs = startTsByCell.get(e.getKey());
             long commitTs = TransactionConstants.getTimestampForValue(e
                     .getValue().getContents());
             result.put(startTs, commitTs);
@@ -82,9 +87,7 @@ final class SimpleTransactionService implements TransactionService {
                 ImmutableMap.of(key, value));
     }
 
-    private Cell getTransactionCell(long startTimestamp) {
-        return Cell.create(
-                TransactionConstants.getValueForTimestamp(startTimestamp),
-                TransactionConstants.COMMIT_TS_COLUMN);
+    Cell getTransactionCell(long startTimestamp) {
+        return layout.get().getTransactionCell(startTimestamp);
     }
 }
@@ -18,6 +18,8 @@ package com.palantir.atlasdb.transaction.service;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.palantir.atlasdb.keyvalue.api.Cell;
@@ -25,6 +27,7 @@ import com.palantir.atlasdb.keyvalue.api.KeyAlreadyExistsException;
 import com.palantir.atlasdb.keyvalue.api.KeyValueService;
 import com.palantir.atlasdb.keyvalue.api.Value;
 import com.palantir.atlasdb.transaction.impl.TransactionConstants;
+import com.palantir.atlasdb.transaction.impl.TransactionTableLayout;
 
 public class TransactionKVSWrapper {
     // The maximum key-value store timestamp (exclusive) at which data is stored in transaction table.
@@ -32,14 +35,23 @@ public class TransactionKVSWrapper {
     private static final long MAX_TIMESTAMP = 1L;
 
     private final KeyValueService keyValueService;
+    private final Supplier<TransactionTableLayout> layout;
 
     public TransactionKVSWrapper(KeyValueService keyValueService) {
+        this(keyValueService, TransactionTableLayout.loadLazily(keyValueService));
+    }
+
+    public TransactionKVSWrapper(KeyValueService keyValueService, TransactionTableLayout layout) {
+        this(keyValueService, Suppliers.ofInstance(layout));
+    }
+
+    private TransactionKVSWrapper(KeyValueService keyValueService, Supplier<TransactionTableLayout> layout) {
         this.keyValueService = keyValueService;
+        this.layout = layout;
     }
 
-    private static Cell getTransactionCell(long startTimestamp) {
-        return Cell.create(TransactionConstants.getValueForTimestamp(startTimestamp),
-                TransactionConstants.COMMIT_TS_COLUMN);
+    private Cell getTransactionCell(long startTimestamp) {
+        return layout.get().getTransactionCell(startTimestamp);
     }
 
     public Long get(Long startTimestamp) {
@@ -55,14 +67,16 @@ public class TransactionKVSWrapper {
     public Map<Long, Long> get(Iterable<Long> startTimestamps) {
         Map<Long, Long> result = Maps.newHashMap();
         Map<Cell, Long> startTsMap = Maps.newHashMap();
+        Map<Cell, Long> startTsByCell = Maps.newHashMap();
         for (Long startTimestamp: startTimestamps) {
             Cell k = getTransactionCell(startTimestamp);
             startTsMap.put(k, MAX_TIMESTAMP);
+            startTsByCell.put(k, startTimestamp);
         }
 
         Map<Cell, Value> rawResults = keyValueService.get(TransactionConstants.TRANSACTION_TABLE, startTsMap);
         for (Map.Entry<Cell, Value> e : rawResults.entrySet()) {
-            long startTs = TransactionConstants.getTimestampForValue(e.getKey().getRowName());
+            long startTs = startTsByCell.get(e.getKey());
             long commitTs = TransactionConstants.getTimestampForValue(e.getValue().getContents());
             result.put(startTs, commitTs);
         }
@@ -15,11 +15,73 @@
  */
 package com.palantir.atlasdb.transaction.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Suppliers;
+import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.transaction.impl.TransactionTableEncoding;
+import com.palantir.atlasdb.transaction.impl.TransactionTableLayout;
+import com.palantir.timestamp.TimestampService;
 
 public class TransactionServices {
+    private static final Logger log = LoggerFactory.getLogger(TransactionServices.class);
+
+    /**
+     * Uses whichever encoding the transactions table has been switched to, if any.
+     */
     public static TransactionService createTransactionService(
             KeyValueService keyValueService) {
-        return new SimpleTransactionService(keyValueService);
+        return new SimpleTransactionService(keyValueService, TransactionTableLayout.loadLazily(keyValueService));
+    }
+
+    /**
+     * Like {@link #createTransactionService(KeyValueService)}, but switches the transactions
+     * table to the bucketed encoding if asked to and it has not been switched yet.  The
+     * transactions table must already exist.
+     * <p>
+     * See {@link TransactionTableLayout} for how to switch the encoding safely.
+     */
+    public static TransactionService createTransactionService(
+            KeyValueService keyValueService,
+            TransactionTableEncoding encoding,
+            TimestampService timestampService) {
+        return createTransactionService(
+                keyValueService,
+                encoding,
+                timestampService,
+                AtlasDbConstants.DEFAULT_TRANSACTION_TABLE_WRITE_BATCHES_IN_FLIGHT);
+    }
+
+    /**
+     * @param writeBatchesInFlight if positive, concurrent commits are grouped into batches
+     *        and at most this many batches are written to the transactions table at once;
+     *        if 0, each commit timestamp is written on its own
+     */
+    public static TransactionService createTransactionService(
+            KeyValueService keyValueService,
+            TransactionTableEncoding encoding,
+            TimestampService timestampService,
+            int writeBatchesInFlight) {
+        Preconditions.checkArgument(writeBatchesInFlight >= 0,
+                "writeBatchesInFlight must not be negative: %s", writeBatchesInFlight);
+        TransactionTableLayout layout = TransactionTableLayout.load(keyValueService);
+        if (encoding == TransactionTableEncoding.BUCKETED && !layout.isBucketedEncodingEnabled()) {
+            layout = TransactionTableLayout.enableBucketedEncoding(
+                    keyValueService,
+                    timestampService.getFreshTimestamp());
+            log.info("Transactions starting at or after timestamp {} use the bucketed transaction table encoding.",
+                    layout.getBucketedFromTimestamp().get());
+        } else if (encoding == TransactionTableEncoding.LEGACY && layout.isBucketedEncodingEnabled()) {
+            log.warn("Configured to use the legacy transaction table encoding, but the transactions table has "
+                    + "already been switched to the bucketed encoding from timestamp {}. Using the bucketed encoding.",
+                    layout.getBucketedFromTimestamp().get());
+        }
+        if (writeBatchesInFlight == 0) {
+            return new SimpleTransactionService(keyValueService, Suppliers.ofInstance(layout));
+        }
+        return new BatchingTransactionService(keyValueService, Suppliers.ofInstance(layout), writeBatchesInFlight);
     }
 }
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance;
+
+import java.io.File;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.SimpleKvsTimestampBoundStore;
+import com.palantir.atlasdb.keyvalue.rocksdb.impl.RocksDbKeyValueService;
+import com.palantir.timestamp.TimestampBoundStore;
+
+/**
+ * The key value services the benchmarks run against, and where each keeps the bound of its
+ * persistent timestamp service.
+ */
+public enum KeyValueServiceBackend {
+    MEMORY {
+        @Override
+        public KeyValueService create(File dataDir) {
+            return new InMemoryKeyValueService(false);
+        }
+
+        @Override
+        public TimestampBoundStore createTimestampBoundStore(KeyValueService kvs) {
+            // SimpleKvsTimestampBoundStore overwrites its bound in place, which the in memory kvs does not allow.
+            return new InMemoryTimestampBoundStore();
+        }
+    },
+    ROCKSDB {
+        @Override
+        public KeyValueService create(File dataDir) {
+            return RocksDbKeyValueService.create(dataDir.getAbsolutePath());
+        }
+
+        @Override
+        public TimestampBoundStore createTimestampBoundStore(KeyValueService kvs) {
+            return SimpleKvsTimestampBoundStore.create(kvs);
+        }
+    };
+
+    public abstract KeyValueService create(File dataDir);
+
+    public abstract TimestampBoundStore createTimestampBoundStore(KeyValueService kvs);
+
+    private static class InMemoryTimestampBoundStore implements TimestampBoundStore {
+        @GuardedBy("this")
+        private long upperLimit = 0;
+
+        @Override
+        public synchronized long getUpperLimit() {
+            return upperLimit;
+        }
+
+        @Override
+        public synchronized void storeUpperLimit(long limit) {
+            upperLimit = limit;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.Longs;
+import com.palantir.atlasdb.AtlasDbConstants;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.api.Value;
+
+/**
+ * Single cell and batched reads and writes straight against the key value service.
+ */
+public class KeyValueServiceBenchmarks {
+    static final TableReference TABLE = TableReference.createFromFullyQualifiedName("perf.kvs");
+    static final int NUM_ROWS = 1000;
+    static final int BATCH_SIZE = 100;
+    static final byte[] COLUMN = "c".getBytes();
+    static final byte[] VALUE = new byte[100];
+
+    @State(Scope.Benchmark)
+    public static class PopulatedTable extends KeyValueServiceState {
+        // Every put goes in at a new timestamp so that writes never collide with each other.
+        final AtomicLong nextTimestamp = new AtomicLong(1);
+
+        @Override
+        protected void setup(KeyValueService kvs) {
+            super.setup(kvs);
+            kvs.createTable(TABLE, AtlasDbConstants.GENERIC_TABLE_METADATA);
+            Map<Cell, byte[]> values = Maps.newHashMap();
+            for (int row = 0; row < NUM_ROWS; row++) {
+                values.put(cell(row), VALUE);
+            }
+            kvs.put(TABLE, values, nextTimestamp.getAndIncrement());
+        }
+    }
+
+    @Benchmark
+    public Map<Cell, Value> getSingleCell(PopulatedTable state) {
+        return state.getKeyValueService().get(TABLE, ImmutableMap.of(randomCell(), Long.MAX_VALUE));
+    }
+
+    @Benchmark
+    public Map<Cell, Value> getBatch(PopulatedTable state) {
+        Map<Cell, Long> request = Maps.newHashMapWithExpectedSize(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            request.put(randomCell(), Long.MAX_VALUE);
+        }
+        return state.getKeyValueService().get(TABLE, request);
+    }
+
+    @Benchmark
+    public void putSingleCell(PopulatedTable state) {
+        state.getKeyValueService().put(TABLE, ImmutableMap.of(randomCell(), VALUE), state.nextTimestamp.getAndIncrement());
+    }
+
+    @Benchmark
+    public void putBatch(PopulatedTable state) {
+        Map<Cell, byte[]> values = Maps.newHashMapWithExpectedSize(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            values.put(randomCell(), VALUE);
+        }
+        state.getKeyValueService().put(TABLE, values, state.nextTimestamp.getAndIncrement());
+    }
+
+    static Cell cell(int row) {
+        return Cell.create(Longs.toByteArray(row), COLUMN);
+    }
+
+    static Cell randomCell() {
+        return cell(ThreadLocalRandom.current().nextInt(NUM_ROWS));
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.common.io.Files;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+
+/**
+ * A fresh key value service of each {@link KeyValueServiceBackend} for every trial. Benchmark
+ * states that need a key value service extend this one and override {@link #setup} and
+ * {@link #teardown}, calling the super method. JMH runs the setup methods of a state class in
+ * name order rather than superclass first, so only this class has JMH annotations.
+ */
+@State(Scope.Benchmark)
+public class KeyValueServiceState {
+    @Param({"MEMORY", "ROCKSDB"})
+    public KeyValueServiceBackend backend;
+
+    private File dataDir;
+    private KeyValueService keyValueService;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        dataDir = Files.createTempDir();
+        keyValueService = backend.create(dataDir);
+        setup(keyValueService);
+    }
+
+    @TearDown(Level.Trial)
+    public void teardownTrial() throws IOException {
+        try {
+            teardown();
+        } finally {
+            keyValueService.close();
+            FileUtils.deleteDirectory(dataDir);
+        }
+    }
+
+    protected void setup(KeyValueService kvs) {
+        // for subclasses
+    }
+
+    protected void teardown() {
+        // for subclasses
+    }
+
+    public KeyValueService getKeyValueService() {
+        return keyValueService;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.atlasdb.keyvalue.remoting.RemotingKeyValueService;
+import com.palantir.atlasdb.keyvalue.remoting.serialization.KvsBinaryCodec;
+
+/**
+ * Encoding and decoding a get response for the remote key value service, as json and in the
+ * binary format. Codecs don't depend on the backend, so these only run once.
+ */
+public class KvsCodecBenchmarks {
+    private static final Type CELL_VALUES = new TypeToken<Map<Cell, Value>>() {}.getType();
+
+    @State(Scope.Benchmark)
+    public static class CellValues {
+        final ObjectMapper mapper = RemotingKeyValueService.kvsMapper();
+        final JavaType javaType = mapper.getTypeFactory().constructType(CELL_VALUES);
+        Map<Cell, Value> values;
+        byte[] json;
+        byte[] binary;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            values = Maps.newHashMap();
+            for (int row = 0; row < KeyValueServiceBenchmarks.NUM_ROWS; row++) {
+                values.put(KeyValueServiceBenchmarks.cell(row), Value.create(KeyValueServiceBenchmarks.VALUE, row));
+            }
+            json = mapper.writerWithType(javaType).writeValueAsBytes(values);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            KvsBinaryCodec.write(values, CELL_VALUES, out);
+            binary = out.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeJson(CellValues state) throws IOException {
+        return state.mapper.writerWithType(state.javaType).writeValueAsBytes(state.values);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary(CellValues state) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(state.binary.length);
+        KvsBinaryCodec.write(state.values, CELL_VALUES, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Object decodeJson(CellValues state) throws IOException {
+        return state.mapper.readValue(state.json, state.javaType);
+    }
+
+    @Benchmark
+    public Object decodeBinary(CellValues state) throws IOException {
+        return KvsBinaryCodec.read(CELL_VALUES, new ByteArrayInputStream(state.binary));
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import com.palantir.lock.LockClient;
+import com.palantir.lock.LockMode;
+import com.palantir.lock.LockRefreshToken;
+import com.palantir.lock.LockRequest;
+import com.palantir.lock.StringLockDescriptor;
+import com.palantir.lock.impl.LockServiceImpl;
+
+/**
+ * Lock and unlock throughput, alone and contended, and the cost of refreshing the locks of a
+ * client holding many tokens. The lock service does not use a key value service, so these
+ * only run once rather than once per backend.
+ */
+public class LockServiceBenchmarks {
+    private static final String CLIENT = LockClient.ANONYMOUS.getClientId();
+    private static final int NUM_LOCKS = 64;
+    private static final int NUM_HELD_TOKENS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class Locks {
+        LockServiceImpl lockService;
+        List<LockRefreshToken> heldTokens;
+
+        @Setup(Level.Trial)
+        public void setup() throws InterruptedException {
+            lockService = LockServiceImpl.create();
+            heldTokens = Lists.newArrayListWithCapacity(NUM_HELD_TOKENS);
+            for (int i = 0; i < NUM_HELD_TOKENS; i++) {
+                heldTokens.add(lockService.lock(CLIENT, request("held-" + i)));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            lockService.close();
+        }
+    }
+
+    @Benchmark
+    public boolean lockAndUnlock(Locks state) throws InterruptedException {
+        return lockAndUnlockRandomLock(state);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean lockAndUnlockContended(Locks state) throws InterruptedException {
+        return lockAndUnlockRandomLock(state);
+    }
+
+    @Benchmark
+    public Set<LockRefreshToken> refreshHeldTokens(Locks state) {
+        return state.lockService.refreshLockRefreshTokens(state.heldTokens);
+    }
+
+    private static boolean lockAndUnlockRandomLock(Locks state) throws InterruptedException {
+        LockRefreshToken token = state.lockService.lock(
+                CLIENT, request("lock-" + ThreadLocalRandom.current().nextInt(NUM_LOCKS)));
+        // The lock requests don't block, so a contended lock comes back null.
+        return token != null && state.lockService.unlock(token);
+    }
+
+    private static LockRequest request(String lockName) {
+        return LockRequest.builder(ImmutableSortedMap.of(StringLockDescriptor.of(lockName), LockMode.WRITE))
+                .doNotBlock()
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.palantir.common.concurrent.PTExecutors;
+import com.palantir.paxos.PaxosAcceptor;
+import com.palantir.paxos.PaxosAcceptorImpl;
+import com.palantir.paxos.PaxosLearner;
+import com.palantir.paxos.PaxosLearnerImpl;
+import com.palantir.paxos.PaxosProposer;
+import com.palantir.paxos.PaxosProposerImpl;
+import com.palantir.paxos.PaxosRoundFailureException;
+
+/**
+ * Rounds decided per second by a proposer with three local acceptors and learners, one
+ * instance at a time and in batches. The logs live on local disk, not in a key value service.
+ */
+public class PaxosBenchmarks {
+    private static final int NUM_NODES = 3;
+    private static final int QUORUM_SIZE = 2;
+    private static final int BATCH_SIZE = 10;
+    private static final byte[] VALUE = new byte[100];
+
+    @State(Scope.Benchmark)
+    public static class Paxos {
+        File logDir;
+        ExecutorService executor;
+        PaxosProposer proposer;
+        final AtomicLong nextSeq = new AtomicLong();
+
+        @Setup(Level.Trial)
+        public void setup() {
+            logDir = Files.createTempDir();
+            executor = PTExecutors.newCachedThreadPool();
+            ImmutableList.Builder<PaxosAcceptor> acceptors = ImmutableList.builder();
+            ImmutableList.Builder<PaxosLearner> learners = ImmutableList.builder();
+            for (int i = 0; i < NUM_NODES; i++) {
+                acceptors.add(PaxosAcceptorImpl.newAcceptor(new File(logDir, "acceptor" + i).getPath()));
+                learners.add(PaxosLearnerImpl.newLearner(new File(logDir, "learner" + i).getPath()));
+            }
+            ImmutableList<PaxosLearner> allLearners = learners.build();
+            proposer = PaxosProposerImpl.newProposer(
+                    allLearners.get(0), acceptors.build(), allLearners, QUORUM_SIZE, executor);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws IOException {
+            executor.shutdownNow();
+            FileUtils.deleteDirectory(logDir);
+        }
+    }
+
+    @Benchmark
+    public byte[] propose(Paxos state) throws PaxosRoundFailureException {
+        return state.proposer.propose(state.nextSeq.getAndIncrement(), VALUE);
+    }
+
+    @Benchmark
+    public Map<Long, byte[]> proposeBatch(Paxos state) throws PaxosRoundFailureException {
+        Map<Long, byte[]> values = Maps.newHashMapWithExpectedSize(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            values.put(state.nextSeq.getAndIncrement(), VALUE);
+        }
+        return state.proposer.proposeBatch(values);
+    }
+}
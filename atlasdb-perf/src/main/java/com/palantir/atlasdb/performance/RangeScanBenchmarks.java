@@ -0,0 +1,60 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.common.base.ClosableIterator;
+
+/**
+ * Full scans of a {@link KeyValueServiceBenchmarks#NUM_ROWS} row table with different batch hints.
+ */
+public class RangeScanBenchmarks {
+    @State(Scope.Benchmark)
+    public static class ScannedTable extends KeyValueServiceBenchmarks.PopulatedTable {
+        @Param({"1", "10", "100", "1000"})
+        public int batchHint;
+
+        RangeRequest range;
+
+        @Override
+        protected void setup(KeyValueService kvs) {
+            super.setup(kvs);
+            range = RangeRequest.builder().batchHint(batchHint).build();
+        }
+    }
+
+    @Benchmark
+    public int scanTable(ScannedTable state, Blackhole blackhole) {
+        int rows = 0;
+        try (ClosableIterator<RowResult<Value>> it = state.getKeyValueService().getRange(
+                KeyValueServiceBenchmarks.TABLE, state.range, Long.MAX_VALUE)) {
+            while (it.hasNext()) {
+                blackhole.consume(it.next());
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
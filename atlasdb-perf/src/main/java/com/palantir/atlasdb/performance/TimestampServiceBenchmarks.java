@@ -0,0 +1,69 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.timestamp.PersistentTimestampService;
+import com.palantir.timestamp.PipeliningTimestampService;
+import com.palantir.timestamp.TimestampRange;
+
+/**
+ * Timestamp fetches from a {@link PersistentTimestampService} whose bound is kept by the
+ * benchmarked backend, directly and through a {@link PipeliningTimestampService}.
+ */
+public class TimestampServiceBenchmarks {
+    private static final int BATCH_SIZE = 1000;
+
+    @State(Scope.Benchmark)
+    public static class TimestampServices extends KeyValueServiceState {
+        PersistentTimestampService persistentTimestampService;
+        PipeliningTimestampService pipeliningTimestampService;
+
+        @Override
+        protected void setup(KeyValueService kvs) {
+            super.setup(kvs);
+            persistentTimestampService = PersistentTimestampService.create(backend.createTimestampBoundStore(kvs));
+            pipeliningTimestampService = new PipeliningTimestampService(persistentTimestampService);
+        }
+    }
+
+    @Benchmark
+    public long getFreshTimestamp(TimestampServices state) {
+        return state.persistentTimestampService.getFreshTimestamp();
+    }
+
+    @Benchmark
+    public TimestampRange getFreshTimestamps(TimestampServices state) {
+        return state.persistentTimestampService.getFreshTimestamps(BATCH_SIZE);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long getFreshTimestampContended(TimestampServices state) {
+        return state.persistentTimestampService.getFreshTimestamp();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long getFreshTimestampPipelined(TimestampServices state) {
+        return state.pipeliningTimestampService.getFreshTimestamp();
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance;
+
+import static com.palantir.atlasdb.performance.TransactionManagerState.SERIALIZABLE_TABLE;
+import static com.palantir.atlasdb.performance.TransactionManagerState.WRITE_WRITE_TABLE;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.transaction.api.TransactionConflictException;
+import com.palantir.atlasdb.transaction.api.TransactionManager;
+
+/**
+ * Reads and commits through a {@link TransactionManager}, including the cost of detecting
+ * write/write conflicts and of verifying the reads of serializable transactions at commit.
+ */
+public class TransactionBenchmarks {
+    private static final int NUM_ROWS = KeyValueServiceBenchmarks.NUM_ROWS;
+    private static final int BATCH_SIZE = KeyValueServiceBenchmarks.BATCH_SIZE;
+    private static final byte[] VALUE = KeyValueServiceBenchmarks.VALUE;
+
+    @State(Scope.Benchmark)
+    public static class PopulatedTables extends TransactionManagerState {
+        @Override
+        protected void setup(KeyValueService kvs) {
+            super.setup(kvs);
+            final Map<Cell, byte[]> values = Maps.newHashMap();
+            for (int row = 0; row < NUM_ROWS; row++) {
+                values.put(KeyValueServiceBenchmarks.cell(row), VALUE);
+            }
+            getTransactionManager().runTaskWithRetry(t -> {
+                t.put(WRITE_WRITE_TABLE, values);
+                t.put(SERIALIZABLE_TABLE, values);
+                return null;
+            });
+        }
+    }
+
+    @Benchmark
+    public Map<Cell, byte[]> readSingleCell(PopulatedTables state) {
+        return state.getTransactionManager().runTaskReadOnly(
+                t -> t.get(WRITE_WRITE_TABLE, ImmutableSet.of(KeyValueServiceBenchmarks.randomCell())));
+    }
+
+    @Benchmark
+    public Map<Cell, byte[]> readBatch(PopulatedTables state) {
+        return state.getTransactionManager().runTaskReadOnly(
+                t -> t.get(WRITE_WRITE_TABLE, randomCells()));
+    }
+
+    @Benchmark
+    public void commitWithoutConflict(PopulatedTables state) {
+        state.getTransactionManager().runTaskThrowOnConflict(t -> {
+            t.put(WRITE_WRITE_TABLE, ImmutableMap.of(KeyValueServiceBenchmarks.randomCell(), VALUE));
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void commitBatchWithoutConflict(PopulatedTables state) {
+        state.getTransactionManager().runTaskThrowOnConflict(t -> {
+            Map<Cell, byte[]> values = Maps.newHashMap();
+            for (Cell cell : randomCells()) {
+                values.put(cell, VALUE);
+            }
+            t.put(WRITE_WRITE_TABLE, values);
+            return null;
+        });
+    }
+
+    /**
+     * Two transactions write the same cell; the one that started first commits last and fails.
+     */
+    @Benchmark
+    public TransactionConflictException commitWithConflict(PopulatedTables state) {
+        final TransactionManager txManager = state.getTransactionManager();
+        final Cell cell = KeyValueServiceBenchmarks.randomCell();
+        try {
+            txManager.runTaskThrowOnConflict(outer -> {
+                // Start timestamps are fetched lazily; make sure the outer one is taken first.
+                outer.getTimestamp();
+                outer.put(WRITE_WRITE_TABLE, ImmutableMap.of(cell, VALUE));
+                txManager.runTaskThrowOnConflict(inner -> {
+                    inner.put(WRITE_WRITE_TABLE, ImmutableMap.of(cell, VALUE));
+                    return null;
+                });
+                return null;
+            });
+        } catch (TransactionConflictException e) {
+            return e;
+        }
+        throw new IllegalStateException("Expected the outer transaction to conflict");
+    }
+
+    /**
+     * Reads a batch of cells and writes one, so the commit has to check the whole batch for
+     * serializable conflicts.
+     */
+    @Benchmark
+    public void serializableCommit(PopulatedTables state) {
+        state.getTransactionManager().runTaskThrowOnConflict(t -> {
+            t.get(SERIALIZABLE_TABLE, randomCells());
+            t.put(SERIALIZABLE_TABLE, ImmutableMap.of(KeyValueServiceBenchmarks.randomCell(), VALUE));
+            return null;
+        });
+    }
+
+    private static Set<Cell> randomCells() {
+        Set<Cell> cells = Sets.newHashSetWithExpectedSize(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            cells.add(KeyValueServiceBenchmarks.randomCell());
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.google.common.base.Suppliers;
+import com.palantir.atlasdb.AtlasDbConstants;
+import com.palantir.atlasdb.cleaner.NoOpCleaner;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.table.description.ColumnMetadataDescription;
+import com.palantir.atlasdb.table.description.NameMetadataDescription;
+import com.palantir.atlasdb.table.description.TableMetadata;
+import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
+import com.palantir.atlasdb.transaction.api.ConflictHandler;
+import com.palantir.atlasdb.transaction.impl.ConflictDetectionManagers;
+import com.palantir.atlasdb.transaction.impl.SerializableTransactionManager;
+import com.palantir.atlasdb.transaction.impl.SweepStrategyManagers;
+import com.palantir.atlasdb.transaction.impl.TransactionTables;
+import com.palantir.atlasdb.transaction.service.TransactionServices;
+import com.palantir.lock.LockClient;
+import com.palantir.lock.impl.LockServiceImpl;
+import com.palantir.timestamp.PersistentTimestampService;
+
+/**
+ * A transaction manager set up the way a real deployment would be, with a persistent timestamp
+ * service and the transaction table in the benchmarked key value service. It has one table
+ * that checks for write/write conflicts and one that checks for serializable conflicts.
+ */
+@State(Scope.Benchmark)
+public class TransactionManagerState extends KeyValueServiceState {
+    public static final TableReference WRITE_WRITE_TABLE = TableReference.createFromFullyQualifiedName("perf.write_write");
+    public static final TableReference SERIALIZABLE_TABLE = TableReference.createFromFullyQualifiedName("perf.serializable");
+
+    private LockServiceImpl lockService;
+    private SerializableTransactionManager transactionManager;
+
+    @Override
+    protected void setup(KeyValueService kvs) {
+        super.setup(kvs);
+        TransactionTables.createTables(kvs);
+        kvs.createTable(WRITE_WRITE_TABLE, tableMetadata(ConflictHandler.RETRY_ON_WRITE_WRITE));
+        kvs.createTable(SERIALIZABLE_TABLE, tableMetadata(ConflictHandler.SERIALIZABLE));
+
+        lockService = LockServiceImpl.create();
+        transactionManager = new SerializableTransactionManager(
+                kvs,
+                PersistentTimestampService.create(backend.createTimestampBoundStore(kvs)),
+                LockClient.of("atlasdb-perf"),
+                lockService,
+                TransactionServices.createTransactionService(kvs),
+                Suppliers.ofInstance(AtlasDbConstraintCheckingMode.NO_CONSTRAINT_CHECKING),
+                ConflictDetectionManagers.createDefault(kvs),
+                SweepStrategyManagers.createDefault(kvs),
+                NoOpCleaner.INSTANCE,
+                false,
+                commitTimestampCacheSize(),
+                rangeScanPrefetchPages());
+    }
+
+    protected int commitTimestampCacheSize() {
+        return AtlasDbConstants.DEFAULT_COMMIT_TIMESTAMP_CACHE_SIZE;
+    }
+
+    protected int rangeScanPrefetchPages() {
+        return AtlasDbConstants.DEFAULT_RANGE_SCAN_PREFETCH_PAGES;
+    }
+
+    @Override
+    protected void teardown() {
+        lockService.close();
+        super.teardown();
+    }
+
+    public SerializableTransactionManager getTransactionManager() {
+        return transactionManager;
+    }
+
+    private static byte[] tableMetadata(ConflictHandler conflictHandler) {
+        return new TableMetadata(
+                new NameMetadataDescription(),
+                new ColumnMetadataDescription(),
+                conflictHandler).persistToBytes();
+    }
+}
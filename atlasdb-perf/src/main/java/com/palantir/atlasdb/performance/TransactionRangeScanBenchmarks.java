@@ -0,0 +1,90 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.performance;
+
+import static com.palantir.atlasdb.performance.TransactionManagerState.WRITE_WRITE_TABLE;
+
+import java.util.Map;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.google.common.collect.Maps;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+
+/**
+ * Full transactional scans of a table whose rows were written by many transactions, with and without
+ * prefetching pages.  Scores are rows per second.  The commit timestamp cache is kept tiny so that
+ * every page has to look its commit timestamps up in the transactions table, as a scan over data
+ * written long ago would.
+ */
+public class TransactionRangeScanBenchmarks {
+    private static final int NUM_ROWS = 10000;
+    private static final int ROWS_PER_TRANSACTION = 10;
+    private static final int BATCH_HINT = 100;
+
+    @State(Scope.Benchmark)
+    public static class ScannedTable extends TransactionManagerState {
+        @Param({"0", "1", "4"})
+        public int prefetchPages;
+
+        @Override
+        protected void setup(KeyValueService kvs) {
+            super.setup(kvs);
+            for (int first = 0; first < NUM_ROWS; first += ROWS_PER_TRANSACTION) {
+                final Map<Cell, byte[]> values = Maps.newHashMap();
+                for (int row = first; row < first + ROWS_PER_TRANSACTION; row++) {
+                    values.put(KeyValueServiceBenchmarks.cell(row), KeyValueServiceBenchmarks.VALUE);
+                }
+                getTransactionManager().runTaskWithRetry(t -> {
+                    t.put(WRITE_WRITE_TABLE, values);
+                    return null;
+                });
+            }
+        }
+
+        @Override
+        protected int commitTimestampCacheSize() {
+            return 1;
+        }
+
+        @Override
+        protected int rangeScanPrefetchPages() {
+            return prefetchPages;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_ROWS)
+    public int scanTable(ScannedTable state, Blackhole blackhole) {
+        return state.getTransactionManager().runTaskReadOnly(t -> {
+            int[] rows = new int[1];
+            t.getRange(WRITE_WRITE_TABLE, RangeRequest.builder().batchHint(BATCH_HINT).build())
+                    .batchAccept(BATCH_HINT, batch -> {
+                        blackhole.consume(batch);
+                        rows[0] += batch.size();
+                        return true;
+                    });
+            return rows[0];
+        });
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.rocksdb.impl;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Ignore;
+import org.junit.Test;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.palantir.atlasdb.AtlasDbConstants;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.rocksdb.impl.ColumnFamilyMap.ColumnFamily;
+
+/**
+ * Compares seek and compaction throughput of the java comparator (V2) with the
+ * bytewise key format (V3).
+ */
+@Ignore
+public final class RocksDbComparatorPerfTest {
+    private static final TableReference T_TABLE = TableReference.createWithEmptyNamespace("t");
+
+    private static final Random RAND = new Random(0);
+    private static final int KEY_SIZE = 16;
+    private static final int VALUE_SIZE = 100;
+    private static final int NUM_BATCHES = 200;
+    private static final int BATCH_SIZE = 1000;
+    private static final int NUM_SEEKS = 200000;
+
+    @Test
+    public void testComparatorPerf() throws Exception {
+        for (RocksComparatorName comparator : new RocksComparatorName[] { RocksComparatorName.V2, RocksComparatorName.V3 }) {
+            runWithComparator(comparator);
+        }
+    }
+
+    private void runWithComparator(RocksComparatorName comparator) throws Exception {
+        File dbPath = new File("./testdb-perf-" + comparator.getComparatorName());
+        RocksDbKeyValueService db = RocksDbKeyValueService.create(dbPath.getAbsolutePath(),
+                ImmutableMap.<String, String>of(),
+                ImmutableMap.<String, String>of(),
+                ImmutableWriteOpts.builder().build(),
+                comparator.getComparatorName());
+        try {
+            db.dropTable(T_TABLE);
+            db.createTable(T_TABLE, AtlasDbConstants.EMPTY_TABLE_METADATA);
+            List<Cell> cells = Lists.newArrayList();
+            Stopwatch write = Stopwatch.createStarted();
+            for (int i = 0; i < NUM_BATCHES; i++) {
+                Map<Cell, byte[]> toPut = Maps.newHashMap();
+                for (int j = 0; j < BATCH_SIZE; j++) {
+                    Cell cell = Cell.create(getRandomBytes(KEY_SIZE), getRandomBytes(KEY_SIZE));
+                    toPut.put(cell, getRandomBytes(VALUE_SIZE));
+                    cells.add(cell);
+                }
+                db.put(T_TABLE, toPut, i + 1);
+            }
+            report(comparator, "writes", NUM_BATCHES * BATCH_SIZE, write);
+
+            Stopwatch compact = Stopwatch.createStarted();
+            try (ColumnFamily table = db.columnFamilies.get(T_TABLE.getQualifiedName())) {
+                db.db.compactRange(table.getHandle());
+            }
+            report(comparator, "compacted cells", cells.size(), compact);
+
+            Stopwatch seek = Stopwatch.createStarted();
+            for (int i = 0; i < NUM_SEEKS; i++) {
+                Cell cell = cells.get(RAND.nextInt(cells.size()));
+                db.get(T_TABLE, ImmutableMap.of(cell, Long.MAX_VALUE));
+            }
+            report(comparator, "seeks", NUM_SEEKS, seek);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static void report(RocksComparatorName comparator, String what, long count, Stopwatch stopwatch) {
+        double seconds = stopwatch.elapsed(TimeUnit.MILLISECONDS) / 1000.0;
+        System.out.println(comparator.getComparatorName() + ": " + what + "/s = " + (count / seconds));
+    }
+
+    private static byte[] getRandomBytes(int numBytes) {
+        final byte[] ret = new byte[numBytes];
+        RAND.nextBytes(ret);
+        return ret;
+    }
+}
@@ -290,6 +290,30 @@ public final class RocksDbKeyValueServiceTest {
         assertEquals("yoyo", new String(meta));
     }
 
+    @Test
+    public void testLargeReadsAreChunked() {
+        Map<Cell, byte[]> values = Maps.newHashMap();
+        Map<Cell, Long> timestamps = Maps.newHashMap();
+        List<byte[]> rows = Lists.newArrayList();
+        for (int i = 0; i < 2500; i++) {
+            byte[] row = PtBytes.toBytes("row" + i);
+            Cell cell = Cell.create(row, COMMIT_TS_COLUMN);
+            values.put(cell, PtBytes.toBytes("v" + i));
+            timestamps.put(cell, 3L);
+            rows.add(row);
+        }
+        db.put(TABLE, values, 2L);
+
+        Map<Cell, Value> cells = db.get(TABLE, timestamps);
+        assertEquals(values.size(), cells.size());
+        for (Map.Entry<Cell, byte[]> e : values.entrySet()) {
+            assertEquals(new String(e.getValue()), new String(cells.get(e.getKey()).getContents()));
+        }
+        assertEquals(cells, db.getRows(TABLE, rows, ColumnSelection.all(), 3L));
+        assertEquals(ImmutableSet.of(2L), ImmutableSet.copyOf(db.getLatestTimestamps(TABLE, timestamps).values()));
+        assertEquals(values.size(), db.getLatestTimestamps(TABLE, timestamps).size());
+    }
+
     @Test
     public void testLockFile() {
         try {
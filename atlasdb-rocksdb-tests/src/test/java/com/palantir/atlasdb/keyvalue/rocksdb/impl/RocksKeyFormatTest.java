@@ -0,0 +1,103 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.rocksdb.impl;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.UnsignedBytes;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.util.Pair;
+
+public class RocksKeyFormatTest {
+    // In the order the store must return them: row asc, column asc, timestamp desc.
+    private static final List<Pair<Cell, Long>> ORDERED_KEYS = ImmutableList.of(
+            cellAndTs(bytes(0x00), bytes(0x01), 5L),
+            cellAndTs(bytes(0x61), bytes(0x00), Long.MAX_VALUE),
+            cellAndTs(bytes(0x61), bytes(0x00), 0L),
+            cellAndTs(bytes(0x61), bytes(0x00), -1L),
+            cellAndTs(bytes(0x61), bytes(0x00), Long.MIN_VALUE),
+            cellAndTs(bytes(0x61), bytes(0x00, 0x00), 3L),
+            cellAndTs(bytes(0x61), bytes(0x01), 3L),
+            cellAndTs(bytes(0x61), bytes(0xff), 3L),
+            cellAndTs(bytes(0x61, 0x00), bytes(0x01), 3L),
+            cellAndTs(bytes(0x61, 0x00, 0x00), bytes(0x01), 3L),
+            cellAndTs(bytes(0x61, 0x00, 0x01), bytes(0x01), 3L),
+            cellAndTs(bytes(0x61, 0x00, 0xff), bytes(0x01), 3L),
+            cellAndTs(bytes(0x61, 0x01), bytes(0x01), 3L),
+            cellAndTs(bytes(0xff, 0xff), bytes(0x61, 0x62, 0x63), 3L));
+
+    @Test
+    public void testBytewiseKeysSortLikeCells() {
+        for (int i = 0; i + 1 < ORDERED_KEYS.size(); i++) {
+            byte[] first = getKey(RocksKeyFormat.BYTEWISE, ORDERED_KEYS.get(i));
+            byte[] second = getKey(RocksKeyFormat.BYTEWISE, ORDERED_KEYS.get(i + 1));
+            Assert.assertTrue(ORDERED_KEYS.get(i) + " should sort before " + ORDERED_KEYS.get(i + 1),
+                    UnsignedBytes.lexicographicalComparator().compare(first, second) < 0);
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        for (RocksKeyFormat format : RocksKeyFormat.values()) {
+            for (Pair<Cell, Long> cellAndTs : ORDERED_KEYS) {
+                Pair<Cell, Long> parsed = format.parseCellAndTs(getKey(format, cellAndTs));
+                Assert.assertEquals(cellAndTs.lhSide, parsed.lhSide);
+                Assert.assertEquals(cellAndTs.rhSide, parsed.rhSide);
+            }
+        }
+    }
+
+    @Test
+    public void testConvertKey() {
+        for (Pair<Cell, Long> cellAndTs : ORDERED_KEYS) {
+            byte[] converted = RocksDbUpgrader.convertKey(
+                    getKey(RocksKeyFormat.ROW_SIZE_SUFFIX, cellAndTs),
+                    RocksKeyFormat.ROW_SIZE_SUFFIX,
+                    RocksKeyFormat.BYTEWISE);
+            Assert.assertArrayEquals(getKey(RocksKeyFormat.BYTEWISE, cellAndTs), converted);
+        }
+    }
+
+    @Test
+    public void testFormatForComparator() {
+        Assert.assertEquals(RocksKeyFormat.ROW_SIZE_SUFFIX,
+                RocksKeyFormat.forComparator(RocksComparatorName.V1.getComparatorName()));
+        Assert.assertEquals(RocksKeyFormat.ROW_SIZE_SUFFIX,
+                RocksKeyFormat.forComparator(RocksComparatorName.V2.getComparatorName()));
+        Assert.assertEquals(RocksKeyFormat.BYTEWISE,
+                RocksKeyFormat.forComparator(RocksComparatorName.V3.getComparatorName()));
+    }
+
+    private static byte[] getKey(RocksKeyFormat format, Pair<Cell, Long> cellAndTs) {
+        return format.getKey(cellAndTs.lhSide.getRowName(), cellAndTs.lhSide.getColumnName(), cellAndTs.rhSide);
+    }
+
+    private static Pair<Cell, Long> cellAndTs(byte[] row, byte[] col, long ts) {
+        return Pair.create(Cell.create(row, col), ts);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] ret = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            ret[i] = (byte) values[i];
+        }
+        return ret;
+    }
+}
@@ -34,26 +34,28 @@ import com.palantir.util.Pair;
 abstract class RangeIterator<T> extends AbstractIterator<RowResult<T>> implements ClosableIterator<RowResult<T>> {
     private final ColumnFamily table;
     protected final RocksIterator it;
+    protected final RocksKeyFormat keyFormat;
     private final RangeRequest request;
     protected final long maxTimestamp;
 
-    RangeIterator(ColumnFamily table, RocksIterator it, RangeRequest range, long maxTimestamp) {
+    RangeIterator(ColumnFamily table, RocksIterator it, RocksKeyFormat keyFormat, RangeRequest range, long maxTimestamp) {
         this.table = table;
         this.it = it;
+        this.keyFormat = keyFormat;
         this.request = range;
         this.maxTimestamp = maxTimestamp;
         byte[] start = range.getStartInclusive();
         if (start.length == 0) {
             it.seekToFirst();
         } else {
-            it.seek(RocksDbKeyValueServices.getKey(start, maxTimestamp - 1));
+            it.seek(RocksDbKeyValueServices.getKey(keyFormat, start, maxTimestamp - 1));
         }
     }
 
     @Override
     protected RowResult<T> computeNext() {
         while (it.isValid()) {
-            Pair<Cell, Long> cellAndTs = RocksDbKeyValueServices.parseCellAndTs(it.key());
+            Pair<Cell, Long> cellAndTs = RocksDbKeyValueServices.parseCellAndTs(keyFormat, it.key());
             Cell cell = cellAndTs.lhSide;
             if (!RocksDbKeyValueServices.isInRange(cell.getRowName(), request.getEndExclusive())) {
                 break;
@@ -68,7 +70,7 @@ abstract class RangeIterator<T> extends AbstractIterator<RowResult<T>> implement
                 if (!it.isValid()) {
                     break;
                 }
-                cellAndTs = RocksDbKeyValueServices.parseCellAndTs(it.key());
+                cellAndTs = RocksDbKeyValueServices.parseCellAndTs(keyFormat, it.key());
                 cell = cellAndTs.lhSide;
             } while (Arrays.equals(row, cell.getRowName()));
             SortedMap<byte[], T> columns = builder.build();
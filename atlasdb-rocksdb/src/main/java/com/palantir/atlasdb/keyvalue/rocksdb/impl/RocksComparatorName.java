@@ -20,7 +20,13 @@ import com.fasterxml.jackson.annotation.JsonValue;
 
 public enum RocksComparatorName {
     V1("atlasdb"),
-    V2("atlasdb-v2");
+    V2("atlasdb-v2"),
+    /**
+     * Keys are laid out so that rocksdb's builtin bytewise comparator orders them correctly,
+     * so no java comparator is called during reads or compactions.  Existing V1 and V2
+     * databases must be converted with {@link RocksDbUpgrader}.
+     */
+    V3("atlasdb-v3");
 
     private final String comparatorName;
 
@@ -28,19 +28,28 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.annotation.Nullable;
 import javax.management.MBeanServer;
 import javax.management.ObjectName;
 
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.BuiltinComparator;
 import org.rocksdb.ColumnFamilyDescriptor;
 import org.rocksdb.ColumnFamilyHandle;
 import org.rocksdb.ColumnFamilyOptions;
 import org.rocksdb.DBOptions;
 import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
 import org.rocksdb.RocksDB;
 import org.rocksdb.RocksDBException;
 import org.rocksdb.RocksIterator;
+import org.rocksdb.Snapshot;
 import org.rocksdb.WriteBatch;
 import org.rocksdb.WriteOptions;
 import org.slf4j.Logger;
@@ -56,10 +65,12 @@ import com.google.common.collect.Collections2;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.keyvalue.api.Cell;
 import com.palantir.atlasdb.keyvalue.api.ColumnSelection;
@@ -72,7 +83,10 @@ import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.keyvalue.api.Value;
 import com.palantir.atlasdb.keyvalue.impl.KeyValueServices;
 import com.palantir.atlasdb.keyvalue.rocksdb.impl.ColumnFamilyMap.ColumnFamily;
+import com.palantir.common.annotation.Output;
 import com.palantir.common.base.ClosableIterator;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.util.MutuallyExclusiveSetLock;
 import com.palantir.util.MutuallyExclusiveSetLock.LockState;
 import com.palantir.util.file.TempFileUtils;
@@ -80,15 +94,21 @@ import com.palantir.util.paging.TokenBackedBasicResultsPage;
 
 public class RocksDbKeyValueService implements KeyValueService {
     private static final Logger log = LoggerFactory.getLogger(RocksDbKeyValueService.class);
-    private static final TableReference METADATA_TABLE_NAME = TableReference.createWithEmptyNamespace("_metadata");
+    static final TableReference METADATA_TABLE_NAME = TableReference.createWithEmptyNamespace("_metadata");
     private static final long PUT_UNLESS_EXISTS_TS = 0L;
     private static final String LOCK_FILE_PREFIX = ".pt_kv_lock";
+    private static final int POINT_READ_CHUNK_SIZE = 1000;
+    private static final int BLOOM_FILTER_BITS_PER_KEY = 10;
     final RocksDB db;
     final ColumnFamilyMap columnFamilies;
+    final RocksKeyFormat keyFormat;
     private final FileLock lock;
     private final RandomAccessFile lockFile;
     private final WriteOpts writeOptions;
     private final MutuallyExclusiveSetLock<Cell> lockSet = MutuallyExclusiveSetLock.<Cell>create(false);
+    private final ExecutorService readExecutor = PTExecutors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            new NamedThreadFactory(RocksDbKeyValueService.class.getSimpleName() + "-read", true));
     private volatile boolean closed = false;
 
     public static RocksDbKeyValueService create(String dataDir) {
@@ -110,6 +130,9 @@ public class RocksDbKeyValueService implements KeyValueService {
         setReflectionOpts(cfMetadataOpts, cfOptions);
         ColumnFamilyOptions cfCommonOpts;
         switch (comparator) {
+        case "atlasdb-v3":
+            cfCommonOpts = new ColumnFamilyOptions().setComparator(BuiltinComparator.BYTEWISE_COMPARATOR);
+            break;
         case "atlasdb-v2":
             cfCommonOpts = new ColumnFamilyOptions().setComparator(RocksComparator.INSTANCE);
             break;
@@ -119,8 +142,11 @@ public class RocksDbKeyValueService implements KeyValueService {
         default:
             throw new IllegalArgumentException("Unknown comparator " + comparator);
         }
+        // Whole key bloom filters let exact key lookups (see putUnlessExists) skip files without reading them.
+        cfCommonOpts.setTableFormatConfig(new BlockBasedTableConfig()
+                .setFilter(new BloomFilter(BLOOM_FILTER_BITS_PER_KEY, false)));
         setReflectionOpts(cfCommonOpts, cfOptions);
-        return create(dataDir, dbOpts, cfMetadataOpts, cfCommonOpts, writeOpts);
+        return create(dataDir, dbOpts, cfMetadataOpts, cfCommonOpts, writeOpts, comparator);
     }
 
     private static void setReflectionOpts(Object opts,
@@ -153,13 +179,31 @@ public class RocksDbKeyValueService implements KeyValueService {
         }
     }
 
+    /**
+     * The comparator set on cfCommonOptions must be one that understands the
+     * {@link RocksComparatorName#V2} key layout.
+     */
     public static RocksDbKeyValueService create(String dataDir,
                                                 DBOptions dbOptions,
                                                 ColumnFamilyOptions cfMetadataOptions,
                                                 ColumnFamilyOptions cfCommonOptions,
                                                 WriteOpts writeOptions) {
+        return create(dataDir, dbOptions, cfMetadataOptions, cfCommonOptions, writeOptions,
+                RocksComparatorName.V2.getComparatorName());
+    }
+
+    /**
+     * @param comparator the {@link RocksComparatorName} whose key layout cfCommonOptions's comparator expects
+     */
+    public static RocksDbKeyValueService create(String dataDir,
+                                                DBOptions dbOptions,
+                                                ColumnFamilyOptions cfMetadataOptions,
+                                                ColumnFamilyOptions cfCommonOptions,
+                                                WriteOpts writeOptions,
+                                                String comparator) {
         try {
-            RocksDbKeyValueService kvs = lockAndCreateDb(new File(dataDir), dbOptions, cfMetadataOptions, cfCommonOptions, writeOptions);
+            RocksKeyFormat keyFormat = RocksKeyFormat.forComparator(comparator);
+            RocksDbKeyValueService kvs = lockAndCreateDb(new File(dataDir), dbOptions, cfMetadataOptions, cfCommonOptions, writeOptions, keyFormat);
             registerMBean(kvs);
             return kvs;
         } catch (Exception e) {
@@ -183,7 +227,8 @@ public class RocksDbKeyValueService implements KeyValueService {
                                                           final DBOptions dbOptions,
                                                           final ColumnFamilyOptions cfMetadataOptions,
                                                           final ColumnFamilyOptions cfCommonOptions,
-                                                          final WriteOpts writeOpts) throws IOException, RocksDBException {
+                                                          final WriteOpts writeOpts,
+                                                          RocksKeyFormat keyFormat) throws IOException, RocksDBException {
         TempFileUtils.mkdirsWithRetry(dbDir);
         Preconditions.checkArgument(dbDir.exists() && dbDir.isDirectory(), "DB file must be a directory: " + dbDir);
         final RandomAccessFile randomAccessFile =
@@ -226,7 +271,7 @@ public class RocksDbKeyValueService implements KeyValueService {
                 }
             }, db);
             columnFamilies.initialize(cfDescriptors, cfHandles);
-            RocksDbKeyValueService ret = new RocksDbKeyValueService(db, columnFamilies, lock, randomAccessFile, writeOpts);
+            RocksDbKeyValueService ret = new RocksDbKeyValueService(db, columnFamilies, lock, randomAccessFile, writeOpts, keyFormat);
             ret.createTable(METADATA_TABLE_NAME, AtlasDbConstants.EMPTY_TABLE_METADATA);
             success = true;
             return ret;
@@ -253,12 +298,14 @@ public class RocksDbKeyValueService implements KeyValueService {
                                    ColumnFamilyMap columnFamilies,
                                    FileLock lock,
                                    RandomAccessFile file,
-                                   WriteOpts writeOptions) {
+                                   WriteOpts writeOptions,
+                                   RocksKeyFormat keyFormat) {
         this.db = db;
         this.columnFamilies = columnFamilies;
         this.lock = lock;
         this.lockFile = file;
         this.writeOptions = writeOptions;
+        this.keyFormat = keyFormat;
     }
 
     @Override
@@ -270,6 +317,7 @@ public class RocksDbKeyValueService implements KeyValueService {
     public void close() {
         if (!closed) {
             try {
+                readExecutor.shutdown();
                 getDb().close();
                 lock.release();
                 lockFile.close();
@@ -294,50 +342,111 @@ public class RocksDbKeyValueService implements KeyValueService {
     @Override
     public Map<Cell, Value> getRows(TableReference tableRef,
                                     Iterable<byte[]> rows,
-                                    ColumnSelection columnSelection,
-                                    long timestamp) {
-        try (Disposer d = new Disposer();
-                ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
-            Map<Cell, Value> results = Maps.newHashMap();
-            RocksIterator iter = d.register(getDb().newIterator(table.getHandle()));
-            for (byte[] row : rows) {
-                RocksDbKeyValueServices.getRow(iter, row, columnSelection, timestamp, results);
-            }
-            return results;
+                                    final ColumnSelection columnSelection,
+                                    final long timestamp) {
+        try (ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
+            return readInChunks(table, ImmutableList.copyOf(rows), new PointReader<byte[], Cell, Value>() {
+                @Override
+                public void read(RocksIterator iter, byte[] row, Map<Cell, Value> results) {
+                    RocksDbKeyValueServices.getRow(keyFormat, iter, row, columnSelection, timestamp, results);
+                }
+            });
         }
     }
 
     @Override
     public Map<Cell, Value> get(TableReference tableRef,
                                 Map<Cell, Long> timestampByCell) {
-        try (Disposer d = new Disposer();
-                ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
-            Map<Cell, Value> results = Maps.newHashMap();
-            RocksIterator iter = d.register(getDb().newIterator(table.getHandle()));
-            for (Entry<Cell, Long> entry : timestampByCell.entrySet()) {
-                Value value = RocksDbKeyValueServices.getCell(iter, entry.getKey(), entry.getValue());
-                if (value != null) {
-                    results.put(entry.getKey(), value);
+        try (ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
+            return readInChunks(table, timestampByCell.entrySet(), new PointReader<Entry<Cell, Long>, Cell, Value>() {
+                @Override
+                public void read(RocksIterator iter, Entry<Cell, Long> entry, Map<Cell, Value> results) {
+                    Value value = RocksDbKeyValueServices.getCell(keyFormat, iter, entry.getKey(), entry.getValue());
+                    if (value != null) {
+                        results.put(entry.getKey(), value);
+                    }
                 }
-            }
-            return results;
+            });
         }
     }
 
     @Override
     public Map<Cell, Long> getLatestTimestamps(TableReference tableRef,
                                                Map<Cell, Long> timestampByCell) {
-        try (Disposer d = new Disposer();
-                ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
-            Map<Cell, Long> results = Maps.newHashMap();
-            RocksIterator iter = d.register(getDb().newIterator(table.getHandle()));
-            for (Entry<Cell, Long> entry : timestampByCell.entrySet()) {
-                Long ts = RocksDbKeyValueServices.getTimestamp(iter, entry.getKey(), entry.getValue());
-                if (ts != null) {
-                    results.put(entry.getKey(), ts);
+        try (ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName())) {
+            return readInChunks(table, timestampByCell.entrySet(), new PointReader<Entry<Cell, Long>, Cell, Long>() {
+                @Override
+                public void read(RocksIterator iter, Entry<Cell, Long> entry, Map<Cell, Long> results) {
+                    Long ts = RocksDbKeyValueServices.getTimestamp(keyFormat, iter, entry.getKey(), entry.getValue());
+                    if (ts != null) {
+                        results.put(entry.getKey(), ts);
+                    }
+                }
+            });
+        }
+    }
+
+    private interface PointReader<T, K, V> {
+        void read(RocksIterator iter, T request, @Output Map<K, V> results);
+    }
+
+    /**
+     * Small requests are read on the calling thread with a single iterator.  Larger ones are
+     * split into chunks that are read in parallel on {@link #readExecutor}.  All chunks read
+     * from one pinned snapshot, so they see the same consistent view a single iterator would.
+     */
+    private <T, K, V> Map<K, V> readInChunks(final ColumnFamily table,
+                                             Collection<T> requests,
+                                             final PointReader<T, K, V> reader) {
+        if (requests.size() <= POINT_READ_CHUNK_SIZE) {
+            try (Disposer d = new Disposer()) {
+                RocksIterator iter = d.register(getDb().newIterator(table.getHandle()));
+                Map<K, V> results = Maps.newHashMap();
+                for (T request : requests) {
+                    reader.read(iter, request, results);
                 }
+                return results;
+            }
+        }
+
+        final RocksDB db = getDb();
+        Snapshot snapshot = db.getSnapshot();
+        try (Disposer d = new Disposer()) {
+            final ReadOptions readOptions = d.register(new ReadOptions().setSnapshot(snapshot));
+            List<Future<Map<K, V>>> futures = Lists.newArrayList();
+            for (final List<T> chunk : Iterables.partition(requests, POINT_READ_CHUNK_SIZE)) {
+                futures.add(readExecutor.submit(new Callable<Map<K, V>>() {
+                    @Override
+                    public Map<K, V> call() {
+                        try (Disposer chunkDisposer = new Disposer()) {
+                            RocksIterator iter = chunkDisposer.register(db.newIterator(table.getHandle(), readOptions));
+                            Map<K, V> results = Maps.newHashMapWithExpectedSize(chunk.size());
+                            for (T request : chunk) {
+                                reader.read(iter, request, results);
+                            }
+                            return results;
+                        }
+                    }
+                }));
+            }
+
+            // Every chunk must finish before the snapshot and read options are released,
+            // so wait for all of them even if one fails.
+            Map<K, V> results = Maps.newHashMapWithExpectedSize(requests.size());
+            Throwable failure = null;
+            for (Future<Map<K, V>> future : futures) {
+                try {
+                    results.putAll(Uninterruptibles.getUninterruptibly(future));
+                } catch (ExecutionException e) {
+                    failure = MoreObjects.firstNonNull(failure, e.getCause());
+                }
+            }
+            if (failure != null) {
+                throw Throwables.propagate(failure);
             }
             return results;
+        } finally {
+            db.releaseSnapshot(snapshot);
         }
     }
 
@@ -348,7 +457,7 @@ public class RocksDbKeyValueService implements KeyValueService {
             WriteOptions options = d.register(new WriteOptions().setSync(writeOptions.fsyncPut()));
             WriteBatch batch = d.register(new WriteBatch());
             for (Entry<Cell, byte[]> entry : values.entrySet()) {
-                byte[] key = RocksDbKeyValueServices.getKey(entry.getKey(), timestamp);
+                byte[] key = RocksDbKeyValueServices.getKey(keyFormat, entry.getKey(), timestamp);
                 batch.put(table.getHandle(), key, entry.getValue());
             }
             getDb().write(options, batch);
@@ -370,7 +479,7 @@ public class RocksDbKeyValueService implements KeyValueService {
                 for (Entry<TableReference, ? extends Map<Cell, byte[]>> entry : valuesByTable.entrySet()) {
                     ColumnFamilyHandle table = cfs.get(entry.getKey().getQualifiedName()).getHandle();
                     for (Entry<Cell, byte[]> subEntry : entry.getValue().entrySet()) {
-                        byte[] key = RocksDbKeyValueServices.getKey(subEntry.getKey(), timestamp);
+                        byte[] key = RocksDbKeyValueServices.getKey(keyFormat, subEntry.getKey(), timestamp);
                         batch.put(table, key, subEntry.getValue());
                     }
                 }
@@ -393,7 +502,7 @@ public class RocksDbKeyValueService implements KeyValueService {
             WriteBatch batch = d.register(new WriteBatch());
             for (Entry<Cell, Value> entry : cellValues.entries()) {
                 Value value = entry.getValue();
-                byte[] key = RocksDbKeyValueServices.getKey(entry.getKey(), value.getTimestamp());
+                byte[] key = RocksDbKeyValueServices.getKey(keyFormat, entry.getKey(), value.getTimestamp());
                 batch.put(table.getHandle(), key, value.getContents());
             }
             getDb().write(options, batch);
@@ -411,10 +520,9 @@ public class RocksDbKeyValueService implements KeyValueService {
             Set<Cell> alreadyExists = Sets.newHashSetWithExpectedSize(0);
             WriteOptions options = d.register(new WriteOptions().setSync(writeOptions.fsyncCommit()));
             WriteBatch batch = d.register(new WriteBatch());
-            RocksIterator iter = d.register(getDb().newIterator(table.getHandle()));
             for (Entry<Cell, byte[]> entry : values.entrySet()) {
-                byte[] key = RocksDbKeyValueServices.getKey(entry.getKey(), PUT_UNLESS_EXISTS_TS);
-                if (RocksDbKeyValueServices.keyExists(iter, key)) {
+                byte[] key = RocksDbKeyValueServices.getKey(keyFormat, entry.getKey(), PUT_UNLESS_EXISTS_TS);
+                if (RocksDbKeyValueServices.keyExists(getDb(), table.getHandle(), key)) {
                     alreadyExists.add(entry.getKey());
                 } else {
                     batch.put(table.getHandle(), key, entry.getValue());
@@ -438,7 +546,7 @@ public class RocksDbKeyValueService implements KeyValueService {
             WriteOptions options = d.register(new WriteOptions().setSync(writeOptions.fsyncPut()));
             WriteBatch batch = d.register(new WriteBatch());
             for (Entry<Cell, Long> entry : keys.entries()) {
-                byte[] key = RocksDbKeyValueServices.getKey(entry.getKey(), entry.getValue());
+                byte[] key = RocksDbKeyValueServices.getKey(keyFormat, entry.getKey(), entry.getValue());
                 batch.remove(table.getHandle(), key);
             }
             getDb().write(options, batch);
@@ -469,7 +577,7 @@ public class RocksDbKeyValueService implements KeyValueService {
                                                        long timestamp) {
         ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName());
         RocksIterator iter = getDb().newIterator(table.getHandle());
-        return new ValueRangeIterator(table, iter, rangeRequest, timestamp);
+        return new ValueRangeIterator(table, iter, keyFormat, rangeRequest, timestamp);
     }
 
     @Override
@@ -478,7 +586,7 @@ public class RocksDbKeyValueService implements KeyValueService {
                                                                        long timestamp) {
         ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName());
         RocksIterator iter = getDb().newIterator(table.getHandle());
-        return new HistoryRangeIterator(table, iter, rangeRequest, timestamp);
+        return new HistoryRangeIterator(table, iter, keyFormat, rangeRequest, timestamp);
     }
 
     @Override
@@ -487,7 +595,7 @@ public class RocksDbKeyValueService implements KeyValueService {
                                                                        long timestamp) {
         ColumnFamily table = columnFamilies.get(tableRef.getQualifiedName());
         RocksIterator iter = getDb().newIterator(table.getHandle());
-        return new TimestampRangeIterator(table, iter, rangeRequest, timestamp);
+        return new TimestampRangeIterator(table, iter, keyFormat, rangeRequest, timestamp);
     }
 
     @Override
@@ -616,7 +724,7 @@ public class RocksDbKeyValueService implements KeyValueService {
                 WriteOptions options = d.register(new WriteOptions().setSync(true));
                 WriteBatch batch = d.register(new WriteBatch());
                 for (Cell cell : cells) {
-                    byte[] key = RocksDbKeyValueServices.getKey(cell, Value.INVALID_VALUE_TIMESTAMP);
+                    byte[] key = RocksDbKeyValueServices.getKey(keyFormat, cell, Value.INVALID_VALUE_TIMESTAMP);
                     batch.put(table.getHandle(), key, val);
                 }
                 getDb().write(options, batch);
@@ -635,7 +743,7 @@ public class RocksDbKeyValueService implements KeyValueService {
             RocksIterator iter = getDb().newIterator(table.getHandle());
             try {
                 for (Cell cell : cells) {
-                    RocksDbKeyValueServices.getTimestamps(iter, cell, timestamp, results);
+                    RocksDbKeyValueServices.getTimestamps(keyFormat, iter, cell, timestamp, results);
                 }
             } finally {
                 iter.dispose();
@@ -23,10 +23,12 @@ import org.rocksdb.WriteOptions;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.palantir.atlasdb.AtlasDbConstants;
+import com.palantir.atlasdb.keyvalue.api.Cell;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.keyvalue.rocksdb.impl.ColumnFamilyMap.ColumnFamily;
 import com.palantir.atlasdb.rocksdb.RocksDbAtlasDbFactory;
 import com.palantir.atlasdb.rocksdb.RocksDbKeyValueServiceConfig;
+import com.palantir.util.Pair;
 
 public class RocksDbUpgrader {
     private static final ObjectMapper MAPPER = new ObjectMapper();
@@ -60,6 +62,9 @@ public class RocksDbUpgrader {
 
         for (String table : oldKvs.columnFamilies.getTableNames()) {
             System.out.println("Migrating table " + table);
+            // The metadata table is keyed by table name, so its keys never need converting.
+            boolean convertKeys = oldKvs.keyFormat != newKvs.keyFormat
+                    && !table.equals(RocksDbKeyValueService.METADATA_TABLE_NAME.getQualifiedName());
             ColumnFamily oldCf = oldKvs.columnFamilies.get(table);
             ColumnFamily newCf = newKvs.columnFamilies.get(table);
             ColumnFamilyHandle newHandle = newCf.getHandle();
@@ -70,6 +75,9 @@ public class RocksDbUpgrader {
             while (iter.isValid()) {
                 byte[] key = iter.key();
                 byte[] value = iter.value();
+                if (convertKeys) {
+                    key = convertKey(key, oldKvs.keyFormat, newKvs.keyFormat);
+                }
                 newKvs.db.put(newHandle, opts, key, value);
                 iter.next();
                 if (++count % 10000 == 0) {
@@ -84,11 +92,19 @@ public class RocksDbUpgrader {
         System.out.println("Finished migration of all tables.");
     }
 
+    static byte[] convertKey(byte[] key, RocksKeyFormat oldFormat, RocksKeyFormat newFormat) {
+        Pair<Cell, Long> cellAndTs = oldFormat.parseCellAndTs(key);
+        Cell cell = cellAndTs.lhSide;
+        return newFormat.getKey(cell.getRowName(), cell.getColumnName(), cellAndTs.rhSide);
+    }
+
     private static void help() {
         System.out.println("RocksDbUpgrader");
         System.out.println();
         System.out.println("  Use this cli to copy your existing rocksdb database");
         System.out.println("  into a new database with possibly different settings.");
+        System.out.println("  Keys are converted if the two databases use different");
+        System.out.println("  comparators, e.g. to move from atlasdb-v2 to atlasdb-v3.");
         System.out.println();
         System.out.println("Usage: RocksDbUpgrader old-settings.json new-settings.json");
         System.out.println();
@@ -0,0 +1,203 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.rocksdb.impl;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import org.apache.commons.lang.ArrayUtils;
+
+import com.google.common.base.Preconditions;
+import com.google.common.primitives.Longs;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.ptobject.EncodingUtils;
+import com.palantir.util.Pair;
+
+/**
+ * How a (row, column, timestamp) triple is laid out in a rocksdb key.  Every table of a
+ * database uses the same format, which is determined by the comparator the database was
+ * created with.
+ */
+enum RocksKeyFormat {
+    /**
+     * row, column, big endian timestamp and then the reversed var long length of the row.
+     * These keys need one of our java comparators ({@link RocksOldComparator} or
+     * {@link RocksComparator}) to find the row and column boundaries.
+     */
+    ROW_SIZE_SUFFIX {
+        @Override
+        byte[] getKey(byte[] row, byte[] col, long timeStamp) {
+            Preconditions.checkArgument(EncodingUtils.sizeOfVarLong(row.length) <= 2);
+            byte[] rowSize = EncodingUtils.encodeVarLong(row.length);
+            ArrayUtils.reverse(rowSize);
+
+            byte[] key = new byte[row.length + col.length + 8 + rowSize.length];
+            ByteBuffer.wrap(key).order(ByteOrder.BIG_ENDIAN)
+                    .put(row)
+                    .put(col)
+                    .putLong(timeStamp)
+                    .put(rowSize);
+            return key;
+        }
+
+        @Override
+        Pair<Cell, Long> parseCellAndTs(byte[] key) {
+            byte[] rowSizeBytes = new byte[2];
+            rowSizeBytes[0] = key[key.length - 1];
+            rowSizeBytes[1] = key[key.length - 2];
+
+            int rowSize = (int) EncodingUtils.decodeVarLong(rowSizeBytes);
+            int colEnd = key.length - 8 - EncodingUtils.sizeOfVarLong(rowSize);
+
+            byte[] rowName = Arrays.copyOf(key, rowSize);
+            byte[] colName = Arrays.copyOfRange(key, rowSize, colEnd);
+            long ts = Longs.fromBytes(
+                    key[colEnd+0],
+                    key[colEnd+1],
+                    key[colEnd+2],
+                    key[colEnd+3],
+                    key[colEnd+4],
+                    key[colEnd+5],
+                    key[colEnd+6],
+                    key[colEnd+7]);
+
+            return Pair.create(Cell.create(rowName, colName), ts);
+        }
+    },
+
+    /**
+     * Escaped row, escaped column and then the timestamp, encoded so that plain unsigned
+     * bytewise order of the keys is (row asc, column asc, timestamp desc).  This lets
+     * rocksdb use its native bytewise comparator instead of calling back into java for
+     * every comparison.
+     * <p>
+     * Rows and columns have every 0x00 escaped as 0x00 0xFF and are terminated by 0x00 0x01,
+     * so a name always sorts before any longer name it is a prefix of.  The timestamp is
+     * stored big endian as {@code timestamp ^ Long.MAX_VALUE}, which flips the sign bit for
+     * unsigned order and then inverts it so later timestamps come first.
+     */
+    BYTEWISE {
+        @Override
+        byte[] getKey(byte[] row, byte[] col, long timeStamp) {
+            byte[] key = new byte[escapedSize(row) + escapedSize(col) + 8];
+            int offset = writeEscaped(row, key, 0);
+            offset = writeEscaped(col, key, offset);
+            long encodedTs = timeStamp ^ Long.MAX_VALUE;
+            for (int i = 7; i >= 0; i--) {
+                key[offset + i] = (byte) encodedTs;
+                encodedTs >>>= 8;
+            }
+            return key;
+        }
+
+        @Override
+        Pair<Cell, Long> parseCellAndTs(byte[] key) {
+            int rowEnd = findTerminator(key, 0);
+            byte[] rowName = readEscaped(key, 0, rowEnd);
+            int colStart = rowEnd + 2;
+            int colEnd = findTerminator(key, colStart);
+            byte[] colName = readEscaped(key, colStart, colEnd);
+            int tsStart = colEnd + 2;
+            Preconditions.checkArgument(key.length == tsStart + 8, "Malformed rocksdb key.");
+            long ts = Longs.fromBytes(
+                    key[tsStart+0],
+                    key[tsStart+1],
+                    key[tsStart+2],
+                    key[tsStart+3],
+                    key[tsStart+4],
+                    key[tsStart+5],
+                    key[tsStart+6],
+                    key[tsStart+7]) ^ Long.MAX_VALUE;
+            return Pair.create(Cell.create(rowName, colName), ts);
+        }
+    };
+
+    private static final byte ESCAPE = 0x00;
+    private static final byte ESCAPED_ZERO = (byte) 0xFF;
+    private static final byte TERMINATOR = 0x01;
+
+    abstract byte[] getKey(byte[] row, byte[] col, long timeStamp);
+
+    abstract Pair<Cell, Long> parseCellAndTs(byte[] key);
+
+    static RocksKeyFormat forComparator(String comparator) {
+        switch (comparator) {
+        case "atlasdb":
+        case "atlasdb-v2":
+            return ROW_SIZE_SUFFIX;
+        case "atlasdb-v3":
+            return BYTEWISE;
+        default:
+            throw new IllegalArgumentException("Unknown comparator " + comparator);
+        }
+    }
+
+    private static int escapedSize(byte[] name) {
+        int size = name.length + 2;
+        for (byte b : name) {
+            if (b == ESCAPE) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    private static int writeEscaped(byte[] name, byte[] key, int offset) {
+        for (byte b : name) {
+            key[offset++] = b;
+            if (b == ESCAPE) {
+                key[offset++] = ESCAPED_ZERO;
+            }
+        }
+        key[offset++] = ESCAPE;
+        key[offset++] = TERMINATOR;
+        return offset;
+    }
+
+    /**
+     * @return the index of the 0x00 that starts the terminator of the name beginning at start
+     */
+    private static int findTerminator(byte[] key, int start) {
+        for (int i = start; i < key.length - 1; i++) {
+            if (key[i] == ESCAPE) {
+                if (key[i + 1] == TERMINATOR) {
+                    return i;
+                }
+                i++;
+            }
+        }
+        throw new IllegalArgumentException("Malformed rocksdb key.");
+    }
+
+    private static byte[] readEscaped(byte[] key, int start, int end) {
+        int size = end - start;
+        for (int i = start; i < end; i++) {
+            if (key[i] == ESCAPE) {
+                size--;
+                i++;
+            }
+        }
+        byte[] name = new byte[size];
+        for (int i = start, j = 0; i < end; i++, j++) {
+            name[j] = key[i];
+            if (key[i] == ESCAPE) {
+                i++;
+            }
+        }
+        return name;
+    }
+}
@@ -37,7 +37,7 @@ public class RocksOldComparator extends Comparator {
         return RocksComparatorName.V1.getComparatorName();
     }
 
-    // This method is a hotspot, logic from RocksDbKeyValueServices.parseCellAndTs
+    // This method is a hotspot, logic from RocksKeyFormat.ROW_SIZE_SUFFIX.parseCellAndTs
     // is duplicated and tuned for perf.
     @Override
     public int compare(Slice a, Slice b) {
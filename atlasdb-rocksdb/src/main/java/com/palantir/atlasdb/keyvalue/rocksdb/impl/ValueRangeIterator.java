@@ -25,8 +25,8 @@ import com.palantir.util.Pair;
 
 public class ValueRangeIterator extends RangeIterator<Value> {
 
-    ValueRangeIterator(ColumnFamily table, RocksIterator it, RangeRequest range, long maxTimestamp) {
-        super(table, it, range, maxTimestamp);
+    ValueRangeIterator(ColumnFamily table, RocksIterator it, RocksKeyFormat keyFormat, RangeRequest range, long maxTimestamp) {
+        super(table, it, keyFormat, range, maxTimestamp);
     }
 
     @Override
@@ -37,7 +37,7 @@ public class ValueRangeIterator extends RangeIterator<Value> {
             ret = Value.create(it.value(), cellAndInitialTs.rhSide);
         }
         for (it.next(); it.isValid(); it.next()) {
-            Pair<Cell, Long> cellAndTs = RocksDbKeyValueServices.parseCellAndTs(it.key());
+            Pair<Cell, Long> cellAndTs = RocksDbKeyValueServices.parseCellAndTs(keyFormat, it.key());
             if (!cellAndTs.lhSide.equals(cell)) {
                 break;
             }
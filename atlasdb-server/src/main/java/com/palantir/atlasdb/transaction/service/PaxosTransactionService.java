@@ -15,11 +15,17 @@
  */
 package com.palantir.atlasdb.transaction.service;
 
+import java.util.List;
 import java.util.Map;
 
+import javax.annotation.concurrent.GuardedBy;
+
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.palantir.atlasdb.encoding.PtBytes;
 import com.palantir.atlasdb.keyvalue.api.KeyAlreadyExistsException;
+import com.palantir.common.base.Throwables;
 import com.palantir.common.remoting.ServiceNotAvailableException;
 import com.palantir.paxos.PaxosProposer;
 import com.palantir.paxos.PaxosRoundFailureException;
@@ -27,14 +33,29 @@ import com.palantir.paxos.PaxosRoundFailureException;
 public class PaxosTransactionService implements TransactionService {
     private final PaxosProposer proposer;
     private final TransactionKVSWrapper kvStore;
+    private final boolean batching;
+
+    @GuardedBy("this") private List<PendingCommit> pendingCommits = Lists.newArrayList();
+    @GuardedBy("this") private boolean isWritingBatch = false;
 
     public static TransactionService create(PaxosProposer proposer, TransactionKVSWrapper kvStore) {
-        return new PaxosTransactionService(proposer, kvStore);
+        return new PaxosTransactionService(proposer, kvStore, false);
     }
 
-    private PaxosTransactionService(PaxosProposer proposer, TransactionKVSWrapper kvStore) {
+    /**
+     * Creates a transaction service that coalesces concurrent commits. While one batch of commits
+     * goes through paxos, the commits that arrive queue up for the next batch, which is decided with
+     * a single {@link PaxosProposer#proposeBatch} and then written with a single put. Each startTs is
+     * still its own paxos instance, so every committer learns its own outcome.
+     */
+    public static TransactionService createBatching(PaxosProposer proposer, TransactionKVSWrapper kvStore) {
+        return new PaxosTransactionService(proposer, kvStore, true);
+    }
+
+    private PaxosTransactionService(PaxosProposer proposer, TransactionKVSWrapper kvStore, boolean batching) {
         this.proposer = proposer;
         this.kvStore = kvStore;
+        this.batching = batching;
     }
 
     @Override
@@ -49,6 +70,10 @@ public class PaxosTransactionService implements TransactionService {
 
     @Override
     public void putUnlessExists(long startTimestamp, long commitTimestamp) throws KeyAlreadyExistsException {
+        if (batching) {
+            putUnlessExistsBatched(startTimestamp, commitTimestamp);
+            return;
+        }
         try {
             byte[] finalValue = proposer.propose(startTimestamp, PtBytes.toBytes(commitTimestamp));
             long finalCommitTs = PtBytes.toLong(finalValue);
@@ -66,4 +91,112 @@ public class PaxosTransactionService implements TransactionService {
         }
     }
 
+    private void putUnlessExistsBatched(long startTimestamp, long commitTimestamp) throws KeyAlreadyExistsException {
+        PendingCommit commit = new PendingCommit(startTimestamp, commitTimestamp);
+        List<PendingCommit> batch;
+        synchronized (this) {
+            pendingCommits.add(commit);
+            boolean interrupted = false;
+            while (isWritingBatch && !commit.isDone) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    // Our commit may already be part of a batch that is being decided, so keep waiting for it.
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (commit.isDone) {
+                commit.throwIfFailed();
+                return;
+            }
+            // No batch is being written, so this thread writes out everything that has queued up.
+            isWritingBatch = true;
+            batch = pendingCommits;
+            pendingCommits = Lists.newArrayList();
+        }
+
+        try {
+            writeBatch(batch);
+        } finally {
+            synchronized (this) {
+                for (PendingCommit pendingCommit : batch) {
+                    pendingCommit.isDone = true;
+                }
+                isWritingBatch = false;
+                notifyAll();
+            }
+        }
+        commit.throwIfFailed();
+    }
+
+    private void writeBatch(List<PendingCommit> batch) {
+        try {
+            Map<Long, byte[]> proposals = Maps.newHashMapWithExpectedSize(batch.size());
+            for (PendingCommit commit : batch) {
+                // If several committers race for one startTs, the first to arrive is proposed.
+                if (!proposals.containsKey(commit.startTimestamp)) {
+                    proposals.put(commit.startTimestamp, PtBytes.toBytes(commit.commitTimestamp));
+                }
+            }
+
+            Map<Long, byte[]> finalValues = proposer.proposeBatch(proposals);
+            Map<Long, Long> finalCommitTimestamps = Maps.newHashMapWithExpectedSize(finalValues.size());
+            for (Map.Entry<Long, byte[]> entry : finalValues.entrySet()) {
+                finalCommitTimestamps.put(entry.getKey(), PtBytes.toLong(entry.getValue()));
+            }
+            try {
+                // Make sure we do this put before we return because we want #get to succeed.
+                kvStore.putAll(finalCommitTimestamps);
+            } catch (KeyAlreadyExistsException e) {
+                // this case isn't worrisome
+            }
+
+            for (PendingCommit commit : batch) {
+                Long finalCommitTs = finalCommitTimestamps.get(commit.startTimestamp);
+                if (finalCommitTs == null) {
+                    commit.failure = new ServiceNotAvailableException("Could not store trascaction");
+                } else if (commit.commitTimestamp != finalCommitTs) {
+                    commit.failure = new KeyAlreadyExistsException(
+                            "Key " + commit.startTimestamp + " already exists and is mapped to " + finalCommitTs);
+                }
+            }
+        } catch (PaxosRoundFailureException e) {
+            failAll(batch, new ServiceNotAvailableException("Could not store trascaction"));
+        } catch (Throwable t) {
+            failAll(batch, t);
+        }
+    }
+
+    private static void failAll(List<PendingCommit> batch, Throwable t) {
+        for (PendingCommit commit : batch) {
+            commit.failure = t;
+        }
+    }
+
+    private static class PendingCommit {
+        final long startTimestamp;
+        final long commitTimestamp;
+        // Set by the thread writing the batch before it marks the commit done.
+        Throwable failure;
+        boolean isDone = false; // guarded by the monitor of the service
+
+        PendingCommit(long startTimestamp, long commitTimestamp) {
+            this.startTimestamp = startTimestamp;
+            this.commitTimestamp = commitTimestamp;
+        }
+
+        void throwIfFailed() {
+            Throwable t = failure;
+            if (t instanceof KeyAlreadyExistsException) {
+                throw (KeyAlreadyExistsException) t;
+            } else if (t != null) {
+                // The same throwable may be handed to every member of a failed batch.
+                throw Throwables.rewrapAndThrowUncheckedException(t);
+            }
+        }
+    }
+
 }
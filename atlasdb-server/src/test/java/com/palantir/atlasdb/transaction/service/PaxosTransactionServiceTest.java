@@ -0,0 +1,204 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.palantir.atlasdb.encoding.PtBytes;
+import com.palantir.atlasdb.keyvalue.api.KeyAlreadyExistsException;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
+import com.palantir.atlasdb.transaction.impl.TransactionTables;
+import com.palantir.common.remoting.ServiceNotAvailableException;
+import com.palantir.paxos.PaxosProposer;
+import com.palantir.paxos.PaxosRoundFailureException;
+
+public class PaxosTransactionServiceTest {
+    private static final int NUM_COMMITTERS = 10;
+
+    private final FakeProposer proposer = new FakeProposer();
+    private TransactionService transactionService;
+
+    @Before
+    public void setUp() {
+        KeyValueService kvs = new InMemoryKeyValueService(false);
+        TransactionTables.createTables(kvs);
+        transactionService = PaxosTransactionService.createBatching(proposer, new TransactionKVSWrapper(kvs));
+    }
+
+    @Test
+    public void testConcurrentCommitsAreDecidedInOneBatch() throws InterruptedException {
+        ConcurrentMap<Long, Throwable> failures = commitConcurrently();
+
+        Assert.assertTrue(failures.toString(), failures.isEmpty());
+        Assert.assertEquals(2, proposer.batches.size());
+        Assert.assertEquals(ImmutableSet.of(0L), proposer.batches.get(0).keySet());
+        Assert.assertEquals(NUM_COMMITTERS, proposer.batches.get(1).size());
+        for (long startTs = 1; startTs <= NUM_COMMITTERS; startTs++) {
+            Assert.assertEquals(Long.valueOf(startTs + 1000), transactionService.get(startTs));
+        }
+    }
+
+    @Test
+    public void testOnlyCommitterOfDecidedStartTimestampFails() throws InterruptedException {
+        long decidedStartTs = NUM_COMMITTERS / 2;
+        proposer.decided.put(decidedStartTs, PtBytes.toBytes(1L));
+
+        ConcurrentMap<Long, Throwable> failures = commitConcurrently();
+
+        Assert.assertEquals(failures.toString(), ImmutableSet.of(decidedStartTs), failures.keySet());
+        Assert.assertTrue(failures.get(decidedStartTs) instanceof KeyAlreadyExistsException);
+        Assert.assertEquals(2, proposer.batches.size());
+        for (long startTs = 1; startTs <= NUM_COMMITTERS; startTs++) {
+            long expected = startTs == decidedStartTs ? 1L : startTs + 1000;
+            Assert.assertEquals(Long.valueOf(expected), transactionService.get(startTs));
+        }
+    }
+
+    @Test
+    public void testUndecidedInstanceFailsOnlyItsCommitter() throws InterruptedException {
+        long undecidedStartTs = NUM_COMMITTERS / 2;
+        proposer.undecided.add(undecidedStartTs);
+
+        ConcurrentMap<Long, Throwable> failures = commitConcurrently();
+
+        Assert.assertEquals(failures.toString(), ImmutableSet.of(undecidedStartTs), failures.keySet());
+        Assert.assertTrue(failures.get(undecidedStartTs) instanceof ServiceNotAvailableException);
+        Assert.assertNull(transactionService.get(undecidedStartTs));
+    }
+
+    @Test
+    public void testFailedBatchFailsEveryCommitterInIt() throws InterruptedException {
+        proposer.failBatchesAfterTheFirst = true;
+
+        ConcurrentMap<Long, Throwable> failures = commitConcurrently();
+
+        Assert.assertEquals(NUM_COMMITTERS, failures.size());
+        for (Throwable failure : failures.values()) {
+            Assert.assertTrue(failure.toString(), failure instanceof ServiceNotAvailableException);
+        }
+        Assert.assertEquals(Long.valueOf(1000L), transactionService.get(0L));
+        for (long startTs = 1; startTs <= NUM_COMMITTERS; startTs++) {
+            Assert.assertNull(transactionService.get(startTs));
+        }
+    }
+
+    /**
+     * Holds up a first commit of start timestamp 0 inside the proposer until {@link #NUM_COMMITTERS}
+     * more commits are queued behind it, then lets them all through.
+     *
+     * @return the failures of the queued commits by start timestamp
+     */
+    private ConcurrentMap<Long, Throwable> commitConcurrently() throws InterruptedException {
+        final ConcurrentMap<Long, Throwable> failures = Maps.newConcurrentMap();
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                transactionService.putUnlessExists(0L, 1000L);
+            }
+        });
+        first.start();
+        proposer.firstBatchStarted.await();
+
+        List<Thread> committers = Lists.newArrayList();
+        for (long i = 1; i <= NUM_COMMITTERS; i++) {
+            final long startTs = i;
+            Thread committer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        transactionService.putUnlessExists(startTs, startTs + 1000);
+                    } catch (Throwable t) {
+                        failures.put(startTs, t);
+                    }
+                }
+            });
+            committer.start();
+            committers.add(committer);
+        }
+        for (Thread committer : committers) {
+            while (committer.getState() != Thread.State.BLOCKED && committer.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+
+        proposer.releaseFirstBatch.countDown();
+        first.join();
+        for (Thread committer : committers) {
+            committer.join();
+        }
+        return failures;
+    }
+
+    private static class FakeProposer implements PaxosProposer {
+        final List<Map<Long, byte[]>> batches = new CopyOnWriteArrayList<Map<Long, byte[]>>();
+        final ConcurrentMap<Long, byte[]> decided = Maps.newConcurrentMap();
+        final List<Long> undecided = new CopyOnWriteArrayList<Long>();
+        final CountDownLatch firstBatchStarted = new CountDownLatch(1);
+        final CountDownLatch releaseFirstBatch = new CountDownLatch(1);
+        volatile boolean failBatchesAfterTheFirst = false;
+
+        @Override
+        public byte[] propose(long seq, byte[] proposalValue) throws PaxosRoundFailureException {
+            return proposeBatch(ImmutableMap.of(seq, proposalValue)).get(seq);
+        }
+
+        @Override
+        public Map<Long, byte[]> proposeBatch(Map<Long, byte[]> proposalValues) throws PaxosRoundFailureException {
+            batches.add(ImmutableMap.copyOf(proposalValues));
+            if (batches.size() == 1) {
+                firstBatchStarted.countDown();
+                try {
+                    releaseFirstBatch.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (failBatchesAfterTheFirst) {
+                throw new PaxosRoundFailureException("no quorum for testing");
+            }
+            Map<Long, byte[]> result = Maps.newHashMap();
+            for (Map.Entry<Long, byte[]> e : proposalValues.entrySet()) {
+                if (!undecided.contains(e.getKey())) {
+                    decided.putIfAbsent(e.getKey(), e.getValue());
+                    result.put(e.getKey(), decided.get(e.getKey()));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public int getQuorumSize() {
+            return 1;
+        }
+
+        @Override
+        public String getUUID() {
+            return "fake proposer";
+        }
+    }
+}
@@ -26,6 +26,7 @@ import com.palantir.atlasdb.keyvalue.api.Cell;
 import com.palantir.atlasdb.keyvalue.api.KeyValueService;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.transaction.impl.TransactionConstants;
+import com.palantir.atlasdb.transaction.impl.TransactionTableEncoding;
 import com.palantir.common.base.Throwables;
 import com.palantir.lock.AtlasRowLockDescriptor;
 import com.palantir.lock.LockClient;
@@ -56,10 +57,16 @@ public class AssertLockedKeyValueService extends ForwardingKeyValueService {
             SortedMap<LockDescriptor, LockMode> mapToAssertLockHeld = Maps.newTreeMap();
             SortedMap<LockDescriptor, LockMode> mapToAssertLockNotHeld = Maps.newTreeMap();
             for (Map.Entry<Cell, byte[]> e : values.entrySet()) {
+                // Transactions lock the legacy row name of their start timestamp whatever the table encoding.
+                Long startTs = TransactionTableEncoding.decodeStartTimestamp(e.getKey().getRowName());
+                if (startTs == null) {
+                    continue;
+                }
+                byte[] lockRow = TransactionTableEncoding.LEGACY.getRowName(startTs);
                 if (Arrays.equals(e.getValue(), TransactionConstants.getValueForTimestamp(TransactionConstants.FAILED_COMMIT_TS))) {
-                    mapToAssertLockNotHeld.put(AtlasRowLockDescriptor.of(tableRef.getQualifiedName(), e.getKey().getRowName()), LockMode.READ);
+                    mapToAssertLockNotHeld.put(AtlasRowLockDescriptor.of(tableRef.getQualifiedName(), lockRow), LockMode.READ);
                 } else {
-                    mapToAssertLockHeld.put(AtlasRowLockDescriptor.of(tableRef.getQualifiedName(), e.getKey().getRowName()), LockMode.READ);
+                    mapToAssertLockHeld.put(AtlasRowLockDescriptor.of(tableRef.getQualifiedName(), lockRow), LockMode.READ);
                 }
             }
 
@@ -30,17 +30,23 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import com.google.common.base.Function;
+import com.google.common.base.Strings;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
+import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.cleaner.NoOpCleaner;
+import com.palantir.atlasdb.encoding.PtBytes;
 import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.ColumnSelection;
 import com.palantir.atlasdb.keyvalue.api.RangeRequest;
 import com.palantir.atlasdb.keyvalue.api.RowResult;
 import com.palantir.atlasdb.keyvalue.api.TableReference;
 import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
 import com.palantir.atlasdb.transaction.api.ConflictHandler;
+import com.palantir.atlasdb.transaction.api.SerializableReadSetEncoding;
 import com.palantir.atlasdb.transaction.api.Transaction;
 import com.palantir.atlasdb.transaction.api.TransactionFailedRetriableException;
 import com.palantir.atlasdb.transaction.api.TransactionManager;
@@ -68,6 +74,10 @@ public abstract class AbstractSerializableTransactionTest extends AbstractTransa
                 NoOpCleaner.INSTANCE);
     }
 
+    protected SerializableReadSetEncoding getReadSetEncoding() {
+        return AtlasDbConstants.DEFAULT_SERIALIZABLE_READ_SET_ENCODING;
+    }
+
     @Override
     protected Transaction startTransaction() {
         ImmutableMap<TableReference, ConflictHandler> tablesToWriteWrite = ImmutableMap.of(
@@ -89,7 +99,10 @@ public abstract class AbstractSerializableTransactionTest extends AbstractTransa
                 AtlasDbConstraintCheckingMode.NO_CONSTRAINT_CHECKING,
                 null,
                 TransactionReadSentinelBehavior.THROW_EXCEPTION,
-                true) {
+                true,
+                new CommitTimestampCache(SnapshotTransaction.PER_TRANSACTION_COMMIT_TIMESTAMP_CACHE_SIZE),
+                AtlasDbConstants.DEFAULT_RANGE_SCAN_PREFETCH_PAGES,
+                getReadSetEncoding()) {
             @Override
             protected Map<Cell, byte[]> transformGetsForTesting(Map<Cell, byte[]> map) {
                 return Maps.transformValues(map, new Function<byte[], byte[]>() {
@@ -405,6 +418,89 @@ public abstract class AbstractSerializableTransactionTest extends AbstractTransa
         }
     }
 
+    @Test
+    public void testPhantomReadFailConcurrentRanges() {
+        String initialValue = "100";
+        Transaction t0 = startTransaction();
+        put(t0, "row1", "col1", initialValue);
+        put(t0, "row2", "col1", initialValue);
+        t0.commit();
+
+        Transaction t1 = startTransaction();
+        Iterators.size(t1.getRanges(TEST_TABLE, ImmutableList.of(
+                RangeRequest.builder().endRowExclusive(PtBytes.toBytes("row2")).build(),
+                RangeRequest.builder().startRowInclusive(PtBytes.toBytes("row2")).build()), 2, false));
+        put(t1, "row22", "col1", initialValue);
+
+        Transaction t2 = startTransaction();
+        put(t2, "row3", "col1", initialValue);
+        t2.commit();
+
+        try {
+            t1.commit();
+            fail();
+        } catch (TransactionSerializableConflictException e) {
+            // this is expectecd to throw because it is a write skew
+        }
+    }
+
+    @Test
+    public void testReadWriteConflictWithLargeValues() {
+        String initialValue = Strings.repeat("100", 1000);
+        // Same length and prefix as the initial value, so only the whole value tells them apart.
+        String changedValue = initialValue.substring(0, initialValue.length() - 1) + "1";
+        for (int readKind = 0; readKind < 3; readKind++) {
+            Transaction t1 = readLargeValue(initialValue, readKind);
+
+            Transaction t2 = startTransaction();
+            put(t2, "row1", "col1", changedValue);
+            t2.commit();
+
+            try {
+                t1.commit();
+                fail();
+            } catch (TransactionSerializableConflictException e) {
+                // this is expectecd to throw because it is a write skew
+            }
+        }
+    }
+
+    @Test
+    public void testRewritingSameLargeValueIsNotAConflict() {
+        String initialValue = Strings.repeat("100", 1000);
+        for (int readKind = 0; readKind < 3; readKind++) {
+            Transaction t1 = readLargeValue(initialValue, readKind);
+
+            Transaction t2 = startTransaction();
+            put(t2, "row1", "col1", initialValue);
+            t2.commit();
+
+            t1.commit();
+        }
+    }
+
+    /**
+     * Writes the value to row1 and starts a transaction that reads it with a get, a getRows
+     * or a range scan, depending on {@code readKind}, and writes another row.
+     */
+    private Transaction readLargeValue(String value, int readKind) {
+        Transaction t0 = startTransaction();
+        put(t0, "row1", "col1", value);
+        t0.commit();
+
+        Transaction t1 = startTransaction();
+        if (readKind == 0) {
+            assertEquals(value, get(t1, "row1", "col1"));
+        } else if (readKind == 1) {
+            assertEquals(1, t1.getRows(TEST_TABLE, ImmutableList.of(PtBytes.toBytes("row1")), ColumnSelection.all()).size());
+        } else {
+            RangeRequest range = RangeRequest.builder().prefixRange(PtBytes.toBytes("row1")).build();
+            assertEquals(1, BatchingVisitables.copyToList(t1.getRange(TEST_TABLE, range)).size());
+        }
+        put(t1, "row2", "col1", value);
+        return t1;
+    }
+
     @Test
     public void testCellReadWriteFailure() {
         String initialValue = "100";
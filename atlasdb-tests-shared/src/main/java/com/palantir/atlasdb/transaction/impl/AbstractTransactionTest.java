@@ -24,11 +24,14 @@ import static org.junit.Assert.fail;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
@@ -40,16 +43,20 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Multimaps;
+import com.google.common.collect.Multiset;
 import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.palantir.atlasdb.AtlasDbConstants;
 import com.palantir.atlasdb.cleaner.NoOpCleaner;
 import com.palantir.atlasdb.encoding.PtBytes;
@@ -76,6 +83,7 @@ import com.palantir.atlasdb.transaction.api.TransactionReadSentinelBehavior;
 import com.palantir.atlasdb.transaction.api.TransactionTask;
 import com.palantir.atlasdb.transaction.service.TransactionService;
 import com.palantir.atlasdb.transaction.service.TransactionServices;
+import com.palantir.common.base.AbortingVisitor;
 import com.palantir.common.base.AbortingVisitors;
 import com.palantir.common.base.BatchingVisitable;
 import com.palantir.common.base.BatchingVisitables;
@@ -1200,6 +1208,229 @@ public abstract class AbstractTransactionTest {
         assertEquals(1, BatchingVisitables.concat(t.getRanges(TEST_TABLE, ranges)).count());
     }
 
+    @Test
+    public void testGetRangesConcurrently() {
+        Transaction t = startTransaction();
+        for (int i = 0; i < 30; i++) {
+            put(t, "row" + (i / 10) + i, "col1", "v" + i);
+            put(t, "row" + (i / 10) + i, "col2", "w" + i);
+        }
+        t.commit();
+
+        t = startTransaction();
+        t.delete(TEST_TABLE, ImmutableSet.of(Cell.create(PtBytes.toBytes("row111"), PtBytes.toBytes("col1"))));
+        put(t, "row112", "col1", "local");
+        put(t, "row3", "col1", "local");
+        RangeRequest row0 = RangeRequest.builder().prefixRange(PtBytes.toBytes("row0")).batchHint(1).build();
+        RangeRequest row1 = RangeRequest.builder().prefixRange(PtBytes.toBytes("row1")).batchHint(2).build();
+        RangeRequest row1Col2 = row1.getBuilder().retainColumns(ColumnSelection.create(ImmutableSet.of(PtBytes.toBytes("col2")))).build();
+        RangeRequest all = RangeRequest.builder().build();
+        RangeRequest empty = RangeRequest.builder().prefixRange(PtBytes.toBytes("row9")).build();
+        List<RangeRequest> ranges = ImmutableList.of(row0, row1, row1Col2, all, empty, row0);
+
+        Iterator<Map.Entry<RangeRequest, List<RowResult<byte[]>>>> ordered = t.getRanges(TEST_TABLE, ranges, 2, true);
+        Map<RangeRequest, List<RowResult<byte[]>>> expected = Maps.newHashMap();
+        for (RangeRequest range : ranges) {
+            Map.Entry<RangeRequest, List<RowResult<byte[]>>> e = ordered.next();
+            assertEquals(range, e.getKey());
+            List<RowResult<byte[]>> rows = BatchingVisitables.copyToList(t.getRange(TEST_TABLE, range));
+            assertEquals(describeRows(rows), describeRows(e.getValue()));
+            expected.put(range, rows);
+        }
+        assertFalse(ordered.hasNext());
+        assertEquals(10, expected.get(row0).size());
+        assertEquals(10, expected.get(row1).size());
+        assertEquals(1, expected.get(row1Col2).get(0).getColumns().size());
+        assertEquals(1, expected.get(row1).get(1).getColumns().size());
+        assertEquals("local", PtBytes.toString(expected.get(row1).get(2).getColumns().get(PtBytes.toBytes("col1"))));
+        assertEquals(31, expected.get(all).size());
+        assertTrue(expected.get(empty).isEmpty());
+
+        Multiset<RangeRequest> seen = HashMultiset.create();
+        Iterator<Map.Entry<RangeRequest, List<RowResult<byte[]>>>> unordered = t.getRanges(TEST_TABLE, ranges, 3, false);
+        while (unordered.hasNext()) {
+            Map.Entry<RangeRequest, List<RowResult<byte[]>>> e = unordered.next();
+            assertEquals(describeRows(expected.get(e.getKey())), describeRows(e.getValue()));
+            seen.add(e.getKey());
+        }
+        assertEquals(HashMultiset.create(ranges), seen);
+    }
+
+    @Test
+    public void testAsyncReads() throws InterruptedException {
+        Transaction t = startTransaction();
+        for (int i = 0; i < 10; i++) {
+            put(t, "row" + i, "col1", "v" + i);
+        }
+        t.commit();
+
+        t = startTransaction();
+        put(t, "row0", "col1", "local");
+        byte[] col1 = PtBytes.toBytes("col1");
+        Cell cell0 = Cell.create(PtBytes.toBytes("row0"), col1);
+        Cell cell1 = Cell.create(PtBytes.toBytes("row1"), col1);
+        ListenableFuture<Map<Cell, byte[]>> cells = t.getAsync(TEST_TABLE, ImmutableSet.of(cell0, cell1));
+        ListenableFuture<SortedMap<byte[], RowResult<byte[]>>> rows = t.getRowsAsync(TEST_TABLE,
+                ImmutableList.of(PtBytes.toBytes("row2"), PtBytes.toBytes("row3")), ColumnSelection.all());
+        final List<RowResult<byte[]>> visited = new CopyOnWriteArrayList<RowResult<byte[]>>();
+        ListenableFuture<Boolean> wholeRange = t.getRangeAsync(TEST_TABLE, RangeRequest.builder().build(), 3,
+                new AbortingVisitor<List<RowResult<byte[]>>, RuntimeException>() {
+                    @Override
+                    public boolean visit(List<RowResult<byte[]>> batch) {
+                        visited.addAll(batch);
+                        return true;
+                    }
+                });
+        ListenableFuture<Boolean> firstBatch = t.getRangeAsync(TEST_TABLE, RangeRequest.builder().build(), 3,
+                AbortingVisitors.<List<RowResult<byte[]>>>alwaysFalse());
+        ListenableFuture<Boolean> failedVisit = t.getRangeAsync(TEST_TABLE, RangeRequest.builder().build(), 3,
+                new AbortingVisitor<List<RowResult<byte[]>>, IllegalStateException>() {
+                    @Override
+                    public boolean visit(List<RowResult<byte[]>> batch) {
+                        throw new IllegalStateException("visitor failed");
+                    }
+                });
+
+        try {
+            assertEquals("local", PtBytes.toString(cells.get().get(cell0)));
+            assertEquals("v1", PtBytes.toString(cells.get().get(cell1)));
+            assertEquals(2, rows.get().size());
+            assertEquals("v3", PtBytes.toString(rows.get().get(PtBytes.toBytes("row3")).getColumns().get(col1)));
+            assertTrue(wholeRange.get());
+            assertEquals(describeRows(BatchingVisitables.copyToList(t.getRange(TEST_TABLE, RangeRequest.builder().build()))),
+                    describeRows(visited));
+            assertFalse(firstBatch.get());
+        } catch (ExecutionException e) {
+            throw Throwables.throwUncheckedException(e.getCause());
+        }
+        try {
+            failedVisit.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals("visitor failed", e.getCause().getMessage());
+        }
+        t.commit();
+    }
+
+    @Test
+    public void testCommitFailsWhileAsyncReadIsOutstanding() throws InterruptedException {
+        Transaction t = startTransaction();
+        put(t, "row1", "col1", "v1");
+        t.commit();
+
+        t = startTransaction();
+        put(t, "row2", "col1", "v2");
+        final CountDownLatch visiting = new CountDownLatch(1);
+        final CountDownLatch finishVisit = new CountDownLatch(1);
+        ListenableFuture<Boolean> pending = t.getRangeAsync(TEST_TABLE, RangeRequest.builder().build(), 1,
+                new AbortingVisitor<List<RowResult<byte[]>>, RuntimeException>() {
+                    @Override
+                    public boolean visit(List<RowResult<byte[]>> batch) {
+                        visiting.countDown();
+                        try {
+                            finishVisit.await();
+                        } catch (InterruptedException e) {
+                            throw Throwables.rewrapAndThrowUncheckedException(e);
+                        }
+                        return false;
+                    }
+                });
+        visiting.await();
+        try {
+            t.commit();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("Cannot commit while async reads are still outstanding.", e.getMessage());
+        } finally {
+            finishVisit.countDown();
+        }
+        try {
+            assertFalse(pending.get());
+        } catch (ExecutionException e) {
+            throw Throwables.throwUncheckedException(e.getCause());
+        }
+        try {
+            t.getAsync(TEST_TABLE, ImmutableSet.of(Cell.create(PtBytes.toBytes("row1"), PtBytes.toBytes("col1"))));
+            fail();
+        } catch (IllegalStateException e) {
+            // expected: the failed transaction accepts no more reads
+        }
+
+        t = startTransaction();
+        assertEquals("v1", get(t, "row1", "col1"));
+        assertNull(get(t, "row2", "col1"));
+        t.commit();
+    }
+
+    @Test
+    public void testCommitSucceedsAfterQueuedAsyncReadIsCancelled() throws InterruptedException {
+        Transaction t = startTransaction();
+        put(t, "row1", "col1", "v1");
+        t.commit();
+
+        Transaction blocker = startTransaction();
+        final CountDownLatch visiting = new CountDownLatch(SnapshotTransaction.ASYNC_READ_THREADS);
+        final CountDownLatch finishVisits = new CountDownLatch(1);
+        List<ListenableFuture<Boolean>> blocking = Lists.newArrayList();
+        for (int i = 0; i < SnapshotTransaction.ASYNC_READ_THREADS; i++) {
+            blocking.add(blocker.getRangeAsync(TEST_TABLE, RangeRequest.builder().build(), 1,
+                    new AbortingVisitor<List<RowResult<byte[]>>, RuntimeException>() {
+                        @Override
+                        public boolean visit(List<RowResult<byte[]>> batch) {
+                            visiting.countDown();
+                            try {
+                                finishVisits.await();
+                            } catch (InterruptedException e) {
+                                throw Throwables.rewrapAndThrowUncheckedException(e);
+                            }
+                            return false;
+                        }
+                    }));
+        }
+
+        t = startTransaction();
+        put(t, "row2", "col1", "v2");
+        try {
+            // Every async read thread is now stuck in a visitor, so this read stays queued.
+            visiting.await();
+            ListenableFuture<Map<Cell, byte[]>> queued = t.getAsync(TEST_TABLE,
+                    ImmutableSet.of(Cell.create(PtBytes.toBytes("row1"), PtBytes.toBytes("col1"))));
+            assertTrue(queued.cancel(false));
+        } finally {
+            finishVisits.countDown();
+        }
+        t.commit();
+
+        try {
+            for (ListenableFuture<Boolean> future : blocking) {
+                assertFalse(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw Throwables.throwUncheckedException(e.getCause());
+        }
+        blocker.commit();
+
+        t = startTransaction();
+        assertEquals("v2", get(t, "row2", "col1"));
+        t.commit();
+    }
+
+    /**
+     * RowResults compare their values by identity, so this turns them into something that
+     * compares equal when the rows hold the same bytes, whichever key value service read them.
+     */
+    private static List<String> describeRows(List<RowResult<byte[]>> rows) {
+        List<String> cells = Lists.newArrayList();
+        for (RowResult<byte[]> row : rows) {
+            for (Map.Entry<Cell, byte[]> cell : row.getCells()) {
+                cells.add(PtBytes.encodeHexString(cell.getKey().getRowName()) + "/"
+                        + PtBytes.encodeHexString(cell.getKey().getColumnName()) + "="
+                        + PtBytes.encodeHexString(cell.getValue()));
+            }
+        }
+        return cells;
+    }
+
     @Test
     public void testTableMetadata() {
         byte[] metadataForTable = keyValueService.getMetadataForTable(TEST_TABLE);
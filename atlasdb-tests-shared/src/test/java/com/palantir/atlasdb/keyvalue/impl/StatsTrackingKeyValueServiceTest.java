@@ -0,0 +1,127 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Maps;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.atlasdb.keyvalue.impl.StatsTrackingKeyValueService.Operation;
+import com.palantir.atlasdb.keyvalue.impl.StatsTrackingKeyValueService.TableStats;
+import com.palantir.common.base.ClosableIterator;
+
+public class StatsTrackingKeyValueServiceTest {
+    private static final TableReference TABLE = TableReference.createFromFullyQualifiedName("ns.table");
+
+    private StatsTrackingKeyValueService kvs;
+
+    @Before
+    public void setUp() {
+        kvs = new StatsTrackingKeyValueService(new InMemoryKeyValueService(false));
+        kvs.createTable(TABLE, new byte[0]);
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshotAndReset();
+
+        assertEquals(1000, snapshot.getCount());
+        assertWithinBucket(500, snapshot.getValueAtPercentile(0.5));
+        assertWithinBucket(990, snapshot.getValueAtPercentile(0.99));
+        assertWithinBucket(1000, snapshot.getMax());
+        assertEquals(500.5, snapshot.getMean(), 500.5 / LatencyHistogram.SUB_BUCKETS);
+        assertEquals(0, histogram.snapshotAndReset().getCount());
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        long previousBound = -1;
+        for (long value : new long[] { 0, 1, 15, 16, 17, 31, 32, 33, 1000, 123456789, Long.MAX_VALUE }) {
+            int index = LatencyHistogram.bucketIndex(value);
+            long bound = LatencyHistogram.bucketUpperBound(index);
+            assertTrue(value + " > " + bound, value <= bound || value > (1L << LatencyHistogram.MAX_EXPONENT));
+            assertTrue(bound >= previousBound);
+            previousBound = bound;
+        }
+    }
+
+    @Test
+    public void testTracksEveryOperation() {
+        Map<Cell, byte[]> values = Maps.newHashMap();
+        for (int i = 0; i < 10; i++) {
+            values.put(Cell.create(new byte[] {(byte) i}, new byte[] {0}), new byte[] {1, 2});
+        }
+        kvs.put(TABLE, values, 1L);
+        kvs.putUnlessExists(TABLE, ImmutableMap.of(Cell.create(new byte[] {20}, new byte[] {0}), new byte[] {3}));
+        kvs.get(TABLE, ImmutableMap.of(Cell.create(new byte[] {1}, new byte[] {0}), 2L));
+        try (ClosableIterator<RowResult<Value>> it = kvs.getRange(TABLE, RangeRequest.all(), 2L)) {
+            Iterators.size(it);
+        }
+
+        TableStats stats = kvs.getTableStats().get(TABLE);
+        assertEquals(1, stats.snapshotLatencyAndReset(Operation.PUT).getCount());
+        assertEquals(1, stats.snapshotLatencyAndReset(Operation.PUT_UNLESS_EXISTS).getCount());
+        assertEquals(1, stats.snapshotLatencyAndReset(Operation.GET).getCount());
+        assertEquals(1, stats.snapshotLatencyAndReset(Operation.GET_RANGE).getCount());
+        assertEquals(11, stats.snapshotLatencyAndReset(Operation.GET_RANGE_ROW).getCount());
+        assertNull(stats.snapshotLatencyAndReset(Operation.DELETE));
+        LatencyHistogram.Snapshot rowCounts = stats.snapshotRangeRowCountsAndReset();
+        assertEquals(1, rowCounts.getCount());
+        assertEquals(11, rowCounts.getMax());
+
+        assertEquals(11, stats.getTotalPutCells());
+        assertEquals(2, stats.getTotalPutCalls());
+        assertEquals(12, stats.getTotalGetCells());
+    }
+
+    @Test
+    public void testSnapshotsResetOnRead() {
+        kvs.put(TABLE, ImmutableMap.of(Cell.create(new byte[] {1}, new byte[] {0}), new byte[] {1}), 1L);
+        kvs.put(TABLE, ImmutableMap.of(Cell.create(new byte[] {2}, new byte[] {0}), new byte[] {1}), 1L);
+
+        List<HistogramSummary> summaries = kvs.snapshotLatenciesAndReset();
+        assertEquals(1, summaries.size());
+        assertEquals("ns.table", summaries.get(0).getTableName());
+        assertEquals(Operation.PUT.name(), summaries.get(0).getOperation());
+        assertEquals(2, summaries.get(0).getCount());
+        assertTrue(kvs.snapshotLatenciesAndReset().isEmpty());
+        // The totals are not reset by snapshots.
+        assertEquals(2, kvs.getTotalPutCalls());
+    }
+
+    private static void assertWithinBucket(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, actual >= expected);
+        assertTrue(expected + " vs " + actual, actual <= expected + expected / LatencyHistogram.SUB_BUCKETS);
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.impl.partition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
+import com.palantir.atlasdb.keyvalue.partition.quorum.QuorumParameters;
+import com.palantir.atlasdb.keyvalue.partition.quorum.QuorumParameters.QuorumRequestParameters;
+import com.palantir.atlasdb.keyvalue.partition.util.EndpointLatencyTracker;
+import com.palantir.atlasdb.keyvalue.partition.util.EndpointReadRequest;
+import com.palantir.atlasdb.keyvalue.partition.util.RequestCompletions;
+import com.palantir.common.concurrent.PTExecutors;
+
+public class HedgedReadRequestTest {
+    private static final String UNIT = "row";
+    private static final Map<String, QuorumRequestParameters> PARAMETERS = ImmutableMap.of(
+            UNIT, new QuorumParameters(3, 2, 2).getReadRequestParameters());
+
+    private final KeyValueService fast1 = new InMemoryKeyValueService(false);
+    private final KeyValueService fast2 = new InMemoryKeyValueService(false);
+    private final KeyValueService slow = new InMemoryKeyValueService(false);
+    private final Set<KeyValueService> asked = Sets.newConcurrentHashSet();
+    private final Set<KeyValueService> answered = Sets.newConcurrentHashSet();
+    private final CountDownLatch unblock = new CountDownLatch(1);
+
+    private ExecutorService executor;
+    private EndpointLatencyTracker latencyTracker;
+
+    @Before
+    public void setUp() {
+        executor = PTExecutors.newCachedThreadPool();
+        latencyTracker = new EndpointLatencyTracker(0.95, TimeUnit.MILLISECONDS.toNanos(10));
+        for (int i = 0; i < 10; i++) {
+            latencyTracker.recordLatency(fast1, TimeUnit.MILLISECONDS.toNanos(1));
+            latencyTracker.recordLatency(fast2, TimeUnit.MILLISECONDS.toNanos(2));
+            latencyTracker.recordLatency(slow, TimeUnit.MILLISECONDS.toNanos(50));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        unblock.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOnlyFastestEndpointsAreAsked() {
+        complete(ImmutableList.of(request(slow, false, false), request(fast2, false, false), request(fast1, false, false)));
+        assertEquals(ImmutableSet.of(fast1, fast2), asked);
+        assertEquals(0, latencyTracker.getHedgedRequestCount());
+    }
+
+    @Test
+    public void testSlowEndpointIsHedged() {
+        complete(ImmutableList.of(request(fast1, false, false), request(fast2, true, false), request(slow, false, false)));
+        assertEquals(ImmutableSet.of(fast1, fast2, slow), asked);
+        assertEquals(ImmutableSet.of(fast1, slow), answered);
+        assertEquals(1, latencyTracker.getHedgedRequestCount());
+    }
+
+    @Test
+    public void testFailedEndpointIsReplaced() {
+        complete(ImmutableList.of(request(fast1, false, true), request(fast2, false, false), request(slow, false, false)));
+        assertEquals(ImmutableSet.of(fast1, fast2, slow), asked);
+        assertEquals(ImmutableSet.of(fast2, slow), answered);
+        assertTrue(latencyTracker.getAverageLatencyMillisByEndpoint().get(fast1.toString()) < 2.0);
+    }
+
+    private void complete(List<EndpointReadRequest<KeyValueService, String>> requests) {
+        RequestCompletions.completeHedgedReadRequest(requests, PARAMETERS, executor, latencyTracker,
+                new Function<KeyValueService, Void>() {
+            @Override
+            public Void apply(KeyValueService input) {
+                answered.add(input);
+                return null;
+            }
+        });
+    }
+
+    private EndpointReadRequest<KeyValueService, String> request(final KeyValueService endpoint,
+                                                                 final boolean block,
+                                                                 final boolean fail) {
+        return EndpointReadRequest.of(endpoint, ImmutableList.of(UNIT), new Callable<KeyValueService>() {
+            @Override
+            public KeyValueService call() throws Exception {
+                asked.add(endpoint);
+                if (block) {
+                    unblock.await();
+                }
+                if (fail) {
+                    throw new RuntimeException("endpoint is down");
+                }
+                return endpoint;
+            }
+        });
+    }
+}
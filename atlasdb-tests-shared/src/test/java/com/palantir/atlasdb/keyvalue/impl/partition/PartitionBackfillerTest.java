@@ -0,0 +1,156 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.impl.partition;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
+import com.palantir.atlasdb.AtlasDbConstants;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.atlasdb.keyvalue.impl.ForwardingKeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
+import com.palantir.atlasdb.keyvalue.partition.map.BackfillParameters;
+import com.palantir.atlasdb.keyvalue.partition.map.PartitionBackfiller;
+import com.palantir.common.base.ClosableIterator;
+
+public class PartitionBackfillerTest {
+    private static final TableReference TABLE = TableReference.createFromFullyQualifiedName("ns.table");
+    private static final byte[] COLUMN = { 'c' };
+    private static final BackfillParameters PARAMETERS = new BackfillParameters(1, 16, 0L);
+
+    private final KeyValueService source = new InMemoryKeyValueService(false);
+    private final KeyValueService destination = new InMemoryKeyValueService(false);
+    private final AtomicInteger puts = new AtomicInteger();
+    private volatile int putsBeforeFailure = Integer.MAX_VALUE;
+
+    private final KeyValueService failingDestination = new ForwardingKeyValueService() {
+        @Override
+        protected KeyValueService delegate() {
+            return destination;
+        }
+
+        @Override
+        public void putWithTimestamps(TableReference tableRef, Multimap<Cell, Value> values) {
+            if (puts.incrementAndGet() > putsBeforeFailure) {
+                throw new RuntimeException("destination is down");
+            }
+            super.putWithTimestamps(tableRef, values);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        source.createTable(TABLE, AtlasDbConstants.GENERIC_TABLE_METADATA);
+        destination.createTable(TABLE, AtlasDbConstants.GENERIC_TABLE_METADATA);
+        for (int i = 0; i < 256; i++) {
+            Cell cell = Cell.create(new byte[] { (byte) i, 1 }, COLUMN);
+            source.put(TABLE, ImmutableMap.of(cell, new byte[] { (byte) i }), 1L);
+            source.put(TABLE, ImmutableMap.of(cell, new byte[] { (byte) -i }), 2L);
+        }
+    }
+
+    @Test
+    public void testCopiesWholeRange() {
+        backfill(RangeRequest.all());
+        assertEquals(contents(source, RangeRequest.all()), contents(destination, RangeRequest.all()));
+        assertFalse(destination.getAllTableNames().contains(PartitionBackfiller.PROGRESS_TABLE));
+    }
+
+    @Test
+    public void testCopiesOnlyGivenRange() {
+        RangeRequest range = RangeRequest.builder()
+                .startRowInclusive(new byte[] { 0x10, 1 })
+                .endRowExclusive(new byte[] { (byte) 0x80 })
+                .build();
+        backfill(range);
+        assertEquals(contents(source, range), contents(destination, RangeRequest.all()));
+        assertEquals(0x70, contents(destination, RangeRequest.all()).size());
+    }
+
+    @Test
+    public void testRetryResumesAfterFailure() {
+        putsBeforeFailure = 5;
+        try {
+            backfill(RangeRequest.all());
+            fail("Expected the backfill to fail");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        putsBeforeFailure = Integer.MAX_VALUE;
+        puts.set(0);
+        backfill(RangeRequest.all());
+        assertTrue("Sub-ranges copied before the failure must not be copied again", puts.get() < 16);
+        assertEquals(contents(source, RangeRequest.all()), contents(destination, RangeRequest.all()));
+    }
+
+    @Test
+    public void testRetryWithFewerSubRangesCopiesLongerSubRangesAgain() {
+        // Copies the first of 16 sub-ranges, then fails.
+        putsBeforeFailure = 1;
+        try {
+            backfill(RangeRequest.all(), PARAMETERS);
+            fail("Expected the backfill to fail");
+        } catch (RuntimeException e) {
+            // expected
+        }
+
+        // The first of 8 sub-ranges starts where the copied one did but is twice as long.
+        putsBeforeFailure = Integer.MAX_VALUE;
+        backfill(RangeRequest.all(), new BackfillParameters(1, 8, 0L));
+        assertEquals(contents(source, RangeRequest.all()), contents(destination, RangeRequest.all()));
+    }
+
+    private void backfill(RangeRequest range) {
+        backfill(range, PARAMETERS);
+    }
+
+    private void backfill(RangeRequest range, BackfillParameters parameters) {
+        PartitionBackfiller backfiller = new PartitionBackfiller(source, parameters, 1L);
+        backfiller.backfill(ImmutableMultimap.of(failingDestination, range));
+        backfiller.clearProgress(ImmutableMultimap.of(failingDestination, range).keySet());
+    }
+
+    private static Map<Cell, Set<Value>> contents(KeyValueService kvs, RangeRequest range) {
+        Map<Cell, Set<Value>> result = Maps.newHashMap();
+        try (ClosableIterator<RowResult<Set<Value>>> it = kvs.getRangeWithHistory(TABLE, range, Long.MAX_VALUE)) {
+            while (it.hasNext()) {
+                for (Map.Entry<Cell, Set<Value>> e : it.next().getCells()) {
+                    result.put(e.getKey(), e.getValue());
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.remoting;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.atlasdb.keyvalue.impl.ForwardingKeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
+import com.palantir.atlasdb.keyvalue.remoting.iterators.StreamingRangeIterator;
+import com.palantir.common.base.ClosableIterator;
+import com.palantir.common.base.ClosableIterators;
+import com.palantir.common.concurrent.PTExecutors;
+
+public class RangeStreamingTest {
+    private static final TableReference TABLE = TableReference.createFromFullyQualifiedName("ns.table");
+    private static final int NUM_ROWS = 1000;
+
+    private final ExecutorService server = PTExecutors.newCachedThreadPool();
+    private KeyValueService kvs;
+    private Future<?> lastWriter;
+
+    @Before
+    public void setUp() {
+        kvs = new InMemoryKeyValueService(false);
+        kvs.createTable(TABLE, new byte[0]);
+        Map<Cell, byte[]> values = Maps.newHashMap();
+        for (int row = 0; row < NUM_ROWS; row++) {
+            for (int col = 0; col < 3; col++) {
+                values.put(Cell.create(bytes(row), bytes(col)), bytes(row + col));
+            }
+        }
+        kvs.put(TABLE, values, 1L);
+    }
+
+    @After
+    public void tearDown() {
+        server.shutdownNow();
+    }
+
+    @Test
+    public void testStreamsWholeRange() throws Exception {
+        RangeRequest range = RangeRequest.builder().batchHint(7).build();
+        List<RowResult<Value>> expected;
+        try (ClosableIterator<RowResult<Value>> it = kvs.getRange(TABLE, range, 2L)) {
+            expected = ImmutableList.copyOf(it);
+        }
+
+        List<RowResult<Value>> actual = Lists.newArrayList();
+        Future<?> writer;
+        try (StreamingRangeIterator it = stream(kvs, range, 2)) {
+            writer = lastWriter;
+            while (it.hasNext()) {
+                actual.add(it.next());
+            }
+        }
+        writer.get(10, TimeUnit.SECONDS);
+        assertEquals(NUM_ROWS, expected.size());
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testServerWaitsForSlowClient() throws Exception {
+        try (StreamingRangeIterator it = stream(kvs, RangeRequest.builder().batchHint(10).build(), 1)) {
+            assertTrue(it.hasNext());
+            it.next();
+            Thread.sleep(200);
+            // One buffered page and the pipe's buffer are far less than the whole range.
+            assertFalse(lastWriter.isDone());
+
+            int rows = 1;
+            while (it.hasNext()) {
+                it.next();
+                rows++;
+            }
+            assertEquals(NUM_ROWS, rows);
+        }
+    }
+
+    @Test
+    public void testCloseStopsServer() throws Exception {
+        Future<?> writer;
+        try (StreamingRangeIterator it = stream(kvs, RangeRequest.builder().batchHint(10).build(), 1)) {
+            writer = lastWriter;
+            it.next();
+        }
+        try {
+            writer.get(10, TimeUnit.SECONDS);
+            fail("Expected the server to fail writing to a closed stream");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testServerFailureReachesClient() throws Exception {
+        KeyValueService failingKvs = new ForwardingKeyValueService() {
+            @Override
+            protected KeyValueService delegate() {
+                return kvs;
+            }
+
+            @Override
+            public ClosableIterator<RowResult<Value>> getRange(TableReference tableRef, RangeRequest rangeRequest, long timestamp) {
+                final ClosableIterator<RowResult<Value>> delegate = super.getRange(tableRef, rangeRequest, timestamp);
+                return ClosableIterators.wrap(new AbstractIterator<RowResult<Value>>() {
+                    private int rows = 0;
+
+                    @Override
+                    protected RowResult<Value> computeNext() {
+                        if (rows++ == 15) {
+                            throw new IllegalStateException("disk on fire");
+                        }
+                        return delegate.hasNext() ? delegate.next() : endOfData();
+                    }
+                });
+            }
+        };
+
+        int rows = 0;
+        try (StreamingRangeIterator it = stream(failingKvs, RangeRequest.builder().batchHint(10).build(), 4)) {
+            while (it.hasNext()) {
+                it.next();
+                rows++;
+            }
+            fail("Expected the server's failure to be rethrown");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("disk on fire"));
+        }
+        assertEquals(10, rows);
+    }
+
+    private StreamingRangeIterator stream(KeyValueService serverKvs, final RangeRequest range, int credits) throws IOException {
+        final PipedOutputStream out = new PipedOutputStream();
+        PipedInputStream in = new PipedInputStream(out);
+        final RangeStreamingResource resource = RemotingKeyValueService.createRangeStreamingResource(serverKvs);
+        lastWriter = server.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                try {
+                    resource.getRange(TABLE, range, 2L).write(out);
+                } finally {
+                    out.close();
+                }
+                return null;
+            }
+        });
+        return new StreamingRangeIterator(in, credits);
+    }
+
+    private static byte[] bytes(int i) {
+        return new byte[] { (byte) (i >> 8), (byte) i };
+    }
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.keyvalue.remoting.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Maps;
+import com.google.common.primitives.UnsignedBytes;
+import com.google.common.reflect.TypeToken;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.atlasdb.keyvalue.remoting.RemotingKeyValueService;
+import com.palantir.atlasdb.keyvalue.remoting.iterators.ValueRangeIterator;
+import com.palantir.common.base.ClosableIterator;
+
+@SuppressWarnings("serial")
+public class KvsBinaryCodecTest {
+    private static final TableReference TABLE = TableReference.createFromFullyQualifiedName("ns.table");
+
+    @Test
+    public void testCellValuesRoundTrip() throws IOException {
+        Map<Cell, Value> values = Maps.newHashMap();
+        for (int row = 0; row < 20; row++) {
+            for (int col = 0; col < 5; col++) {
+                values.put(cell(row, col), Value.create(bytes(row * col), 1000L + row));
+            }
+        }
+        Type type = new TypeToken<Map<Cell, Value>>() {}.getType();
+
+        assertEquals(values, roundTrip(values, type));
+        assertSmallerThanJson(values, type);
+    }
+
+    @Test
+    public void testCellTimestampsRoundTrip() throws IOException {
+        Map<Cell, Long> timestamps = ImmutableMap.of(cell(1, 1), 5L, cell(1, 2), Long.MAX_VALUE, cell(2, 1), 0L);
+        Type type = new TypeToken<Map<Cell, Long>>() {}.getType();
+
+        assertEquals(timestamps, roundTrip(timestamps, type));
+        assertSmallerThanJson(timestamps, type);
+    }
+
+    @Test
+    public void testRowsRoundTrip() throws IOException {
+        List<byte[]> rows = ImmutableList.of(bytes(1), bytes(2), new byte[300]);
+        Type type = new TypeToken<Iterable<byte[]>>() {}.getType();
+
+        @SuppressWarnings("unchecked")
+        Iterable<byte[]> decoded = (Iterable<byte[]>) roundTrip(rows, type);
+        assertEquals(rows.size(), Iterables.size(decoded));
+        for (int i = 0; i < rows.size(); i++) {
+            assertArrayEquals(rows.get(i), Iterables.get(decoded, i));
+        }
+        assertSmallerThanJson(rows, type);
+    }
+
+    @Test
+    public void testValuesByTableRoundTrip() throws IOException {
+        Map<TableReference, Map<Cell, byte[]>> valuesByTable = ImmutableMap.<TableReference, Map<Cell, byte[]>>of(
+                TABLE, ImmutableMap.of(cell(1, 1), bytes(7), cell(1, 2), new byte[0]),
+                TableReference.createWithEmptyNamespace("other"), ImmutableMap.of(cell(3, 3), bytes(9)));
+        Type type = new TypeToken<Map<TableReference, ? extends Map<Cell, byte[]>>>() {}.getType();
+
+        @SuppressWarnings("unchecked")
+        Map<TableReference, Map<Cell, byte[]>> decoded = (Map<TableReference, Map<Cell, byte[]>>) roundTrip(valuesByTable, type);
+        assertEquals(valuesByTable.keySet(), decoded.keySet());
+        for (Map.Entry<TableReference, Map<Cell, byte[]>> e : valuesByTable.entrySet()) {
+            Map<Cell, byte[]> decodedValues = decoded.get(e.getKey());
+            assertEquals(e.getValue().keySet(), decodedValues.keySet());
+            for (Map.Entry<Cell, byte[]> value : e.getValue().entrySet()) {
+                assertArrayEquals(value.getValue(), decodedValues.get(value.getKey()));
+            }
+        }
+    }
+
+    @Test
+    public void testRangePageRoundTrip() throws IOException {
+        ImmutableList.Builder<RowResult<Value>> page = ImmutableList.builder();
+        for (int row = 0; row < 10; row++) {
+            SortedMap<byte[], Value> columns = Maps.newTreeMap(UnsignedBytes.lexicographicalComparator());
+            for (int col = 0; col < 3; col++) {
+                columns.put(bytes(col), Value.create(bytes(row + col), 10L));
+            }
+            page.add(RowResult.create(bytes(row), columns));
+        }
+        RangeRequest range = RangeRequest.builder().startRowInclusive(bytes(0)).batchHint(10).build();
+        ValueRangeIterator it = new ValueRangeIterator(TABLE, range, 20L, true, page.build());
+        Type type = new TypeToken<ClosableIterator<RowResult<Value>>>() {}.getType();
+
+        assertEquals(it, roundTrip(it, type));
+        assertSmallerThanJson(it, type);
+    }
+
+    @Test
+    public void testUnsupportedTypes() {
+        assertFalse(KvsBinaryCodec.canEncode(RangeRequest.class));
+        assertFalse(KvsBinaryCodec.canEncode(new TypeToken<Map<Cell, byte[]>>() {}.getType()));
+        assertTrue(KvsBinaryCodec.canEncode(ValueRangeIterator.class));
+    }
+
+    private static Object roundTrip(Object body, Type type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        KvsBinaryCodec.write(body, type, out);
+        return KvsBinaryCodec.read(type, new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    private static void assertSmallerThanJson(Object body, Type type) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        KvsBinaryCodec.write(body, type, out);
+        int jsonSize = RemotingKeyValueService.kvsMapper().writeValueAsBytes(body).length;
+        assertTrue(out.size() + " bytes is not smaller than " + jsonSize + " bytes of json", out.size() < jsonSize);
+    }
+
+    private static Cell cell(int row, int col) {
+        return Cell.create(bytes(row), bytes(col));
+    }
+
+    private static byte[] bytes(int i) {
+        return new byte[] { (byte) (i >> 8), (byte) i };
+    }
+}
@@ -41,12 +41,14 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.Futures;
 import com.palantir.atlasdb.AtlasDbTestCase;
 import com.palantir.atlasdb.encoding.PtBytes;
 import com.palantir.atlasdb.schema.stream.generated.DeletingStreamStore;
+import com.palantir.atlasdb.schema.stream.generated.StreamTestCompressedStreamStore;
 import com.palantir.atlasdb.schema.stream.generated.StreamTestStreamStore;
 import com.palantir.atlasdb.schema.stream.generated.StreamTestTableFactory;
 import com.palantir.atlasdb.schema.stream.generated.StreamTestWithHashStreamIdxTable.StreamTestWithHashStreamIdxRow;
@@ -209,6 +211,43 @@ public class StreamTest extends AtlasDbTestCase {
         Assert.assertArrayEquals(bytes, streamAsBytes);
     }
 
+    @Test
+    public void testLoadLargeStreamInTheTransactionThatStoredIt() throws IOException {
+        final byte[] bytesToStore = new byte[StreamTestStreamStore.BLOCK_SIZE_IN_BYTES * 3 + 17];
+        new Random().nextBytes(bytesToStore);
+        final long id = timestampService.getFreshTimestamp();
+        PersistentStreamStore store = StreamTestStreamStore.of(txManager, StreamTestTableFactory.of());
+
+        byte[] loaded = txManager.runTaskWithRetry(t -> {
+            store.storeStreams(t, ImmutableMap.of(id, new ByteArrayInputStream(bytesToStore)));
+            try (InputStream stream = store.loadStream(t, id)) {
+                return IOUtils.toByteArray(stream);
+            }
+        });
+        Assert.assertArrayEquals(bytesToStore, loaded);
+    }
+
+    @Test
+    public void testCompressedStoreByteStream() throws IOException {
+        int size = StreamTestCompressedStreamStore.BLOCK_SIZE_IN_BYTES * 3 + 500;
+        byte[] compressible = new byte[size];
+        for (int i = 0; i < size; i++) {
+            compressible[i] = (byte) (i % 7);
+        }
+        byte[] incompressible = new byte[size];
+        new Random().nextBytes(incompressible);
+
+        PersistentStreamStore store = StreamTestCompressedStreamStore.of(txManager, StreamTestTableFactory.of());
+        for (byte[] bytesToStore : ImmutableList.of(compressible, incompressible)) {
+            final long id = timestampService.getFreshTimestamp();
+            txManager.runTaskWithRetry(t -> store.storeStreams(t, ImmutableMap.of(id, new ByteArrayInputStream(bytesToStore))));
+            verifyLoadingStreams(id, bytesToStore, store);
+
+            Pair<Long, Sha256Hash> idAndHash = store.storeStream(new ByteArrayInputStream(bytesToStore));
+            verifyLoadingStreams(idAndHash.getLhSide(), bytesToStore, store);
+        }
+    }
+
     @Test
     public void testLookupStreamIdsByHash() throws Exception {
         final byte[] bytes1 = new byte[2 * StreamTestStreamStore.BLOCK_SIZE_IN_BYTES];
@@ -46,6 +46,11 @@ public class StreamTestSchema implements AtlasSchema {
                     .isAppendHeavyAndReadLight()
                     .build());
 
+        schema.addStreamStoreDefinition(
+                new StreamStoreDefinitionBuilder("stream_test_compressed", "stream_test_compressed", ValueType.VAR_LONG)
+                    .compressStreamInClient()
+                    .build());
+
         return schema;
     }
 
@@ -0,0 +1,31 @@
+package com.palantir.atlasdb.schema.stream.generated;
+
+import java.util.Set;
+
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Sets;
+import com.palantir.atlasdb.cleaner.api.OnCleanupTask;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.table.description.ValueType;
+import com.palantir.atlasdb.transaction.api.Transaction;
+
+public class StreamTestCompressedIndexCleanupTask implements OnCleanupTask {
+
+    private final StreamTestTableFactory tables = StreamTestTableFactory.of();
+
+    @Override
+    public boolean cellsCleanedUp(Transaction t, Set<Cell> cells) {
+        StreamTestCompressedStreamIdxTable usersIndex = tables.getStreamTestCompressedStreamIdxTable(t);
+        Set<StreamTestCompressedStreamIdxTable.StreamTestCompressedStreamIdxRow> rows = Sets.newHashSetWithExpectedSize(cells.size());
+        for (Cell cell : cells) {
+            rows.add(StreamTestCompressedStreamIdxTable.StreamTestCompressedStreamIdxRow.of((Long) ValueType.VAR_LONG.convertToJava(cell.getRowName(), 0)));
+        }
+        Multimap<StreamTestCompressedStreamIdxTable.StreamTestCompressedStreamIdxRow, StreamTestCompressedStreamIdxTable.StreamTestCompressedStreamIdxColumnValue> rowsInDb = usersIndex.getRowsMultimap(rows);
+        Set<Long> toDelete = Sets.newHashSetWithExpectedSize(rows.size() - rowsInDb.keySet().size());
+        for (StreamTestCompressedStreamIdxTable.StreamTestCompressedStreamIdxRow rowToDelete : Sets.difference(rows, rowsInDb.keySet())) {
+            toDelete.add(rowToDelete.getId());
+        }
+        StreamTestCompressedStreamStore.of(tables).deleteStreams(t, toDelete);
+        return false;
+    }
+}
\ No newline at end of file
@@ -38,6 +38,22 @@ public final class StreamTestTableFactory {
         return of(ImmutableList.<Function<? super Transaction, SharedTriggers>>of(), defaultNamespace);
     }
 
+    public StreamTestCompressedStreamHashAidxTable getStreamTestCompressedStreamHashAidxTable(Transaction t, StreamTestCompressedStreamHashAidxTable.StreamTestCompressedStreamHashAidxTrigger... triggers) {
+        return StreamTestCompressedStreamHashAidxTable.of(t, namespace, Triggers.getAllTriggers(t, sharedTriggers, triggers));
+    }
+
+    public StreamTestCompressedStreamIdxTable getStreamTestCompressedStreamIdxTable(Transaction t, StreamTestCompressedStreamIdxTable.StreamTestCompressedStreamIdxTrigger... triggers) {
+        return StreamTestCompressedStreamIdxTable.of(t, namespace, Triggers.getAllTriggers(t, sharedTriggers, triggers));
+    }
+
+    public StreamTestCompressedStreamMetadataTable getStreamTestCompressedStreamMetadataTable(Transaction t, StreamTestCompressedStreamMetadataTable.StreamTestCompressedStreamMetadataTrigger... triggers) {
+        return StreamTestCompressedStreamMetadataTable.of(t, namespace, Triggers.getAllTriggers(t, sharedTriggers, triggers));
+    }
+
+    public StreamTestCompressedStreamValueTable getStreamTestCompressedStreamValueTable(Transaction t, StreamTestCompressedStreamValueTable.StreamTestCompressedStreamValueTrigger... triggers) {
+        return StreamTestCompressedStreamValueTable.of(t, namespace, Triggers.getAllTriggers(t, sharedTriggers, triggers));
+    }
+
     public StreamTestStreamHashAidxTable getStreamTestStreamHashAidxTable(Transaction t, StreamTestStreamHashAidxTable.StreamTestStreamHashAidxTrigger... triggers) {
         return StreamTestStreamHashAidxTable.of(t, namespace, Triggers.getAllTriggers(t, sharedTriggers, triggers));
     }
@@ -71,6 +87,10 @@ public final class StreamTestTableFactory {
     }
 
     public interface SharedTriggers extends
+            StreamTestCompressedStreamHashAidxTable.StreamTestCompressedStreamHashAidxTrigger,
+            StreamTestCompressedStreamIdxTable.StreamTestCompressedStreamIdxTrigger,
+            StreamTestCompressedStreamMetadataTable.StreamTestCompressedStreamMetadataTrigger,
+            StreamTestCompressedStreamValueTable.StreamTestCompressedStreamValueTrigger,
             StreamTestStreamHashAidxTable.StreamTestStreamHashAidxTrigger,
             StreamTestStreamIdxTable.StreamTestStreamIdxTrigger,
             StreamTestStreamMetadataTable.StreamTestStreamMetadataTrigger,
@@ -83,6 +103,26 @@ public final class StreamTestTableFactory {
     }
 
     public abstract static class NullSharedTriggers implements SharedTriggers {
+        @Override
+        public void putStreamTestCompressedStreamHashAidx(Multimap<StreamTestCompressedStreamHashAidxTable.StreamTestCompressedStreamHashAidxRow, ? extends StreamTestCompressedStreamHashAidxTable.StreamTestCompressedStreamHashAidxColumnValue> newRows) {
+            // do nothing
+        }
+
+        @Override
+        public void putStreamTestCompressedStreamIdx(Multimap<StreamTestCompressedStreamIdxTable.StreamTestCompressedStreamIdxRow, ? extends StreamTestCompressedStreamIdxTable.StreamTestCompressedStreamIdxColumnValue> newRows) {
+            // do nothing
+        }
+
+        @Override
+        public void putStreamTestCompressedStreamMetadata(Multimap<StreamTestCompressedStreamMetadataTable.StreamTestCompressedStreamMetadataRow, ? extends StreamTestCompressedStreamMetadataTable.StreamTestCompressedStreamMetadataNamedColumnValue<?>> newRows) {
+            // do nothing
+        }
+
+        @Override
+        public void putStreamTestCompressedStreamValue(Multimap<StreamTestCompressedStreamValueTable.StreamTestCompressedStreamValueRow, ? extends StreamTestCompressedStreamValueTable.StreamTestCompressedStreamValueNamedColumnValue<?>> newRows) {
+            // do nothing
+        }
+
         @Override
         public void putStreamTestStreamHashAidx(Multimap<StreamTestStreamHashAidxTable.StreamTestStreamHashAidxRow, ? extends StreamTestStreamHashAidxTable.StreamTestStreamHashAidxColumnValue> newRows) {
             // do nothing
@@ -0,0 +1,114 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.stream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+
+public class BlockConsumingInputStreamTest {
+    private static final int BLOCK_SIZE = 10;
+    private static final int NUM_BLOCKS = 7;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final Set<Long> loadedBlocks = Sets.newConcurrentHashSet();
+    private final BlockGetter blockGetter = new BlockGetter() {
+        @Override
+        public InputStream getBlock(long blockId) {
+            loadedBlocks.add(blockId);
+            return new ByteArrayInputStream(block(blockId));
+        }
+    };
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testReadsAllBlocksInOrder() throws IOException {
+        InputStream stream = new BlockConsumingInputStream(blockGetter, NUM_BLOCKS, 2, executor);
+        Assert.assertArrayEquals(allBlocks(), IOUtils.toByteArray(stream));
+        Assert.assertEquals(-1, stream.read());
+    }
+
+    @Test
+    public void testReadsSingleBytesWithoutReadAhead() throws IOException {
+        InputStream stream = new BlockConsumingInputStream(blockGetter, NUM_BLOCKS, 0, null);
+        byte[] expected = allBlocks();
+        for (byte b : expected) {
+            Assert.assertEquals(b & 0xff, stream.read());
+        }
+        Assert.assertEquals(-1, stream.read());
+    }
+
+    @Test
+    public void testLoadsNothingUntilRead() throws IOException {
+        InputStream stream = new BlockConsumingInputStream(blockGetter, NUM_BLOCKS, 2, executor);
+        Assert.assertTrue(loadedBlocks.isEmpty());
+        stream.read();
+        stream.close();
+        executor.shutdown();
+        for (long blockId : loadedBlocks) {
+            Assert.assertTrue("Loaded block " + blockId + " too far ahead", blockId <= 2);
+        }
+    }
+
+    @Test
+    public void testFailedBlockLoadIsAnIOException() {
+        BlockGetter failingGetter = new BlockGetter() {
+            @Override
+            public InputStream getBlock(long blockId) {
+                if (blockId == 3) {
+                    throw new IllegalStateException("missing block");
+                }
+                return new ByteArrayInputStream(block(blockId));
+            }
+        };
+        InputStream stream = new BlockConsumingInputStream(failingGetter, NUM_BLOCKS, 2, executor);
+        try {
+            IOUtils.toByteArray(stream);
+            Assert.fail("Expected reading past a missing block to fail");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    private static byte[] block(long blockId) {
+        byte[] block = new byte[BLOCK_SIZE];
+        Arrays.fill(block, (byte) (blockId * 31));
+        return block;
+    }
+
+    private static byte[] allBlocks() {
+        byte[] bytes = new byte[BLOCK_SIZE * NUM_BLOCKS];
+        for (int i = 0; i < NUM_BLOCKS; i++) {
+            System.arraycopy(block(i), 0, bytes, i * BLOCK_SIZE, BLOCK_SIZE);
+        }
+        return bytes;
+    }
+}
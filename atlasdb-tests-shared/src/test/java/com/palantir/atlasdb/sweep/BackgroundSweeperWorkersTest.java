@@ -0,0 +1,250 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.sweep;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.palantir.atlasdb.AtlasDbConstants;
+import com.palantir.atlasdb.cleaner.NoOpCleaner;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.SweepResults;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
+import com.palantir.atlasdb.protos.generated.TableMetadataPersistence.SweepStrategy;
+import com.palantir.atlasdb.schema.SweepSchema;
+import com.palantir.atlasdb.schema.generated.SweepTableFactory;
+import com.palantir.atlasdb.table.description.Schemas;
+import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
+import com.palantir.atlasdb.transaction.api.LockAwareTransactionManager;
+import com.palantir.atlasdb.transaction.impl.ConflictDetectionManagers;
+import com.palantir.atlasdb.transaction.impl.SerializableTransactionManager;
+import com.palantir.atlasdb.transaction.impl.SweepStrategyManagers;
+import com.palantir.atlasdb.transaction.impl.TransactionTables;
+import com.palantir.atlasdb.transaction.service.TransactionService;
+import com.palantir.atlasdb.transaction.service.TransactionServices;
+import com.palantir.common.concurrent.PTExecutors;
+import com.palantir.lock.LockClient;
+import com.palantir.lock.LockMode;
+import com.palantir.lock.LockRefreshToken;
+import com.palantir.lock.LockRequest;
+import com.palantir.lock.LockServerOptions;
+import com.palantir.lock.LockService;
+import com.palantir.lock.StringLockDescriptor;
+import com.palantir.lock.impl.LockServiceImpl;
+import com.palantir.timestamp.InMemoryTimestampService;
+import com.palantir.timestamp.TimestampService;
+
+public class BackgroundSweeperWorkersTest {
+    private static final int NUM_TABLES = 6;
+    private static final int NUM_WORKERS = 3;
+
+    private final ConcurrentMap<TableReference, Integer> batchesByTable = Maps.newConcurrentMap();
+    private final Set<TableReference> tablesBeingSwept = Sets.newConcurrentHashSet();
+    private final AtomicBoolean sweptTheSameTableTwiceAtOnce = new AtomicBoolean(false);
+    private final List<TableReference> sweptTables = new CopyOnWriteArrayList<TableReference>();
+
+    private KeyValueService kvs;
+    private TimestampService timestampService;
+    private LockService lockService;
+    private LockAwareTransactionManager txManager;
+    private List<TableReference> tables;
+
+    @Before
+    public void setUp() {
+        kvs = new InMemoryKeyValueService(false);
+        timestampService = new InMemoryTimestampService();
+        lockService = LockServiceImpl.create(new LockServerOptions() {
+            @Override
+            public boolean isStandaloneServer() {
+                return false;
+            }
+        });
+        TransactionTables.createTables(kvs);
+        Schemas.createTablesAndIndexes(SweepSchema.INSTANCE.getLatestSchema(), kvs);
+        TransactionService txService = TransactionServices.createTransactionService(kvs);
+        txManager = new SerializableTransactionManager(
+                kvs,
+                timestampService,
+                LockClient.of("sweep client"),
+                lockService,
+                txService,
+                Suppliers.ofInstance(AtlasDbConstraintCheckingMode.NO_CONSTRAINT_CHECKING),
+                ConflictDetectionManagers.createDefault(kvs),
+                SweepStrategyManagers.createDefault(kvs),
+                new NoOpCleaner(),
+                false);
+        tables = Lists.newArrayList();
+        for (int i = 0; i < NUM_TABLES; i++) {
+            TableReference table = TableReference.createWithEmptyNamespace("table" + i);
+            kvs.createTable(table, AtlasDbConstants.GENERIC_TABLE_METADATA);
+            tables.add(table);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        kvs.teardown();
+    }
+
+    @Test
+    public void testWorkersNeverSweepTheSameTableAtOnce() throws Exception {
+        // Every table takes two batches, so workers hold on to their tables between batches.
+        final BackgroundSweeperImpl sweeper = createSweeper(new FakeSweepTaskRunner(2), NUM_WORKERS);
+        ExecutorService executor = PTExecutors.newFixedThreadPool(NUM_WORKERS);
+        try {
+            List<Future<Void>> futures = Lists.newArrayList();
+            for (int i = 0; i < NUM_WORKERS; i++) {
+                final int workerIndex = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int batch = 0; batch < 20; batch++) {
+                            sweeper.runOnce(workerIndex);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertFalse(sweptTheSameTableTwiceAtOnce.get());
+        for (TableReference table : tables) {
+            // A worker may pick a table just before another one finishes it, and sweep it again
+            // afterwards, but never at the same time.
+            Integer batches = batchesByTable.get(table);
+            Assert.assertTrue(table.getQualifiedName(), batches != null && batches >= 2);
+        }
+    }
+
+    @Test
+    public void testWorkersKeepTheirOwnTablesBetweenBatches() {
+        BackgroundSweeperImpl sweeper = createSweeper(new FakeSweepTaskRunner(Integer.MAX_VALUE), 2);
+
+        Assert.assertTrue(sweeper.runOnce(0));
+        Assert.assertTrue(sweeper.runOnce(1));
+        Assert.assertTrue(sweeper.runOnce(1));
+        Assert.assertTrue(sweeper.runOnce(0));
+
+        Assert.assertEquals(4, sweptTables.size());
+        TableReference firstWorkersTable = sweptTables.get(0);
+        TableReference secondWorkersTable = sweptTables.get(1);
+        Assert.assertNotEquals(firstWorkersTable, secondWorkersTable);
+        Assert.assertEquals(ImmutableList.of(firstWorkersTable, secondWorkersTable, secondWorkersTable, firstWorkersTable),
+                sweptTables);
+    }
+
+    @Test
+    public void testWorkerReleasesItsLocksWhenItFails() throws InterruptedException {
+        final CountDownLatch failed = new CountDownLatch(1);
+        final TableReference[] failedTable = new TableReference[1];
+        BackgroundSweeperImpl sweeper = createSweeper(new FakeSweepTaskRunner(Integer.MAX_VALUE) {
+            @Override
+            public SweepResults run(TableReference tableRef, int batchSize, @Nullable byte[] startRow) {
+                failedTable[0] = tableRef;
+                failed.countDown();
+                throw new AssertionError("sweeper worker failure for testing");
+            }
+        }, 1);
+        sweeper.runInBackground();
+        Assert.assertTrue(failed.await(10, TimeUnit.SECONDS));
+        sweeper.shutdown();
+
+        Assert.assertTrue(canLock("atlas sweep"));
+        Assert.assertTrue(canLock("atlas sweep table " + failedTable[0].getQualifiedName()));
+    }
+
+    private boolean canLock(String lockName) throws InterruptedException {
+        LockRequest request = LockRequest.builder(
+                ImmutableSortedMap.of(StringLockDescriptor.of(lockName), LockMode.WRITE)).doNotBlock().build();
+        LockRefreshToken token = lockService.lock(LockClient.ANONYMOUS.getClientId(), request);
+        if (token == null) {
+            return false;
+        }
+        lockService.unlock(token);
+        return true;
+    }
+
+    private BackgroundSweeperImpl createSweeper(SweepTaskRunner sweepRunner, int sweepThreads) {
+        Supplier<Boolean> enabled = () -> true;
+        Supplier<Long> noPause = () -> 0L;
+        Supplier<Integer> batchSize = () -> 1000;
+        return new BackgroundSweeperImpl(txManager, kvs, sweepRunner, enabled, noPause, batchSize,
+                SweepTableFactory.of(), sweepThreads, SweepThrottle.unlimited(), false);
+    }
+
+    /**
+     * Pretends to sweep each table in {@code batchesPerTable} batches and records which tables
+     * are being swept at once.
+     */
+    private class FakeSweepTaskRunner implements SweepTaskRunner {
+        private final int batchesPerTable;
+
+        FakeSweepTaskRunner(int batchesPerTable) {
+            this.batchesPerTable = batchesPerTable;
+        }
+
+        @Override
+        public SweepResults run(TableReference tableRef, int batchSize, @Nullable byte[] startRow) {
+            sweptTables.add(tableRef);
+            if (!tablesBeingSwept.add(tableRef)) {
+                sweptTheSameTableTwiceAtOnce.set(true);
+            }
+            try {
+                Thread.sleep(1);
+                int batches = batchesByTable.merge(tableRef, 1, Integer::sum);
+                byte[] nextStartRow = batches < batchesPerTable ? new byte[] {(byte) batches} : null;
+                return new SweepResults(nextStartRow, 1, 0, getSweepTimestamp(SweepStrategy.CONSERVATIVE));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } finally {
+                tablesBeingSwept.remove(tableRef);
+            }
+        }
+
+        @Override
+        public long getSweepTimestamp(SweepStrategy sweepStrategy) {
+            return timestampService.getFreshTimestamp();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.sweep;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.base.Stopwatch;
+
+public class SweepThrottleTest {
+    @Test
+    public void testUnlimitedThrottleNeverWaits() {
+        SweepThrottle throttle = SweepThrottle.unlimited();
+        Stopwatch watch = Stopwatch.createStarted();
+        for (int i = 0; i < 100; i++) {
+            throttle.acquire(1000000, 1000000000);
+        }
+        Assert.assertTrue(watch.elapsed(TimeUnit.MILLISECONDS) < 500);
+    }
+
+    @Test
+    public void testCellBudgetDelaysTheNextBatch() {
+        SweepThrottle throttle = new SweepThrottle(() -> 100L, () -> 0L);
+        Stopwatch watch = Stopwatch.createStarted();
+        throttle.acquire(50, 1000000);
+        throttle.acquire(50, 1000000);
+        throttle.acquire(50, 1000000);
+        // Each batch of 50 cells pays for half a second of budget before the next one may start.
+        Assert.assertTrue(watch.elapsed(TimeUnit.MILLISECONDS) >= 900);
+    }
+
+    @Test
+    public void testByteBudgetDelaysTheNextBatch() {
+        SweepThrottle throttle = new SweepThrottle(() -> 0L, () -> 1000L);
+        Stopwatch watch = Stopwatch.createStarted();
+        throttle.acquire(1000000, 500);
+        throttle.acquire(1000000, 500);
+        throttle.acquire(1000000, 500);
+        Assert.assertTrue(watch.elapsed(TimeUnit.MILLISECONDS) >= 900);
+    }
+}
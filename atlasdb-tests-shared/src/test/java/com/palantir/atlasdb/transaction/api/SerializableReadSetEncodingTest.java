@@ -0,0 +1,58 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.api;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class SerializableReadSetEncodingTest {
+
+    @Test
+    public void testFullValuesAreKept() {
+        byte[] value = new byte[1000];
+        assertSame(value, SerializableReadSetEncoding.FULL_VALUES.encode(value));
+    }
+
+    @Test
+    public void testShortValuesAreKept() {
+        byte[] value = new byte[15];
+        assertSame(value, SerializableReadSetEncoding.MURMUR3_128.encode(value));
+        value = new byte[31];
+        assertSame(value, SerializableReadSetEncoding.SHA_256.encode(value));
+    }
+
+    @Test
+    public void testLongValuesAreDigested() {
+        byte[] value = new byte[1000];
+        byte[] changed = value.clone();
+        changed[999] = 1;
+        assertDigestsDiffer(SerializableReadSetEncoding.MURMUR3_128, 16, value, changed);
+        assertDigestsDiffer(SerializableReadSetEncoding.SHA_256, 32, value, changed);
+    }
+
+    private static void assertDigestsDiffer(SerializableReadSetEncoding encoding, int digestLength, byte[] value, byte[] changed) {
+        byte[] digest = encoding.encode(value);
+        assertEquals(digestLength, digest.length);
+        assertArrayEquals(digest, encoding.encode(value.clone()));
+        assertFalse(Arrays.equals(digest, encoding.encode(changed)));
+    }
+}
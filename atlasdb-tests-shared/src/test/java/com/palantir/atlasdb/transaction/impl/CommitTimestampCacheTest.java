@@ -0,0 +1,130 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.palantir.common.concurrent.PTExecutors;
+
+public class CommitTimestampCacheTest {
+    @Test
+    public void testGetAfterPut() {
+        CommitTimestampCache cache = new CommitTimestampCache(16);
+        Assert.assertEquals(CommitTimestampCache.NO_ENTRY, cache.get(5L));
+        cache.put(5L, 7L);
+        cache.put(6L, TransactionConstants.FAILED_COMMIT_TS);
+        Assert.assertEquals(7L, cache.get(5L));
+        Assert.assertEquals(TransactionConstants.FAILED_COMMIT_TS, cache.get(6L));
+        Assert.assertEquals(2, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+        Assert.assertEquals(2, cache.getPutCount());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        CommitTimestampCache cache = new CommitTimestampCache(10);
+        Assert.assertEquals(16, cache.getMaxCacheSize());
+        for (long startTs = 0; startTs < 1000; startTs++) {
+            cache.put(startTs, startTs + 1);
+        }
+        int found = 0;
+        for (long startTs = 0; startTs < 1000; startTs++) {
+            long commitTs = cache.get(startTs);
+            if (commitTs != CommitTimestampCache.NO_ENTRY) {
+                Assert.assertEquals(startTs + 1, commitTs);
+                found++;
+            }
+        }
+        Assert.assertTrue(found <= 16);
+        Assert.assertEquals(cache.getPutCount() - cache.getEvictionCount(), found);
+    }
+
+    @Test
+    public void testEvictsOldestStartTimestamp() {
+        CommitTimestampCache cache = new CommitTimestampCache(CommitTimestampCache.WAYS);
+        for (long startTs = 1; startTs <= CommitTimestampCache.WAYS + 1; startTs++) {
+            cache.put(startTs, startTs + 1);
+        }
+        Assert.assertEquals(CommitTimestampCache.NO_ENTRY, cache.get(1L));
+        for (long startTs = 2; startTs <= CommitTimestampCache.WAYS + 1; startTs++) {
+            Assert.assertEquals(startTs + 1, cache.get(startTs));
+        }
+        Assert.assertEquals(1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testClearCacheAndStats() {
+        CommitTimestampCache cache = new CommitTimestampCache(16);
+        cache.put(1L, 2L);
+        cache.get(1L);
+        cache.clearCacheAndStats();
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(CommitTimestampCache.NO_ENTRY, cache.get(1L));
+    }
+
+    @Test
+    public void testConcurrentEvictionNeverReturnsAnotherKeysValue() throws Exception {
+        // One set, so every put of a new key evicts and slots keep being rewritten to other keys and back.
+        final CommitTimestampCache cache = new CommitTimestampCache(CommitTimestampCache.WAYS);
+        final long numKeys = CommitTimestampCache.WAYS * 2;
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(500);
+        ExecutorService executor = PTExecutors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = Lists.newArrayList();
+            for (int i = 0; i < 2; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (long n = 0; System.nanoTime() < deadline; n++) {
+                            long startTs = n % numKeys;
+                            cache.put(startTs, startTs + 1000);
+                            if (n % numKeys == 0) {
+                                cache.clear();
+                            }
+                        }
+                        return null;
+                    }
+                }));
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (long n = 0; System.nanoTime() < deadline; n++) {
+                            long startTs = n % numKeys;
+                            long commitTs = cache.get(startTs);
+                            if (commitTs != CommitTimestampCache.NO_ENTRY) {
+                                Assert.assertEquals(startTs + 1000, commitTs);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.palantir.atlasdb.transaction.service.TransactionService;
+
+public class CommitTimestampLookupBatcherTest {
+    private static final int NUM_READERS = 20;
+
+    private final List<Set<Long>> lookups = new CopyOnWriteArrayList<Set<Long>>();
+    private final CountDownLatch firstLookupStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstLookup = new CountDownLatch(1);
+    private volatile RuntimeException failure = null;
+
+    private final CommitTimestampLookupBatcher batcher = new CommitTimestampLookupBatcher(new TransactionService() {
+        @Override
+        public Long get(long startTimestamp) {
+            return get(ImmutableSet.of(startTimestamp)).get(startTimestamp);
+        }
+
+        @Override
+        public Map<Long, Long> get(Iterable<Long> startTimestamps) {
+            if (lookups.isEmpty()) {
+                firstLookupStarted.countDown();
+                awaitUninterruptibly(releaseFirstLookup);
+            }
+            lookups.add(ImmutableSet.copyOf(startTimestamps));
+            if (failure != null) {
+                throw failure;
+            }
+            Map<Long, Long> result = Maps.newHashMap();
+            for (long startTs : startTimestamps) {
+                // Odd start timestamps never committed.
+                if (startTs % 2 == 0) {
+                    result.put(startTs, startTs + 1000);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void putUnlessExists(long startTimestamp, long commitTimestamp) {
+            throw new UnsupportedOperationException();
+        }
+    });
+
+    @Test
+    public void testLookupWithoutContention() {
+        releaseFirstLookup.countDown();
+        Assert.assertEquals(ImmutableMap.of(2L, 1002L), batcher.get(ImmutableSet.of(1L, 2L)));
+        Assert.assertEquals(1, lookups.size());
+    }
+
+    @Test
+    public void testConcurrentLookupsShareOneCall() throws InterruptedException {
+        ConcurrentMap<Long, Object> results = lookUpConcurrently();
+
+        Assert.assertEquals(2, lookups.size());
+        Assert.assertEquals(ImmutableSet.of(0L), lookups.get(0));
+        Assert.assertEquals(NUM_READERS * 2, lookups.get(1).size());
+        for (long reader = 1; reader <= NUM_READERS; reader++) {
+            // Each reader only sees its own start timestamps.
+            Assert.assertEquals(ImmutableMap.of(reader * 100, reader * 100 + 1000), results.get(reader));
+        }
+    }
+
+    @Test
+    public void testFailedLookupFailsEveryoneInTheBatch() throws InterruptedException {
+        failure = new IllegalStateException("transaction table unavailable");
+        ConcurrentMap<Long, Object> results = lookUpConcurrently();
+
+        Assert.assertEquals(2, lookups.size());
+        for (long reader = 1; reader <= NUM_READERS; reader++) {
+            // The failure is rewrapped for each reader so that it carries the reader's stack trace.
+            Object result = results.get(reader);
+            Assert.assertTrue(String.valueOf(result), result instanceof IllegalStateException);
+            Assert.assertEquals(failure.getMessage(), ((IllegalStateException) result).getMessage());
+        }
+    }
+
+    /**
+     * Holds up a first lookup inside the transaction service until {@link #NUM_READERS} more lookups
+     * are queued behind it, then lets them all through.
+     */
+    private ConcurrentMap<Long, Object> lookUpConcurrently() throws InterruptedException {
+        final ConcurrentMap<Long, Object> results = Maps.newConcurrentMap();
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    batcher.get(ImmutableSet.of(0L));
+                } catch (RuntimeException e) {
+                    // only the queued readers are interesting
+                }
+            }
+        });
+        first.start();
+        firstLookupStarted.await();
+
+        List<Thread> readers = Lists.newArrayList();
+        for (long i = 1; i <= NUM_READERS; i++) {
+            final long reader = i;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        results.put(reader, batcher.get(Sets.newHashSet(reader * 100, reader * 100 + 1)));
+                    } catch (Throwable t) {
+                        results.put(reader, t);
+                    }
+                }
+            });
+            thread.start();
+            readers.add(thread);
+        }
+        // Check twice, since a reader also parks briefly while it waits for the batcher's lock.
+        for (int pass = 0; pass < 2; pass++) {
+            Thread.sleep(10);
+            for (Thread reader : readers) {
+                while (reader.getState() != Thread.State.WAITING) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+
+        releaseFirstLookup.countDown();
+        first.join();
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        return results;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.palantir.atlasdb.transaction.api.TransactionSerializableConflictException;
+import com.palantir.common.concurrent.PTExecutors;
+
+public class ParallelCheckRunnerTest {
+    private final ExecutorService executor = PTExecutors.newFixedThreadPool(4);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testRunsAllChecks() {
+        ParallelCheckRunner runner = new ParallelCheckRunner(executor, 4);
+        final AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < 100; i++) {
+            runner.add(i % 2 == 0 ? "even" : "odd", new Runnable() {
+                @Override
+                public void run() {
+                    count.incrementAndGet();
+                }
+            });
+        }
+        runner.getPhase("empty");
+        runner.run();
+        Assert.assertEquals(100, count.get());
+        String timings = runner.getTimings();
+        Assert.assertTrue(timings, timings.startsWith("even 50 checks in "));
+        Assert.assertTrue(timings, timings.contains("odd 50 checks in "));
+        Assert.assertTrue(timings, timings.contains("empty 0 checks in "));
+    }
+
+    @Test
+    public void testCallerRunsChecksWhenExecutorDoesNotRunThem() {
+        ParallelCheckRunner runner = new ParallelCheckRunner(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                // never runs anything
+            }
+        }, 4);
+        final AtomicInteger count = new AtomicInteger();
+        for (int i = 0; i < 10; i++) {
+            runner.add("checks", new Runnable() {
+                @Override
+                public void run() {
+                    count.incrementAndGet();
+                }
+            });
+        }
+        runner.run();
+        Assert.assertEquals(10, count.get());
+    }
+
+    @Test
+    public void testStopsAtFirstConflict() {
+        ParallelCheckRunner runner = new ParallelCheckRunner(executor, 1);
+        final AtomicInteger count = new AtomicInteger();
+        runner.add("conflict", new Runnable() {
+            @Override
+            public void run() {
+                throw new TransactionSerializableConflictException("conflict");
+            }
+        });
+        for (int i = 0; i < 10; i++) {
+            runner.add("after", new Runnable() {
+                @Override
+                public void run() {
+                    count.incrementAndGet();
+                }
+            });
+        }
+        try {
+            runner.run();
+            Assert.fail();
+        } catch (TransactionSerializableConflictException e) {
+            Assert.assertEquals("conflict", e.getMessage());
+        }
+        Assert.assertEquals(0, count.get());
+    }
+}
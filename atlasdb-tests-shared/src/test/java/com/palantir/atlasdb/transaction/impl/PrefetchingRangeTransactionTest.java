@@ -0,0 +1,152 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.palantir.atlasdb.cleaner.NoOpCleaner;
+import com.palantir.atlasdb.encoding.PtBytes;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.RangeRequest;
+import com.palantir.atlasdb.keyvalue.api.RowResult;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.api.Value;
+import com.palantir.atlasdb.keyvalue.impl.ForwardingKeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
+import com.palantir.atlasdb.transaction.api.AtlasDbConstraintCheckingMode;
+import com.palantir.atlasdb.transaction.api.ConflictHandler;
+import com.palantir.atlasdb.transaction.api.Transaction;
+import com.palantir.atlasdb.transaction.api.TransactionReadSentinelBehavior;
+import com.palantir.common.base.AbortingVisitor;
+import com.palantir.common.base.BatchingVisitables;
+import com.palantir.common.base.ClosableIterator;
+import com.palantir.common.base.ForwardingClosableIterator;
+import com.palantir.lock.LockRefreshToken;
+
+/**
+ * Runs the transaction tests with range scans prefetching pages.
+ */
+public class PrefetchingRangeTransactionTest extends AbstractTransactionTest {
+    private static final int PREFETCH_PAGES = 2;
+
+    private final AtomicInteger openRangeIterators = new AtomicInteger();
+
+    @Override
+    protected KeyValueService getKeyValueService() {
+        final KeyValueService kvs = new InMemoryKeyValueService(false);
+        return new ForwardingKeyValueService() {
+            @Override
+            protected KeyValueService delegate() {
+                return kvs;
+            }
+
+            @Override
+            public ClosableIterator<RowResult<Value>> getRange(TableReference tableRef,
+                                                               RangeRequest rangeRequest,
+                                                               long timestamp) {
+                final ClosableIterator<RowResult<Value>> range = super.getRange(tableRef, rangeRequest, timestamp);
+                openRangeIterators.incrementAndGet();
+                return new ForwardingClosableIterator<RowResult<Value>>() {
+                    @Override
+                    protected ClosableIterator<RowResult<Value>> delegate() {
+                        return range;
+                    }
+
+                    @Override
+                    public void close() {
+                        openRangeIterators.decrementAndGet();
+                        super.close();
+                    }
+                };
+            }
+        };
+    }
+
+    @Override
+    protected Transaction startTransaction() {
+        return new SnapshotTransaction(
+                keyValueService,
+                lockService,
+                timestampService,
+                transactionService,
+                NoOpCleaner.INSTANCE,
+                Suppliers.ofInstance(timestampService.getFreshTimestamp()),
+                ConflictDetectionManagers.fromMap(ImmutableMap.of(
+                        TEST_TABLE,
+                        ConflictHandler.RETRY_ON_WRITE_WRITE,
+                        TransactionConstants.TRANSACTION_TABLE,
+                        ConflictHandler.IGNORE_ALL)),
+                sweepStrategyManager,
+                0L,
+                ImmutableList.<LockRefreshToken>of(),
+                AtlasDbConstraintCheckingMode.NO_CONSTRAINT_CHECKING,
+                null,
+                TransactionReadSentinelBehavior.THROW_EXCEPTION,
+                false,
+                new CommitTimestampCache(SnapshotTransaction.PER_TRANSACTION_COMMIT_TIMESTAMP_CACHE_SIZE),
+                PREFETCH_PAGES);
+    }
+
+    @Test
+    public void testPrefetchedPagesAreReadInOrder() {
+        int numRows = 500;
+        Transaction t = startTransaction();
+        for (int i = 0; i < numRows; i++) {
+            put(t, String.format("row%04d", i), "col", "v" + i);
+        }
+        t.commit();
+
+        t = startTransaction();
+        List<RowResult<byte[]>> rows = BatchingVisitables.copyToList(
+                t.getRange(TEST_TABLE, RangeRequest.builder().batchHint(7).build()));
+        assertEquals(numRows, rows.size());
+        for (int i = 0; i < numRows; i++) {
+            assertEquals(String.format("row%04d", i), PtBytes.toString(rows.get(i).getRowName()));
+        }
+        assertEquals(0, openRangeIterators.get());
+    }
+
+    @Test
+    public void testStoppingEarlyClosesTheScan() {
+        Transaction t = startTransaction();
+        for (int i = 0; i < 100; i++) {
+            put(t, String.format("row%04d", i), "col", "v" + i);
+        }
+        t.commit();
+
+        t = startTransaction();
+        final List<RowResult<byte[]>> visited = Lists.newArrayList();
+        t.getRange(TEST_TABLE, RangeRequest.builder().batchHint(3).build()).batchAccept(3,
+                new AbortingVisitor<List<RowResult<byte[]>>, RuntimeException>() {
+                    @Override
+                    public boolean visit(List<RowResult<byte[]>> batch) {
+                        visited.addAll(batch);
+                        return visited.size() < 10;
+                    }
+                });
+        assertEquals("row0000", PtBytes.toString(visited.get(0).getRowName()));
+        assertEquals(0, openRangeIterators.get());
+    }
+}
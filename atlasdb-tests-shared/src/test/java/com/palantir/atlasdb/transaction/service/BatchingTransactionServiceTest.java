@@ -0,0 +1,209 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.palantir.atlasdb.keyvalue.api.Cell;
+import com.palantir.atlasdb.keyvalue.api.KeyAlreadyExistsException;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.api.TableReference;
+import com.palantir.atlasdb.keyvalue.impl.ForwardingKeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
+import com.palantir.atlasdb.transaction.impl.TransactionTableEncoding;
+import com.palantir.atlasdb.transaction.impl.TransactionTableLayout;
+import com.palantir.atlasdb.transaction.impl.TransactionTables;
+import com.palantir.timestamp.InMemoryTimestampService;
+import com.palantir.timestamp.TimestampService;
+
+public class BatchingTransactionServiceTest {
+    private static final int NUM_COMMITTERS = 20;
+
+    private final AtomicInteger putUnlessExistsCalls = new AtomicInteger();
+    private final CountDownLatch firstPutStarted = new CountDownLatch(1);
+    private final CountDownLatch releaseFirstPut = new CountDownLatch(1);
+    private KeyValueService blockingKvs;
+    private TransactionService transactionService;
+
+    @Before
+    public void setUp() {
+        final KeyValueService kvs = new InMemoryKeyValueService(true);
+        blockingKvs = new ForwardingKeyValueService() {
+            @Override
+            protected KeyValueService delegate() {
+                return kvs;
+            }
+
+            @Override
+            public void putUnlessExists(TableReference tableRef, Map<Cell, byte[]> values) {
+                if (putUnlessExistsCalls.getAndIncrement() == 0) {
+                    firstPutStarted.countDown();
+                    awaitUninterruptibly(releaseFirstPut);
+                }
+                super.putUnlessExists(tableRef, values);
+            }
+        };
+        transactionService = new BatchingTransactionService(
+                blockingKvs,
+                Suppliers.ofInstance(TransactionTableLayout.legacy()));
+    }
+
+    @Test
+    public void testGetAfterPut() {
+        releaseFirstPut.countDown();
+        transactionService.putUnlessExists(1L, 2L);
+        Assert.assertEquals(Long.valueOf(2L), transactionService.get(1L));
+        Assert.assertNull(transactionService.get(3L));
+    }
+
+    @Test
+    public void testPutUnlessExistsFailsForExistingStartTimestamp() {
+        releaseFirstPut.countDown();
+        transactionService.putUnlessExists(1L, 2L);
+        try {
+            transactionService.putUnlessExists(1L, 3L);
+            Assert.fail("Expected the second commit for the same start timestamp to fail");
+        } catch (KeyAlreadyExistsException e) {
+            // expected
+        }
+        Assert.assertEquals(Long.valueOf(2L), transactionService.get(1L));
+    }
+
+    @Test
+    public void testConcurrentCommitsShareOneWrite() throws InterruptedException {
+        ConcurrentMap<Long, Throwable> failures = commitConcurrently(0L);
+
+        Assert.assertTrue(failures.toString(), failures.isEmpty());
+        Assert.assertEquals(2, putUnlessExistsCalls.get());
+        for (long startTs = 1; startTs <= NUM_COMMITTERS; startTs++) {
+            Assert.assertEquals(Long.valueOf(startTs + 1000), transactionService.get(startTs));
+        }
+    }
+
+    @Test
+    public void testOnlyCommitterOfExistingStartTimestampFails() throws InterruptedException {
+        long existingStartTs = NUM_COMMITTERS / 2;
+        ConcurrentMap<Long, Throwable> failures = commitConcurrently(existingStartTs);
+
+        Assert.assertEquals(failures.toString(), 1, failures.size());
+        Assert.assertTrue(failures.get(existingStartTs) instanceof KeyAlreadyExistsException);
+        for (long startTs = 1; startTs <= NUM_COMMITTERS; startTs++) {
+            long expected = startTs == existingStartTs ? 0L : startTs + 1000;
+            Assert.assertEquals(Long.valueOf(expected), transactionService.get(startTs));
+        }
+    }
+
+    @Test
+    public void testBatchesAreWrittenConcurrentlyUpToTheLimit() throws InterruptedException {
+        transactionService = new BatchingTransactionService(
+                blockingKvs,
+                Suppliers.ofInstance(TransactionTableLayout.legacy()),
+                2);
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                transactionService.putUnlessExists(1L, 2L);
+            }
+        });
+        first.start();
+        firstPutStarted.await();
+
+        // The first batch is still being written, but a second one may go ahead.
+        transactionService.putUnlessExists(3L, 4L);
+        Assert.assertEquals(Long.valueOf(4L), transactionService.get(3L));
+        Assert.assertEquals(1, releaseFirstPut.getCount());
+
+        releaseFirstPut.countDown();
+        first.join();
+        Assert.assertEquals(Long.valueOf(2L), transactionService.get(1L));
+    }
+
+    @Test
+    public void testBatchingIsOptIn() {
+        KeyValueService kvs = new InMemoryKeyValueService(false);
+        TransactionTables.createTables(kvs);
+        TimestampService timestampService = new InMemoryTimestampService();
+        Assert.assertTrue(TransactionServices.createTransactionService(kvs) instanceof SimpleTransactionService);
+        Assert.assertTrue(TransactionServices.createTransactionService(
+                kvs, TransactionTableEncoding.LEGACY, timestampService) instanceof SimpleTransactionService);
+        Assert.assertTrue(TransactionServices.createTransactionService(
+                kvs, TransactionTableEncoding.LEGACY, timestampService, 2) instanceof BatchingTransactionService);
+    }
+
+    /**
+     * Holds up a first commit inside the key value service until {@link #NUM_COMMITTERS} more commits
+     * are queued behind it, then lets them all through.
+     */
+    private ConcurrentMap<Long, Throwable> commitConcurrently(final long preexistingStartTs) throws InterruptedException {
+        final ConcurrentMap<Long, Throwable> failures = Maps.newConcurrentMap();
+        Thread first = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                transactionService.putUnlessExists(preexistingStartTs, 0L);
+            }
+        });
+        first.start();
+        firstPutStarted.await();
+
+        List<Thread> committers = Lists.newArrayList();
+        for (long i = 1; i <= NUM_COMMITTERS; i++) {
+            final long startTs = i;
+            Thread committer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        transactionService.putUnlessExists(startTs, startTs + 1000);
+                    } catch (Throwable t) {
+                        failures.put(startTs, t);
+                    }
+                }
+            });
+            committer.start();
+            committers.add(committer);
+        }
+        for (Thread committer : committers) {
+            while (committer.getState() != Thread.State.BLOCKED && committer.getState() != Thread.State.WAITING) {
+                Thread.sleep(1);
+            }
+        }
+
+        releaseFirstPut.countDown();
+        first.join();
+        for (Thread committer : committers) {
+            committer.join();
+        }
+        return failures;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
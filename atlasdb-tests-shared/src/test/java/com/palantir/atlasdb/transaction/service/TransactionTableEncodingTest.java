@@ -0,0 +1,136 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.atlasdb.transaction.service;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.common.primitives.UnsignedBytes;
+import com.palantir.atlasdb.keyvalue.api.KeyValueService;
+import com.palantir.atlasdb.keyvalue.impl.InMemoryKeyValueService;
+import com.palantir.atlasdb.transaction.impl.TransactionTableEncoding;
+import com.palantir.atlasdb.transaction.impl.TransactionTableLayout;
+import com.palantir.atlasdb.transaction.impl.TransactionTables;
+import com.palantir.timestamp.InMemoryTimestampService;
+import com.palantir.timestamp.TimestampService;
+
+public class TransactionTableEncodingTest {
+    private static final ImmutableList<Long> TIMESTAMPS = ImmutableList.of(
+            0L, 1L, 127L, 128L, 255L, 256L, 1000L, 123456789L, 1L << 56, Long.MAX_VALUE);
+
+    private KeyValueService kvs;
+    private TimestampService timestampService;
+
+    @Before
+    public void setUp() {
+        kvs = new InMemoryKeyValueService(false);
+        TransactionTables.createTables(kvs);
+        timestampService = new InMemoryTimestampService();
+    }
+
+    @Test
+    public void testRowNamesRoundTrip() {
+        for (TransactionTableEncoding encoding : TransactionTableEncoding.values()) {
+            for (long ts : TIMESTAMPS) {
+                byte[] rowName = encoding.getRowName(ts);
+                Assert.assertEquals(Long.valueOf(ts), encoding.getStartTimestamp(rowName));
+                Assert.assertEquals(Long.valueOf(ts), TransactionTableEncoding.decodeStartTimestamp(rowName));
+            }
+        }
+    }
+
+    @Test
+    public void testEncodingsNeverShareRows() {
+        for (long ts : TIMESTAMPS) {
+            Assert.assertNull(TransactionTableEncoding.BUCKETED.getStartTimestamp(
+                    TransactionTableEncoding.LEGACY.getRowName(ts)));
+            Assert.assertNull(TransactionTableEncoding.LEGACY.getStartTimestamp(
+                    TransactionTableEncoding.BUCKETED.getRowName(ts)));
+        }
+    }
+
+    @Test
+    public void testConsecutiveTimestampsAreSpreadOverBuckets() {
+        Set<Byte> firstBytes = Sets.newHashSet();
+        for (long ts = 1000; ts < 1000 + TransactionTableEncoding.NUM_BUCKETS; ts++) {
+            firstBytes.add(TransactionTableEncoding.BUCKETED.getRowName(ts)[0]);
+        }
+        Assert.assertEquals(TransactionTableEncoding.NUM_BUCKETS, firstBytes.size());
+    }
+
+    @Test
+    public void testBucketedRowsAreOrderedWithinABucket() {
+        long ts = 1000;
+        long sameBucketLater = ts + TransactionTableEncoding.NUM_BUCKETS;
+        Assert.assertTrue(UnsignedBytes.lexicographicalComparator().compare(
+                TransactionTableEncoding.BUCKETED.getRowName(ts),
+                TransactionTableEncoding.BUCKETED.getRowName(sameBucketLater)) < 0);
+    }
+
+    @Test
+    public void testLegacyByDefault() {
+        TransactionService transactionService = TransactionServices.createTransactionService(kvs);
+        transactionService.putUnlessExists(10L, 11L);
+        Assert.assertFalse(TransactionTableLayout.load(kvs).isBucketedEncodingEnabled());
+        Assert.assertEquals(Long.valueOf(11L), new TransactionKVSWrapper(kvs).get(10L));
+    }
+
+    @Test
+    public void testSwitchingKeepsOlderTransactionsReadable() {
+        TransactionServices.createTransactionService(kvs).putUnlessExists(1L, 2L);
+        long switchedAt = timestampService.getFreshTimestamp() + 1;
+
+        TransactionService bucketed = TransactionServices.createTransactionService(
+                kvs,
+                TransactionTableEncoding.BUCKETED,
+                timestampService);
+        Assert.assertEquals(Optional.of(switchedAt), TransactionTableLayout.load(kvs).getBucketedFromTimestamp());
+        bucketed.putUnlessExists(switchedAt + 5, switchedAt + 6);
+
+        // Clients that are not configured for the bucketed encoding still follow the marker.
+        TransactionService legacyConfigured = TransactionServices.createTransactionService(
+                kvs,
+                TransactionTableEncoding.LEGACY,
+                timestampService);
+        for (TransactionService service : ImmutableList.of(
+                bucketed, legacyConfigured, TransactionServices.createTransactionService(kvs))) {
+            Assert.assertEquals(Long.valueOf(2L), service.get(1L));
+            Map<Long, Long> commitTimestamps = service.get(ImmutableList.of(1L, switchedAt + 5, switchedAt + 7));
+            Assert.assertEquals(2, commitTimestamps.size());
+            Assert.assertEquals(Long.valueOf(2L), commitTimestamps.get(1L));
+            Assert.assertEquals(Long.valueOf(switchedAt + 6), commitTimestamps.get(switchedAt + 5));
+        }
+        Assert.assertEquals(Long.valueOf(switchedAt + 6), new TransactionKVSWrapper(kvs).get(switchedAt + 5));
+        Assert.assertNull(new TransactionKVSWrapper(kvs, TransactionTableLayout.legacy()).get(switchedAt + 5));
+    }
+
+    @Test
+    public void testSwitchingTwiceKeepsTheFirstMarker() {
+        TransactionTableLayout first = TransactionTableLayout.enableBucketedEncoding(kvs, 100L);
+        TransactionTableLayout second = TransactionTableLayout.enableBucketedEncoding(kvs, 200L);
+        Assert.assertEquals(Optional.of(100L), first.getBucketedFromTimestamp());
+        Assert.assertEquals(Optional.of(100L), second.getBucketedFromTimestamp());
+        Assert.assertEquals(TransactionTableEncoding.LEGACY, second.getEncoding(99L));
+        Assert.assertEquals(TransactionTableEncoding.BUCKETED, second.getEncoding(100L));
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.palantir.paxos;
 
+import java.util.Map;
+
 import javax.ws.rs.Consumes;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
@@ -53,6 +55,34 @@ public interface PaxosAcceptor {
     @Consumes(MediaType.APPLICATION_JSON)
     public BooleanPaxosResponse accept(@PathParam("seq") long seq, PaxosProposal proposal);
 
+    /**
+     * Prepares for proposals in many instances of paxos at once. This is equivalent to calling
+     * {@link #prepare} for each sequence number, but takes a single round trip and may share the
+     * cost of persisting the promises.
+     *
+     * @param pids the proposal to prepare for in each instance, keyed by sequence number
+     * @return the promise made for each sequence number
+     */
+    @POST
+    @Path("prepare-batch")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public PaxosBatchResponse<PaxosPromise> prepareBatch(Map<Long, PaxosProposalId> pids);
+
+    /**
+     * Decides whether to accept or reject the given proposals in many instances of paxos at once.
+     * This is equivalent to calling {@link #accept} for each sequence number, but takes a single
+     * round trip and may share the cost of persisting the accepted state.
+     *
+     * @param proposals the proposal in question, keyed by sequence number
+     * @return whether each proposal was accepted or rejected
+     */
+    @POST
+    @Path("accept-batch")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public PaxosBatchResponse<BooleanPaxosResponse> acceptBatch(Map<Long, PaxosProposal> proposals);
+
     /**
      * Gets the sequence number of the acceptor's most recent known round.
      *
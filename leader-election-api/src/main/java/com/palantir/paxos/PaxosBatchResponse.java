@@ -0,0 +1,55 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.paxos;
+
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableMap;
+import com.palantir.common.annotation.Immutable;
+
+/**
+ * The responses of one acceptor to a batch of paxos requests, keyed by sequence number.
+ * The batch as a whole is only successful if every request in it was acknowledged.
+ */
+@Immutable
+public class PaxosBatchResponse<RESPONSE extends PaxosResponse> implements PaxosResponse {
+    private static final long serialVersionUID = 1L;
+
+    final ImmutableMap<Long, RESPONSE> responses;
+
+    @JsonCreator
+    public PaxosBatchResponse(@JsonProperty("responses") Map<Long, RESPONSE> responses) {
+        this.responses = ImmutableMap.copyOf(responses);
+    }
+
+    public Map<Long, RESPONSE> getResponses() {
+        return responses;
+    }
+
+    @Override
+    @JsonIgnore
+    public boolean isSuccessful() {
+        for (RESPONSE response : responses.values()) {
+            if (!response.isSuccessful()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
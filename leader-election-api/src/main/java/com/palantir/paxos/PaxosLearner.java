@@ -16,6 +16,7 @@
 package com.palantir.paxos;
 
 import java.util.Collection;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -43,6 +44,16 @@ public interface PaxosLearner {
     @Consumes(MediaType.APPLICATION_JSON)
     public void learn(@PathParam("seq") long seq, PaxosValue val);
 
+    /**
+     * Learn the given values for many rounds at once.
+     *
+     * @param values the value learned for each round, keyed by round
+     */
+    @POST
+    @Path("learn-batch")
+    @Consumes(MediaType.APPLICATION_JSON)
+    public void learnBatch(Map<Long, PaxosValue> values);
+
     /**
      * @return learned value or null if non-exists
      */
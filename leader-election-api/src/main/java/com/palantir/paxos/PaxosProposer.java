@@ -15,6 +15,8 @@
  */
 package com.palantir.paxos;
 
+import java.util.Map;
+
 import javax.annotation.Nullable;
 
 public interface PaxosProposer {
@@ -37,6 +39,19 @@ public interface PaxosProposer {
     public byte[] propose(long seq, @Nullable byte[] proposalValue)
             throws PaxosRoundFailureException;
 
+    /**
+     * Reaches consensus with peers on values for many instances of paxos at once. Each phase of
+     * paxos takes a single round trip to each acceptor for the whole batch, but every instance
+     * is decided independently, exactly as if it had been passed to {@link #propose}.
+     *
+     * @param proposalValues default value to propose for each instance, keyed by sequence number
+     * @return the value accepted by the quorum for each instance that reached consensus. Instances
+     *         whose round failed are missing from the result.
+     * @throws PaxosRoundFailureException if no instance reached consensus
+     */
+    public Map<Long, byte[]> proposeBatch(Map<Long, byte[]> proposalValues)
+            throws PaxosRoundFailureException;
+
     /**
      * @return the number of acceptors that need to support a successful request
      */
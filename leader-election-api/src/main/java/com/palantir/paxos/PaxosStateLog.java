@@ -16,6 +16,7 @@
 package com.palantir.paxos;
 
 import java.io.IOException;
+import java.util.Map;
 
 import com.palantir.common.persist.Persistable;
 
@@ -33,6 +34,14 @@ public interface PaxosStateLog<V extends Persistable & Versionable> {
      */
     public void writeRound(long seq, V round);
 
+    /**
+     * Persists the given rounds to disk. This is equivalent to writing each round with
+     * {@link #writeRound}, but implementations may share the cost of making them durable.
+     *
+     * @param rounds the rounds in question, keyed by sequence number
+     */
+    public void writeRounds(Map<Long, V> rounds);
+
     /**
      * Retrieves the round corresponding to the given sequence from disk
      *
@@ -16,11 +16,14 @@
 package com.palantir.paxos;
 
 import java.io.IOException;
+import java.util.Map;
 import java.util.concurrent.ConcurrentSkipListMap;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Maps;
+
 public class PaxosAcceptorImpl implements PaxosAcceptor {
     private static final Logger logger = LoggerFactory.getLogger(PaxosAcceptorImpl.class);
 
@@ -30,7 +33,7 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
      * @return a new acceptor
      */
     public static PaxosAcceptor newAcceptor(String logDir) {
-        PaxosStateLog<PaxosAcceptorState> log = new PaxosStateLogImpl<PaxosAcceptorState>(logDir);
+        PaxosStateLog<PaxosAcceptorState> log = new SegmentedPaxosStateLog<PaxosAcceptorState>(logDir);
         return new PaxosAcceptorImpl(
                 new ConcurrentSkipListMap<Long, PaxosAcceptorState>(),
                 log,
@@ -51,6 +54,29 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
 
     @Override
     public PaxosPromise prepare(long seq, PaxosProposalId pid) {
+        Map<Long, PaxosAcceptorState> newStates = Maps.newHashMapWithExpectedSize(1);
+        PaxosPromise promise = prepareWithoutWriting(seq, pid, newStates);
+        writeStates(newStates);
+        return promise;
+    }
+
+    @Override
+    public PaxosBatchResponse<PaxosPromise> prepareBatch(Map<Long, PaxosProposalId> pids) {
+        Map<Long, PaxosPromise> promises = Maps.newHashMapWithExpectedSize(pids.size());
+        Map<Long, PaxosAcceptorState> newStates = Maps.newHashMapWithExpectedSize(pids.size());
+        for (Map.Entry<Long, PaxosProposalId> entry : pids.entrySet()) {
+            promises.put(entry.getKey(), prepareWithoutWriting(entry.getKey(), entry.getValue(), newStates));
+        }
+        writeStates(newStates);
+        return new PaxosBatchResponse<PaxosPromise>(promises);
+    }
+
+    /**
+     * Prepares for the proposal in memory; the caller must write out the new states added to
+     * newStates before handing out the promise.
+     */
+    private PaxosPromise prepareWithoutWriting(long seq, PaxosProposalId pid,
+                                               Map<Long, PaxosAcceptorState> newStates) {
         try {
             checkLogIfNeeded(seq);
         } catch (Exception e) {
@@ -80,7 +106,7 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
                     : PaxosAcceptorState.newState(pid);
             if ((oldState == null && state.putIfAbsent(seq, newState) == null)
                     || (oldState != null && state.replace(seq, oldState, newState))) {
-                log.writeRound(seq, newState);
+                newStates.put(seq, newState);
                 return new PaxosPromise(
                         newState.lastPromisedId,
                         newState.lastAcceptedId,
@@ -91,6 +117,29 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
 
     @Override
     public BooleanPaxosResponse accept(long seq, PaxosProposal proposal) {
+        Map<Long, PaxosAcceptorState> newStates = Maps.newHashMapWithExpectedSize(1);
+        BooleanPaxosResponse response = acceptWithoutWriting(seq, proposal, newStates);
+        writeStates(newStates);
+        return response;
+    }
+
+    @Override
+    public PaxosBatchResponse<BooleanPaxosResponse> acceptBatch(Map<Long, PaxosProposal> proposals) {
+        Map<Long, BooleanPaxosResponse> responses = Maps.newHashMapWithExpectedSize(proposals.size());
+        Map<Long, PaxosAcceptorState> newStates = Maps.newHashMapWithExpectedSize(proposals.size());
+        for (Map.Entry<Long, PaxosProposal> entry : proposals.entrySet()) {
+            responses.put(entry.getKey(), acceptWithoutWriting(entry.getKey(), entry.getValue(), newStates));
+        }
+        writeStates(newStates);
+        return new PaxosBatchResponse<BooleanPaxosResponse>(responses);
+    }
+
+    /**
+     * Accepts or rejects the proposal in memory; the caller must write out the new states added
+     * to newStates before responding.
+     */
+    private BooleanPaxosResponse acceptWithoutWriting(long seq, PaxosProposal proposal,
+                                                      Map<Long, PaxosAcceptorState> newStates) {
         try {
             checkLogIfNeeded(seq);
         } catch (Exception e) {
@@ -112,7 +161,7 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
                     : PaxosAcceptorState.newState(proposal.id);
             if ((oldState == null && state.putIfAbsent(seq, newState) == null)
                     || (oldState != null && state.replace(seq, oldState, newState))) {
-                log.writeRound(seq, newState);
+                newStates.put(seq, newState);
                 return new BooleanPaxosResponse(true);
             }
         }
@@ -127,6 +176,12 @@ public class PaxosAcceptorImpl implements PaxosAcceptor {
         }
     }
 
+    private void writeStates(Map<Long, PaxosAcceptorState> newStates) {
+        if (!newStates.isEmpty()) {
+            log.writeRounds(newStates);
+        }
+    }
+
     private void checkLogIfNeeded(long seq) throws TruncatedStateLogException, IOException {
         if (state.containsKey(seq)) {
             return;
@@ -18,6 +18,7 @@ package com.palantir.paxos;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 
@@ -34,7 +35,7 @@ public class PaxosLearnerImpl implements PaxosLearner {
      * @return a new learner
      */
     public static PaxosLearner newLearner(String logDir) {
-        PaxosStateLogImpl<PaxosValue> log = new PaxosStateLogImpl<PaxosValue>(logDir);
+        PaxosStateLog<PaxosValue> log = new SegmentedPaxosStateLog<PaxosValue>(logDir);
         ConcurrentSkipListMap<Long, PaxosValue> state = new ConcurrentSkipListMap<Long, PaxosValue>();
 
         byte[] greatestValidValue = PaxosStateLogs.getGreatestValidLogEntry(log);
@@ -61,6 +62,12 @@ public class PaxosLearnerImpl implements PaxosLearner {
         log.writeRound(seq, val);
     }
 
+    @Override
+    public void learnBatch(Map<Long, PaxosValue> values) {
+        state.putAll(values);
+        log.writeRounds(values);
+    }
+
     @Override
     public PaxosValue getLearnedValue(long seq) {
         try {
@@ -17,6 +17,7 @@ package com.palantir.paxos;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
@@ -29,6 +30,8 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 /**
  * Implementation of a paxos proposer than can be a designated proposer (leader) and designated
@@ -116,6 +119,52 @@ public class PaxosProposerImpl implements PaxosProposer {
         return finalValue.getData();
     }
 
+    @Override
+    public Map<Long, byte[]> proposeBatch(Map<Long, byte[]> proposalValues) throws PaxosRoundFailureException {
+        final PaxosProposalId proposalID = new PaxosProposalId(proposalNum.incrementAndGet(), uuid);
+        Map<Long, PaxosValue> toPropose = Maps.newHashMapWithExpectedSize(proposalValues.size());
+        for (Map.Entry<Long, byte[]> entry : proposalValues.entrySet()) {
+            toPropose.put(entry.getKey(), new PaxosValue(uuid, entry.getKey(), entry.getValue()));
+        }
+
+        // paxos phase one (prepare and promise)
+        Map<Long, PaxosValue> valuesToAccept = batchPhaseOne(proposalID, toPropose);
+
+        // paxos phase two (accept request and accepted)
+        final Map<Long, PaxosValue> finalValues = batchPhaseTwo(proposalID, valuesToAccept);
+        if (finalValues.isEmpty()) {
+            throw new PaxosRoundFailureException("failed to acquire quorum for any sequence in the batch");
+        }
+
+        // broadcast learned values
+        for (final PaxosLearner learner : allLearners) {
+            // local learner is forced to update later
+            if (localLearner == learner) {
+                continue;
+            }
+
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        learner.learnBatch(finalValues);
+                    } catch (Throwable e) {
+                        log.warn("failed to teach learner", e);
+                    }
+                }
+            });
+        }
+
+        // force local learner to update
+        localLearner.learnBatch(finalValues);
+
+        Map<Long, byte[]> finalData = Maps.newHashMapWithExpectedSize(finalValues.size());
+        for (Map.Entry<Long, PaxosValue> entry : finalValues.entrySet()) {
+            finalData.put(entry.getKey(), entry.getValue().getData());
+        }
+        return finalData;
+    }
+
     /**
      * Executes phase one of paxos (see
      * http://en.wikipedia.org/wiki/Paxos_(computer_science)#Basic_Paxos)
@@ -144,20 +193,51 @@ public class PaxosProposerImpl implements PaxosProposer {
 
         if (!PaxosQuorumChecker.hasQuorum(receivedPromises, quorumSize)) {
             // update proposal number on failure
-            for (PaxosPromise promise : receivedPromises) {
-                while (true) {
-                    long curNum = proposalNum.get();
-                    if (promise.promisedId.number <= curNum) {
-                        break;
-                    }
-                    if (proposalNum.compareAndSet(curNum, promise.promisedId.number)) {
-                        break;
-                    }
-                }
-            }
+            updateProposalNumber(receivedPromises);
             throw new PaxosRoundFailureException("failed to acquire quorum in paxos phase one");
         }
 
+        return getValueToAccept(receivedPromises, value);
+    }
+
+    /**
+     * Executes phase one of paxos for many sequence numbers at once, with a single prepare
+     * request to each acceptor.
+     *
+     * @return the value to accept for each sequence number whose prepare reached a quorum
+     */
+    private Map<Long, PaxosValue> batchPhaseOne(final PaxosProposalId pid, Map<Long, PaxosValue> values) {
+        final Map<Long, PaxosProposalId> pids = Maps.newHashMapWithExpectedSize(values.size());
+        for (Long seq : values.keySet()) {
+            pids.put(seq, pid);
+        }
+        List<PaxosBatchResponse<PaxosPromise>> receivedResponses =
+                PaxosQuorumChecker.<PaxosAcceptor, PaxosBatchResponse<PaxosPromise>> collectQuorumResponses(
+                        allAcceptors,
+                        new Function<PaxosAcceptor, PaxosBatchResponse<PaxosPromise>>() {
+                            @Override
+                            @Nullable
+                            public PaxosBatchResponse<PaxosPromise> apply(@Nullable PaxosAcceptor acceptor) {
+                                return acceptor.prepareBatch(pids);
+                            }
+                        },
+                        quorumSize,
+                        executor,
+                        PaxosQuorumChecker.DEFAULT_REMOTE_REQUESTS_TIMEOUT_IN_SECONDS);
+
+        Map<Long, PaxosValue> valuesToAccept = Maps.newHashMapWithExpectedSize(values.size());
+        for (Map.Entry<Long, PaxosValue> entry : values.entrySet()) {
+            List<PaxosPromise> receivedPromises = getResponses(receivedResponses, entry.getKey());
+            if (PaxosQuorumChecker.hasQuorum(receivedPromises, quorumSize)) {
+                valuesToAccept.put(entry.getKey(), getValueToAccept(receivedPromises, entry.getValue()));
+            } else {
+                updateProposalNumber(receivedPromises);
+            }
+        }
+        return valuesToAccept;
+    }
+
+    private PaxosValue getValueToAccept(List<PaxosPromise> receivedPromises, PaxosValue value) {
         PaxosPromise greatestPromise = Collections.max(receivedPromises);
         if (greatestPromise.lastAcceptedValue != null) {
             return greatestPromise.lastAcceptedValue;
@@ -166,6 +246,20 @@ public class PaxosProposerImpl implements PaxosProposer {
         return value;
     }
 
+    private void updateProposalNumber(List<PaxosPromise> receivedPromises) {
+        for (PaxosPromise promise : receivedPromises) {
+            while (true) {
+                long curNum = proposalNum.get();
+                if (promise.promisedId.number <= curNum) {
+                    break;
+                }
+                if (proposalNum.compareAndSet(curNum, promise.promisedId.number)) {
+                    break;
+                }
+            }
+        }
+    }
+
     /**
      * Executes phase two of paxos (see
      * http://en.wikipedia.org/wiki/Paxos_(computer_science)#Basic_Paxos)
@@ -195,6 +289,55 @@ public class PaxosProposerImpl implements PaxosProposer {
         }
     }
 
+    /**
+     * Executes phase two of paxos for many sequence numbers at once, with a single accept
+     * request to each acceptor.
+     *
+     * @return the values accepted by a quorum, keyed by sequence number
+     */
+    private Map<Long, PaxosValue> batchPhaseTwo(PaxosProposalId pid, Map<Long, PaxosValue> values) {
+        if (values.isEmpty()) {
+            return values;
+        }
+        final Map<Long, PaxosProposal> proposals = Maps.newHashMapWithExpectedSize(values.size());
+        for (Map.Entry<Long, PaxosValue> entry : values.entrySet()) {
+            proposals.put(entry.getKey(), new PaxosProposal(pid, entry.getValue()));
+        }
+        List<PaxosBatchResponse<BooleanPaxosResponse>> receivedResponses =
+                PaxosQuorumChecker.<PaxosAcceptor, PaxosBatchResponse<BooleanPaxosResponse>> collectQuorumResponses(
+                        allAcceptors,
+                        new Function<PaxosAcceptor, PaxosBatchResponse<BooleanPaxosResponse>>() {
+                            @Override
+                            @Nullable
+                            public PaxosBatchResponse<BooleanPaxosResponse> apply(@Nullable PaxosAcceptor acceptor) {
+                                return acceptor.acceptBatch(proposals);
+                            }
+                        },
+                        quorumSize,
+                        executor,
+                        PaxosQuorumChecker.DEFAULT_REMOTE_REQUESTS_TIMEOUT_IN_SECONDS);
+
+        Map<Long, PaxosValue> acceptedValues = Maps.newHashMapWithExpectedSize(values.size());
+        for (Map.Entry<Long, PaxosValue> entry : values.entrySet()) {
+            if (PaxosQuorumChecker.hasQuorum(getResponses(receivedResponses, entry.getKey()), quorumSize)) {
+                acceptedValues.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return acceptedValues;
+    }
+
+    private static <RESPONSE extends PaxosResponse> List<RESPONSE> getResponses(
+            List<PaxosBatchResponse<RESPONSE>> batchResponses, long seq) {
+        List<RESPONSE> responses = Lists.newArrayListWithCapacity(batchResponses.size());
+        for (PaxosBatchResponse<RESPONSE> batchResponse : batchResponses) {
+            RESPONSE response = batchResponse.getResponses().get(seq);
+            if (response != null) {
+                responses.add(response);
+            }
+        }
+        return responses;
+    }
+
     @Override
     public int getQuorumSize() {
         return quorumSize;
@@ -26,6 +26,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -118,6 +119,13 @@ public class PaxosStateLogImpl<V extends Persistable & Versionable> implements P
         }
     }
 
+    @Override
+    public void writeRounds(Map<Long, V> rounds) {
+        for (Map.Entry<Long, V> round : rounds.entrySet()) {
+            writeRound(round.getKey(), round.getValue());
+        }
+    }
+
     private void writeRoundInternal(long seq, V round) {
         String name = getFilenameFromSeq(seq);
         File tmpFile = new File(path, name + TMP_FILE_SUFFIX);
@@ -0,0 +1,598 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.paxos;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.palantir.common.base.Throwables;
+import com.palantir.common.persist.Persistable;
+
+/**
+ * A {@link PaxosStateLog} that appends rounds to a few large segment files instead of writing
+ * one file per round.
+ * <p>
+ * Each record is framed as {@code [int length][int crc32c][byte type][long seq][long version][payload]},
+ * where the length and checksum cover everything after the checksum. The location of the latest
+ * record for every sequence number is kept in memory, so reads are a single positional read and
+ * the least and greatest entries never touch the file system. The index is rebuilt by replaying
+ * the segments on startup; a torn record at the end of the last segment is cut off.
+ * <p>
+ * Writers append under a short lock and then wait for an fsync that covers their record. Only one
+ * fsync runs at a time and it covers everything appended before it started, so concurrent writers
+ * share fsyncs instead of paying for one each.
+ * <p>
+ * Truncation is itself logged and removes rounds from the index right away. Whole segments are
+ * deleted once none of the rounds they hold are live.
+ * <p>
+ * Segments are accessed through {@link RandomAccessFile} rather than a {@code FileChannel}
+ * because interrupting a thread in the middle of channel I/O closes the channel for everyone.
+ * <p>
+ * A directory written by {@link PaxosStateLogImpl} is migrated into segments the first time it is
+ * opened, and the per-round files are then deleted.
+ */
+public class SegmentedPaxosStateLog<V extends Persistable & Versionable> implements PaxosStateLog<V>, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SegmentedPaxosStateLog.class);
+
+    static final long DEFAULT_SEGMENT_SIZE_BYTES = 16 * 1024 * 1024;
+
+    private static final String SEGMENT_FILE_SUFFIX = ".segment";
+    private static final String LEGACY_TMP_FILE_SUFFIX = ".tmp";
+
+    private static final byte ROUND_RECORD = 1;
+    private static final byte MARKER_RECORD = 2;
+    private static final byte TRUNCATE_RECORD = 3;
+
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final int BODY_HEADER_SIZE = 17;
+    private static final long UNKNOWN_VERSION = Long.MIN_VALUE;
+
+    private static final HashFunction CRC32C = Hashing.crc32c();
+
+    private final File dir;
+    private final long segmentSizeBytes;
+
+    /** Where the latest record of each live sequence number is. */
+    private final ConcurrentSkipListMap<Long, RecordLocation> index = new ConcurrentSkipListMap<Long, RecordLocation>();
+    private final NavigableMap<Long, Segment> segments = new ConcurrentSkipListMap<Long, Segment>();
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    @GuardedBy("appendLock") private long truncatedThrough = PaxosAcceptor.NO_LOG_ENTRY - 1;
+    private volatile Segment activeSegment;
+    /** Total bytes ever appended by this instance, used to tell whether an fsync covers a record. */
+    private volatile long appendedBytes = 0;
+    @GuardedBy("syncLock") private long durableBytes = 0;
+
+    public SegmentedPaxosStateLog(String path) {
+        this(path, DEFAULT_SEGMENT_SIZE_BYTES);
+    }
+
+    SegmentedPaxosStateLog(String path, long segmentSizeBytes) {
+        this.dir = new File(path);
+        this.segmentSizeBytes = segmentSizeBytes;
+        try {
+            FileUtils.forceMkdir(dir);
+            recover();
+            migrateLegacyRounds();
+            if (index.isEmpty() && truncatedThrough < PaxosAcceptor.NO_LOG_ENTRY) {
+                // As in PaxosStateLogImpl, a brand new log gets a lowest entry so #getLeastLogEntry
+                // returns the right thing and we never start ignoring seq 0 after a restart.
+                appendAndSync(MARKER_RECORD, PaxosAcceptor.NO_LOG_ENTRY, UNKNOWN_VERSION, new byte[0]);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("IO problem related to the path " + dir.getAbsolutePath(), e);
+        }
+    }
+
+    @Override
+    public void writeRound(long seq, V round) {
+        byte[] bytes = round.persistToBytes();
+        try {
+            appendAndSync(ROUND_RECORD, seq, round.getVersion(), bytes);
+        } catch (IOException e) {
+            log.error("problem writing paxos state", e);
+            throw Throwables.throwUncheckedException(e);
+        }
+    }
+
+    @Override
+    public void writeRounds(Map<Long, V> rounds) {
+        try {
+            long end;
+            appendLock.lock();
+            try {
+                for (Map.Entry<Long, V> round : rounds.entrySet()) {
+                    appendRoundIfNotStale(round.getKey(), round.getValue().getVersion(),
+                            round.getValue().persistToBytes());
+                }
+                end = appendedBytes;
+            } finally {
+                appendLock.unlock();
+            }
+            sync(end);
+        } catch (IOException e) {
+            log.error("problem writing paxos state", e);
+            throw Throwables.throwUncheckedException(e);
+        }
+    }
+
+    @Override
+    public byte[] readRound(long seq) throws IOException {
+        RecordLocation location = index.get(seq);
+        if (location == null || location.type != ROUND_RECORD) {
+            return null;
+        }
+        byte[] record = location.segment.read(location.offset, location.length);
+        if (record == null) {
+            // The segment was deleted by a concurrent truncation.
+            return null;
+        }
+        byte[] body = checkAndGetBody(record);
+        if (body == null) {
+            throw new CorruptLogFileException();
+        }
+        return Arrays.copyOfRange(body, BODY_HEADER_SIZE, body.length);
+    }
+
+    @Override
+    public long getLeastLogEntry() {
+        Map.Entry<Long, RecordLocation> least = index.firstEntry();
+        return least == null ? PaxosAcceptor.NO_LOG_ENTRY : least.getKey();
+    }
+
+    @Override
+    public long getGreatestLogEntry() {
+        Map.Entry<Long, RecordLocation> greatest = index.lastEntry();
+        return greatest == null ? PaxosAcceptor.NO_LOG_ENTRY : greatest.getKey();
+    }
+
+    @Override
+    public void truncate(long toDeleteInclusive) {
+        List<Segment> deadSegments;
+        appendLock.lock();
+        try {
+            long greatestLogEntry = getGreatestLogEntry();
+            if (greatestLogEntry >= 0) {
+                // We never want to remove our most recent entry
+                toDeleteInclusive = Math.min(greatestLogEntry - 1, toDeleteInclusive);
+            }
+            if (toDeleteInclusive <= truncatedThrough) {
+                return;
+            }
+            // The truncation is always recorded in the active segment, so it outlives every
+            // segment holding rounds it removed.
+            append(TRUNCATE_RECORD, toDeleteInclusive, UNKNOWN_VERSION, new byte[0]);
+            applyTruncation(toDeleteInclusive);
+            deadSegments = removeDeadSegments();
+        } catch (IOException e) {
+            log.error("problem truncating paxos state", e);
+            throw Throwables.throwUncheckedException(e);
+        } finally {
+            appendLock.unlock();
+        }
+
+        try {
+            sync(appendedBytes);
+        } catch (IOException e) {
+            log.error("problem truncating paxos state", e);
+            throw Throwables.throwUncheckedException(e);
+        }
+        for (Segment segment : deadSegments) {
+            segment.close();
+            if (!segment.file.delete()) {
+                log.warn("failed to delete log segment {}", segment.file.getAbsolutePath());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        appendLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                segment.close();
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void appendAndSync(byte type, long seq, long version, byte[] payload) throws IOException {
+        long end;
+        appendLock.lock();
+        try {
+            if (type == ROUND_RECORD) {
+                appendRoundIfNotStale(seq, version, payload);
+            } else {
+                append(type, seq, version, payload);
+            }
+            end = appendedBytes;
+        } finally {
+            appendLock.unlock();
+        }
+        sync(end);
+    }
+
+    @GuardedBy("appendLock")
+    private void appendRoundIfNotStale(long seq, long version, byte[] payload) throws IOException {
+        // reject old state
+        RecordLocation latest = index.get(seq);
+        if (latest != null && version < latest.version) {
+            return;
+        }
+        append(ROUND_RECORD, seq, version, payload);
+    }
+
+    /**
+     * @return the value of {@link #appendedBytes} once the record is written
+     */
+    @GuardedBy("appendLock")
+    private long append(byte type, long seq, long version, byte[] payload) throws IOException {
+        byte[] record = encode(type, seq, version, payload);
+        Segment segment = activeSegment;
+        if (segment == null || (segment.size > 0 && segment.size + record.length > segmentSizeBytes)) {
+            segment = rollSegment();
+        }
+        long offset = segment.size;
+        int length = record.length;
+        segment.write(offset, record);
+        segment.size += length;
+        if (type != TRUNCATE_RECORD) {
+            index.put(seq, new RecordLocation(segment, offset, length, type, version));
+        }
+        appendedBytes += length;
+        return appendedBytes;
+    }
+
+    /**
+     * Blocks until at least the first {@code position} bytes appended by this instance are durable.
+     */
+    private void sync(long position) throws IOException {
+        syncLock.lock();
+        try {
+            if (durableBytes >= position) {
+                // Someone else's fsync already covered our record.
+                return;
+            }
+            // Read the target before the segment: a roll forces the old segment before it
+            // publishes the new one, so everything up to the target is either in this segment
+            // or already durable.
+            long target = appendedBytes;
+            activeSegment.sync();
+            durableBytes = target;
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    @GuardedBy("appendLock")
+    private Segment rollSegment() throws IOException {
+        Segment oldSegment = activeSegment;
+        long id = 0;
+        if (oldSegment != null) {
+            oldSegment.sync();
+            id = oldSegment.id + 1;
+        } else if (!segments.isEmpty()) {
+            id = segments.lastKey() + 1;
+        }
+        Segment segment = openSegment(id, new File(dir, getSegmentFileName(id)));
+        segments.put(id, segment);
+        activeSegment = segment;
+        return segment;
+    }
+
+    /**
+     * Removes every round up to and including the given sequence number from the index.
+     */
+    @GuardedBy("appendLock")
+    private void applyTruncation(long toDeleteInclusive) {
+        truncatedThrough = Math.max(truncatedThrough, toDeleteInclusive);
+        index.headMap(toDeleteInclusive, true).clear();
+    }
+
+    @GuardedBy("appendLock")
+    private List<Segment> removeDeadSegments() {
+        Set<Segment> liveSegments = Sets.newIdentityHashSet();
+        for (RecordLocation location : index.values()) {
+            liveSegments.add(location.segment);
+        }
+        List<Segment> deadSegments = Lists.newArrayList();
+        for (Iterator<Segment> it = segments.values().iterator(); it.hasNext(); ) {
+            Segment segment = it.next();
+            if (segment != activeSegment && !liveSegments.contains(segment)) {
+                it.remove();
+                deadSegments.add(segment);
+            }
+        }
+        return deadSegments;
+    }
+
+    /**
+     * Rebuilds the index from the segments on disk.
+     */
+    private void recover() throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list " + dir.getAbsolutePath());
+        }
+        for (File file : files) {
+            Long id = getSegmentIdFromFilename(file);
+            if (id != null) {
+                segments.put(id, openSegment(id, file));
+            }
+        }
+        appendLock.lock();
+        try {
+            for (Segment segment : segments.values()) {
+                replaySegment(segment, segment.id == segments.lastKey());
+                activeSegment = segment;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @GuardedBy("appendLock")
+    private void replaySegment(Segment segment, boolean isLastSegment) throws IOException {
+        long fileSize = segment.length();
+        long offset = 0;
+        while (offset < fileSize) {
+            byte[] body = null;
+            int length = 0;
+            if (fileSize - offset >= FRAME_HEADER_SIZE) {
+                int bodyLength = ByteBuffer.wrap(segment.read(offset, FRAME_HEADER_SIZE)).getInt();
+                if (bodyLength >= BODY_HEADER_SIZE && bodyLength <= fileSize - offset - FRAME_HEADER_SIZE) {
+                    length = FRAME_HEADER_SIZE + bodyLength;
+                    body = checkAndGetBody(segment.read(offset, length));
+                }
+            }
+            if (body == null) {
+                if (isLastSegment) {
+                    log.warn("Discarding {} bytes of torn or corrupt paxos log at the end of {}",
+                            fileSize - offset, segment.file.getAbsolutePath());
+                    segment.setLength(offset);
+                    segment.sync();
+                } else {
+                    log.error("Corrupt paxos log record at offset {} of {}; ignoring the rest of the segment",
+                            offset, segment.file.getAbsolutePath());
+                }
+                break;
+            }
+
+            ByteBuffer bodyBuffer = ByteBuffer.wrap(body);
+            byte type = bodyBuffer.get();
+            long seq = bodyBuffer.getLong();
+            long version = bodyBuffer.getLong();
+            if (type == TRUNCATE_RECORD) {
+                applyTruncation(seq);
+            } else {
+                index.put(seq, new RecordLocation(segment, offset, length, type, version));
+            }
+            offset += length;
+        }
+        segment.size = offset;
+    }
+
+    /**
+     * Copies the rounds of a directory written by {@link PaxosStateLogImpl} into segments and
+     * then deletes the per-round files.
+     */
+    private void migrateLegacyRounds() throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Cannot list " + dir.getAbsolutePath());
+        }
+        NavigableMap<Long, File> legacyFiles = new ConcurrentSkipListMap<Long, File>();
+        List<File> legacyTmpFiles = Lists.newArrayList();
+        for (File file : files) {
+            Long seq = getLegacySeqFromFilename(file);
+            if (seq != null) {
+                legacyFiles.put(seq, file);
+            } else if (file.getName().endsWith(LEGACY_TMP_FILE_SUFFIX)) {
+                legacyTmpFiles.add(file);
+            }
+        }
+        if (legacyFiles.isEmpty()) {
+            return;
+        }
+
+        log.info("Migrating {} paxos rounds in {} to a segmented log", legacyFiles.size(), dir.getAbsolutePath());
+        PaxosStateLogImpl<V> legacyLog = new PaxosStateLogImpl<V>(dir.getPath());
+        appendLock.lock();
+        try {
+            for (Map.Entry<Long, File> entry : legacyFiles.entrySet()) {
+                long seq = entry.getKey();
+                if (entry.getValue().length() == 0) {
+                    // The lowest entry PaxosStateLogImpl creates for a brand new log.
+                    append(MARKER_RECORD, seq, UNKNOWN_VERSION, new byte[0]);
+                    continue;
+                }
+                byte[] bytes;
+                try {
+                    bytes = legacyLog.readRound(seq);
+                } catch (IOException e) {
+                    log.warn("Not migrating unreadable paxos round {} in {}", seq, dir.getAbsolutePath(), e);
+                    continue;
+                }
+                if (bytes != null) {
+                    // Per-round files do not record the version, so any later write of the round is accepted.
+                    append(ROUND_RECORD, seq, UNKNOWN_VERSION, bytes);
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        sync(appendedBytes);
+
+        for (File file : Iterables.concat(legacyFiles.values(), legacyTmpFiles)) {
+            if (!file.delete()) {
+                log.warn("failed to delete migrated log file {}", file.getAbsolutePath());
+            }
+        }
+    }
+
+    private static Segment openSegment(long id, File file) throws IOException {
+        return new Segment(id, file, new RandomAccessFile(file, "rw"));
+    }
+
+    private static byte[] encode(byte type, long seq, long version, byte[] payload) {
+        int bodyLength = BODY_HEADER_SIZE + payload.length;
+        ByteBuffer record = ByteBuffer.allocate(FRAME_HEADER_SIZE + bodyLength);
+        record.putInt(bodyLength);
+        record.putInt(0); // checksum, filled in below
+        record.put(type);
+        record.putLong(seq);
+        record.putLong(version);
+        record.put(payload);
+        int checksum = CRC32C.hashBytes(record.array(), FRAME_HEADER_SIZE, bodyLength).asInt();
+        record.putInt(4, checksum);
+        return record.array();
+    }
+
+    /**
+     * @return the body of the record, or null if it does not match its checksum
+     */
+    @Nullable
+    private static byte[] checkAndGetBody(byte[] record) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        int bodyLength = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (bodyLength != record.length - FRAME_HEADER_SIZE
+                || CRC32C.hashBytes(record, FRAME_HEADER_SIZE, bodyLength).asInt() != checksum) {
+            return null;
+        }
+        return Arrays.copyOfRange(record, FRAME_HEADER_SIZE, record.length);
+    }
+
+    private static String getSegmentFileName(long id) {
+        return String.format("%019d%s", id, SEGMENT_FILE_SUFFIX);
+    }
+
+    @Nullable
+    private static Long getSegmentIdFromFilename(File file) {
+        String name = file.getName();
+        if (!name.endsWith(SEGMENT_FILE_SUFFIX)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Long getLegacySeqFromFilename(File file) {
+        try {
+            return Long.parseLong(file.getName());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static final class Segment {
+        final long id;
+        final File file;
+        private final RandomAccessFile raf;
+        @GuardedBy("this") private boolean closed = false;
+        @GuardedBy("appendLock") long size = 0;
+
+        Segment(long id, File file, RandomAccessFile raf) {
+            this.id = id;
+            this.file = file;
+            this.raf = raf;
+        }
+
+        /**
+         * @return the bytes at the given offset, or null if the segment has been closed
+         */
+        @Nullable
+        synchronized byte[] read(long offset, int length) throws IOException {
+            if (closed) {
+                return null;
+            }
+            byte[] bytes = new byte[length];
+            raf.seek(offset);
+            raf.readFully(bytes);
+            return bytes;
+        }
+
+        synchronized void write(long offset, byte[] bytes) throws IOException {
+            raf.seek(offset);
+            raf.write(bytes);
+        }
+
+        synchronized long length() throws IOException {
+            return raf.length();
+        }
+
+        synchronized void setLength(long length) throws IOException {
+            raf.setLength(length);
+        }
+
+        void sync() throws IOException {
+            // Deliberately outside the monitor so reads are not stuck behind an fsync.
+            raf.getFD().sync();
+        }
+
+        synchronized void close() {
+            closed = true;
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    private static final class RecordLocation {
+        final Segment segment;
+        final long offset;
+        final int length;
+        final byte type;
+        final long version;
+
+        RecordLocation(Segment segment, long offset, int length, byte type, long version) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.type = type;
+            this.version = version;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.palantir.paxos;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
@@ -23,6 +24,7 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Proxy;
+import java.util.Map;
 import java.util.SortedMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
@@ -34,6 +36,9 @@ import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
 import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.common.proxy.DelegatingInvocationHandler;
 import com.palantir.leader.LeaderElectionService.LeadershipToken;
@@ -150,6 +155,45 @@ public class PaxosConsensusFastTest {
         }
     }
 
+    @Test
+    public void batchProposal() throws PaxosRoundFailureException {
+        PaxosProposer proposer = state.newProposer(0, QUORUM_SIZE);
+        Map<Long, byte[]> decided = proposer.proposeBatch(ImmutableMap.of(
+                10L, bytes("a"),
+                11L, bytes("b")));
+        assertArrayEquals(bytes("a"), decided.get(10L));
+        assertArrayEquals(bytes("b"), decided.get(11L));
+
+        // 11 is already decided, so another proposer learns the existing value instead of its own.
+        PaxosProposer otherProposer = state.newProposer(1, QUORUM_SIZE);
+        Map<Long, byte[]> toPropose = Maps.newHashMap(ImmutableMap.of(
+                11L, bytes("c"),
+                12L, bytes("d")));
+        decided = Maps.newHashMap();
+        // Depending on the proposer ids, the first attempt at 11 may be rejected by the acceptors.
+        for (int attempt = 0; attempt < 3 && !toPropose.isEmpty(); attempt++) {
+            decided.putAll(otherProposer.proposeBatch(toPropose));
+            toPropose.keySet().removeAll(decided.keySet());
+        }
+        assertArrayEquals(bytes("b"), decided.get(11L));
+        assertArrayEquals(bytes("d"), decided.get(12L));
+        assertArrayEquals(bytes("b"), state.learner(1).getLearnedValue(11L).getData());
+    }
+
+    @Test
+    public void batchProposalWithoutQuorum() {
+        for (int i = 0; i < NUM_POTENTIAL_LEADERS - QUORUM_SIZE + 1; i++) {
+            state.goDown(i);
+        }
+        try {
+            state.newProposer(NUM_POTENTIAL_LEADERS - 1, QUORUM_SIZE).proposeBatch(
+                    ImmutableMap.of(1L, bytes("a")));
+            fail("Expected the batch to fail without a quorum of acceptors");
+        } catch (PaxosRoundFailureException e) {
+            // expected
+        }
+    }
+
     @Test
     public void simpleLogTest() {
         String leaderUUID = "I-AM-DA-LEADER";
@@ -189,5 +233,8 @@ public class PaxosConsensusFastTest {
         cache.clear();
         state.gainLeadership(0);
     }
-}
 
+    private static byte[] bytes(String value) {
+        return value.getBytes(Charsets.UTF_8);
+    }
+}
@@ -22,6 +22,7 @@ import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import com.google.common.collect.ImmutableList;
 import com.palantir.leader.LeaderElectionService;
 import com.palantir.leader.LeaderElectionService.LeadershipToken;
 import com.palantir.leader.LeaderElectionService.StillLeadingStatus;
@@ -81,6 +82,15 @@ public class PaxosTestState {
         return learners.get(i);
     }
 
+    public PaxosProposer newProposer(int i, int quorumSize) {
+        return PaxosProposerImpl.newProposer(
+                learner(i),
+                ImmutableList.copyOf(acceptors),
+                ImmutableList.copyOf(learners),
+                quorumSize,
+                executor);
+    }
+
     public ExecutorService getExecutor() {
         return executor;
     }
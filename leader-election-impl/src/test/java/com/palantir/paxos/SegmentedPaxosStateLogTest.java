@@ -0,0 +1,279 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.paxos;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.Files;
+import com.google.common.primitives.Longs;
+import com.palantir.common.concurrent.PTExecutors;
+import com.palantir.common.persist.Persistable;
+
+public class SegmentedPaxosStateLogTest {
+    private static final String LEADER_UUID = "I-AM-DA-LEADER";
+
+    private File dir;
+    private SegmentedPaxosStateLog<PaxosValue> log;
+
+    @Before
+    public void setUp() {
+        dir = Files.createTempDir();
+        log = new SegmentedPaxosStateLog<PaxosValue>(dir.getPath());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        log.close();
+        FileUtils.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testNewLogHasLowestEntry() {
+        assertEquals(PaxosAcceptor.NO_LOG_ENTRY, log.getLeastLogEntry());
+        assertEquals(PaxosAcceptor.NO_LOG_ENTRY, log.getGreatestLogEntry());
+    }
+
+    @Test
+    public void testRoundsSurviveRestart() throws IOException {
+        writeRounds(0, 100);
+        reopen(SegmentedPaxosStateLog.DEFAULT_SEGMENT_SIZE_BYTES);
+
+        assertEquals(PaxosAcceptor.NO_LOG_ENTRY, log.getLeastLogEntry());
+        assertEquals(99, log.getGreatestLogEntry());
+        for (long seq = 0; seq < 100; seq++) {
+            assertRound(seq);
+        }
+        assertNull(log.readRound(100));
+    }
+
+    @Test
+    public void testLaterWriteOfRoundWins() throws IOException {
+        log.writeRound(3, new PaxosValue("first", 3, null));
+        log.writeRound(3, new PaxosValue("second", 3, null));
+        reopen(SegmentedPaxosStateLog.DEFAULT_SEGMENT_SIZE_BYTES);
+        assertEquals("second", PaxosValue.BYTES_HYDRATOR.hydrateFromBytes(log.readRound(3)).getLeaderUUID());
+    }
+
+    @Test
+    public void testOlderVersionIsRejected() throws IOException {
+        log.close();
+        SegmentedPaxosStateLog<VersionedRound> versionedLog = new SegmentedPaxosStateLog<VersionedRound>(dir.getPath());
+        try {
+            versionedLog.writeRound(1, new VersionedRound(5));
+            versionedLog.writeRound(1, new VersionedRound(4));
+            assertArrayEquals(Longs.toByteArray(5), versionedLog.readRound(1));
+            versionedLog.writeRound(1, new VersionedRound(6));
+            assertArrayEquals(Longs.toByteArray(6), versionedLog.readRound(1));
+        } finally {
+            versionedLog.close();
+        }
+    }
+
+    @Test
+    public void testTruncationDeletesSegmentsAndSurvivesRestart() throws IOException {
+        reopen(256);
+        writeRounds(0, 100);
+        int segmentsBefore = getSegmentFiles().size();
+        assertTrue(segmentsBefore > 10);
+
+        log.truncate(89);
+        assertEquals(90, log.getLeastLogEntry());
+        assertNull(log.readRound(10));
+        assertTrue(getSegmentFiles().size() < segmentsBefore / 2);
+
+        reopen(256);
+        assertEquals(90, log.getLeastLogEntry());
+        assertEquals(99, log.getGreatestLogEntry());
+        assertNull(log.readRound(89));
+        assertRound(90);
+    }
+
+    @Test
+    public void testTruncationKeepsGreatestEntry() throws IOException {
+        writeRounds(0, 10);
+        log.truncate(100);
+        assertEquals(9, log.getLeastLogEntry());
+        assertEquals(9, log.getGreatestLogEntry());
+        assertRound(9);
+    }
+
+    @Test
+    public void testTornTailIsDiscarded() throws IOException {
+        writeRounds(0, 5);
+        log.close();
+        File segment = getSegmentFiles().get(0);
+        long validLength = segment.length();
+        FileUtils.writeByteArrayToFile(segment, new byte[] {0, 0, 1, 0, 42, 42}, true);
+
+        reopen(SegmentedPaxosStateLog.DEFAULT_SEGMENT_SIZE_BYTES);
+        assertEquals(4, log.getGreatestLogEntry());
+        assertEquals(validLength, segment.length());
+
+        writeRounds(5, 6);
+        reopen(SegmentedPaxosStateLog.DEFAULT_SEGMENT_SIZE_BYTES);
+        assertEquals(5, log.getGreatestLogEntry());
+        assertRound(5);
+    }
+
+    @Test
+    public void testCorruptRoundFailsChecksum() throws IOException {
+        writeRounds(0, 1);
+        File segment = getSegmentFiles().get(0);
+        RandomAccessFile raf = new RandomAccessFile(segment, "rw");
+        try {
+            raf.seek(raf.length() - 1);
+            byte last = raf.readByte();
+            raf.seek(raf.length() - 1);
+            raf.writeByte(last ^ 1);
+        } finally {
+            raf.close();
+        }
+
+        try {
+            log.readRound(0);
+            fail("Expected the corrupt round to fail its checksum");
+        } catch (PaxosStateLog.CorruptLogFileException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testMigratesPerRoundFiles() throws IOException {
+        log.close();
+        FileUtils.deleteDirectory(dir);
+        PaxosStateLogImpl<PaxosValue> legacyLog = new PaxosStateLogImpl<PaxosValue>(dir.getPath());
+        for (long seq = 0; seq < 10; seq++) {
+            legacyLog.writeRound(seq, newValue(seq));
+        }
+
+        reopen(SegmentedPaxosStateLog.DEFAULT_SEGMENT_SIZE_BYTES);
+        assertEquals(PaxosAcceptor.NO_LOG_ENTRY, log.getLeastLogEntry());
+        assertEquals(9, log.getGreatestLogEntry());
+        for (long seq = 0; seq < 10; seq++) {
+            assertRound(seq);
+        }
+        assertFalse(Arrays.asList(dir.list()).contains("5"));
+        assertEquals(1, dir.list().length);
+    }
+
+    @Test
+    public void testConcurrentWriters() throws Exception {
+        final int numThreads = 8;
+        final int roundsPerThread = 50;
+        ExecutorService executor = PTExecutors.newFixedThreadPool(numThreads);
+        try {
+            List<Future<Void>> futures = Lists.newArrayList();
+            for (int i = 0; i < numThreads; i++) {
+                final int thread = i;
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int j = 0; j < roundsPerThread; j++) {
+                            long seq = j * numThreads + thread;
+                            log.writeRound(seq, newValue(seq));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        reopen(SegmentedPaxosStateLog.DEFAULT_SEGMENT_SIZE_BYTES);
+        assertEquals(numThreads * roundsPerThread - 1, log.getGreatestLogEntry());
+        for (long seq = 0; seq < numThreads * roundsPerThread; seq++) {
+            assertRound(seq);
+        }
+    }
+
+    private void reopen(long segmentSizeBytes) {
+        log.close();
+        log = new SegmentedPaxosStateLog<PaxosValue>(dir.getPath(), segmentSizeBytes);
+    }
+
+    private void writeRounds(long fromInclusive, long toExclusive) {
+        for (long seq = fromInclusive; seq < toExclusive; seq++) {
+            log.writeRound(seq, newValue(seq));
+        }
+    }
+
+    private void assertRound(long seq) throws IOException {
+        byte[] bytes = log.readRound(seq);
+        PaxosValue value = PaxosValue.BYTES_HYDRATOR.hydrateFromBytes(bytes);
+        assertEquals(seq, value.getRound());
+        assertArrayEquals(Longs.toByteArray(seq), value.getData());
+    }
+
+    private List<File> getSegmentFiles() {
+        File[] files = dir.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                return file.getName().endsWith(".segment");
+            }
+        });
+        List<File> segments = Lists.newArrayList(files);
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private static PaxosValue newValue(long seq) {
+        return new PaxosValue(LEADER_UUID, seq, Longs.toByteArray(seq));
+    }
+
+    private static final class VersionedRound implements Persistable, Versionable {
+        private final long version;
+
+        VersionedRound(long version) {
+            this.version = version;
+        }
+
+        @Override
+        public byte[] persistToBytes() {
+            return Longs.toByteArray(version);
+        }
+
+        @Override
+        public long getVersion() {
+            return version;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock;
+
+import com.google.common.annotations.Beta;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.palantir.common.annotation.NonIdempotent;
+
+/**
+ * Variant of the locking calls of {@link RemoteLockService} that return a future
+ * instead of blocking the calling thread. While a request waits for contended locks
+ * it only occupies a place in those locks' queues, so a lock server can have many
+ * waiting requests without a thread for each of them.
+ * <p>
+ * Cancelling a returned future abandons the request and releases any locks it
+ * has already acquired.
+ */
+@Beta public interface AsyncRemoteLockService {
+    /**
+     * Same as {@link RemoteLockService#lock(String, LockRequest)}; the future holds
+     * {@code null} if the lock request failed.
+     */
+    @NonIdempotent
+    ListenableFuture<LockRefreshToken> lockAsync(String client, LockRequest request);
+
+    /**
+     * Same as {@link RemoteLockService#lockAndGetHeldLocks(String, LockRequest)}.
+     */
+    @NonIdempotent
+    ListenableFuture<HeldLocksToken> lockAndGetHeldLocksAsync(String client, LockRequest request);
+
+    /**
+     * Same as {@link LockService#lockWithFullLockResponse(LockClient, LockRequest)}.
+     */
+    @NonIdempotent
+    ListenableFuture<LockResponse> lockWithFullLockResponseAsync(LockClient client, LockRequest request);
+}
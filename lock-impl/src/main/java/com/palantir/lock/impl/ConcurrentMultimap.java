@@ -0,0 +1,107 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * A multimap whose values for each key are kept in a separate collection with its own
+ * monitor, so that updates for different keys never contend. Collections that become
+ * empty are removed from the map.
+ */
+@ThreadSafe
+final class ConcurrentMultimap<K, V> {
+    private final ConcurrentMap<K, Collection<V>> map = Maps.newConcurrentMap();
+    private final Supplier<? extends Collection<V>> collectionFactory;
+
+    /**
+     * @param collectionFactory creates the (not thread safe) collection for a new key
+     */
+    ConcurrentMultimap(Supplier<? extends Collection<V>> collectionFactory) {
+        this.collectionFactory = collectionFactory;
+    }
+
+    void put(K key, V value) {
+        while (true) {
+            Collection<V> values = map.get(key);
+            if (values == null) {
+                Collection<V> newValues = collectionFactory.get();
+                values = map.putIfAbsent(key, newValues);
+                if (values == null) {
+                    values = newValues;
+                }
+            }
+            synchronized (values) {
+                // The collection may have emptied out and been removed while we were getting it.
+                if (map.get(key) == values) {
+                    values.add(value);
+                    return;
+                }
+            }
+        }
+    }
+
+    boolean remove(K key, Object value) {
+        Collection<V> values = map.get(key);
+        if (values == null) {
+            return false;
+        }
+        synchronized (values) {
+            boolean removed = values.remove(value);
+            if (values.isEmpty()) {
+                map.remove(key, values);
+            }
+            return removed;
+        }
+    }
+
+    /**
+     * Applies the function to the values for the key while holding their monitor. The
+     * collection is empty if the key has no values and must not escape the function.
+     */
+    <T> T apply(K key, Function<? super Collection<V>, T> function) {
+        Collection<V> values = map.get(key);
+        if (values == null) {
+            return function.apply(ImmutableList.<V>of());
+        }
+        synchronized (values) {
+            return function.apply(values);
+        }
+    }
+
+    /** Returns a copy of the multimap, for logging. */
+    Map<K, List<V>> copy() {
+        Map<K, List<V>> copy = Maps.newHashMap();
+        for (Map.Entry<K, Collection<V>> entry : map.entrySet()) {
+            synchronized (entry.getValue()) {
+                if (!entry.getValue().isEmpty()) {
+                    copy.put(entry.getKey(), ImmutableList.copyOf(entry.getValue()));
+                }
+            }
+        }
+        return copy;
+    }
+}
@@ -19,6 +19,7 @@ import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Nullable;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import com.palantir.lock.LockClient;
 import com.palantir.lock.LockMode;
 
@@ -42,6 +43,15 @@ public interface KnownClientLock {
     /** Acquires the lock unless the current thread is interrupted. */
     void lockInterruptibly() throws InterruptedException;
 
+    /**
+     * Acquires the lock without blocking the current thread. The returned
+     * future completes once the lock has been acquired; until then the request
+     * waits its turn in the lock's queue just like a call to {@link #lock()}.
+     * Cancelling the future withdraws the request. If {@code cancel} returns
+     * {@code false}, the lock has already been acquired and must be unlocked.
+     */
+    ListenableFuture<?> lockAsync();
+
     /**
      * Acquires the lock only if it is free at the time of invocation. This
      * method does not block.
@@ -15,7 +15,8 @@
  */
 package com.palantir.lock.impl;
 
-import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -27,8 +28,9 @@ import com.palantir.lock.LockClient;
 
 @ThreadSafe
 class LockClientIndices {
-    private final Map<LockClient, Integer> indexByClient = Maps.newConcurrentMap();
-    private final Map<Integer, LockClient> clientByIndex = Maps.newConcurrentMap();
+    private final ConcurrentMap<LockClient, Integer> indexByClient = Maps.newConcurrentMap();
+    private final ConcurrentMap<Integer, LockClient> clientByIndex = Maps.newConcurrentMap();
+    private final AtomicInteger nextIndex = new AtomicInteger(1);
 
     public LockClientIndices() {
         indexByClient.put(LockClient.ANONYMOUS, -1);
@@ -40,16 +42,15 @@ class LockClientIndices {
         if (index != null) {
             return index;
         }
-        synchronized (this) {
-            index = indexByClient.get(client);
-            if (index != null) {
-                return index;
-            }
-            int newIndex = indexByClient.size();
-            indexByClient.put(client, newIndex);
-            clientByIndex.put(newIndex, client);
-            return newIndex;
+        int newIndex = nextIndex.getAndIncrement();
+        // Publish the reverse mapping first so that anyone who sees the new index can look it up.
+        clientByIndex.put(newIndex, client);
+        index = indexByClient.putIfAbsent(client, newIndex);
+        if (index != null) {
+            clientByIndex.remove(newIndex);
+            return index;
         }
+        return newIndex;
     }
 
     LockClient fromIndex(int index) {
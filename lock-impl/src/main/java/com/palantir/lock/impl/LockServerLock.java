@@ -22,6 +22,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.palantir.lock.LockClient;
 import com.palantir.lock.LockDescriptor;
 import com.palantir.lock.LockMode;
@@ -96,11 +97,16 @@ public class LockServerLock implements ClientAwareReadWriteLock {
             sync.acquireSharedInterruptibly(clientIndex);
         }
 
+        @Override
+        public ListenableFuture<?> lockAsync() {
+            return sync.acquireSharedAsync(clientIndex);
+        }
+
         @Override
         public LockClient tryLock() {
             while (true) {
                 synchronized (sync) {
-                    if (sync.tryAcquireShared(clientIndex) > 0) {
+                    if (sync.tryAcquireShared(clientIndex)) {
                         return null;
                     }
                     LockClient lockHolder = sync.getLockHolder();
@@ -173,6 +179,11 @@ public class LockServerLock implements ClientAwareReadWriteLock {
             sync.acquireInterruptibly(clientIndex);
         }
 
+        @Override
+        public ListenableFuture<?> lockAsync() {
+            return sync.acquireAsync(clientIndex);
+        }
+
         @Override
         public LockClient tryLock() {
             while (true) {
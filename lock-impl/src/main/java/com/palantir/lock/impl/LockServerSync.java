@@ -15,28 +15,44 @@
  */
 package com.palantir.lock.impl;
 
-import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.AbstractFuture;
+import com.google.common.util.concurrent.Futures;
 import com.palantir.lock.LockClient;
 
 import gnu.trove.iterator.TIntIntIterator;
 import gnu.trove.map.TIntIntMap;
 import gnu.trove.map.hash.TIntIntHashMap;
 
-class LockServerSync extends AbstractQueuedSynchronizer {
-    private static final long serialVersionUID = 1L;
-
+/**
+ * The state behind a {@link LockServerLock}.  Requests that cannot be granted
+ * right away wait in a FIFO queue of {@link Waiter}s; whichever thread releases
+ * the lock grants the waiters at the head of the queue, so a waiting request
+ * does not need a thread of its own.  The blocking acquire methods are built
+ * on top of this by waiting for the request's waiter.
+ */
+class LockServerSync {
     private final LockClientIndices clients;
     private @GuardedBy("this") boolean frozen;
+    private @GuardedBy("this") int writeLockCount = 0;
     private @GuardedBy("this") int writeLockHolder = 0;
     private @GuardedBy("this") TIntIntMap readLockHolders;
+    private @GuardedBy("this") Deque<Waiter> waiters;
 
     public LockServerSync(LockClientIndices clients) {
         this.clients = Preconditions.checkNotNull(clients);
@@ -47,25 +63,23 @@ class LockServerSync extends AbstractQueuedSynchronizer {
     }
 
     private boolean holdsWriteLock(int clientIndex) {
-        Preconditions.checkState(getState() > 0);
+        Preconditions.checkState(writeLockCount > 0);
         return clientIndex == writeLockHolder && !isAnonymous(clientIndex);
     }
 
-    @Override
-    protected synchronized boolean tryAcquire(int clientIndex) {
+    synchronized boolean tryAcquire(int clientIndex) {
         if (frozen) {
             return false;
         }
-        int writeCount = getState();
-        if (writeCount > 0 && holdsWriteLock(clientIndex)) {
-            setState(writeCount + 1);
+        if (writeLockCount > 0 && holdsWriteLock(clientIndex)) {
+            writeLockCount++;
             return true;
         }
-        if (hasBlockedPredecessors()) {
+        if (hasWaiters()) {
             return false;
         }
-        if (writeCount == 0 && !isReadLockHeld()) {
-            setState(1);
+        if (writeLockCount == 0 && !isReadLockHeld()) {
+            writeLockCount = 1;
             writeLockHolder = clientIndex;
             return true;
         }
@@ -77,60 +91,128 @@ class LockServerSync extends AbstractQueuedSynchronizer {
         return false;
     }
 
-    @Override
-    protected synchronized boolean tryRelease(int clientIndex) {
-        int newWriteCount = getState() - 1;
-        if (writeLockHolder != clientIndex || newWriteCount < 0) {
-            throw LockServerLock.throwIllegalMonitorStateException(
-                    clients.fromIndex(clientIndex) +
-                    " does not hold the write lock");
+    synchronized boolean tryAcquireShared(int clientIndex) {
+        if (frozen) {
+            return false;
         }
-        setState(newWriteCount);
-        if (newWriteCount == 0 && !isReadLockHeld()) {
-            frozen = false;
+        if (writeLockCount == 0 && !holdsReadLock(clientIndex) && hasWaiters()) {
+            return false;
         }
-        return newWriteCount == 0;
+        if (writeLockCount > 0 && !holdsWriteLock(clientIndex)) {
+            return false;
+        }
+        incrementReadCount(clientIndex);
+        return true;
     }
 
-    @Override
-    protected synchronized int tryAcquireShared(int clientIndex) {
-        if (frozen) {
-            return -1;
-        }
-        int writeCount = getState();
-        if (writeCount == 0 && !holdsReadLock(clientIndex) && hasBlockedPredecessors()) {
-            return -1;
+    /**
+     * Returns a future that completes once the write lock has been acquired for
+     * the given client, queueing a waiter if it cannot be acquired right away.
+     */
+    synchronized Waiter acquireAsync(int clientIndex) {
+        Waiter waiter = new Waiter(clientIndex, false);
+        if (tryAcquire(clientIndex)) {
+            waiter.set(null);
+        } else {
+            enqueue(waiter);
         }
-        if (writeCount > 0 && !holdsWriteLock(clientIndex)) {
-            return -1;
+        return waiter;
+    }
+
+    /**
+     * Returns a future that completes once the read lock has been acquired for
+     * the given client, queueing a waiter if it cannot be acquired right away.
+     */
+    synchronized Waiter acquireSharedAsync(int clientIndex) {
+        Waiter waiter = new Waiter(clientIndex, true);
+        if (tryAcquireShared(clientIndex)) {
+            waiter.set(null);
+        } else {
+            enqueue(waiter);
         }
-        incrementReadCount(clientIndex);
-        return 1;
+        return waiter;
     }
 
-    @Override
-    protected synchronized boolean tryReleaseShared(int clientIndex) {
-        decrementReadCount(clientIndex);
-        if (!isReadLockHeld() && getState() == 0) {
-            frozen = false;
-            return true;
+    void acquire(int clientIndex) {
+        Futures.getUnchecked(acquireAsync(clientIndex));
+    }
+
+    void acquireShared(int clientIndex) {
+        Futures.getUnchecked(acquireSharedAsync(clientIndex));
+    }
+
+    void acquireInterruptibly(int clientIndex) throws InterruptedException {
+        acquireAsync(clientIndex).await();
+    }
+
+    void acquireSharedInterruptibly(int clientIndex) throws InterruptedException {
+        acquireSharedAsync(clientIndex).await();
+    }
+
+    boolean tryAcquireNanos(int clientIndex, long nanosTimeout) throws InterruptedException {
+        return acquireAsync(clientIndex).await(nanosTimeout);
+    }
+
+    boolean tryAcquireSharedNanos(int clientIndex, long nanosTimeout) throws InterruptedException {
+        return acquireSharedAsync(clientIndex).await(nanosTimeout);
+    }
+
+    void release(int clientIndex) {
+        List<Waiter> granted;
+        synchronized (this) {
+            releaseWrite(clientIndex);
+            granted = grantWaiters();
         }
-        return false;
+        complete(granted);
     }
 
-    synchronized void unlockAndFreeze(int clientIndex) {
-        if (isAnonymous(clientIndex)) {
-            throw LockServerLock.throwIllegalMonitorStateException(
-                    "anonymous clients cannot call unlockAndFreeze()");
+    void releaseShared(int clientIndex) {
+        List<Waiter> granted;
+        synchronized (this) {
+            decrementReadCount(clientIndex);
+            if (!isReadLockHeld() && writeLockCount == 0) {
+                frozen = false;
+            }
+            granted = grantWaiters();
         }
-        if (writeLockHolder != clientIndex || getState() == 0) {
+        complete(granted);
+    }
+
+    /**
+     * @return true if the write lock is no longer held
+     */
+    @GuardedBy("this") private boolean releaseWrite(int clientIndex) {
+        int newWriteCount = writeLockCount - 1;
+        if (writeLockHolder != clientIndex || newWriteCount < 0) {
             throw LockServerLock.throwIllegalMonitorStateException(
                     clients.fromIndex(clientIndex) +
                     " does not hold the write lock");
         }
-        if (!release(clientIndex) || isReadLockHeld()) {
-            frozen = true;
+        writeLockCount = newWriteCount;
+        if (newWriteCount == 0 && !isReadLockHeld()) {
+            frozen = false;
+        }
+        return newWriteCount == 0;
+    }
+
+    void unlockAndFreeze(int clientIndex) {
+        List<Waiter> granted;
+        synchronized (this) {
+            if (isAnonymous(clientIndex)) {
+                throw LockServerLock.throwIllegalMonitorStateException(
+                        "anonymous clients cannot call unlockAndFreeze()");
+            }
+            if (writeLockHolder != clientIndex || writeLockCount == 0) {
+                throw LockServerLock.throwIllegalMonitorStateException(
+                        clients.fromIndex(clientIndex) +
+                        " does not hold the write lock");
+            }
+            if (!releaseWrite(clientIndex) || isReadLockHeld()) {
+                frozen = true;
+            }
+            granted = grantWaiters();
         }
+        complete(granted);
     }
 
     synchronized void changeOwnerShared(int oldClient, LockClient newClient) {
@@ -149,7 +231,7 @@ class LockServerSync extends AbstractQueuedSynchronizer {
                     clients.fromIndex(oldClient) +
                     " does not hold the read lock");
         }
-        if (getState() > 0) {
+        if (writeLockCount > 0) {
             throw LockServerLock.throwIllegalMonitorStateException(
                     clients.fromIndex(oldClient) +
                     " currently holds both the read and write locks");
@@ -169,8 +251,7 @@ class LockServerSync extends AbstractQueuedSynchronizer {
             throw LockServerLock.throwIllegalMonitorStateException(
                     "Cannot change owner because the lock is frozen");
         }
-        int writeCount = getState();
-        if (writeCount == 0 || writeLockHolder != oldClient) {
+        if (writeLockCount == 0 || writeLockHolder != oldClient) {
             throw LockServerLock.throwIllegalMonitorStateException(
                     clients.fromIndex(oldClient) +
                     " does not hold the write lock");
@@ -180,7 +261,7 @@ class LockServerSync extends AbstractQueuedSynchronizer {
                     clients.fromIndex(oldClient) +
                     " currently holds both the read and write locks");
         }
-        if (writeCount > 1) {
+        if (writeLockCount > 1) {
             throw LockServerLock.throwIllegalMonitorStateException(
                     clients.fromIndex(oldClient) +
                     " is attempting to create a lock grant" +
@@ -190,12 +271,9 @@ class LockServerSync extends AbstractQueuedSynchronizer {
         writeLockHolder = newIndex;
     }
 
-    // Returns null if there is no lock holder. Note: There
-    // may be no lock holder even if tryAcquire or tryAcquireShared
-    // failed because those methods may fail in order to prevent
-    // barging.
+    // Returns null if there is no lock holder.
     @GuardedBy("this") @Nullable LockClient getLockHolder() {
-        if (getState() > 0) {
+        if (writeLockCount > 0) {
             return clients.fromIndex(writeLockHolder);
         }
         if (!isReadLockHeld()) {
@@ -215,12 +293,6 @@ class LockServerSync extends AbstractQueuedSynchronizer {
         return clients.toIndex(client);
     }
 
-    // Note: Replace with hasQueuesPredecessors when lock server
-    // no longer needs to run on java 6.
-    private boolean hasBlockedPredecessors() {
-        return getFirstQueuedThread() != Thread.currentThread() && hasQueuedThreads();
-    }
-
     synchronized boolean isFrozen() {
         return frozen;
     }
@@ -229,14 +301,135 @@ class LockServerSync extends AbstractQueuedSynchronizer {
     public synchronized String toString() {
         return MoreObjects.toStringHelper(getClass().getSimpleName())
                 .add("hashCode", hashCode())
-                .add("writeLockCount", getState())
+                .add("writeLockCount", writeLockCount)
                 .add("writeClient", writeLockHolder == 0 ? null : clients.fromIndex(writeLockHolder))
                 .add("readClients", clients.fromIndices(getReadClients()))
-                .add("queuedThreads", getQueueLength())
+                .add("queuedRequests", waiters == null ? 0 : waiters.size())
                 .add("isFrozen", frozen)
                 .toString();
     }
 
+    private boolean hasWaiters() {
+        return waiters != null && !waiters.isEmpty();
+    }
+
+    @GuardedBy("this") private void enqueue(Waiter waiter) {
+        if (waiters == null) {
+            waiters = new ArrayDeque<Waiter>(1);
+        }
+        waiters.addLast(waiter);
+    }
+
+    /**
+     * Takes the lock on behalf of as many waiters from the head of the queue as
+     * can hold it together.  The returned waiters must be completed with
+     * {@link #complete} once the monitor has been released, so that their
+     * listeners never run while this lock's monitor is held.
+     */
+    @GuardedBy("this") private List<Waiter> grantWaiters() {
+        if (!hasWaiters() || frozen) {
+            return ImmutableList.of();
+        }
+        List<Waiter> granted = Lists.newArrayList();
+        while (!waiters.isEmpty()) {
+            Waiter next = waiters.peekFirst();
+            if (next.shared) {
+                if (writeLockCount > 0 && !holdsWriteLock(next.clientIndex)) {
+                    break;
+                }
+                incrementReadCount(next.clientIndex);
+            } else if (writeLockCount > 0 && holdsWriteLock(next.clientIndex)) {
+                writeLockCount++;
+            } else if (writeLockCount == 0 && !isReadLockHeld()) {
+                writeLockCount = 1;
+                writeLockHolder = next.clientIndex;
+            } else {
+                break;
+            }
+            granted.add(waiters.pollFirst());
+        }
+        if (waiters.isEmpty()) {
+            waiters = null;
+        }
+        return granted;
+    }
+
+    private static void complete(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            waiter.set(null);
+        }
+    }
+
+    /**
+     * A request for this lock.  It completes when the lock has been acquired on
+     * the request's behalf.  Cancelling it withdraws the request from the queue;
+     * if {@link #cancel} returns false the lock has already been acquired.
+     */
+    final class Waiter extends AbstractFuture<Void> {
+        final int clientIndex;
+        final boolean shared;
+
+        Waiter(int clientIndex, boolean shared) {
+            this.clientIndex = clientIndex;
+            this.shared = shared;
+        }
+
+        @Override
+        protected boolean set(@Nullable Void value) {
+            return super.set(value);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            List<Waiter> granted;
+            synchronized (LockServerSync.this) {
+                if (waiters == null || !waiters.remove(this)) {
+                    return false;
+                }
+                // Waiters behind this one may have only been held up by it.
+                granted = grantWaiters();
+            }
+            super.cancel(false);
+            complete(granted);
+            return true;
+        }
+
+        void await() throws InterruptedException {
+            try {
+                get();
+            } catch (InterruptedException e) {
+                abandon();
+                throw e;
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+
+        boolean await(long nanosTimeout) throws InterruptedException {
+            try {
+                get(nanosTimeout, TimeUnit.NANOSECONDS);
+                return true;
+            } catch (TimeoutException e) {
+                return !cancel(false);
+            } catch (InterruptedException e) {
+                abandon();
+                throw e;
+            } catch (ExecutionException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+
+        private void abandon() {
+            if (!cancel(false)) {
+                if (shared) {
+                    releaseShared(clientIndex);
+                } else {
+                    release(clientIndex);
+                }
+            }
+        }
+    }
+
     private boolean isReadLockHeld() {
         return readLockHolders != null && !readLockHolders.isEmpty();
     }
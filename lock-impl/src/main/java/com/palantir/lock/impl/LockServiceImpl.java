@@ -28,17 +28,17 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.Immutable;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -51,10 +51,6 @@ import com.google.common.base.Function;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Supplier;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
@@ -63,16 +59,19 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.MapMaker;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 import com.google.common.collect.TreeMultiset;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.palantir.common.base.Throwables;
 import com.palantir.common.concurrent.NamedThreadFactory;
 import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.common.random.SecureRandomPool;
 import com.palantir.common.remoting.ServiceNotAvailableException;
+import com.palantir.lock.AsyncRemoteLockService;
 import com.palantir.lock.BlockingMode;
 import com.palantir.lock.ExpiringToken;
 import com.palantir.lock.HeldLocksGrant;
@@ -103,7 +102,8 @@ import com.palantir.util.Pair;
  *
  * @author jtamer
  */
-@ThreadSafe public final class LockServiceImpl implements LockService, RemoteLockService, LockServiceImplMBean, Closeable {
+@ThreadSafe public final class LockServiceImpl
+        implements LockService, RemoteLockService, AsyncRemoteLockService, LockServiceImplMBean, Closeable {
 
     private static final Logger log = LoggerFactory.getLogger(LockServiceImpl.class);
     private static final Logger requestLogger = LoggerFactory.getLogger("lock.request");
@@ -112,6 +112,18 @@ import com.palantir.util.Pair;
     private final ExecutorService executor = PTExecutors.newCachedThreadPool(
             new NamedThreadFactory(LockServiceImpl.class.getName(), true));
 
+    /**
+     * Continues lock requests once a lock they were waiting for has been granted.
+     * These tasks never block, so a few threads serve any number of waiting requests.
+     */
+    private final ExecutorService lockContinuationExecutor = PTExecutors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            new NamedThreadFactory(LockServiceImpl.class.getName() + " lock continuation", true));
+
+    /** Withdraws waiting lock requests whose blocking duration has run out. */
+    private final ScheduledExecutorService blockingTimeoutExecutor = PTExecutors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory(LockServiceImpl.class.getName() + " blocking timeout", true));
+
     private static final Function<HeldLocksToken, String> TOKEN_TO_ID =
             new Function<HeldLocksToken, String>() {
         @Override
@@ -159,17 +171,8 @@ import com.palantir.util.Pair;
     private final Runnable callOnClose;
     private volatile boolean isShutDown = false;
 
-    private final LockClientIndices clientIndices = new LockClientIndices();
-
     /** The backing client-aware read write lock for each lock descriptor. */
-    private final LoadingCache<LockDescriptor, ClientAwareReadWriteLock> descriptorToLockMap =
-            CacheBuilder.newBuilder().weakValues().build(
-                    new CacheLoader<LockDescriptor, ClientAwareReadWriteLock>() {
-                        @Override
-                        public ClientAwareReadWriteLock load(LockDescriptor from) {
-                            return new LockServerLock(from, clientIndices);
-                        }
-                    });
+    private final LockTable lockTable = new LockTable(4 * Runtime.getRuntime().availableProcessors());
 
     /** The locks (and canonical token) associated with each HeldLocksToken. */
     private final ConcurrentMap<HeldLocksToken, HeldLocks<HeldLocksToken>> heldLocksTokenMap =
@@ -179,35 +182,48 @@ import com.palantir.util.Pair;
     private final ConcurrentMap<HeldLocksGrant, HeldLocks<HeldLocksGrant>> heldLocksGrantMap =
             new MapMaker().makeMap();
 
-    /** The priority queue of lock tokens waiting to be reaped. */
-    private final BlockingQueue<HeldLocksToken> lockTokenReaperQueue =
-            new PriorityBlockingQueue<HeldLocksToken>(1, ExpiringToken.COMPARATOR);
+    /** The lock tokens waiting to be reaped. */
+    private final TokenExpiryWheel<HeldLocksToken> lockTokenReaperWheel;
 
-    /** The priority queue of lock grants waiting to be reaped. */
-    private final BlockingQueue<HeldLocksGrant> lockGrantReaperQueue =
-            new PriorityBlockingQueue<HeldLocksGrant>(1, ExpiringToken.COMPARATOR);
+    /** The lock grants waiting to be reaped. */
+    private final TokenExpiryWheel<HeldLocksGrant> lockGrantReaperWheel;
 
     /** The mapping from lock client to the set of tokens held by that client. */
-    private final SetMultimap<LockClient, HeldLocksToken> lockClientMultimap =
-            Multimaps.synchronizedSetMultimap(HashMultimap.<LockClient, HeldLocksToken>create());
+    private final ConcurrentMultimap<LockClient, HeldLocksToken> lockClientMultimap =
+            new ConcurrentMultimap<LockClient, HeldLocksToken>(new Supplier<Set<HeldLocksToken>>() {
+                @Override
+                public Set<HeldLocksToken> get() {
+                    return Sets.newHashSet();
+                }
+            });
 
-    private final SetMultimap<LockClient, LockRequest> outstandingLockRequestMultimap =
-        Multimaps.synchronizedSetMultimap(HashMultimap.<LockClient, LockRequest>create());
+    private final ConcurrentMultimap<LockClient, LockRequest> outstandingLockRequestMultimap =
+            new ConcurrentMultimap<LockClient, LockRequest>(new Supplier<Set<LockRequest>>() {
+                @Override
+                public Set<LockRequest> get() {
+                    return Sets.newHashSet();
+                }
+            });
 
     private final Set<Thread> indefinitelyBlockingThreads =
             Sets.newConcurrentHashSet();
 
-    private final Multimap<LockClient, Long> versionIdMap = Multimaps.synchronizedMultimap(
-            Multimaps.newMultimap(Maps.<LockClient, Collection<Long>>newHashMap(), new Supplier<TreeMultiset<Long>>() {
+    private final Set<PendingLockRequest> pendingLockRequests =
+            Sets.newConcurrentHashSet();
+
+    private final ConcurrentMultimap<LockClient, Long> versionIdMap =
+            new ConcurrentMultimap<LockClient, Long>(new Supplier<TreeMultiset<Long>>() {
                 @Override
                 public TreeMultiset<Long> get() {
                     return TreeMultiset.create();
                 }
-            }));
+            });
 
     private static final AtomicInteger instanceCount = new AtomicInteger();
     private static final int MAX_FAILED_LOCKS_TO_LOG = 20;
     private static final int MAX_LOCKS_TO_LOG = 10000;
+    private static final long REAPER_TICK_MILLIS = 100;
+    private static final int REAPER_WHEEL_SIZE = 2048;
 
     /** Creates a new lock server instance with default options. */
     // TODO (jtamer) read lock server options from a prefs file
@@ -239,18 +255,22 @@ import com.palantir.util.Pair;
         maxAllowedBlockingDuration = SimpleTimeDuration.of(options.getMaxAllowedBlockingDuration());
         maxNormalLockAge = SimpleTimeDuration.of(options.getMaxNormalLockAge());
         randomBitCount = options.getRandomBitCount();
+        lockTokenReaperWheel = new TokenExpiryWheel<HeldLocksToken>(REAPER_TICK_MILLIS, REAPER_WHEEL_SIZE,
+                maxAllowedClockDrift.toMillis(), currentTimeMillis());
+        lockGrantReaperWheel = new TokenExpiryWheel<HeldLocksGrant>(REAPER_TICK_MILLIS, REAPER_WHEEL_SIZE,
+                maxAllowedClockDrift.toMillis(), currentTimeMillis());
         executor.execute(new Runnable() {
             @Override
             public void run() {
                 Thread.currentThread().setName("Held Locks Token Reaper");
-                reapLocks(lockTokenReaperQueue, heldLocksTokenMap);
+                reapLocks(lockTokenReaperWheel, heldLocksTokenMap);
             }
         });
         executor.execute(new Runnable() {
             @Override
             public void run() {
                 Thread.currentThread().setName("Held Locks Grant Reaper");
-                reapLocks(lockGrantReaperQueue, heldLocksGrantMap);
+                reapLocks(lockGrantReaperWheel, heldLocksGrantMap);
             }
         });
     }
@@ -266,7 +286,7 @@ import com.palantir.util.Pair;
                     expirationDateMs, lockDescriptorMap, lockTimeout, versionId);
             HeldLocks<HeldLocksToken> heldLocks = HeldLocks.of(token, heldLocksMap);
             if (heldLocksTokenMap.putIfAbsent(token, heldLocks) == null) {
-                lockTokenReaperQueue.add(token);
+                lockTokenReaperWheel.add(token);
                 if (!client.isAnonymous()) {
                     lockClientMultimap.put(client, token);
                 }
@@ -288,7 +308,7 @@ import com.palantir.util.Pair;
                     expirationDateMs, lockDescriptorMap, lockTimeout, versionId);
             HeldLocks<HeldLocksGrant> newHeldLocks = HeldLocks.of(grant, heldLocksMap);
             if (heldLocksGrantMap.putIfAbsent(grant, newHeldLocks) == null) {
-                lockGrantReaperQueue.add(grant);
+                lockGrantReaperWheel.add(grant);
                 return grant;
             }
             log.error("Lock ID collision! The RANDOM_BIT_COUNT constant must be increased. "
@@ -313,6 +333,60 @@ import com.palantir.util.Pair;
 
     @Override
     public LockResponse lockWithFullLockResponse(LockClient client, LockRequest request) throws InterruptedException {
+        ListenableFuture<LockResponse> response = lockWithFullLockResponseAsync(client, request);
+        if (response.isDone()) {
+            return getResponse(response);
+        }
+        boolean indefinitelyBlocking = isIndefinitelyBlocking(request.getBlockingMode());
+        if (indefinitelyBlocking) {
+            indefinitelyBlockingThreads.add(Thread.currentThread());
+        }
+        String previousThreadName = updateThreadName(request);
+        try {
+            return getResponse(response);
+        } catch (InterruptedException e) {
+            response.cancel(false);
+            throw e;
+        } finally {
+            tryRenameThread(previousThreadName);
+            indefinitelyBlockingThreads.remove(Thread.currentThread());
+        }
+    }
+
+    private static LockResponse getResponse(ListenableFuture<LockResponse> response) throws InterruptedException {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            throw Throwables.rewrapAndThrowUncheckedException(e.getCause());
+        }
+    }
+
+    @Override
+    public ListenableFuture<LockRefreshToken> lockAsync(String client, LockRequest request) {
+        Preconditions.checkArgument(request.getLockGroupBehavior() == LockGroupBehavior.LOCK_ALL_OR_NONE,
+                "lockAsync() only supports LockGroupBehavior.LOCK_ALL_OR_NONE. Consider using lockAndGetHeldLocksAsync().");
+        return Futures.transform(lockWithFullLockResponseAsync(LockClient.of(client), request),
+                new Function<LockResponse, LockRefreshToken>() {
+                    @Override
+                    public LockRefreshToken apply(LockResponse result) {
+                        return result.success() ? result.getLockRefreshToken() : null;
+                    }
+                });
+    }
+
+    @Override
+    public ListenableFuture<HeldLocksToken> lockAndGetHeldLocksAsync(String client, LockRequest request) {
+        return Futures.transform(lockWithFullLockResponseAsync(LockClient.of(client), request),
+                new Function<LockResponse, HeldLocksToken>() {
+                    @Override
+                    public HeldLocksToken apply(LockResponse result) {
+                        return result.getToken();
+                    }
+                });
+    }
+
+    @Override
+    public ListenableFuture<LockResponse> lockWithFullLockResponseAsync(LockClient client, LockRequest request) {
         Preconditions.checkNotNull(client);
         Preconditions.checkArgument(client != INTERNAL_LOCK_GRANT_CLIENT);
         Preconditions.checkArgument(request.getLockTimeout().compareTo(maxAllowedLockTimeout) <= 0,
@@ -322,33 +396,300 @@ import com.palantir.util.Pair;
                 || (request.getBlockingDuration().compareTo(maxAllowedBlockingDuration) <= 0),
                 "Requested blocking duration (%s) is greater than maximum allowed blocking duration (%s)",
                 request.getBlockingDuration(), maxAllowedBlockingDuration);
-        long startTime = System.currentTimeMillis();
         if (requestLogger.isDebugEnabled()) {
             requestLogger.debug("LockServiceImpl processing lock request {} for requesting thread {}",
                     request, request.getCreatingThreadName());
         }
-        Map<ClientAwareReadWriteLock, LockMode> locks = Maps.newLinkedHashMap();
         if (isShutDown) {
             throw new ServiceNotAvailableException("This lock server is shut down.");
         }
-        try {
-            boolean indefinitelyBlocking = isIndefinitelyBlocking(request.getBlockingMode());
-            if (indefinitelyBlocking) {
-                indefinitelyBlockingThreads.add(Thread.currentThread());
-            }
+        PendingLockRequest pendingRequest = new PendingLockRequest(client, request);
+        pendingRequest.start();
+        return pendingRequest.response;
+    }
+
+    private boolean isIndefinitelyBlocking(BlockingMode blockingMode) {
+        return BlockingMode.BLOCK_INDEFINITELY.equals(blockingMode) ||
+                BlockingMode.BLOCK_INDEFINITELY_THEN_RELEASE.equals(blockingMode);
+    }
+
+    /**
+     * A lock request that is being processed. Its locks are acquired one at a time in
+     * the order of the request's descriptors. When a lock is contended and the request
+     * may block, it leaves a waiter in that lock's queue and carries on from
+     * {@link #lockContinuationExecutor} once the waiter is granted, or withdrawn because
+     * the blocking duration ran out. No thread is held while the request waits.
+     */
+    private final class PendingLockRequest {
+        private final LockClient client;
+        private final LockRequest request;
+        private final long startTime = System.currentTimeMillis();
+        @Nullable private final Long deadline;
+        private final SettableFuture<LockResponse> response = SettableFuture.create();
+
+        @GuardedBy("this") private final Map<ClientAwareReadWriteLock, LockMode> locks = Maps.newLinkedHashMap();
+        // The lock table references this request holds; those of the locks in its token are handed to the token.
+        @GuardedBy("this") private final Map<LockDescriptor, ClientAwareReadWriteLock> referencedLocks =
+                Maps.newHashMap();
+        @GuardedBy("this") private final Map<LockDescriptor, LockClient> failedLocks = Maps.newHashMap();
+        @GuardedBy("this") private Iterator<Entry<LockDescriptor, LockMode>> remainingLocks;
+        @GuardedBy("this") private boolean done = false;
+
+        // The lock this request is currently waiting for, if any.
+        @GuardedBy("this") @Nullable private ListenableFuture<?> waiter;
+        @GuardedBy("this") @Nullable private ScheduledFuture<?> waiterTimeout;
+        @GuardedBy("this") private Entry<LockDescriptor, LockMode> waitingFor;
+        @GuardedBy("this") private ClientAwareReadWriteLock waitingLock;
+        @GuardedBy("this") private LockClient waitingLockHolder;
+        @GuardedBy("this") private long waitStartTime;
+
+        PendingLockRequest(LockClient client, LockRequest request) {
+            this.client = client;
+            this.request = request;
+            this.deadline = (request.getBlockingDuration() == null) ? null
+                    : System.nanoTime() + request.getBlockingDuration().toNanos();
+        }
+
+        void start() {
+            pendingLockRequests.add(this);
             outstandingLockRequestMultimap.put(client, request);
-            Map<LockDescriptor, LockClient> failedLocks = Maps.newHashMap();
-            @Nullable Long deadline = (request.getBlockingDuration() == null) ? null
-                : System.nanoTime() + request.getBlockingDuration().toNanos();
-            if (request.getBlockingMode() == BLOCK_UNTIL_TIMEOUT) {
-                if (request.getLockGroupBehavior() == LOCK_AS_MANY_AS_POSSIBLE) {
-                    tryLocks(client, request, DO_NOT_BLOCK, null, LOCK_AS_MANY_AS_POSSIBLE, locks,
-                            failedLocks);
+            response.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    if (response.isCancelled()) {
+                        abandon(null);
+                    }
+                }
+            }, MoreExecutors.directExecutor());
+            proceed(null);
+        }
+
+        /**
+         * Acquires as many of the remaining locks as possible without blocking.
+         *
+         * @param finishedWaiter the waiter this request was waiting for, which has
+         *        now either been granted or withdrawn
+         */
+        private void proceed(@Nullable ListenableFuture<?> finishedWaiter) {
+            LockResponse result;
+            try {
+                synchronized (this) {
+                    if (done) {
+                        return;
+                    }
+                    if (finishedWaiter == null) {
+                        if (request.getBlockingMode() == BLOCK_UNTIL_TIMEOUT
+                                && request.getLockGroupBehavior() == LOCK_AS_MANY_AS_POSSIBLE) {
+                            tryLocksWithoutBlocking();
+                        }
+                        remainingLocks = request.getLockDescriptors().entries().iterator();
+                        result = acquireRemainingLocks();
+                    } else if (finishWaiting(finishedWaiter)) {
+                        result = acquireRemainingLocks();
+                    } else {
+                        result = finish();
+                    }
+                }
+            } catch (Throwable t) { // (authorized)
+                abandon(t);
+                return;
+            }
+            if (result != null && !response.set(result) && result.getToken() != null) {
+                // The caller gave up on this request while we were finishing it.
+                unlock(result.getToken());
+            }
+        }
+
+        @GuardedBy("this") private void tryLocksWithoutBlocking() {
+            for (Entry<LockDescriptor, LockMode> entry : request.getLockDescriptors().entries()) {
+                ClientAwareReadWriteLock lock = getLock(entry.getKey());
+                if (locks.containsKey(lock)) {
+                    continue;
+                }
+                @Nullable LockClient currentHolder = lock.get(client, entry.getValue()).tryLock();
+                if (currentHolder == null) {
+                    locks.put(lock, entry.getValue());
+                } else {
+                    failedLocks.put(entry.getKey(), currentHolder);
+                }
+            }
+        }
+
+        /**
+         * @return the response, or null if the request is now waiting for a lock
+         */
+        @GuardedBy("this") @Nullable private LockResponse acquireRemainingLocks() {
+            while (remainingLocks.hasNext()) {
+                Entry<LockDescriptor, LockMode> entry = remainingLocks.next();
+                if (request.getBlockingMode() == BlockingMode.BLOCK_INDEFINITELY_THEN_RELEASE
+                        && !referencedLocks.containsKey(entry.getKey())
+                        && !lockTable.contains(entry.getKey())) {
+                    continue;
+                }
+                ClientAwareReadWriteLock lock = getLock(entry.getKey());
+                if (locks.containsKey(lock)) {
+                    // We already got this one when trying all the locks without blocking.
+                    continue;
+                }
+                KnownClientLock knownClientLock = lock.get(client, entry.getValue());
+                @Nullable LockClient currentHolder = knownClientLock.tryLock();
+                if (currentHolder == null) {
+                    locks.put(lock, entry.getValue());
+                    continue;
+                }
+                if (mayBlock()) {
+                    ListenableFuture<?> lockWaiter = knownClientLock.lockAsync();
+                    if (lockWaiter.isDone()) {
+                        locks.put(lock, entry.getValue());
+                        continue;
+                    }
+                    waitFor(entry, lock, currentHolder, lockWaiter);
+                    return null;
+                }
+                failedLocks.put(entry.getKey(), currentHolder);
+                if (request.getLockGroupBehavior() == LOCK_ALL_OR_NONE) {
+                    break;
+                }
+            }
+            return finish();
+        }
+
+        @GuardedBy("this") private boolean mayBlock() {
+            if (request.getBlockingMode() == DO_NOT_BLOCK) {
+                return false;
+            }
+            return deadline == null || deadline - System.nanoTime() > 0;
+        }
+
+        @GuardedBy("this") private void waitFor(Entry<LockDescriptor, LockMode> entry, ClientAwareReadWriteLock lock,
+                LockClient currentHolder, final ListenableFuture<?> lockWaiter) {
+            waiter = lockWaiter;
+            waitingFor = entry;
+            waitingLock = lock;
+            waitingLockHolder = currentHolder;
+            waitStartTime = System.currentTimeMillis();
+            if (deadline != null) {
+                waiterTimeout = blockingTimeoutExecutor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        lockWaiter.cancel(false);
+                    }
+                }, deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+            lockWaiter.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    proceed(lockWaiter);
+                }
+            }, lockContinuationExecutor);
+        }
+
+        /**
+         * @return false if the request should not try to acquire any more locks
+         */
+        @GuardedBy("this") private boolean finishWaiting(ListenableFuture<?> finishedWaiter) {
+            Preconditions.checkState(finishedWaiter == waiter);
+            waiter = null;
+            if (waiterTimeout != null) {
+                waiterTimeout.cancel(false);
+                waiterTimeout = null;
+            }
+            boolean acquired = !finishedWaiter.isCancelled();
+            if (log.isDebugEnabled()) {
+                long duration = System.currentTimeMillis() - waitStartTime;
+                if (duration > 100) {
+                    log.debug("Blocked for {} ms to acquire lock {} {}.",
+                            duration,
+                            waitingFor.getKey().getLockIdAsString(),
+                            acquired ? "successfully" : "unsuccessfully");
                 }
             }
-            tryLocks(client, request, request.getBlockingMode(), deadline,
-                    request.getLockGroupBehavior(), locks, failedLocks);
+            if (acquired) {
+                locks.put(waitingLock, waitingFor.getValue());
+                return true;
+            }
+            failedLocks.put(waitingFor.getKey(), waitingLockHolder);
+            return request.getLockGroupBehavior() != LOCK_ALL_OR_NONE;
+        }
+
+        @GuardedBy("this") private LockResponse finish() {
+            done = true;
+            stopTracking();
+            try {
+                return createResponse();
+            } finally {
+                releaseLocks();
+                releaseReferences();
+            }
+        }
+
+        @GuardedBy("this") private ClientAwareReadWriteLock getLock(LockDescriptor descriptor) {
+            ClientAwareReadWriteLock lock = referencedLocks.get(descriptor);
+            if (lock == null) {
+                lock = lockTable.acquire(descriptor);
+                referencedLocks.put(descriptor, lock);
+            }
+            return lock;
+        }
+
+        @GuardedBy("this") private void releaseReferences() {
+            for (ClientAwareReadWriteLock lock : referencedLocks.values()) {
+                lockTable.release(lock);
+            }
+            referencedLocks.clear();
+        }
+
+        /**
+         * Gives up on this request, releasing any locks it acquired. If a reason is given
+         * the response fails with it; otherwise the response has already been cancelled.
+         */
+        void abandon(@Nullable Throwable reason) {
+            synchronized (this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                stopTracking();
+                if (waiter != null) {
+                    if (!waiter.cancel(false)) {
+                        // The waiter was granted while we were giving up.
+                        locks.put(waitingLock, waitingFor.getValue());
+                    }
+                    waiter = null;
+                }
+                if (waiterTimeout != null) {
+                    waiterTimeout.cancel(false);
+                    waiterTimeout = null;
+                }
+                try {
+                    releaseLocks();
+                } finally {
+                    releaseReferences();
+                }
+            }
+            if (reason != null) {
+                response.setException(reason);
+            }
+        }
+
+        @GuardedBy("this") private void stopTracking() {
+            outstandingLockRequestMultimap.remove(client, request);
+            pendingLockRequests.remove(this);
+        }
 
+        @GuardedBy("this") private void releaseLocks() {
+            try {
+                for (Entry<ClientAwareReadWriteLock, LockMode> entry : locks.entrySet()) {
+                    entry.getKey().get(client, entry.getValue()).unlock();
+                }
+                locks.clear();
+            } catch (Throwable e) { // (authorized)
+                log.error("Internal lock server error: state has been corrupted!!", e);
+                throw Throwables.throwUncheckedException(e);
+            }
+        }
+
+        @GuardedBy("this") private LockResponse createResponse() {
             if (request.getBlockingMode() == BlockingMode.BLOCK_INDEFINITELY_THEN_RELEASE) {
                 if (log.isTraceEnabled()) {
                     log.trace(".lock(" + client + ", " + request + ") returns null");
@@ -394,104 +735,20 @@ import com.palantir.util.Pair;
             if (request.getVersionId() != null) {
                 versionIdMap.put(client, request.getVersionId());
             }
-            HeldLocksToken token = createHeldLocksToken(client, LockCollections.of(lockDescriptorMap.build()), LockCollections.of(locks),
-                    request.getLockTimeout(), request.getVersionId());
+            HeldLocksToken token = createHeldLocksToken(client, LockCollections.of(lockDescriptorMap.build()),
+                    LockCollections.of(locks), request.getLockTimeout(), request.getVersionId());
+            for (ClientAwareReadWriteLock lock : locks.keySet()) {
+                referencedLocks.remove(lock.getDescriptor());
+            }
             locks.clear();
             if (log.isTraceEnabled()) {
                 log.trace(".lock(" + client + ", " + request + ") returns " + token);
             }
-            if (Thread.interrupted()) {
-                throw new InterruptedException("Interrupted while locking.");
-            }
             if (requestLogger.isDebugEnabled()) {
                 requestLogger.debug("Successfully acquired locks {} for requesting thread {} after {} ms",
                         request, request.getCreatingThreadName(), System.currentTimeMillis() - startTime);
             }
             return new LockResponse(token, failedLocks);
-        } finally {
-            outstandingLockRequestMultimap.remove(client, request);
-            indefinitelyBlockingThreads.remove(Thread.currentThread());
-            try {
-                for (Entry<ClientAwareReadWriteLock, LockMode> entry : locks.entrySet()) {
-                    entry.getKey().get(client, entry.getValue()).unlock();
-                }
-            } catch (Throwable e) { // (authorized)
-                log.error("Internal lock server error: state has been corrupted!!", e);
-                throw Throwables.throwUncheckedException(e);
-            }
-        }
-    }
-
-    private boolean isIndefinitelyBlocking(BlockingMode blockingMode) {
-        return BlockingMode.BLOCK_INDEFINITELY.equals(blockingMode) ||
-                BlockingMode.BLOCK_INDEFINITELY_THEN_RELEASE.equals(blockingMode);
-    }
-
-    private void tryLocks(LockClient client, LockRequest request, BlockingMode blockingMode,
-            @Nullable Long deadline, LockGroupBehavior lockGroupBehavior,
-            Map<? super ClientAwareReadWriteLock, ? super LockMode> locks,
-            Map<? super LockDescriptor, ? super LockClient> failedLocks)
-            throws InterruptedException {
-        String previousThreadName = null;
-        try {
-            previousThreadName = updateThreadName(request);
-            for (Entry<LockDescriptor, LockMode> entry : request.getLockDescriptors().entries()) {
-                if (blockingMode == BlockingMode.BLOCK_INDEFINITELY_THEN_RELEASE
-                        && !descriptorToLockMap.asMap().containsKey(entry.getKey())) {
-                    continue;
-                }
-
-                ClientAwareReadWriteLock lock;
-                try {
-                    lock = descriptorToLockMap.get(entry.getKey());
-                } catch (ExecutionException e) {
-                    throw new RuntimeException(e.getCause());
-                }
-                if (locks.containsKey(lock)) {
-                    // This is the 2nd time we are calling tryLocks and we already locked this one.
-                    continue;
-                }
-                long startTime = System.currentTimeMillis();
-                @Nullable LockClient currentHolder = tryLock(lock.get(client, entry.getValue()),
-                        blockingMode, deadline);
-                if (log.isDebugEnabled()) {
-                    long duration = System.currentTimeMillis() - startTime;
-                    if (duration > 100) {
-                        log.debug("Blocked for {} ms to acquire lock {} {}.",
-                                duration,
-                                entry.getKey().getLockIdAsString(),
-                                currentHolder == null ? "successfully" : "unsuccessfully");
-                    }
-                }
-                if (currentHolder == null) {
-                    locks.put(lock, entry.getValue());
-                } else {
-                    failedLocks.put(entry.getKey(), currentHolder);
-                    if (lockGroupBehavior == LOCK_ALL_OR_NONE) {
-                        return;
-                    }
-                }
-            }
-        } finally {
-            if (previousThreadName != null) {
-                tryRenameThread(previousThreadName);
-            }
-        }
-    }
-
-    @Nullable private LockClient tryLock(KnownClientLock lock, BlockingMode blockingMode,
-            @Nullable Long deadline) throws InterruptedException {
-        switch (blockingMode) {
-        case DO_NOT_BLOCK:
-            return lock.tryLock();
-        case BLOCK_UNTIL_TIMEOUT:
-            return lock.tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
-        case BLOCK_INDEFINITELY:
-        case BLOCK_INDEFINITELY_THEN_RELEASE:
-            lock.lockInterruptibly();
-            return null;
-        default:
-            throw new IllegalArgumentException("blockingMode = " + blockingMode);
         }
     }
 
@@ -538,7 +795,7 @@ import com.palantir.util.Pair;
         LockClient client = heldLocks.realToken.getClient();
         if (client.isAnonymous()) {
             heldLocksTokenMap.put(token, heldLocks);
-            lockTokenReaperQueue.add(token);
+            lockTokenReaperWheel.add(token);
             String errorMessage =
                     "Received .unlockAndFreeze() call for anonymous client with token "
                     + heldLocks.realToken;
@@ -547,7 +804,7 @@ import com.palantir.util.Pair;
         }
         if (heldLocks.locks.hasReadLock()) {
             heldLocksTokenMap.put(token, heldLocks);
-            lockTokenReaperQueue.add(token);
+            lockTokenReaperWheel.add(token);
             String errorMessage = "Received .unlockAndFreeze() call for read locks: "
                     + heldLocks.realToken;
             log.warn(errorMessage);
@@ -555,6 +812,7 @@ import com.palantir.util.Pair;
         }
         for (ClientAwareReadWriteLock lock : heldLocks.locks.getKeys()) {
             lock.get(client, LockMode.WRITE).unlockAndFreeze();
+            lockTable.release(lock);
         }
         lockClientMultimap.remove(client, token);
         if (heldLocks.realToken.getVersionId() != null) {
@@ -586,6 +844,7 @@ import com.palantir.util.Pair;
         }
         for (Entry<? extends ClientAwareReadWriteLock, LockMode> entry : heldLocks.locks.entries()) {
             entry.getKey().get(client, entry.getValue()).unlock();
+            lockTable.release(entry.getKey());
         }
         if (heldLocks.realToken.getVersionId() != null) {
             versionIdMap.remove(client, heldLocks.realToken.getVersionId());
@@ -602,12 +861,17 @@ import com.palantir.util.Pair;
             throw new IllegalArgumentException("Illegal client!");
         }
         ImmutableSet.Builder<HeldLocksToken> tokens = ImmutableSet.builder();
-        synchronized (lockClientMultimap) {
-            for (HeldLocksToken token : lockClientMultimap.get(client)) {
-                @Nullable HeldLocks<HeldLocksToken> heldLocks = heldLocksTokenMap.get(token);
-                if ((heldLocks != null) && !isFrozen(heldLocks.locks.getKeys())) {
-                    tokens.add(token);
-                }
+        List<HeldLocksToken> clientTokens = lockClientMultimap.apply(client,
+                new Function<Collection<HeldLocksToken>, List<HeldLocksToken>>() {
+                    @Override
+                    public List<HeldLocksToken> apply(Collection<HeldLocksToken> input) {
+                        return ImmutableList.copyOf(input);
+                    }
+                });
+        for (HeldLocksToken token : clientTokens) {
+            @Nullable HeldLocks<HeldLocksToken> heldLocks = heldLocksTokenMap.get(token);
+            if ((heldLocks != null) && !isFrozen(heldLocks.locks.getKeys())) {
+                tokens.add(token);
             }
         }
         ImmutableSet<HeldLocksToken> tokenSet = tokens.build();
@@ -760,7 +1024,7 @@ import com.palantir.util.Pair;
         }
         if (isFrozen(heldLocks.locks.getKeys())) {
             heldLocksTokenMap.put(token, heldLocks);
-            lockTokenReaperQueue.add(token);
+            lockTokenReaperWheel.add(token);
             log.warn("Cannot convert to grant because token is frozen: " + token);
             throw new IllegalArgumentException("token is frozen: " + token);
         }
@@ -769,7 +1033,7 @@ import com.palantir.util.Pair;
                     INTERNAL_LOCK_GRANT_CLIENT);
         } catch (IllegalMonitorStateException e) {
             heldLocksTokenMap.put(token, heldLocks);
-            lockTokenReaperQueue.add(token);
+            lockTokenReaperWheel.add(token);
             log.warn("Failure converting " + token + " to grant", e);
             throw e;
         }
@@ -880,57 +1144,55 @@ import com.palantir.util.Pair;
 
     @Override
     @Nullable public Long getMinLockedInVersionId(LockClient client) {
-        Long versionId = null;
-        synchronized (versionIdMap) {
-            Collection<Long> versionsForClient = versionIdMap.get(client);
-            if (versionsForClient != null && !versionsForClient.isEmpty()) {
-                versionId = versionsForClient.iterator().next();
+        Long versionId = versionIdMap.apply(client, new Function<Collection<Long>, Long>() {
+            @Override
+            @Nullable
+            public Long apply(Collection<Long> versionsForClient) {
+                // The versions of each client are kept in a sorted multiset.
+                return Iterables.getFirst(versionsForClient, null);
             }
-        }
+        });
         if (log.isTraceEnabled()) {
             log.trace(".getMinLockedInVersionId() returns " + versionId);
         }
         return versionId;
     }
 
-    private <T extends ExpiringToken> void reapLocks(BlockingQueue<T> queue,
+    private <T extends ExpiringToken> void reapLocks(TokenExpiryWheel<T> wheel,
             ConcurrentMap<T, HeldLocks<T>> heldLocksMap) {
         while (true) {
+            List<T> expiredTokens;
             try {
-                T token = null;
+                expiredTokens = wheel.awaitExpired();
+            } catch (InterruptedException e) {
+                if (isShutDown) {
+                    break;
+                }
+                log.warn("The lock server reaper thread should not be " +
+                        "interrupted if the server is not shutting down.", e);
+                continue;
+            } catch (Throwable t) {
+                log.error("Something went wrong while reaping locks. Attempting to continue anyway.", t);
+                continue;
+            }
+            for (T token : expiredTokens) {
                 try {
-                    token = queue.take();
-                    long sleepTimeMs = token.getExpirationDateMs() - currentTimeMillis()
-                            + maxAllowedClockDrift.toMillis();
-                    if (sleepTimeMs > 0) {
-                        Thread.sleep(sleepTimeMs);
+                    @Nullable HeldLocks<T> heldLocks = heldLocksMap.get(token);
+                    if (heldLocks == null) {
+                        continue;
                     }
-                } catch (InterruptedException e) {
-                    if (isShutDown) {
-                        break;
+                    T realToken = heldLocks.realToken;
+                    if (realToken.getExpirationDateMs() > currentTimeMillis()
+                            - maxAllowedClockDrift.toMillis()) {
+                        wheel.add(realToken);
                     } else {
-                        log.warn("The lock server reaper thread should not be " +
-                                "interrupted if the server is not shutting down.", e);
-                        if (token == null) {
-                            continue;
-                        }
+                        log.warn("Lock token " + realToken
+                                + " was not properly refreshed and is now being reaped.");
+                        unlockInternal(realToken, heldLocksMap);
                     }
+                } catch (Throwable t) {
+                    log.error("Something went wrong while reaping locks. Attempting to continue anyway.", t);
                 }
-                @Nullable HeldLocks<T> heldLocks = heldLocksMap.get(token);
-                if (heldLocks == null) {
-                    continue;
-                }
-                T realToken = heldLocks.realToken;
-                if (realToken.getExpirationDateMs() > currentTimeMillis()
-                        - maxAllowedClockDrift.toMillis()) {
-                    queue.add(realToken);
-                } else {
-                    log.warn("Lock token " + realToken
-                            + " was not properly refreshed and is now being reaped.");
-                    unlockInternal(realToken, heldLocksMap);
-                }
-            } catch (Throwable t) {
-                log.error("Something went wrong while reaping locks. Attempting to continue anyway.", t);
             }
         }
     }
@@ -961,15 +1223,8 @@ import com.palantir.util.Pair;
         return options;
     }
 
-    private <T> List<T> queueToOrderedList(Queue<T> queue) {
-        List<T> list = Lists.newLinkedList();
-        while (!queue.isEmpty()) {
-            list.add(queue.poll());
-        }
-        for (T element : list) {
-            queue.add(element);
-        }
-        return list;
+    private <T extends ExpiringToken> List<T> getOrderedTokens(TokenExpiryWheel<T> wheel) {
+        return Ordering.from(ExpiringToken.COMPARATOR).sortedCopy(wheel.getScheduledTokens());
     }
 
     /**
@@ -986,14 +1241,14 @@ import com.palantir.util.Pair;
         logString.append("maxAllowedBlockingDuration = ").append(maxAllowedBlockingDuration).append("\n");
         logString.append("randomBitCount = ").append(randomBitCount).append("\n");
         for (Pair<String, ? extends Collection<?>> nameValuePair : ImmutableList.of(
-                Pair.create("descriptorToLockMap", descriptorToLockMap.asMap().entrySet()),
-                Pair.create("outstandingLockRequestMultimap", outstandingLockRequestMultimap.asMap().entrySet()),
+                Pair.create("lockTable", lockTable.getLocks().entrySet()),
+                Pair.create("outstandingLockRequestMultimap", outstandingLockRequestMultimap.copy().entrySet()),
                 Pair.create("heldLocksTokenMap", heldLocksTokenMap.entrySet()),
                 Pair.create("heldLocksGrantMap", heldLocksGrantMap.entrySet()),
-                Pair.create("lockTokenReaperQueue", queueToOrderedList(lockTokenReaperQueue)),
-                Pair.create("lockGrantReaperQueue", queueToOrderedList(lockGrantReaperQueue)),
-                Pair.create("lockClientMultimap", lockClientMultimap.asMap().entrySet()),
-                Pair.create("versionIdMap", versionIdMap.asMap().entrySet()))) {
+                Pair.create("lockTokenReaperWheel", getOrderedTokens(lockTokenReaperWheel)),
+                Pair.create("lockGrantReaperWheel", getOrderedTokens(lockGrantReaperWheel)),
+                Pair.create("lockClientMultimap", lockClientMultimap.copy().entrySet()),
+                Pair.create("versionIdMap", versionIdMap.copy().entrySet()))) {
             Collection<?> elements = nameValuePair.getRhSide();
             logString.append(nameValuePair.getLhSide()).append(".size() = ").append(elements.size()).append("\n");
             if (elements.size() > MAX_LOCKS_TO_LOG) {
@@ -1013,6 +1268,11 @@ import com.palantir.util.Pair;
         isShutDown = true;
         executor.shutdownNow();
         wakeIndefiniteBlockers();
+        for (PendingLockRequest request : pendingLockRequests) {
+            request.abandon(new ServiceNotAvailableException("This lock server is shut down."));
+        }
+        lockContinuationExecutor.shutdownNow();
+        blockingTimeoutExecutor.shutdownNow();
         callOnClose.run();
     }
 
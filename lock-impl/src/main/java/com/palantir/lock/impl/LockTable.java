@@ -0,0 +1,132 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.palantir.lock.LockDescriptor;
+
+/**
+ * The backing client-aware read write lock for each lock descriptor that is in use.
+ * <p>
+ * The table is split into shards by descriptor hash, each with its own monitor and its
+ * own {@link LockClientIndices}, so requests for unrelated locks rarely touch the same
+ * shard. Entries are reference counted: every pending lock request, token and grant
+ * that uses a lock holds a reference to it, and the entry is dropped as soon as the
+ * last reference is released. A lock that is held or waited for therefore always
+ * resolves to the same object, without going through weak references.
+ */
+@ThreadSafe
+final class LockTable {
+    private final List<Shard> shards;
+    private final int shardMask;
+
+    /**
+     * @param minShards the table uses the smallest power of two at least this large
+     */
+    LockTable(int minShards) {
+        Preconditions.checkArgument(minShards > 0, "minShards must be positive");
+        int shardCount = Integer.highestOneBit(minShards);
+        if (shardCount < minShards) {
+            shardCount <<= 1;
+        }
+        shards = Lists.newArrayListWithCapacity(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            shards.add(new Shard());
+        }
+        shardMask = shardCount - 1;
+    }
+
+    /**
+     * Returns the lock for the descriptor, creating it if needed, and takes a reference
+     * to it. Every call must be matched by a call to {@link #release}.
+     */
+    ClientAwareReadWriteLock acquire(LockDescriptor descriptor) {
+        Shard shard = shardFor(descriptor);
+        synchronized (shard) {
+            RefCountedLock entry = shard.locks.get(descriptor);
+            if (entry == null) {
+                entry = new RefCountedLock(new LockServerLock(descriptor, shard.clients));
+                shard.locks.put(descriptor, entry);
+            }
+            entry.refCount++;
+            return entry.lock;
+        }
+    }
+
+    /** Drops a reference taken by {@link #acquire}. */
+    void release(ClientAwareReadWriteLock lock) {
+        Shard shard = shardFor(lock.getDescriptor());
+        synchronized (shard) {
+            RefCountedLock entry = shard.locks.get(lock.getDescriptor());
+            Preconditions.checkState(entry != null && entry.lock == lock,
+                    "Released a lock that is not in the lock table: %s", lock);
+            if (--entry.refCount == 0) {
+                shard.locks.remove(lock.getDescriptor());
+            }
+        }
+    }
+
+    /** Returns true if someone currently holds a reference to the descriptor's lock. */
+    boolean contains(LockDescriptor descriptor) {
+        Shard shard = shardFor(descriptor);
+        synchronized (shard) {
+            return shard.locks.containsKey(descriptor);
+        }
+    }
+
+    /** Returns a copy of the table, for logging. */
+    Map<LockDescriptor, ClientAwareReadWriteLock> getLocks() {
+        Map<LockDescriptor, ClientAwareReadWriteLock> locks = Maps.newHashMap();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (RefCountedLock entry : shard.locks.values()) {
+                    locks.put(entry.lock.getDescriptor(), entry.lock);
+                }
+            }
+        }
+        return locks;
+    }
+
+    private Shard shardFor(LockDescriptor descriptor) {
+        int hash = descriptor.hashCode();
+        // Spread the high bits down, the low bits of byte array hashes are not very random.
+        hash ^= (hash >>> 20) ^ (hash >>> 12);
+        hash ^= (hash >>> 7) ^ (hash >>> 4);
+        return shards.get(hash & shardMask);
+    }
+
+    private static final class Shard {
+        final LockClientIndices clients = new LockClientIndices();
+        @GuardedBy("this") final Map<LockDescriptor, RefCountedLock> locks = Maps.newHashMap();
+    }
+
+    private static final class RefCountedLock {
+        final LockServerLock lock;
+        @GuardedBy("shard") int refCount = 0;
+
+        RefCountedLock(LockServerLock lock) {
+            this.lock = lock;
+        }
+    }
+}
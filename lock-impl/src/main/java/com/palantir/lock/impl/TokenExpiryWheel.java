@@ -0,0 +1,142 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.palantir.lock.ExpiringToken;
+
+/**
+ * A hashed timing wheel of tokens waiting to be reaped. Each bucket of the wheel
+ * covers one tick, and a token is hashed into the bucket of the tick in which it
+ * becomes due, which is its expiration date plus the allowed clock drift. Tokens
+ * that are due more than one revolution ahead stay in their bucket until the wheel
+ * comes around to their tick.
+ * <p>
+ * Adding a token is O(1) and never contends with the reaper: new tokens go onto a
+ * lock-free queue and are only hashed into the wheel by the reaper thread when it
+ * advances. The reaper gets all tokens that became due during a tick in one batch.
+ */
+@ThreadSafe
+final class TokenExpiryWheel<T extends ExpiringToken> {
+    private final long tickMillis;
+    private final long clockDriftMillis;
+    private final Queue<T> incoming = new ConcurrentLinkedQueue<T>();
+    @GuardedBy("this") private final List<ArrayDeque<T>> buckets;
+    @GuardedBy("this") private long lastTick;
+
+    /**
+     * @param tickMillis how much time each bucket covers
+     * @param wheelSize the number of buckets
+     * @param clockDriftMillis how long after its expiration date a token becomes due
+     * @param nowMillis the current time
+     */
+    TokenExpiryWheel(long tickMillis, int wheelSize, long clockDriftMillis, long nowMillis) {
+        Preconditions.checkArgument(tickMillis > 0, "tickMillis must be positive");
+        Preconditions.checkArgument(wheelSize > 0, "wheelSize must be positive");
+        this.tickMillis = tickMillis;
+        this.clockDriftMillis = clockDriftMillis;
+        this.buckets = Lists.newArrayListWithCapacity(wheelSize);
+        for (int i = 0; i < wheelSize; i++) {
+            buckets.add(new ArrayDeque<T>());
+        }
+        this.lastTick = nowMillis / tickMillis;
+    }
+
+    /** Schedules the token to be handed out once it becomes due. */
+    void add(T token) {
+        incoming.add(token);
+    }
+
+    /**
+     * Sleeps until the end of the current tick and then returns every token that
+     * has become due.
+     */
+    List<T> awaitExpired() throws InterruptedException {
+        long nextTickMillis;
+        synchronized (this) {
+            nextTickMillis = (lastTick + 1) * tickMillis;
+        }
+        long sleepTimeMs = nextTickMillis - System.currentTimeMillis();
+        if (sleepTimeMs > 0) {
+            Thread.sleep(sleepTimeMs);
+        }
+        return expire(System.currentTimeMillis());
+    }
+
+    /**
+     * Advances the wheel to the given time and returns every token that has become due.
+     */
+    synchronized List<T> expire(long nowMillis) {
+        transferIncoming();
+        long nowTick = nowMillis / tickMillis;
+        if (nowTick <= lastTick) {
+            return ImmutableList.of();
+        }
+        List<T> expired = Lists.newArrayList();
+        // Every bucket holds the tokens of all ticks that map to it, so after a long
+        // pause one revolution is enough to find everything that is due.
+        long lastTickToVisit = Math.min(nowTick, lastTick + buckets.size());
+        for (long tick = lastTick + 1; tick <= lastTickToVisit; tick++) {
+            ArrayDeque<T> bucket = bucketFor(tick);
+            for (int i = bucket.size(); i > 0; i--) {
+                T token = bucket.poll();
+                if (getDueTick(token) <= nowTick) {
+                    expired.add(token);
+                } else {
+                    bucket.add(token);
+                }
+            }
+        }
+        lastTick = nowTick;
+        return expired;
+    }
+
+    @GuardedBy("this") private void transferIncoming() {
+        for (T token = incoming.poll(); token != null; token = incoming.poll()) {
+            // Tokens that are already due go into the next bucket we look at.
+            bucketFor(Math.max(getDueTick(token), lastTick + 1)).add(token);
+        }
+    }
+
+    @GuardedBy("this") private ArrayDeque<T> bucketFor(long tick) {
+        return buckets.get((int) (tick % buckets.size()));
+    }
+
+    private long getDueTick(T token) {
+        long dueMillis = token.getExpirationDateMs() + clockDriftMillis;
+        // Round up so a token is never handed out before it is due.
+        return (dueMillis + tickMillis - 1) / tickMillis;
+    }
+
+    /** Returns the tokens currently scheduled, in no particular order. */
+    synchronized List<T> getScheduledTokens() {
+        List<T> tokens = Lists.newArrayList(incoming);
+        for (ArrayDeque<T> bucket : buckets) {
+            tokens.addAll(bucket);
+        }
+        return tokens;
+    }
+}
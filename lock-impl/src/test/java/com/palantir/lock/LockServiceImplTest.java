@@ -35,6 +35,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.palantir.common.concurrent.InterruptibleFuture;
 import com.palantir.common.concurrent.NamedThreadFactory;
 import com.palantir.common.concurrent.PTExecutors;
@@ -1094,6 +1095,79 @@ public final class LockServiceImplTest {
         Assert.assertEquals("lock2", lock2.getLockIdAsString());
     }
 
+    /** Tests that waiting asynchronous requests are granted in order as the lock is released. */
+    @Test public void testAsyncLockWaitsForContendedLock() throws Exception {
+        LockServiceImpl asyncServer = LockServiceImpl.create();
+        try {
+            HeldLocksToken holderToken = asyncServer.lockAndGetHeldLocks(client.getClientId(),
+                    LockRequest.builder(ImmutableSortedMap.of(lock1, LockMode.WRITE)).build());
+            List<ListenableFuture<LockResponse>> responses = Lists.newArrayList();
+            for (int i = 0; i < 100; i++) {
+                responses.add(asyncServer.lockWithFullLockResponseAsync(LockClient.of("waiter " + i),
+                        LockRequest.builder(ImmutableSortedMap.of(lock1, LockMode.WRITE)).build()));
+            }
+            for (ListenableFuture<LockResponse> response : responses) {
+                Assert.assertFalse(response.isDone());
+            }
+
+            asyncServer.unlock(holderToken);
+            for (int i = 0; i < responses.size(); i++) {
+                LockResponse response = responses.get(i).get(10, TimeUnit.SECONDS);
+                Assert.assertTrue(response.success());
+                Assert.assertEquals(LockClient.of("waiter " + i), response.getToken().getClient());
+                if (i + 1 < responses.size()) {
+                    Assert.assertFalse(responses.get(i + 1).isDone());
+                }
+                asyncServer.unlock(response.getToken());
+            }
+        } finally {
+            asyncServer.close();
+        }
+    }
+
+    /** Tests that an asynchronous request gives up once its blocking duration runs out. */
+    @Test public void testAsyncLockTimesOut() throws Exception {
+        LockServiceImpl asyncServer = LockServiceImpl.create();
+        try {
+            HeldLocksToken holderToken = asyncServer.lockAndGetHeldLocks(client.getClientId(),
+                    LockRequest.builder(ImmutableSortedMap.of(lock1, LockMode.WRITE)).build());
+            ListenableFuture<LockResponse> response = asyncServer.lockWithFullLockResponseAsync(LockClient.ANONYMOUS,
+                    LockRequest.builder(ImmutableSortedMap.of(lock1, LockMode.READ, lock2, LockMode.WRITE))
+                            .blockForAtMost(SimpleTimeDuration.of(50, TimeUnit.MILLISECONDS)).build());
+
+            LockResponse result = response.get(10, TimeUnit.SECONDS);
+            Assert.assertFalse(result.success());
+            Assert.assertEquals(ImmutableMap.of(lock1, client), result.getLockHolders());
+            // The request must not have kept lock2.
+            Assert.assertNotNull(asyncServer.lockAndGetHeldLocks(client.getClientId(),
+                    LockRequest.builder(ImmutableSortedMap.of(lock2, LockMode.WRITE)).doNotBlock().build()));
+            asyncServer.unlock(holderToken);
+        } finally {
+            asyncServer.close();
+        }
+    }
+
+    /** Tests that cancelling a waiting asynchronous request releases what it holds and leaves the queue. */
+    @Test public void testCancelAsyncLock() throws Exception {
+        LockServiceImpl asyncServer = LockServiceImpl.create();
+        try {
+            HeldLocksToken holderToken = asyncServer.lockAndGetHeldLocks(client.getClientId(),
+                    LockRequest.builder(ImmutableSortedMap.of(lock2, LockMode.WRITE)).build());
+            ListenableFuture<LockResponse> response = asyncServer.lockWithFullLockResponseAsync(LockClient.ANONYMOUS,
+                    LockRequest.builder(ImmutableSortedMap.of(lock1, LockMode.WRITE, lock2, LockMode.WRITE)).build());
+            Assert.assertFalse(response.isDone());
+            Assert.assertTrue(response.cancel(false));
+
+            Assert.assertNotNull(asyncServer.lockAndGetHeldLocks(client.getClientId(),
+                    LockRequest.builder(ImmutableSortedMap.of(lock1, LockMode.WRITE)).doNotBlock().build()));
+            asyncServer.unlock(holderToken);
+            Assert.assertNotNull(asyncServer.lockAndGetHeldLocks("other client",
+                    LockRequest.builder(ImmutableSortedMap.of(lock2, LockMode.WRITE)).doNotBlock().build()));
+        } finally {
+            asyncServer.close();
+        }
+    }
+
     @Test
     public void testReentrantReadRead() throws InterruptedException {
         testReentrancy(LockMode.READ, LockMode.READ);
@@ -0,0 +1,61 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.palantir.lock.LockDescriptor;
+import com.palantir.lock.StringLockDescriptor;
+
+public class LockTableTest {
+    private static final LockDescriptor LOCK = StringLockDescriptor.of("lock");
+    private static final LockDescriptor OTHER_LOCK = StringLockDescriptor.of("other lock");
+
+    private final LockTable lockTable = new LockTable(3);
+
+    @Test
+    public void testSameLockWhileReferenced() {
+        ClientAwareReadWriteLock first = lockTable.acquire(LOCK);
+        ClientAwareReadWriteLock second = lockTable.acquire(LOCK);
+        Assert.assertSame(first, second);
+        Assert.assertNotSame(first, lockTable.acquire(OTHER_LOCK));
+
+        lockTable.release(first);
+        Assert.assertTrue(lockTable.contains(LOCK));
+        Assert.assertSame(second, lockTable.acquire(LOCK));
+        Assert.assertEquals(2, lockTable.getLocks().size());
+    }
+
+    @Test
+    public void testEntryRemovedWithLastReference() {
+        ClientAwareReadWriteLock first = lockTable.acquire(LOCK);
+        lockTable.acquire(LOCK);
+        lockTable.release(first);
+        lockTable.release(first);
+        Assert.assertFalse(lockTable.contains(LOCK));
+        Assert.assertTrue(lockTable.getLocks().isEmpty());
+        Assert.assertNotSame(first, lockTable.acquire(LOCK));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleaseOfStaleLockFails() {
+        ClientAwareReadWriteLock stale = lockTable.acquire(LOCK);
+        lockTable.release(stale);
+        lockTable.acquire(LOCK);
+        lockTable.release(stale);
+    }
+}
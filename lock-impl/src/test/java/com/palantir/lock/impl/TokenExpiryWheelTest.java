@@ -0,0 +1,110 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.lock.impl;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSortedMap;
+import com.palantir.lock.HeldLocksGrant;
+import com.palantir.lock.LockCollections;
+import com.palantir.lock.LockDescriptor;
+import com.palantir.lock.LockMode;
+import com.palantir.lock.SimpleTimeDuration;
+import com.palantir.lock.StringLockDescriptor;
+
+public class TokenExpiryWheelTest {
+    private static final long TICK_MILLIS = 100;
+    private static final int WHEEL_SIZE = 16;
+    private static final long CLOCK_DRIFT_MILLIS = 50;
+    private static final long START_MILLIS = 1000000;
+    private static final LockDescriptor LOCK = StringLockDescriptor.of("lock");
+
+    @Test
+    public void testTokensExpireOnceDue() {
+        TokenExpiryWheel<HeldLocksGrant> wheel = new TokenExpiryWheel<HeldLocksGrant>(
+                TICK_MILLIS, WHEEL_SIZE, CLOCK_DRIFT_MILLIS, START_MILLIS);
+        HeldLocksGrant early = grant(1, START_MILLIS + 250);
+        HeldLocksGrant late = grant(2, START_MILLIS + 1000);
+        wheel.add(late);
+        wheel.add(early);
+
+        Assert.assertEquals(ImmutableList.of(), wheel.expire(START_MILLIS + 250));
+        Assert.assertEquals(ImmutableList.of(early), wheel.expire(START_MILLIS + 300));
+        Assert.assertEquals(ImmutableList.of(), wheel.expire(START_MILLIS + 1000));
+        Assert.assertEquals(ImmutableList.of(late), wheel.expire(START_MILLIS + 1100));
+        Assert.assertEquals(ImmutableList.of(), wheel.getScheduledTokens());
+    }
+
+    @Test
+    public void testTokensMoreThanOneRevolutionAhead() {
+        TokenExpiryWheel<HeldLocksGrant> wheel = new TokenExpiryWheel<HeldLocksGrant>(
+                TICK_MILLIS, WHEEL_SIZE, CLOCK_DRIFT_MILLIS, START_MILLIS);
+        long revolutionMillis = TICK_MILLIS * WHEEL_SIZE;
+        HeldLocksGrant farAway = grant(1, START_MILLIS + 3 * revolutionMillis);
+        wheel.add(farAway);
+
+        for (long now = START_MILLIS; now < START_MILLIS + 3 * revolutionMillis; now += TICK_MILLIS) {
+            Assert.assertEquals(ImmutableList.of(), wheel.expire(now));
+        }
+        Assert.assertEquals(ImmutableList.of(farAway), wheel.expire(START_MILLIS + 3 * revolutionMillis + TICK_MILLIS));
+    }
+
+    @Test
+    public void testLongPauseExpiresEverythingDue() {
+        TokenExpiryWheel<HeldLocksGrant> wheel = new TokenExpiryWheel<HeldLocksGrant>(
+                TICK_MILLIS, WHEEL_SIZE, CLOCK_DRIFT_MILLIS, START_MILLIS);
+        HeldLocksGrant alreadyExpired = grant(1, START_MILLIS - 10000);
+        HeldLocksGrant first = grant(2, START_MILLIS + 500);
+        HeldLocksGrant second = grant(3, START_MILLIS + 2500);
+        HeldLocksGrant notDue = grant(4, START_MILLIS + 100000);
+        wheel.add(alreadyExpired);
+        wheel.add(first);
+        wheel.add(second);
+        wheel.add(notDue);
+
+        List<HeldLocksGrant> expired = wheel.expire(START_MILLIS + 50000);
+        Assert.assertEquals(ImmutableSet.of(alreadyExpired, first, second), ImmutableSet.copyOf(expired));
+        Assert.assertEquals(3, expired.size());
+        Assert.assertEquals(ImmutableList.of(notDue), wheel.getScheduledTokens());
+    }
+
+    @Test
+    public void testTokenReaddedAfterRefresh() {
+        TokenExpiryWheel<HeldLocksGrant> wheel = new TokenExpiryWheel<HeldLocksGrant>(
+                TICK_MILLIS, WHEEL_SIZE, CLOCK_DRIFT_MILLIS, START_MILLIS);
+        HeldLocksGrant grant = grant(1, START_MILLIS + 100);
+        wheel.add(grant);
+        Assert.assertEquals(ImmutableList.of(grant), wheel.expire(START_MILLIS + 200));
+
+        HeldLocksGrant refreshed = grant.refresh(START_MILLIS + 700);
+        wheel.add(refreshed);
+        Assert.assertEquals(ImmutableList.of(), wheel.expire(START_MILLIS + 700));
+        Assert.assertEquals(ImmutableList.of(refreshed), wheel.expire(START_MILLIS + 800));
+    }
+
+    private static HeldLocksGrant grant(long id, long expirationDateMs) {
+        return new HeldLocksGrant(BigInteger.valueOf(id), START_MILLIS, expirationDateMs,
+                LockCollections.of(ImmutableSortedMap.of(LOCK, LockMode.WRITE)),
+                SimpleTimeDuration.of(1, TimeUnit.SECONDS), null);
+    }
+}
@@ -46,6 +46,8 @@ public class PersistentTimestampService implements TimestampService {
 
     private final ExecutorService executor;
     private final AtomicBoolean isAllocationTaskSubmitted;
+    // Requests that find no timestamps left wait on this until the allocation task finishes.
+    private final Object allocationFinished = new Object();
 
     private Clock clock;
     private long lastAllocatedTime;
@@ -98,7 +100,7 @@ public class PersistentTimestampService implements TimestampService {
 
     volatile Throwable allocationFailure = null;
     private void submitAllocationTask() {
-        if (isAllocationTaskSubmitted.compareAndSet(false, true) && isAllocationRequired(lastReturnedTimestamp.get(), upperLimitToHandOutInclusive.get())) {
+        if (isAllocationRequired(lastReturnedTimestamp.get(), upperLimitToHandOutInclusive.get()) && isAllocationTaskSubmitted.compareAndSet(false, true)) {
             final Exception createdException = new Exception("allocation task called from here");
             executor.submit(new Runnable() {
                 @Override
@@ -123,6 +125,9 @@ public class PersistentTimestampService implements TimestampService {
                         allocationFailure = e;
                     } finally {
                         isAllocationTaskSubmitted.set(false);
+                        synchronized (allocationFinished) {
+                            allocationFinished.notifyAll();
+                        }
                     }
                 }
             });
@@ -182,10 +187,7 @@ public class PersistentTimestampService implements TimestampService {
                     log.error("We haven't gotten enough timestamps from the DB", new RuntimeException());
                     hasLogged = true;
                 }
-                if (Thread.interrupted()) {
-                    Thread.currentThread().interrupt();
-                    throw new PalantirInterruptedException("Interrupted while waiting for timestamp allocation.");
-                }
+                awaitAllocation();
                 continue;
             }
             long newVal = Math.min(upperLimit, lastVal + numTimestampsRequested);
@@ -197,7 +199,20 @@ public class PersistentTimestampService implements TimestampService {
             }
         }
     }
-    
+
+    private void awaitAllocation() {
+        synchronized (allocationFinished) {
+            try {
+                while (isAllocationTaskSubmitted.get()) {
+                    allocationFinished.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PalantirInterruptedException("Interrupted while waiting for timestamp allocation.");
+            }
+        }
+    }
+
     /**
      * Fast forwards the timestamp to the specified one so that no one can be served fresh timestamps prior
      * to it from now on.
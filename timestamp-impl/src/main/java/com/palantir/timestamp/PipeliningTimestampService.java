@@ -0,0 +1,214 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.timestamp;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.palantir.common.base.Throwables;
+import com.palantir.common.concurrent.NamedThreadFactory;
+import com.palantir.common.concurrent.PTExecutors;
+
+/**
+ * Client side batching of timestamp requests, with a non-blocking API.
+ * <p>
+ * Requests queue up until a remote call is free to take them; that call then asks the delegate
+ * for all of the queued timestamps at once. Unlike {@link RateLimitedTimestampService}, more
+ * than one remote call may be in flight at a time, so a burst of requests that arrives while a
+ * batch is outstanding is sent straight away instead of waiting for that batch to come back.
+ * Batches size themselves from the request rate: each one carries everything that arrived since
+ * the last one was sent, and {@link #getFreshTimestamps(int)} callers share batches too.
+ * <p>
+ * Timestamps are never fetched ahead of demand. A remote call is only made once every request
+ * it serves has been made, which is what keeps the timestamps fresh.
+ */
+@ThreadSafe
+public class PipeliningTimestampService implements TimestampService {
+    static final int DEFAULT_MAX_REQUESTS_IN_FLIGHT = 2;
+    // The most timestamps a PersistentTimestampService hands out per call.
+    static final int MAX_TIMESTAMPS_PER_REQUEST = 10 * 1000;
+
+    private static final ExecutorService executor = PTExecutors.newCachedThreadPool(
+            new NamedThreadFactory("PipeliningTimestampService", true /* isDaemon */));
+
+    private final TimestampService delegate;
+    private final int maxRequestsInFlight;
+
+    @GuardedBy("this")
+    private final Deque<PendingRequest> pendingRequests = new ArrayDeque<PendingRequest>();
+    @GuardedBy("this")
+    private int requestsInFlight = 0;
+
+    public PipeliningTimestampService(TimestampService delegate) {
+        this(delegate, DEFAULT_MAX_REQUESTS_IN_FLIGHT);
+    }
+
+    public PipeliningTimestampService(TimestampService delegate, int maxRequestsInFlight) {
+        Preconditions.checkArgument(maxRequestsInFlight > 0,
+                "maxRequestsInFlight must be positive, was %s", maxRequestsInFlight);
+        this.delegate = delegate;
+        this.maxRequestsInFlight = maxRequestsInFlight;
+    }
+
+    @Override
+    public long getFreshTimestamp() {
+        return getUnchecked(getFreshTimestampAsync());
+    }
+
+    @Override
+    public TimestampRange getFreshTimestamps(int numTimestampsRequested) {
+        return getUnchecked(getFreshTimestampsAsync(numTimestampsRequested));
+    }
+
+    public ListenableFuture<Long> getFreshTimestampAsync() {
+        return Futures.transform(getFreshTimestampsAsync(1), new Function<TimestampRange, Long>() {
+            @Override
+            public Long apply(TimestampRange range) {
+                return range.getLowerBound();
+            }
+        });
+    }
+
+    /**
+     * Like {@link TimestampService#getFreshTimestamps(int)}, the returned range may hold fewer
+     * timestamps than were requested.
+     */
+    public ListenableFuture<TimestampRange> getFreshTimestampsAsync(int numTimestampsRequested) {
+        Preconditions.checkArgument(numTimestampsRequested > 0,
+                "Number of timestamps requested must be greater than zero, was %s",
+                numTimestampsRequested);
+        PendingRequest request = new PendingRequest(Math.min(numTimestampsRequested, MAX_TIMESTAMPS_PER_REQUEST));
+        synchronized (this) {
+            pendingRequests.addLast(request);
+        }
+        sendBatches();
+        return request.future;
+    }
+
+    private void sendBatches() {
+        while (true) {
+            final List<PendingRequest> batch;
+            synchronized (this) {
+                if (pendingRequests.isEmpty() || requestsInFlight >= maxRequestsInFlight) {
+                    return;
+                }
+                batch = takeBatch();
+                requestsInFlight++;
+            }
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        fetchBatch(batch);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    requestsInFlight--;
+                }
+                failBatch(batch, e);
+                return;
+            }
+        }
+    }
+
+    @GuardedBy("this")
+    private List<PendingRequest> takeBatch() {
+        List<PendingRequest> batch = Lists.newArrayList();
+        int numTimestamps = 0;
+        while (!pendingRequests.isEmpty()
+                && numTimestamps + pendingRequests.peekFirst().numTimestamps <= MAX_TIMESTAMPS_PER_REQUEST) {
+            PendingRequest request = pendingRequests.removeFirst();
+            numTimestamps += request.numTimestamps;
+            batch.add(request);
+        }
+        return batch;
+    }
+
+    private void fetchBatch(List<PendingRequest> batch) {
+        List<PendingRequest> unserved = Lists.newArrayList();
+        try {
+            int numTimestamps = 0;
+            for (PendingRequest request : batch) {
+                numTimestamps += request.numTimestamps;
+            }
+            TimestampRange range = delegate.getFreshTimestamps(numTimestamps);
+
+            // The delegate may hand out fewer timestamps than we asked for. Whoever is left over
+            // goes back to the front of the queue; any later call is still fresh for them.
+            long next = range.getLowerBound();
+            for (PendingRequest request : batch) {
+                if (next > range.getUpperBound()) {
+                    unserved.add(request);
+                } else {
+                    long last = Math.min(range.getUpperBound(), next + request.numTimestamps - 1);
+                    request.future.set(TimestampRange.createInclusiveRange(next, last));
+                    next = last + 1;
+                }
+            }
+        } catch (Throwable t) { // (authorized)
+            unserved.clear();
+            failBatch(batch, t);
+        } finally {
+            synchronized (this) {
+                requestsInFlight--;
+                for (PendingRequest request : Lists.reverse(unserved)) {
+                    pendingRequests.addFirst(request);
+                }
+            }
+            sendBatches();
+        }
+    }
+
+    private static void failBatch(List<PendingRequest> batch, Throwable t) {
+        for (PendingRequest request : batch) {
+            request.future.setException(t);
+        }
+    }
+
+    private static <T> T getUnchecked(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw Throwables.rewrapAndThrowUncheckedException(e);
+        } catch (ExecutionException e) {
+            throw Throwables.rewrapAndThrowUncheckedException(e.getCause());
+        }
+    }
+
+    private static class PendingRequest {
+        final int numTimestamps;
+        final SettableFuture<TimestampRange> future = SettableFuture.create();
+
+        PendingRequest(int numTimestamps) {
+            this.numTimestamps = numTimestamps;
+        }
+    }
+}
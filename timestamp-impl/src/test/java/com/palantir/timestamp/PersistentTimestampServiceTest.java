@@ -16,8 +16,10 @@
 package com.palantir.timestamp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -25,7 +27,9 @@ import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -39,8 +43,12 @@ import org.jmock.lib.concurrent.Synchroniser;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
 import com.palantir.common.concurrent.PTExecutors;
 import com.palantir.common.remoting.ServiceNotAvailableException;
@@ -161,6 +169,49 @@ public class PersistentTimestampServiceTest {
         }
     }
 
+    @Test
+    public void requestsWaitForTheAllocationTaskWhenOutOfTimestamps() throws Exception {
+        final CountDownLatch storeStarted = new CountDownLatch(1);
+        final CountDownLatch storeFinished = new CountDownLatch(1);
+        TimestampBoundStore timestampBoundStore = initialTimestampBoundStore();
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws InterruptedException {
+                storeStarted.countDown();
+                storeFinished.await();
+                return null;
+            }
+        }).when(timestampBoundStore).storeUpperLimit(anyLong());
+        final PersistentTimestampService persistentTimestampService = PersistentTimestampService.create(timestampBoundStore);
+
+        ExecutorService exec = PTExecutors.newCachedThreadPool();
+        try {
+            List<Future<Long>> futures = Lists.newArrayList();
+            for (int i = 0; i < 3; i++) {
+                futures.add(exec.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        return persistentTimestampService.getFreshTimestamp();
+                    }
+                }));
+            }
+            storeStarted.await();
+            Thread.sleep(50);
+            for (Future<Long> future : futures) {
+                assertFalse(future.isDone());
+            }
+
+            storeFinished.countDown();
+            Set<Long> timestamps = Sets.newHashSet();
+            for (Future<Long> future : futures) {
+                timestamps.add(future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(ImmutableSet.of(1L, 2L, 3L), timestamps);
+        } finally {
+            exec.shutdownNow();
+        }
+    }
+
     private void getFreshTimestampsInParallel(PersistentTimestampService persistentTimestampService, int numTimes) {
         ExecutorService executorService = Executors.newFixedThreadPool(numTimes / 2);
         try {
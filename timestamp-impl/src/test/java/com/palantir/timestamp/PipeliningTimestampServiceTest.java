@@ -0,0 +1,161 @@
+/**
+ * Copyright 2016 Palantir Technologies
+ *
+ * Licensed under the BSD-3 License (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.palantir.timestamp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+public class PipeliningTimestampServiceTest {
+    @Test
+    public void requestsThatArriveDuringACallShareTheNextOne() throws Exception {
+        BlockingTimestampService raw = new BlockingTimestampService(Integer.MAX_VALUE);
+        PipeliningTimestampService timestamps = new PipeliningTimestampService(raw, 1);
+
+        ListenableFuture<Long> first = timestamps.getFreshTimestampAsync();
+        raw.awaitCalls(1);
+        List<ListenableFuture<Long>> queued = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            queued.add(timestamps.getFreshTimestampAsync());
+        }
+        ListenableFuture<TimestampRange> range = timestamps.getFreshTimestampsAsync(5);
+        assertFalse(first.isDone());
+
+        raw.release.countDown();
+        long firstTimestamp = first.get();
+        Set<Long> seen = Sets.newHashSet();
+        for (ListenableFuture<Long> future : queued) {
+            long timestamp = future.get();
+            assertTrue(timestamp > firstTimestamp);
+            assertTrue(seen.add(timestamp));
+        }
+        TimestampRange multiple = range.get();
+        assertEquals(5, multiple.getUpperBound() - multiple.getLowerBound() + 1);
+        for (long ts = multiple.getLowerBound(); ts <= multiple.getUpperBound(); ts++) {
+            assertTrue(seen.add(ts));
+        }
+        assertEquals(2, raw.calls.get());
+    }
+
+    @Test
+    public void sendsAnotherCallWhileOneIsInFlight() throws Exception {
+        BlockingTimestampService raw = new BlockingTimestampService(Integer.MAX_VALUE);
+        PipeliningTimestampService timestamps = new PipeliningTimestampService(raw, 2);
+
+        ListenableFuture<Long> first = timestamps.getFreshTimestampAsync();
+        raw.awaitCalls(1);
+        ListenableFuture<Long> second = timestamps.getFreshTimestampAsync();
+        raw.awaitCalls(2);
+        ListenableFuture<Long> third = timestamps.getFreshTimestampAsync();
+        assertEquals(2, raw.calls.get());
+
+        raw.release.countDown();
+        assertEquals(3, Sets.newHashSet(first.get(), second.get(), third.get()).size());
+        assertEquals(3, raw.calls.get());
+    }
+
+    @Test
+    public void requestsTheDelegateCannotServeAreRetried() throws Exception {
+        BlockingTimestampService raw = new BlockingTimestampService(3);
+        raw.release.countDown();
+        PipeliningTimestampService timestamps = new PipeliningTimestampService(raw, 1);
+
+        List<ListenableFuture<Long>> futures = Lists.newArrayList();
+        for (int i = 0; i < 10; i++) {
+            futures.add(timestamps.getFreshTimestampAsync());
+        }
+        assertEquals(10, Sets.newHashSet(Futures.allAsList(futures).get()).size());
+    }
+
+    @Test
+    public void failuresReachEveryRequestInTheBatch() throws Exception {
+        BlockingTimestampService raw = new BlockingTimestampService(Integer.MAX_VALUE);
+        PipeliningTimestampService timestamps = new PipeliningTimestampService(raw, 1);
+
+        ListenableFuture<Long> first = timestamps.getFreshTimestampAsync();
+        raw.awaitCalls(1);
+        ListenableFuture<Long> second = timestamps.getFreshTimestampAsync();
+        ListenableFuture<Long> third = timestamps.getFreshTimestampAsync();
+        raw.failure = new IllegalStateException("no timestamps for you");
+        raw.release.countDown();
+
+        for (ListenableFuture<Long> future : Lists.newArrayList(first, second, third)) {
+            try {
+                future.get();
+                fail("Expected the timestamp request to fail");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+
+        raw.failure = null;
+        assertTrue(timestamps.getFreshTimestamp() > 0);
+    }
+
+    private static class BlockingTimestampService implements TimestampService {
+        final InMemoryTimestampService delegate = new InMemoryTimestampService();
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final int maxTimestampsPerCall;
+        volatile RuntimeException failure = null;
+
+        BlockingTimestampService(int maxTimestampsPerCall) {
+            this.maxTimestampsPerCall = maxTimestampsPerCall;
+        }
+
+        void awaitCalls(int numCalls) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+            while (calls.get() < numCalls) {
+                assertTrue("Timed out waiting for timestamp calls", System.currentTimeMillis() < deadline);
+                Thread.sleep(1);
+            }
+        }
+
+        @Override
+        public long getFreshTimestamp() {
+            return getFreshTimestamps(1).getLowerBound();
+        }
+
+        @Override
+        public TimestampRange getFreshTimestamps(int numTimestampsRequested) {
+            calls.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return delegate.getFreshTimestamps(Math.min(numTimestampsRequested, maxTimestampsPerCall));
+        }
+    }
+}